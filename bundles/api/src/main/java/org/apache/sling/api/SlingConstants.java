@@ -401,4 +401,16 @@ public class SlingConstants {
      * @since 2.1 (Sling API Bundle 2.1.0)
      */
     public static final String SLING_CURRENT_SERVLET_NAME = "sling.core.current.servletName";
+
+    /**
+     * The name of the request attribute providing an
+     * <code>Iterator&lt;RequestParameter&gt;</code> over the parts of a
+     * multipart/form-data POST request sent in streaming upload mode (value
+     * is "request-parts-iterator"). In this mode the request body is not
+     * parsed into request parameters; the parts are read from the request
+     * while iterating and the content of a part is only available until the
+     * next part is requested.
+     * @since 2.4 (Sling API Bundle 2.9.1)
+     */
+    public static final String ATTR_REQUEST_PARTS_ITERATOR = "request-parts-iterator";
 }
@@ -0,0 +1,551 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.SimpleCredentials;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.auth.core.AuthConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>ResourceResolverPool</code> keeps the resource resolvers of
+ * read-only requests after the request has ended to reuse them for later
+ * requests presenting the same credentials.
+ * <p>
+ * Resolvers are pooled by a digest of the complete authentication info, so
+ * a resolver is only handed out for exactly the credentials it has been
+ * created with. Credentials objects are part of the digest with their user
+ * id, password or token, see {@link #createKey(Map)}. Each resolver is used
+ * for at most the configured time to live after which the credentials are
+ * validated again by a new login.
+ * <p>
+ * Resolvers are never shared by concurrent requests: a resolver is removed
+ * from the pool while it is in use and only returned once the request has
+ * ended without leaving transient changes. The resolver is refreshed before
+ * it is returned, which refreshes the state of all resource providers.
+ * Requests get a restricted view of the resolver: creating, deleting and
+ * committing resources fails with a <code>PersistenceException</code>.
+ * This view is not read-only: changes saved through an adapted JCR session
+ * or a <code>ModifiableValueMap</code> of a resource are persisted, as the
+ * objects returned by the resolver are not wrapped. The pool must therefore
+ * only be enabled if GET and HEAD requests do not modify content.
+ * <p>
+ * The pool is invalidated for a user on logout and credential changes and
+ * completely if access control or user data is modified.
+ */
+class ResourceResolverPool {
+
+    /** default log */
+    private final Logger log = LoggerFactory.getLogger(ResourceResolverPool.class);
+
+    /**
+     * The authentication info property set when changing the password, see
+     * <code>SlingAuthenticator.handlePasswordChange</code>
+     */
+    private static final String NEW_PASSWORD = "user.newpassword";
+
+    /** The idle resolvers per key */
+    private final ConcurrentMap<Key, ConcurrentLinkedQueue<PooledResolver>> idle = new ConcurrentHashMap<Key, ConcurrentLinkedQueue<PooledResolver>>();
+
+    /** The resolvers currently used by requests */
+    private final ConcurrentMap<ResourceResolver, PooledResolver> active = new ConcurrentHashMap<ResourceResolver, PooledResolver>();
+
+    /** The number of idle resolvers */
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /** The time of the last removal of expired idle resolvers */
+    private final AtomicLong lastPurge = new AtomicLong(System.currentTimeMillis());
+
+    private final long timeToLive;
+
+    private final int maxIdle;
+
+    private volatile boolean closed;
+
+    /**
+     * @param timeToLive The time in milliseconds a resolver may be used
+     *            after it has been created
+     * @param maxIdle The maximum number of idle resolvers of all users
+     */
+    ResourceResolverPool(final long timeToLive, final int maxIdle) {
+        this.timeToLive = timeToLive;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Returns whether the resolver of the request may be taken from and
+     * returned to the pool. This is only the case for requests which are not
+     * expected to modify content.
+     */
+    static boolean isPoolableRequest(final HttpServletRequest request) {
+        final String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    /**
+     * Returns a resolver for the authentication info. An idle resolver
+     * created for the same credentials is reused, otherwise a new resolver
+     * is requested from the factory.
+     *
+     * @throws LoginException If a new resolver cannot be created for the
+     *             credentials
+     */
+    ResourceResolver getResourceResolver(final ResourceResolverFactory factory,
+            final Map<String, Object> authInfo) throws LoginException {
+        final Key key = createKey(authInfo);
+        if (key == null || this.closed) {
+            return factory.getResourceResolver(authInfo);
+        }
+
+        final ConcurrentLinkedQueue<PooledResolver> queue = this.idle.get(key);
+        if (queue != null) {
+            PooledResolver pooled;
+            while ((pooled = queue.poll()) != null) {
+                this.idleCount.decrementAndGet();
+                if (pooled.isUsable(this.timeToLive)) {
+                    this.active.put(pooled.readOnly, pooled);
+                    log.debug("getResourceResolver: Reusing pooled resolver for {}",
+                        key.userId);
+                    return pooled.readOnly;
+                }
+                pooled.resolver.close();
+            }
+        }
+
+        final PooledResolver pooled = new PooledResolver(key, factory.getResourceResolver(authInfo));
+        this.active.put(pooled.readOnly, pooled);
+        return pooled.readOnly;
+    }
+
+    /**
+     * Returns the resolver to the pool once it is not used anymore. The
+     * resolver is closed if it has not been created by this pool, has
+     * expired or been invalidated, has transient changes or if the pool is
+     * full.
+     */
+    void release(final ResourceResolver resolver) {
+        final PooledResolver pooled = this.active.remove(resolver);
+        if (pooled == null) {
+            resolver.close();
+            return;
+        }
+        if (this.closed || !pooled.isUsable(this.timeToLive) || !refresh(pooled.resolver)) {
+            pooled.resolver.close();
+            return;
+        }
+
+        this.purgeExpired();
+
+        if (this.idleCount.incrementAndGet() > this.maxIdle) {
+            this.idleCount.decrementAndGet();
+            pooled.resolver.close();
+            return;
+        }
+
+        ConcurrentLinkedQueue<PooledResolver> queue = this.idle.get(pooled.key);
+        if (queue == null) {
+            queue = new ConcurrentLinkedQueue<PooledResolver>();
+            final ConcurrentLinkedQueue<PooledResolver> existing = this.idle.putIfAbsent(pooled.key, queue);
+            if (existing != null) {
+                queue = existing;
+            }
+        }
+        queue.offer(pooled);
+
+        // the pool may have been invalidated concurrently
+        if (pooled.invalid || this.closed) {
+            if (queue.remove(pooled)) {
+                this.idleCount.decrementAndGet();
+                pooled.resolver.close();
+            }
+        }
+    }
+
+    /**
+     * Invalidates all resolvers of the user. Idle resolvers are closed
+     * immediately, resolvers in use are closed when released.
+     */
+    void invalidate(final String userId) {
+        if (userId == null) {
+            return;
+        }
+        log.debug("invalidate: Invalidating pooled resolvers of {}", userId);
+        for (final PooledResolver pooled : this.active.values()) {
+            if (pooled.key.isUser(userId)) {
+                pooled.invalid = true;
+            }
+        }
+        for (final Iterator<Map.Entry<Key, ConcurrentLinkedQueue<PooledResolver>>> i = this.idle.entrySet().iterator(); i.hasNext();) {
+            final Map.Entry<Key, ConcurrentLinkedQueue<PooledResolver>> entry = i.next();
+            if (entry.getKey().isUser(userId)) {
+                i.remove();
+                this.closeAll(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Invalidates all resolvers.
+     */
+    void invalidateAll() {
+        log.debug("invalidateAll: Invalidating all pooled resolvers");
+        for (final PooledResolver pooled : this.active.values()) {
+            pooled.invalid = true;
+        }
+        for (final Iterator<ConcurrentLinkedQueue<PooledResolver>> i = this.idle.values().iterator(); i.hasNext();) {
+            final ConcurrentLinkedQueue<PooledResolver> queue = i.next();
+            i.remove();
+            this.closeAll(queue);
+        }
+    }
+
+    /**
+     * Closes all idle resolvers. Resolvers still in use are closed when
+     * released.
+     */
+    void close() {
+        this.closed = true;
+        this.invalidateAll();
+    }
+
+    /** The number of idle resolvers */
+    int getIdleCount() {
+        return this.idleCount.get();
+    }
+
+    /**
+     * Creates the pool key for the authentication info or returns
+     * <code>null</code> if the info cannot be used as a key. This is the case
+     * if a password change is requested or if the info contains values other
+     * than strings, characters arrays, numbers, booleans and credentials.
+     * <p>
+     * <code>SimpleCredentials</code> are part of the key with their user id,
+     * password and string attributes. Other credentials objects, like the
+     * credentials of the form authentication, are part of the key with their
+     * class and their string and character array bean properties, that is
+     * their user id and token. Credentials without such properties cannot be
+     * used as a key.
+     */
+    static Key createKey(final Map<String, Object> authInfo) {
+        if (authInfo.containsKey(NEW_PASSWORD)) {
+            return null;
+        }
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException nsae) {
+            return null;
+        }
+
+        try {
+            for (final Map.Entry<String, Object> entry : new TreeMap<String, Object>(authInfo).entrySet()) {
+                // the login marker does not identify the credentials
+                if (AuthConstants.AUTH_INFO_LOGIN.equals(entry.getKey())) {
+                    continue;
+                }
+                final String text = toKeyText(entry.getValue());
+                if (text == null) {
+                    return null;
+                }
+                digest.update(entry.getKey().getBytes("UTF-8"));
+                digest.update((byte) 0);
+                digest.update(text.getBytes("UTF-8"));
+                digest.update((byte) 0);
+            }
+        } catch (final UnsupportedEncodingException uee) {
+            // not expected for UTF-8
+            return null;
+        }
+
+        return new Key((String) authInfo.get(ResourceResolverFactory.USER),
+            (String) authInfo.get(ResourceResolverFactory.USER_IMPERSONATION),
+            digest.digest());
+    }
+
+    /**
+     * Returns the text of an authentication info value for the key or
+     * <code>null</code> if the value cannot be part of the key.
+     */
+    private static String toKeyText(final Object value) {
+        if (value == null) {
+            return "";
+        } else if (value instanceof String) {
+            return "s" + value;
+        } else if (value instanceof char[]) {
+            return "c" + new String((char[]) value);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return "n" + value;
+        }
+        try {
+            if (JcrSupport.isSimpleCredentials(value)) {
+                return JcrSupport.toKeyText(value);
+            }
+        } catch (final NoClassDefFoundError ncdfe) {
+            // JCR API is not available, value is no SimpleCredentials
+        }
+        return toBeanKeyText(value);
+    }
+
+    /**
+     * Returns the class and the string and character array bean properties
+     * of the value or <code>null</code> if the value has no such property.
+     */
+    private static String toBeanKeyText(final Object value) {
+        final StringBuilder text = new StringBuilder("b").append(value.getClass().getName());
+        boolean hasProperties = false;
+        try {
+            final BeanInfo info = Introspector.getBeanInfo(value.getClass(), Object.class);
+            final PropertyDescriptor[] properties = info.getPropertyDescriptors();
+            Arrays.sort(properties, new Comparator<PropertyDescriptor>() {
+                public int compare(final PropertyDescriptor p1, final PropertyDescriptor p2) {
+                    return p1.getName().compareTo(p2.getName());
+                }
+            });
+            for (final PropertyDescriptor property : properties) {
+                final Method getter = property.getReadMethod();
+                if (getter == null
+                    || (property.getPropertyType() != String.class && property.getPropertyType() != char[].class)) {
+                    continue;
+                }
+                final Object propValue = getter.invoke(value);
+                text.append('\0').append(property.getName()).append('\0');
+                if (propValue instanceof char[]) {
+                    text.append((char[]) propValue);
+                } else if (propValue != null) {
+                    text.append(propValue);
+                }
+                hasProperties = true;
+            }
+        } catch (final IntrospectionException ie) {
+            return null;
+        } catch (final IllegalAccessException iae) {
+            return null;
+        } catch (final InvocationTargetException ite) {
+            return null;
+        }
+        return hasProperties ? text.toString() : null;
+    }
+
+    /**
+     * Refreshes the resolver before it is pooled. Returns <code>false</code>
+     * if the resolver has transient changes and must not be pooled.
+     */
+    private static boolean refresh(final ResourceResolver resolver) {
+        if (resolver.hasChanges()) {
+            return false;
+        }
+        resolver.refresh();
+        return true;
+    }
+
+    /**
+     * Closes the expired idle resolvers. This is done at most once per time
+     * to live to not keep resolvers of users not returning.
+     */
+    private void purgeExpired() {
+        final long now = System.currentTimeMillis();
+        final long last = this.lastPurge.get();
+        if (now - last < this.timeToLive || !this.lastPurge.compareAndSet(last, now)) {
+            return;
+        }
+        for (final ConcurrentLinkedQueue<PooledResolver> queue : this.idle.values()) {
+            for (final Iterator<PooledResolver> i = queue.iterator(); i.hasNext();) {
+                final PooledResolver pooled = i.next();
+                if (!pooled.isUsable(this.timeToLive) && queue.remove(pooled)) {
+                    this.idleCount.decrementAndGet();
+                    pooled.resolver.close();
+                }
+            }
+        }
+    }
+
+    private void closeAll(final ConcurrentLinkedQueue<PooledResolver> queue) {
+        PooledResolver pooled;
+        while ((pooled = queue.poll()) != null) {
+            this.idleCount.decrementAndGet();
+            pooled.resolver.close();
+        }
+    }
+
+    /**
+     * The key of pooled resolvers: the user and the digest of the
+     * authentication info.
+     */
+    static final class Key {
+
+        final String userId;
+
+        final String impersonatedUserId;
+
+        private final byte[] digest;
+
+        private final int hashCode;
+
+        Key(final String userId, final String impersonatedUserId, final byte[] digest) {
+            this.userId = userId;
+            this.impersonatedUserId = impersonatedUserId;
+            this.digest = digest;
+            int h = 0;
+            for (final byte b : digest) {
+                h = 31 * h + b;
+            }
+            this.hashCode = h;
+        }
+
+        boolean isUser(final String userId) {
+            return userId.equals(this.userId) || userId.equals(this.impersonatedUserId);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            return MessageDigest.isEqual(this.digest, ((Key) obj).digest);
+        }
+    }
+
+    private static final class PooledResolver {
+
+        final Key key;
+
+        final ResourceResolver resolver;
+
+        /** The read-only view of the resolver handed out to requests */
+        final ResourceResolver readOnly;
+
+        final long created = System.currentTimeMillis();
+
+        volatile boolean invalid;
+
+        PooledResolver(final Key key, final ResourceResolver resolver) {
+            this.key = key;
+            this.resolver = resolver;
+            this.readOnly = (ResourceResolver) Proxy.newProxyInstance(
+                ResourceResolverPool.class.getClassLoader(),
+                new Class<?>[] { ResourceResolver.class },
+                new ReadOnlyHandler(resolver));
+        }
+
+        boolean isUsable(final long timeToLive) {
+            return !this.invalid && this.resolver.isLive()
+                && System.currentTimeMillis() - this.created < timeToLive;
+        }
+    }
+
+    /**
+     * Handler of the view of a pooled resolver, failing on the methods of
+     * the resolver modifying resources. Objects returned by the resolver
+     * are not wrapped and can still modify resources.
+     */
+    private static final class ReadOnlyHandler implements InvocationHandler {
+
+        private final ResourceResolver resolver;
+
+        ReadOnlyHandler(final ResourceResolver resolver) {
+            this.resolver = resolver;
+        }
+
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable {
+            final String name = method.getName();
+            if ("create".equals(name) || "delete".equals(name) || "commit".equals(name)) {
+                throw new PersistenceException("Resource resolver of read-only request cannot be modified");
+            } else if ("equals".equals(name) && args != null && args.length == 1) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name) && args == null) {
+                return System.identityHashCode(proxy);
+            }
+            try {
+                return method.invoke(this.resolver, args);
+            } catch (final InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+
+    /**
+     * Access to the JCR API in a separate class as the API is only
+     * dynamically imported.
+     */
+    private static final class JcrSupport {
+
+        static boolean isSimpleCredentials(final Object value) {
+            return value instanceof SimpleCredentials;
+        }
+
+        /**
+         * Returns the user id, password and string attributes of the
+         * <code>SimpleCredentials</code> or <code>null</code> if the
+         * credentials have other attributes.
+         */
+        static String toKeyText(final Object value) {
+            final SimpleCredentials credentials = (SimpleCredentials) value;
+            final StringBuilder text = new StringBuilder("j").append(credentials.getUserID())
+                .append('\0').append(credentials.getPassword());
+            final String[] names = credentials.getAttributeNames();
+            Arrays.sort(names);
+            for (final String name : names) {
+                final Object attribute = credentials.getAttribute(name);
+                if (!(attribute instanceof String)) {
+                    return null;
+                }
+                text.append('\0').append(name).append('\0').append(attribute);
+            }
+            return text.toString();
+        }
+    }
+}
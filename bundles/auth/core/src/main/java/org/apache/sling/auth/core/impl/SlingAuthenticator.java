@@ -72,6 +72,8 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventAdmin;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 import org.osgi.service.http.HttpContext;
 import org.osgi.util.tracker.ServiceTracker;
 import org.slf4j.Logger;
@@ -196,6 +198,33 @@ public class SlingAuthenticator implements Authenticator,
      */
     private static final String AUTH_INFO_PROP_FEEDBACK_HANDLER = "$$sling.auth.AuthenticationFeedbackHandler$$";
 
+    /**
+     * The default time to live of pooled resource resolvers in seconds. The
+     * default of zero disables the resource resolver pool.
+     */
+    private static final int DEFAULT_RESOLVER_POOL_TTL = 0;
+
+    /**
+     * The name of the configuration property defining the number of seconds
+     * a resource resolver may be reused for requests with the same
+     * credentials after it has been created.
+     */
+    @Property(intValue = DEFAULT_RESOLVER_POOL_TTL)
+    private static final String PAR_RESOLVER_POOL_TTL = "auth.resolver.pool.ttl";
+
+    /** The default maximum number of idle pooled resource resolvers */
+    private static final int DEFAULT_RESOLVER_POOL_SIZE = 100;
+
+    @Property(intValue = DEFAULT_RESOLVER_POOL_SIZE)
+    private static final String PAR_RESOLVER_POOL_SIZE = "auth.resolver.pool.size";
+
+    /**
+     * The LDAP filter selecting the resource events invalidating the resource
+     * resolver pool: changes to access control policies and to users and
+     * groups, which are stored below /home by default.
+     */
+    private static final String RESOLVER_POOL_INVALIDATION_FILTER = "(|(path=*/rep:policy*)(path=*/rep:repoPolicy*)(path=/home/*))";
+
     @Reference
     private ResourceResolverFactory resourceResolverFactory;
 
@@ -272,6 +301,15 @@ public class SlingAuthenticator implements Authenticator,
     @Reference(policy=ReferencePolicy.DYNAMIC)
     private volatile EventAdmin eventAdmin;
 
+    /**
+     * The pool of resource resolvers or <code>null</code> if pooling is not
+     * enabled.
+     */
+    private volatile ResourceResolverPool resolverPool;
+
+    /** Event handler service registration invalidating the resolver pool */
+    private ServiceRegistration resolverPoolInvalidator;
+
     // ---------- SCR integration
 
     @SuppressWarnings("unused")
@@ -302,6 +340,19 @@ public class SlingAuthenticator implements Authenticator,
             bundleContext, authHandlerCache);
         authInfoPostProcessorTracker = new ServiceTracker(bundleContext, AuthenticationInfoPostProcessor.SERVICE_NAME, null);
         authInfoPostProcessorTracker.open();
+
+        final Hashtable<String, Object> invalidatorProps = new Hashtable<String, Object>();
+        invalidatorProps.put(EventConstants.EVENT_TOPIC, new String[] {
+            SlingConstants.TOPIC_RESOURCE_ADDED,
+            SlingConstants.TOPIC_RESOURCE_CHANGED,
+            SlingConstants.TOPIC_RESOURCE_REMOVED });
+        invalidatorProps.put(EventConstants.EVENT_FILTER, RESOLVER_POOL_INVALIDATION_FILTER);
+        invalidatorProps.put(Constants.SERVICE_DESCRIPTION,
+            "Sling Request Authenticator Resource Resolver Pool Invalidator");
+        invalidatorProps.put(Constants.SERVICE_VENDOR,
+            properties.get(Constants.SERVICE_VENDOR));
+        resolverPoolInvalidator = bundleContext.registerService(
+            EventHandler.class.getName(), new ResolverPoolInvalidator(), invalidatorProps);
     }
 
     @Modified
@@ -384,11 +435,36 @@ public class SlingAuthenticator implements Authenticator,
             final String realm = OsgiUtil.toString(properties.get(PAR_REALM_NAME), DEFAULT_REALM);
             httpBasicHandler = new HttpBasicAuthenticationHandler(realm, HTTP_AUTH_ENABLED.equals(http));
         }
+
+        final ResourceResolverPool oldPool = this.resolverPool;
+        final int poolTtl = OsgiUtil.toInteger(properties.get(PAR_RESOLVER_POOL_TTL), DEFAULT_RESOLVER_POOL_TTL);
+        if (poolTtl > 0) {
+            final int poolSize = OsgiUtil.toInteger(properties.get(PAR_RESOLVER_POOL_SIZE), DEFAULT_RESOLVER_POOL_SIZE);
+            log.info("modified: Pooling up to {} resource resolvers for {} seconds",
+                poolSize, poolTtl);
+            this.resolverPool = new ResourceResolverPool(poolTtl * 1000L, poolSize);
+        } else {
+            this.resolverPool = null;
+        }
+        if (oldPool != null) {
+            oldPool.close();
+        }
     }
 
     @SuppressWarnings("unused")
     @Deactivate
     private void deactivate(final BundleContext bundleContext) {
+        if (resolverPoolInvalidator != null) {
+            resolverPoolInvalidator.unregister();
+            resolverPoolInvalidator = null;
+        }
+
+        final ResourceResolverPool pool = this.resolverPool;
+        if (pool != null) {
+            this.resolverPool = null;
+            pool.close();
+        }
+
         if (engineAuthHandlerTracker != null) {
             engineAuthHandlerTracker.close();
             engineAuthHandlerTracker = null;
@@ -581,6 +657,12 @@ public class SlingAuthenticator implements Authenticator,
         // make sure impersonation is dropped
         setSudoCookie(request, response, new AuthenticationInfo("dummy", request.getRemoteUser()));
 
+        // pooled resolvers must not be reused after logout
+        final ResourceResolverPool pool = this.resolverPool;
+        if (pool != null) {
+            pool.invalidate(request.getRemoteUser());
+        }
+
         final String path = getHandlerSelectionPath(request);
         final Collection<AbstractAuthenticationHandlerHolder>[] holdersArray = this.authHandlerCache
                 .findApplicableHolder(request);
@@ -621,7 +703,7 @@ public class SlingAuthenticator implements Authenticator,
         ServletRequest request = sre.getServletRequest();
         Object resolverAttr = request.getAttribute(REQUEST_ATTRIBUTE_RESOLVER);
         if (resolverAttr instanceof ResourceResolver) {
-            ((ResourceResolver) resolverAttr).close();
+            releaseResolver((ResourceResolver) resolverAttr);
             request.removeAttribute(REQUEST_ATTRIBUTE_RESOLVER);
         }
     }
@@ -770,7 +852,7 @@ public class SlingAuthenticator implements Authenticator,
         try {
             handleImpersonation(request, authInfo);
             handlePasswordChange(request, authInfo);
-            ResourceResolver resolver = resourceResolverFactory.getResourceResolver(authInfo);
+            ResourceResolver resolver = getResourceResolver(request, authInfo);
             final boolean impersChanged = setSudoCookie(request, response, authInfo);
 
             if (sendLoginEvent != null) {
@@ -801,7 +883,7 @@ public class SlingAuthenticator implements Authenticator,
                 setAttributes(resolver, authInfo.getAuthType(), request);
             } else {
                 // terminate: cleanup
-                resolver.close();
+                releaseResolver(resolver);
             }
 
             return processRequest;
@@ -828,6 +910,33 @@ public class SlingAuthenticator implements Authenticator,
 
     }
 
+    /**
+     * Returns a resource resolver for the authentication info. For read-only
+     * requests the resolver is taken from the resolver pool if enabled.
+     */
+    private ResourceResolver getResourceResolver(final HttpServletRequest request,
+            final AuthenticationInfo authInfo) throws LoginException {
+        final ResourceResolverPool pool = this.resolverPool;
+        if (pool != null && ResourceResolverPool.isPoolableRequest(request)) {
+            return pool.getResourceResolver(resourceResolverFactory, authInfo);
+        }
+        return resourceResolverFactory.getResourceResolver(authInfo);
+    }
+
+    /**
+     * Returns the resource resolver to the resolver pool, which closes the
+     * resolver if it is not to be reused, or closes the resolver if pooling
+     * is not enabled.
+     */
+    private void releaseResolver(final ResourceResolver resolver) {
+        final ResourceResolverPool pool = this.resolverPool;
+        if (pool != null) {
+            pool.release(resolver);
+        } else {
+            resolver.close();
+        }
+    }
+
     private boolean expectAuthenticationHandler(final HttpServletRequest request) {
         if (this.authUriSuffices != null) {
             final String requestUri = request.getRequestURI();
@@ -849,7 +958,7 @@ public class SlingAuthenticator implements Authenticator,
         if (isAnonAllowed(request)) {
 
             try {
-                ResourceResolver resolver = resourceResolverFactory.getResourceResolver(authInfo);
+                ResourceResolver resolver = getResourceResolver(request, authInfo);
 
                 // check whether the client asked for redirect after
                 // authentication and/or impersonation
@@ -858,7 +967,7 @@ public class SlingAuthenticator implements Authenticator,
 
                     // request will now be terminated, so close the resolver
                     // to release resources
-                    resolver.close();
+                    releaseResolver(resolver);
 
                     return false;
                 }
@@ -1267,6 +1376,11 @@ public class SlingAuthenticator implements Authenticator,
         String newPassword = req.getParameter(PAR_NEW_PASSWORD );
         if (newPassword != null && newPassword.length() > 0) {
             authInfo.put("user.newpassword", newPassword);
+
+            final ResourceResolverPool pool = this.resolverPool;
+            if (pool != null) {
+                pool.invalidate(authInfo.getUser());
+            }
         }
     }
 
@@ -1484,6 +1598,22 @@ public class SlingAuthenticator implements Authenticator,
         return builder.toString();
     }
 
+    /**
+     * Invalidates the resource resolver pool if access control or users
+     * are modified.
+     */
+    private class ResolverPoolInvalidator implements EventHandler {
+
+        public void handleEvent(final Event event) {
+            final ResourceResolverPool pool = resolverPool;
+            if (pool != null) {
+                log.debug("handleEvent: Invalidating resource resolver pool on change of {}",
+                    event.getProperty(SlingConstants.PROPERTY_PATH));
+                pool.invalidateAll();
+            }
+        }
+    }
+
     private static class SlingAuthenticatorServiceListener implements
             AllServiceListener {
 
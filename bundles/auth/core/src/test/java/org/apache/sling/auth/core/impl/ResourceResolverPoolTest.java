@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.auth.core.impl;
+
+import javax.jcr.SimpleCredentials;
+
+import junit.framework.TestCase;
+
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.auth.core.AuthConstants;
+import org.apache.sling.auth.core.spi.AuthenticationInfo;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JMock.class)
+public class ResourceResolverPoolTest {
+
+    final Mockery context = new JUnit4Mockery();
+
+    final ResourceResolverFactory factory = context.mock(ResourceResolverFactory.class);
+
+    @Test
+    public void test_createKey() {
+        final AuthenticationInfo info = new AuthenticationInfo("BASIC", "user", "secret".toCharArray());
+        final ResourceResolverPool.Key key = ResourceResolverPool.createKey(info);
+        TestCase.assertNotNull(key);
+        TestCase.assertTrue(key.isUser("user"));
+        TestCase.assertEquals(key, ResourceResolverPool.createKey(
+            new AuthenticationInfo("BASIC", "user", "secret".toCharArray())));
+        TestCase.assertFalse(key.equals(ResourceResolverPool.createKey(
+            new AuthenticationInfo("BASIC", "user", "other".toCharArray()))));
+
+        info.put(ResourceResolverFactory.USER_IMPERSONATION, "admin");
+        final ResourceResolverPool.Key sudoKey = ResourceResolverPool.createKey(info);
+        TestCase.assertFalse(key.equals(sudoKey));
+        TestCase.assertTrue(sudoKey.isUser("admin"));
+    }
+
+    @Test
+    public void test_createKey_not_poolable() {
+        final AuthenticationInfo info = new AuthenticationInfo("BASIC", "user", "secret".toCharArray());
+        info.put("user.newpassword", "new");
+        TestCase.assertNull(ResourceResolverPool.createKey(info));
+
+        final AuthenticationInfo credentials = new AuthenticationInfo("FORM", "user");
+        credentials.put("user.jcr.credentials", new Object());
+        TestCase.assertNull(ResourceResolverPool.createKey(credentials));
+
+        final SimpleCredentials simple = new SimpleCredentials("user", "secret".toCharArray());
+        simple.setAttribute("other", new Object());
+        TestCase.assertNull(ResourceResolverPool.createKey(jcr(simple)));
+    }
+
+    @Test
+    public void test_createKey_credentials() {
+        // credentials are keyed by their token
+        final ResourceResolverPool.Key key = ResourceResolverPool.createKey(jcr(new TokenCredentials("user", "t1")));
+        TestCase.assertNotNull(key);
+        TestCase.assertTrue(key.isUser("user"));
+        TestCase.assertEquals(key, ResourceResolverPool.createKey(jcr(new TokenCredentials("user", "t1"))));
+        TestCase.assertFalse(key.equals(ResourceResolverPool.createKey(jcr(new TokenCredentials("user", "t2")))));
+
+        // the login marker is ignored
+        final AuthenticationInfo login = jcr(new TokenCredentials("user", "t1"));
+        login.put(AuthConstants.AUTH_INFO_LOGIN, new Object());
+        TestCase.assertEquals(key, ResourceResolverPool.createKey(login));
+
+        // simple credentials are keyed with their attributes
+        final SimpleCredentials simple = new SimpleCredentials("user", "secret".toCharArray());
+        simple.setAttribute(".token", "t1");
+        final ResourceResolverPool.Key simpleKey = ResourceResolverPool.createKey(jcr(simple));
+        TestCase.assertNotNull(simpleKey);
+        simple.setAttribute(".token", "t2");
+        TestCase.assertFalse(simpleKey.equals(ResourceResolverPool.createKey(jcr(simple))));
+    }
+
+    @Test
+    public void test_reuse() throws Exception {
+        final ResourceResolverPool pool = new ResourceResolverPool(60000, 10);
+        final ResourceResolver resolver = context.mock(ResourceResolver.class);
+        context.checking(new Expectations() {
+            {
+                oneOf(factory).getResourceResolver(with(any(AuthenticationInfo.class)));
+                will(returnValue(resolver));
+                allowing(resolver).isLive();
+                will(returnValue(true));
+                allowing(resolver).hasChanges();
+                will(returnValue(false));
+                // the resolver is refreshed when returned to the pool
+                oneOf(resolver).refresh();
+            }
+        });
+
+        final ResourceResolver first = pool.getResourceResolver(factory, basic("secret"));
+        pool.release(first);
+        TestCase.assertEquals(1, pool.getIdleCount());
+
+        TestCase.assertSame(first, pool.getResourceResolver(factory, basic("secret")));
+        TestCase.assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void test_changes_not_pooled() throws Exception {
+        final ResourceResolverPool pool = new ResourceResolverPool(60000, 10);
+        final ResourceResolver resolver = context.mock(ResourceResolver.class);
+        context.checking(new Expectations() {
+            {
+                oneOf(factory).getResourceResolver(with(any(AuthenticationInfo.class)));
+                will(returnValue(resolver));
+                allowing(resolver).isLive();
+                will(returnValue(true));
+                allowing(resolver).hasChanges();
+                will(returnValue(true));
+                oneOf(resolver).close();
+            }
+        });
+
+        pool.release(pool.getResourceResolver(factory, basic("secret")));
+        TestCase.assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void test_read_only() throws Exception {
+        final ResourceResolverPool pool = new ResourceResolverPool(60000, 10);
+        final ResourceResolver resolver = createResolver("r1");
+        final Resource parent = context.mock(Resource.class);
+        context.checking(new Expectations() {
+            {
+                oneOf(factory).getResourceResolver(with(any(AuthenticationInfo.class)));
+                will(returnValue(resolver));
+                never(resolver).create(parent, "child", null);
+                never(resolver).delete(parent);
+                never(resolver).commit();
+            }
+        });
+
+        final ResourceResolver pooled = pool.getResourceResolver(factory, basic("secret"));
+        TestCase.assertTrue(pooled.isLive());
+        try {
+            pooled.create(parent, "child", null);
+            TestCase.fail("create must fail");
+        } catch (final PersistenceException pe) {
+            // expected
+        }
+        try {
+            pooled.delete(parent);
+            TestCase.fail("delete must fail");
+        } catch (final PersistenceException pe) {
+            // expected
+        }
+        try {
+            pooled.commit();
+            TestCase.fail("commit must fail");
+        } catch (final PersistenceException pe) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_different_credentials() throws Exception {
+        final ResourceResolverPool pool = new ResourceResolverPool(60000, 10);
+        final ResourceResolver r1 = createResolver("r1");
+        final ResourceResolver r2 = createResolver("r2");
+        context.checking(new Expectations() {
+            {
+                oneOf(factory).getResourceResolver(with(any(AuthenticationInfo.class)));
+                will(returnValue(r1));
+                oneOf(factory).getResourceResolver(with(any(AuthenticationInfo.class)));
+                will(returnValue(r2));
+            }
+        });
+
+        final ResourceResolver first = pool.getResourceResolver(factory, basic("secret"));
+        pool.release(first);
+        TestCase.assertNotSame(first, pool.getResourceResolver(factory, basic("wrong")));
+        TestCase.assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void test_invalidate() throws Exception {
+        final ResourceResolverPool pool = new ResourceResolverPool(60000, 10);
+        final ResourceResolver r1 = createResolver("r1");
+        final ResourceResolver r2 = createResolver("r2");
+        context.checking(new Expectations() {
+            {
+                oneOf(factory).getResourceResolver(with(any(AuthenticationInfo.class)));
+                will(returnValue(r1));
+                oneOf(factory).getResourceResolver(with(any(AuthenticationInfo.class)));
+                will(returnValue(r2));
+                oneOf(r1).close();
+                oneOf(r2).close();
+            }
+        });
+
+        // idle resolvers are closed on invalidation
+        pool.release(pool.getResourceResolver(factory, basic("secret")));
+        pool.invalidate("user");
+        TestCase.assertEquals(0, pool.getIdleCount());
+
+        // resolvers in use are closed on release
+        final ResourceResolver resolver = pool.getResourceResolver(factory, basic("secret"));
+        pool.invalidateAll();
+        pool.release(resolver);
+        TestCase.assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void test_max_idle() throws Exception {
+        final ResourceResolverPool pool = new ResourceResolverPool(60000, 1);
+        final ResourceResolver r1 = createResolver("r1");
+        final ResourceResolver r2 = createResolver("r2");
+        context.checking(new Expectations() {
+            {
+                oneOf(factory).getResourceResolver(with(any(AuthenticationInfo.class)));
+                will(returnValue(r1));
+                oneOf(factory).getResourceResolver(with(any(AuthenticationInfo.class)));
+                will(returnValue(r2));
+                oneOf(r2).close();
+            }
+        });
+
+        final ResourceResolver first = pool.getResourceResolver(factory, basic("secret"));
+        final ResourceResolver second = pool.getResourceResolver(factory, basic("secret"));
+        pool.release(first);
+        pool.release(second);
+        TestCase.assertEquals(1, pool.getIdleCount());
+    }
+
+    private AuthenticationInfo basic(final String password) {
+        return new AuthenticationInfo("BASIC", "user", password.toCharArray());
+    }
+
+    private AuthenticationInfo jcr(final Object credentials) {
+        final AuthenticationInfo info = new AuthenticationInfo("FORM", "user");
+        info.put("user.jcr.credentials", credentials);
+        return info;
+    }
+
+    private ResourceResolver createResolver(final String name) {
+        final ResourceResolver resolver = context.mock(ResourceResolver.class, name);
+        context.checking(new Expectations() {
+            {
+                allowing(resolver).isLive();
+                will(returnValue(true));
+                allowing(resolver).hasChanges();
+                will(returnValue(false));
+                allowing(resolver).refresh();
+            }
+        });
+        return resolver;
+    }
+
+    /**
+     * Credentials like the form authentication credentials, identified by
+     * a token.
+     */
+    public static class TokenCredentials {
+
+        private final String userId;
+
+        private final String token;
+
+        TokenCredentials(final String userId, final String token) {
+            this.userId = userId;
+            this.token = token;
+        }
+
+        public String getUserId() {
+            return this.userId;
+        }
+
+        public String getToken() {
+            return this.token;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.json;
+
+import java.io.Reader;
+
+/**
+ * A JSONParser is a pull parser which reads a JSON text as a sequence
+ * of events without building the whole document in memory.
+ * <p>
+ * The parser accepts the same lenient syntax as {@link JSONObject} and
+ * {@link JSONArray}. Each call to {@link #next()} returns the next
+ * {@link Event}: for a {@link Event#KEY} the name is available from
+ * {@link #getKey()}, for a {@link Event#VALUE} the value (a Boolean,
+ * Number, String or {@link JSONObject#NULL}) is available from
+ * {@link #getValue()}. Small parts of a document can be read into
+ * a {@link JSONObject} or {@link JSONArray} with {@link #readValue()}.
+ * <p>
+ * A parser is not thread safe.
+ *
+ * @since 2.1
+ */
+public class JSONParser {
+
+    /**
+     * The events reported by the parser.
+     */
+    public enum Event {
+        /** The start of an object. */
+        START_OBJECT,
+        /** A key within an object. */
+        KEY,
+        /** A simple value. */
+        VALUE,
+        /** The end of an object. */
+        END_OBJECT,
+        /** The start of an array. */
+        START_ARRAY,
+        /** The end of an array. */
+        END_ARRAY
+    }
+
+    private enum State {
+        DOCUMENT,
+        OBJECT_START,
+        OBJECT_KEY,
+        OBJECT_VALUE,
+        ARRAY_START,
+        ARRAY_VALUE,
+        AFTER_VALUE,
+        DONE
+    }
+
+    private final JSONTokener tokener;
+
+    /** The nesting of objects (true) and arrays (false). */
+    private boolean[] stack = new boolean[16];
+
+    private int depth;
+
+    private State state = State.DOCUMENT;
+
+    private Event current;
+
+    private String key;
+
+    private Object value;
+
+    /**
+     * Create a parser reading from the reader.
+     * @param reader The reader, which is not closed by the parser.
+     */
+    public JSONParser(final Reader reader) {
+        this(new JSONTokener(reader));
+    }
+
+    /**
+     * Create a parser reading from the tokener.
+     * @param tokener The tokener
+     */
+    public JSONParser(final JSONTokener tokener) {
+        this.tokener = tokener;
+    }
+
+    /**
+     * Are there more events?
+     * @return <code>true</code> until the end of the top level value has been reached.
+     */
+    public boolean hasNext() {
+        return this.state != State.DONE;
+    }
+
+    /**
+     * Get the next event.
+     * @return The event
+     * @throws JSONException If the text is not valid or there are no more events.
+     */
+    public Event next() throws JSONException {
+        this.key = null;
+        this.value = null;
+        for (;;) {
+            char c;
+            switch (this.state) {
+            case DONE:
+                throw this.tokener.syntaxError("No more events");
+
+            case DOCUMENT:
+                return this.startValue(this.tokener.nextClean());
+
+            case OBJECT_START:
+                c = this.tokener.nextClean();
+                if (c == 0) {
+                    throw this.tokener.syntaxError("A JSONObject text must end with '}'");
+                }
+                if (c == '}') {
+                    return this.end(Event.END_OBJECT);
+                }
+                this.tokener.back();
+                this.state = State.OBJECT_KEY;
+                break;
+
+            case OBJECT_KEY:
+                c = this.tokener.nextClean();
+                if (c == 0 || c == '{' || c == '[') {
+                    throw this.tokener.syntaxError("Expected a key");
+                }
+                this.tokener.back();
+                this.key = this.tokener.nextValue().toString();
+
+                // The key is followed by ':'. We will also tolerate '=' or '=>'.
+                c = this.tokener.nextClean();
+                if (c == '=') {
+                    if (this.tokener.next() != '>') {
+                        this.tokener.back();
+                    }
+                } else if (c != ':') {
+                    throw this.tokener.syntaxError("Expected a ':' after a key");
+                }
+                this.state = State.OBJECT_VALUE;
+                return this.current = Event.KEY;
+
+            case OBJECT_VALUE:
+                return this.startValue(this.tokener.nextClean());
+
+            case ARRAY_START:
+                c = this.tokener.nextClean();
+                if (c == ']') {
+                    return this.end(Event.END_ARRAY);
+                }
+                this.tokener.back();
+                this.state = State.ARRAY_VALUE;
+                break;
+
+            case ARRAY_VALUE:
+                c = this.tokener.nextClean();
+                if (c == ',') {
+                    // missing values are reported as null
+                    this.tokener.back();
+                    this.state = State.AFTER_VALUE;
+                    return this.current = Event.VALUE;
+                }
+                return this.startValue(c);
+
+            case AFTER_VALUE:
+                final boolean inObject = this.stack[this.depth - 1];
+                // Values are separated by ','. We will also tolerate ';'.
+                switch (this.tokener.nextClean()) {
+                case ';':
+                case ',':
+                    c = this.tokener.nextClean();
+                    if (inObject && c == '}') {
+                        return this.end(Event.END_OBJECT);
+                    }
+                    if (!inObject && c == ']') {
+                        return this.end(Event.END_ARRAY);
+                    }
+                    this.tokener.back();
+                    this.state = inObject ? State.OBJECT_KEY : State.ARRAY_VALUE;
+                    break;
+                case '}':
+                    if (inObject) {
+                        return this.end(Event.END_OBJECT);
+                    }
+                    throw this.tokener.syntaxError("Expected a ',' or ']'");
+                case ']':
+                    if (!inObject) {
+                        return this.end(Event.END_ARRAY);
+                    }
+                    throw this.tokener.syntaxError("Expected a ',' or '}'");
+                default:
+                    throw this.tokener.syntaxError(inObject ? "Expected a ',' or '}'" : "Expected a ',' or ']'");
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * The key of the last {@link Event#KEY} event.
+     * @return The key or <code>null</code>
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    /**
+     * The value of the last {@link Event#VALUE} event.
+     * @return The value or <code>null</code> for a missing array value.
+     */
+    public Object getValue() {
+        return this.value;
+    }
+
+    /**
+     * Read the complete value started by the last event. After a
+     * {@link Event#START_OBJECT} or {@link Event#START_ARRAY} event
+     * all events up to the matching end event are consumed and
+     * returned as a {@link JSONObject} or {@link JSONArray}. After a
+     * {@link Event#VALUE} event, the value is returned.
+     * @return The value
+     * @throws JSONException If the text is not valid or the last event
+     *         does not start a value.
+     */
+    public Object readValue() throws JSONException {
+        if (this.current == Event.VALUE) {
+            return this.value;
+        }
+        if (this.current == Event.START_OBJECT) {
+            final JSONObject result = new JSONObject();
+            while (this.next() != Event.END_OBJECT) {
+                final String name = this.key;
+                this.next();
+                result.put(name, this.readValue());
+            }
+            return result;
+        }
+        if (this.current == Event.START_ARRAY) {
+            final JSONArray result = new JSONArray();
+            while (this.next() != Event.END_ARRAY) {
+                result.put(this.readValue());
+            }
+            return result;
+        }
+        throw this.tokener.syntaxError("Expected the start of a value");
+    }
+
+    private Event startValue(final char c) throws JSONException {
+        switch (c) {
+        case '{':
+            this.push(true);
+            this.state = State.OBJECT_START;
+            return this.current = Event.START_OBJECT;
+        case '[':
+            this.push(false);
+            this.state = State.ARRAY_START;
+            return this.current = Event.START_ARRAY;
+        case 0:
+            throw this.tokener.syntaxError("Missing value");
+        default:
+            this.tokener.back();
+            this.value = this.tokener.nextValue();
+            this.state = this.depth == 0 ? State.DONE : State.AFTER_VALUE;
+            return this.current = Event.VALUE;
+        }
+    }
+
+    private Event end(final Event event) {
+        this.depth--;
+        this.state = this.depth == 0 ? State.DONE : State.AFTER_VALUE;
+        return this.current = event;
+    }
+
+    private void push(final boolean object) {
+        if (this.depth == this.stack.length) {
+            final boolean[] newStack = new boolean[this.stack.length * 2];
+            System.arraycopy(this.stack, 0, newStack, 0, this.depth);
+            this.stack = newStack;
+        }
+        this.stack[this.depth++] = object;
+    }
+}
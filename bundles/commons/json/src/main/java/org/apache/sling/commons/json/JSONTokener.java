@@ -1,5 +1,8 @@
 package org.apache.sling.commons.json;
 
+import java.io.IOException;
+import java.io.Reader;
+
 /*
 Copyright (c) 2002 JSON.org
 
@@ -25,24 +28,81 @@ SOFTWARE.
 */
 
 /**
- * A JSONTokener takes a source string and extracts characters and tokens from
- * it. It is used by the JSONObject and JSONArray constructors to parse
- * JSON source strings.
+ * A JSONTokener takes a source string or a reader and extracts characters
+ * and tokens from it. It is used by the JSONObject and JSONArray constructors
+ * to parse JSON source strings and by the {@link JSONParser}.
+ * When reading from a reader, only a small window of the source is kept
+ * in memory.
  * @author JSON.org
  * @version 2
  */
 public class JSONTokener {
 
     /**
-     * The index of the next character.
+     * The size of the buffer used when reading from a reader.
+     */
+    private static final int BUFFER_SIZE = 1024;
+
+
+    /**
+     * The reader or null if a source string is tokenized.
+     */
+    private final Reader myReader;
+
+
+    /**
+     * The source string being tokenized, null if reading from a reader.
+     */
+    private final String mySource;
+
+
+    /**
+     * The characters currently available.
+     */
+    private char[] myBuffer;
+
+
+    /**
+     * The index of the next character in the buffer.
+     */
+    private int myPos;
+
+
+    /**
+     * The number of valid characters in the buffer.
+     */
+    private int myLimit;
+
+
+    /**
+     * The number of characters which have been discarded from the buffer.
+     */
+    private long myOffset;
+
+
+    /**
+     * The position in the buffer which must be kept when reading more
+     * characters or -1.
      */
-    private int myIndex;
+    private int myMark = -1;
 
 
     /**
-     * The source string being tokenized.
+     * Whether the last call to next() hit the end of the source.
      */
-    private String mySource;
+    private boolean myAtEnd;
+
+
+    /**
+     * Whether the reader is exhausted.
+     */
+    private boolean myEof;
+
+
+    /**
+     * An exception from the reader which ended the source prematurely.
+     */
+    private IOException myException;
 
 
     /**
@@ -51,8 +111,68 @@ public class JSONTokener {
      * @param s     A source string.
      */
     public JSONTokener(String s) {
-        this.myIndex = 0;
+        this.myReader = null;
         this.mySource = s;
+        this.myBuffer = s.toCharArray();
+        this.myLimit = this.myBuffer.length;
+        this.myEof = true;
+    }
+
+
+    /**
+     * Construct a JSONTokener from a reader. The reader is not closed
+     * by the tokener.
+     *
+     * @param reader     A reader.
+     * @since 2.1
+     */
+    public JSONTokener(Reader reader) {
+        this.myReader = reader;
+        this.mySource = null;
+        this.myBuffer = new char[BUFFER_SIZE];
+    }
+
+
+    /**
+     * Read more characters from the reader into the buffer. The last
+     * character read and all characters after the mark are kept.
+     * @return true if more characters are available.
+     */
+    private boolean fill() {
+        if (this.myEof) {
+            return false;
+        }
+        final int keep = this.myMark >= 0 ? this.myMark : Math.max(0, this.myPos - 1);
+        if (keep > 0) {
+            System.arraycopy(this.myBuffer, keep, this.myBuffer, 0, this.myLimit - keep);
+            this.myOffset += keep;
+            this.myPos -= keep;
+            this.myLimit -= keep;
+            if (this.myMark >= 0) {
+                this.myMark = 0;
+            }
+        }
+        if (this.myLimit == this.myBuffer.length) {
+            final char[] newBuffer = new char[this.myBuffer.length * 2];
+            System.arraycopy(this.myBuffer, 0, newBuffer, 0, this.myLimit);
+            this.myBuffer = newBuffer;
+        }
+        try {
+            int n;
+            do {
+                n = this.myReader.read(this.myBuffer, this.myLimit, this.myBuffer.length - this.myLimit);
+            } while (n == 0);
+            if (n < 0) {
+                this.myEof = true;
+                return false;
+            }
+            this.myLimit += n;
+            return true;
+        } catch (IOException ioe) {
+            this.myException = ioe;
+            this.myEof = true;
+            return false;
+        }
     }
 
 
@@ -62,8 +182,10 @@ public class JSONTokener {
      * the next number or identifier.
      */
     public void back() {
-        if (this.myIndex > 0) {
-            this.myIndex -= 1;
+        if (this.myAtEnd) {
+            this.myAtEnd = false;
+        } else if (this.myPos > 0) {
+            this.myPos -= 1;
         }
     }
 
@@ -95,7 +217,7 @@ public class JSONTokener {
      * @return true if not yet at the end of the source.
      */
     public boolean more() {
-        return this.myIndex < this.mySource.length();
+        return this.myPos < this.myLimit || fill();
     }
 
 
@@ -106,10 +228,10 @@ public class JSONTokener {
      */
     public char next() {
         if (more()) {
-            char c = this.mySource.charAt(this.myIndex);
-            this.myIndex += 1;
-            return c;
+            this.myAtEnd = false;
+            return this.myBuffer[this.myPos++];
         }
+        this.myAtEnd = true;
         return 0;
     }
 
@@ -141,13 +263,15 @@ public class JSONTokener {
      *   n characters remaining in the source string.
      */
      public String next(int n) throws JSONException {
-         int i = this.myIndex;
-         int j = i + n;
-         if (j >= this.mySource.length()) {
-            throw syntaxError("Substring bounds error");
+         final StringBuffer sb = new StringBuffer(n);
+         for (int i = 0; i < n; i++) {
+             if (!more()) {
+                 throw syntaxError("Substring bounds error");
+             }
+             sb.append(this.myBuffer[this.myPos++]);
          }
-         this.myIndex += n;
-         return this.mySource.substring(i, j);
+         this.myAtEnd = false;
+         return sb.toString();
      }
 
 
@@ -410,14 +534,17 @@ public class JSONTokener {
      */
     public char skipTo(char to) {
         char c;
-        int index = this.myIndex;
+        this.myMark = this.myPos;
         do {
             c = next();
             if (c == 0) {
-                this.myIndex = index;
+                this.myPos = this.myMark;
+                this.myMark = -1;
+                this.myAtEnd = false;
                 return c;
             }
         } while (c != to);
+        this.myMark = -1;
         back();
         return c;
     }
@@ -429,11 +556,19 @@ public class JSONTokener {
      * @param to A string to skip past.
      */
     public void skipPast(String to) {
-        this.myIndex = this.mySource.indexOf(to, this.myIndex);
-        if (this.myIndex < 0) {
-            this.myIndex = this.mySource.length();
-        } else {
-            this.myIndex += to.length();
+        while (more()) {
+            this.myMark = this.myPos;
+            int i = 0;
+            while (i < to.length() && more() && this.myBuffer[this.myPos] == to.charAt(i)) {
+                this.myPos++;
+                i++;
+            }
+            if (i == to.length()) {
+                this.myMark = -1;
+                return;
+            }
+            this.myPos = this.myMark + 1;
+            this.myMark = -1;
         }
     }
 
@@ -445,6 +580,9 @@ public class JSONTokener {
      * @return  A JSONException object, suitable for throwing
      */
     public JSONException syntaxError(String message) {
+        if (this.myException != null) {
+            return new JSONException(message + toString(), this.myException);
+        }
         return new JSONException(message + toString());
     }
 
@@ -452,9 +590,13 @@ public class JSONTokener {
     /**
      * Make a printable string of this JSONTokener.
      *
-     * @return " at character [this.myIndex] of [this.mySource]"
+     * @return " at character [index] of [source]"
      */
     public String toString() {
-        return " at character " + this.myIndex + " of " + this.mySource;
+        final long index = this.myOffset + this.myPos;
+        if (this.mySource == null) {
+            return " at character " + index;
+        }
+        return " at character " + index + " of " + this.mySource;
     }
 }
\ No newline at end of file
@@ -0,0 +1,443 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.json.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Calendar;
+
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+
+/**
+ * A {@link JSONWriter} which avoids creating intermediate strings.
+ * <p>
+ * Keys and values are escaped directly into a reusable character buffer
+ * which is written to the underlying writer when it is full, when the
+ * outermost object or array has been closed, or when {@link #flush()}
+ * is called. Numbers and booleans are formatted without creating
+ * intermediate strings. The output is the same as the output of the
+ * {@link JSONWriter}; dates are only written in the ECMA format if
+ * {@link #value(Calendar)} is called explicitly.
+ *
+ * @since 2.2
+ */
+public class BufferedJSONWriter extends JSONWriter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final char[] MIN_LONG = Long.toString(Long.MIN_VALUE).toCharArray();
+
+    private static final String[] DAYS = {"Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat"};
+
+    private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun",
+        "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    /** Doubles below this value are written as integers if they have no fraction. */
+    private static final double MAX_PLAIN_DOUBLE = 1e7;
+
+    private final char[] buffer;
+
+    private int pos;
+
+    /**
+     * Create a writer with the default buffer size.
+     * @param w The writer receiving the output.
+     */
+    public BufferedJSONWriter(final Writer w) {
+        this(w, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a writer.
+     * @param w The writer receiving the output.
+     * @param bufferSize The size of the buffer, at least 64 characters are used.
+     */
+    public BufferedJSONWriter(final Writer w, final int bufferSize) {
+        super(w);
+        this.buffer = new char[Math.max(64, bufferSize)];
+    }
+
+    /**
+     * Write the buffered output to the underlying writer and flush it.
+     * @throws JSONException If writing fails.
+     */
+    public void flush() throws JSONException {
+        try {
+            this.flushBuffer();
+            this.writer.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    /**
+     * @see org.apache.sling.commons.json.io.JSONWriter#array()
+     */
+    @Override
+    public BufferedJSONWriter array() throws JSONException {
+        super.array();
+        return this;
+    }
+
+    /**
+     * @see org.apache.sling.commons.json.io.JSONWriter#object()
+     */
+    @Override
+    public BufferedJSONWriter object() throws JSONException {
+        super.object();
+        return this;
+    }
+
+    /**
+     * @see org.apache.sling.commons.json.io.JSONWriter#key(java.lang.String)
+     */
+    @Override
+    public BufferedJSONWriter key(final String s) throws JSONException {
+        super.key(s);
+        return this;
+    }
+
+    /**
+     * @see org.apache.sling.commons.json.io.JSONWriter#endArray()
+     */
+    @Override
+    public BufferedJSONWriter endArray() throws JSONException {
+        super.endArray();
+        this.flushIfDone();
+        return this;
+    }
+
+    /**
+     * @see org.apache.sling.commons.json.io.JSONWriter#endObject()
+     */
+    @Override
+    public BufferedJSONWriter endObject() throws JSONException {
+        super.endObject();
+        this.flushIfDone();
+        return this;
+    }
+
+    /**
+     * @see org.apache.sling.commons.json.io.JSONWriter#value(boolean)
+     */
+    @Override
+    public BufferedJSONWriter value(final boolean b) throws JSONException {
+        this.startValue(false);
+        try {
+            this.write(b ? "true" : "false");
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        this.endValue();
+        return this;
+    }
+
+    /**
+     * Append an int value.
+     * @param i An int.
+     * @return this
+     * @throws JSONException If the value is out of sequence.
+     */
+    public BufferedJSONWriter value(final int i) throws JSONException {
+        return this.value((long) i);
+    }
+
+    /**
+     * @see org.apache.sling.commons.json.io.JSONWriter#value(long)
+     */
+    @Override
+    public BufferedJSONWriter value(final long l) throws JSONException {
+        this.startValue(false);
+        try {
+            this.writeLong(l);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        this.endValue();
+        return this;
+    }
+
+    /**
+     * @see org.apache.sling.commons.json.io.JSONWriter#value(double)
+     */
+    @Override
+    public BufferedJSONWriter value(final double d) throws JSONException {
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+            throw new JSONException("JSON does not allow non-finite numbers");
+        }
+        this.startValue(false);
+        try {
+            this.writeDouble(d);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        this.endValue();
+        return this;
+    }
+
+    /**
+     * Append a date value as a string in the ECMA format
+     * <code>EEE MMM dd yyyy HH:mm:ss 'GMT'Z</code> using the time zone
+     * of the calendar.
+     * A calendar passed to {@link #value(Object)} is written like the
+     * {@link JSONWriter} does.
+     * @param c The calendar
+     * @return this
+     * @throws JSONException If the value is out of sequence.
+     */
+    public BufferedJSONWriter value(final Calendar c) throws JSONException {
+        if (c == null) {
+            return this.value((Object) null);
+        }
+        this.startValue(false);
+        try {
+            this.writeCalendar(c);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        this.endValue();
+        return this;
+    }
+
+    /**
+     * @see org.apache.sling.commons.json.io.JSONWriter#value(java.lang.Object)
+     */
+    @Override
+    public BufferedJSONWriter value(final Object o) throws JSONException {
+        if (o instanceof String) {
+            this.startValue(false);
+            try {
+                this.writeQuoted((String) o);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            this.endValue();
+            return this;
+        }
+        if (o instanceof Long || o instanceof Integer || o instanceof Short || o instanceof Byte) {
+            return this.value(((Number) o).longValue());
+        }
+        if (o instanceof Double) {
+            return this.value(((Double) o).doubleValue());
+        }
+        if (o instanceof Boolean) {
+            return this.value(((Boolean) o).booleanValue());
+        }
+        super.value(o);
+        return this;
+    }
+
+    @Override
+    protected void write(final char c) throws IOException {
+        if (this.pos == this.buffer.length) {
+            this.flushBuffer();
+        }
+        this.buffer[this.pos++] = c;
+    }
+
+    @Override
+    protected void write(final String s) throws IOException {
+        final int len = s.length();
+        if (len > this.buffer.length - this.pos) {
+            this.flushBuffer();
+            if (len > this.buffer.length) {
+                this.writer.write(s);
+                return;
+            }
+        }
+        s.getChars(0, len, this.buffer, this.pos);
+        this.pos += len;
+    }
+
+    /**
+     * Escape the string directly into the buffer. The escaping is the
+     * same as in {@link JSONRenderer#quote(Writer, String)}.
+     */
+    @Override
+    protected void writeQuoted(final String s) throws IOException {
+        this.write('"');
+        if (s != null) {
+            final int len = s.length();
+            char c = 0;
+            for (int i = 0; i < len; i++) {
+                final char b = c;
+                c = s.charAt(i);
+                // make sure there is room for the longest escape sequence
+                if (this.buffer.length - this.pos < 6) {
+                    this.flushBuffer();
+                }
+                switch (c) {
+                case '\\':
+                case '"':
+                    this.buffer[this.pos++] = '\\';
+                    this.buffer[this.pos++] = c;
+                    break;
+                case '/':
+                    if (b == '<') {
+                        this.buffer[this.pos++] = '\\';
+                    }
+                    this.buffer[this.pos++] = c;
+                    break;
+                case '\b':
+                    this.buffer[this.pos++] = '\\';
+                    this.buffer[this.pos++] = 'b';
+                    break;
+                case '\t':
+                    this.buffer[this.pos++] = '\\';
+                    this.buffer[this.pos++] = 't';
+                    break;
+                case '\n':
+                    this.buffer[this.pos++] = '\\';
+                    this.buffer[this.pos++] = 'n';
+                    break;
+                case '\f':
+                    this.buffer[this.pos++] = '\\';
+                    this.buffer[this.pos++] = 'f';
+                    break;
+                case '\r':
+                    this.buffer[this.pos++] = '\\';
+                    this.buffer[this.pos++] = 'r';
+                    break;
+                default:
+                    if (c < ' ' || (c >= '\u0080' && c < '\u00a0') ||
+                                   (c >= '\u2000' && c < '\u2100')) {
+                        this.buffer[this.pos++] = '\\';
+                        this.buffer[this.pos++] = 'u';
+                        this.buffer[this.pos++] = HEX[(c >> 12) & 0xF];
+                        this.buffer[this.pos++] = HEX[(c >> 8) & 0xF];
+                        this.buffer[this.pos++] = HEX[(c >> 4) & 0xF];
+                        this.buffer[this.pos++] = HEX[c & 0xF];
+                    } else {
+                        this.buffer[this.pos++] = c;
+                    }
+                }
+            }
+        }
+        this.write('"');
+    }
+
+    private void writeLong(long l) throws IOException {
+        if (l == Long.MIN_VALUE) {
+            this.write(new String(MIN_LONG));
+            return;
+        }
+        // a long has at most 19 digits plus the sign
+        if (this.buffer.length - this.pos < 20) {
+            this.flushBuffer();
+        }
+        if (l < 0) {
+            this.buffer[this.pos++] = '-';
+            l = -l;
+        }
+        final int start = this.pos;
+        do {
+            this.buffer[this.pos++] = (char) ('0' + (l % 10));
+            l /= 10;
+        } while (l != 0);
+        // reverse the digits
+        for (int i = start, j = this.pos - 1; i < j; i++, j--) {
+            final char t = this.buffer[i];
+            this.buffer[i] = this.buffer[j];
+            this.buffer[j] = t;
+        }
+    }
+
+    private void writeDouble(final double d) throws IOException {
+        // integral values are rendered without the trailing ".0"
+        if (d == Math.rint(d) && Math.abs(d) < MAX_PLAIN_DOUBLE
+                && (d != 0 || Double.doubleToRawLongBits(d) == 0)) {
+            this.writeLong((long) d);
+            return;
+        }
+        String s = Double.toString(d);
+        if (s.indexOf('E') < 0) {
+            int end = s.length();
+            while (s.charAt(end - 1) == '0') {
+                end--;
+            }
+            if (s.charAt(end - 1) == '.') {
+                end--;
+            }
+            s = s.substring(0, end);
+        }
+        this.write(s);
+    }
+
+    private void writeCalendar(final Calendar c) throws IOException {
+        // "EEE MMM dd yyyy HH:mm:ss 'GMT'Z" needs at most 36 characters
+        if (this.buffer.length - this.pos < 40) {
+            this.flushBuffer();
+        }
+        this.write('"');
+        this.write(DAYS[c.get(Calendar.DAY_OF_WEEK) - 1]);
+        this.write(' ');
+        this.write(MONTHS[c.get(Calendar.MONTH)]);
+        this.write(' ');
+        this.writeDigits(c.get(Calendar.DAY_OF_MONTH), 2);
+        this.write(' ');
+        this.writeDigits(c.get(Calendar.YEAR), 4);
+        this.write(' ');
+        this.writeDigits(c.get(Calendar.HOUR_OF_DAY), 2);
+        this.write(':');
+        this.writeDigits(c.get(Calendar.MINUTE), 2);
+        this.write(':');
+        this.writeDigits(c.get(Calendar.SECOND), 2);
+        this.write(" GMT");
+        int offset = (c.get(Calendar.ZONE_OFFSET) + c.get(Calendar.DST_OFFSET)) / 60000;
+        if (offset < 0) {
+            this.write('-');
+            offset = -offset;
+        } else {
+            this.write('+');
+        }
+        this.writeDigits(offset / 60, 2);
+        this.writeDigits(offset % 60, 2);
+        this.write('"');
+    }
+
+    private void writeDigits(final int value, final int minDigits) throws IOException {
+        int divisor = 1;
+        for (int i = 1; i < minDigits || value / divisor >= 10; i++) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            this.write((char) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    private void flushIfDone() throws JSONException {
+        if (this.mode == 'd') {
+            try {
+                this.flushBuffer();
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.pos > 0) {
+            this.writer.write(this.buffer, 0, this.pos);
+            this.pos = 0;
+        }
+    }
+}
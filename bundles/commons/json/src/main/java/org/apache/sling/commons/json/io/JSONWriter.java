@@ -150,28 +150,82 @@ public class JSONWriter {
         if (s == null) {
             throw new JSONException("Null pointer");
         }
+        this.startValue("{".equals(s) || "[".equals(s));
+        try {
+            this.write(s);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        this.endValue();
+        return this;
+    }
+
+    /**
+     * Prepare appending a value by writing a separator and indentation
+     * if required.
+     * @param structure Whether an array or object is started.
+     * @throws JSONException If the value is out of sequence.
+     * @since 2.2
+     */
+    protected void startValue(boolean structure) throws JSONException {
         if (this.mode == 'o' || this.mode == 'a') {
             try {
                 if (this.comma && this.mode == 'a') {
-                    this.writer.write(',');
+                    this.write(',');
                 }
-                if (tidy && this.mode == 'a' && !"{".equals(s) && !"[".equals(s)) {
-                    this.writer.write('\n');
-                    this.writer.write(INDENTS[top]);
+                if (tidy && this.mode == 'a' && !structure) {
+                    this.write('\n');
+                    this.write(INDENTS[top]);
                 }
-                this.writer.write(s);
             } catch (IOException e) {
                 throw new JSONException(e);
             }
-            if (this.mode == 'o') {
-                this.mode = 'k';
-            }
-            this.comma = true;
-            return this;
+            return;
         }
         throw new JSONException("Value out of sequence.");
     }
 
+    /**
+     * Finish appending a value.
+     * @since 2.2
+     */
+    protected void endValue() {
+        if (this.mode == 'o') {
+            this.mode = 'k';
+        }
+        this.comma = true;
+    }
+
+    /**
+     * Write a character to the writer.
+     * @param c The character
+     * @throws IOException If writing fails.
+     * @since 2.2
+     */
+    protected void write(char c) throws IOException {
+        this.writer.write(c);
+    }
+
+    /**
+     * Write a string to the writer.
+     * @param s The string
+     * @throws IOException If writing fails.
+     * @since 2.2
+     */
+    protected void write(String s) throws IOException {
+        this.writer.write(s);
+    }
+
+    /**
+     * Write a string as a quoted JSON string to the writer.
+     * @param s The string
+     * @throws IOException If writing fails.
+     * @since 2.2
+     */
+    protected void writeQuoted(String s) throws IOException {
+        this.writer.write(JSONObject.quote(s));
+    }
+
     /**
      * Begin appending a new array. All values until the balancing
      * <code>endArray</code> will be appended to this array. The
@@ -206,10 +260,10 @@ public class JSONWriter {
         this.pop(m);
         try {
             if (tidy) {
-                this.writer.write('\n');
-                this.writer.write(INDENTS[top]);
+                this.write('\n');
+                this.write(INDENTS[top]);
             }
-            this.writer.write(c);
+            this.write(c);
         } catch (IOException e) {
             throw new JSONException(e);
         }
@@ -252,16 +306,16 @@ public class JSONWriter {
         if (this.mode == 'k') {
             try {
                 if (this.comma) {
-                    this.writer.write(',');
+                    this.write(',');
                 }
                 if (tidy) {
-                    this.writer.write('\n');
-                    this.writer.write(INDENTS[top]);
+                    this.write('\n');
+                    this.write(INDENTS[top]);
                 }
-                this.writer.write(JSONObject.quote(s));
-                this.writer.write(':');
+                this.writeQuoted(s);
+                this.write(':');
                 if (tidy) {
-                    this.writer.write(' ');
+                    this.write(' ');
                 }
                 this.comma = false;
                 this.mode = 'o';
@@ -17,7 +17,7 @@
  * under the License.
  */
 
-@Version("2.1.0")
+@Version("2.2.0")
 package org.apache.sling.commons.json.io;
 
 import aQute.bnd.annotation.Version;
@@ -33,6 +33,7 @@ import javax.jcr.Value;
 import javax.jcr.ValueFormatException;
 
 import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.io.BufferedJSONWriter;
 import org.apache.sling.commons.json.io.JSONWriter;
 
 /**
@@ -70,7 +71,7 @@ public class JsonItemWriter {
      */
     public void dump(NodeIterator it, Writer out) throws RepositoryException,
             JSONException {
-        final JSONWriter w = new JSONWriter(out);
+        final JSONWriter w = new BufferedJSONWriter(out);
         w.array();
         while (it.hasNext()) {
             dump(it.nextNode(), w, 1, 1);
@@ -90,7 +91,7 @@ public class JsonItemWriter {
      */
     public void dump(Node node, Writer w, int maxRecursionLevels, boolean tidy)
             throws RepositoryException, JSONException {
-        JSONWriter jw = new JSONWriter(w);
+        JSONWriter jw = new BufferedJSONWriter(w);
         jw.setTidy(tidy);
         dump(node, jw, 0, maxRecursionLevels);
     }
@@ -98,7 +99,7 @@ public class JsonItemWriter {
     /** Dump given property in JSON */
     public void dump(Property p, Writer w) throws JSONException,
             ValueFormatException, RepositoryException {
-        final JSONWriter jw = new JSONWriter(w);
+        final JSONWriter jw = new BufferedJSONWriter(w);
         jw.object();
         writeProperty(jw, p);
         jw.endObject();
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.apache.sling.commons.json.JSONParser.Event;
+import org.junit.Test;
+
+public class JSONParserTest {
+
+    private JSONParser parser(final String json) {
+        return new JSONParser(new StringReader(json));
+    }
+
+    @Test
+    public void testEvents() throws JSONException {
+        final JSONParser p = parser("{\"a\" : 1, \"b\" : [true, null, \"x\"], \"c\" : {}}");
+        assertEquals(Event.START_OBJECT, p.next());
+        assertEquals(Event.KEY, p.next());
+        assertEquals("a", p.getKey());
+        assertEquals(Event.VALUE, p.next());
+        assertEquals(1, p.getValue());
+        assertEquals(Event.KEY, p.next());
+        assertEquals("b", p.getKey());
+        assertEquals(Event.START_ARRAY, p.next());
+        assertEquals(Event.VALUE, p.next());
+        assertEquals(Boolean.TRUE, p.getValue());
+        assertEquals(Event.VALUE, p.next());
+        assertEquals(JSONObject.NULL, p.getValue());
+        assertEquals(Event.VALUE, p.next());
+        assertEquals("x", p.getValue());
+        assertEquals(Event.END_ARRAY, p.next());
+        assertEquals(Event.KEY, p.next());
+        assertEquals("c", p.getKey());
+        assertEquals(Event.START_OBJECT, p.next());
+        assertEquals(Event.END_OBJECT, p.next());
+        assertTrue(p.hasNext());
+        assertEquals(Event.END_OBJECT, p.next());
+        assertFalse(p.hasNext());
+    }
+
+    @Test
+    public void testLenientSyntax() throws JSONException {
+        final JSONParser p = parser("{a = 'b'; c => [1,,2,], }");
+        assertEquals(Event.START_OBJECT, p.next());
+        assertEquals(Event.KEY, p.next());
+        assertEquals("a", p.getKey());
+        assertEquals(Event.VALUE, p.next());
+        assertEquals("b", p.getValue());
+        assertEquals(Event.KEY, p.next());
+        assertEquals("c", p.getKey());
+        assertEquals(Event.START_ARRAY, p.next());
+        assertEquals(Event.VALUE, p.next());
+        assertEquals(1, p.getValue());
+        assertEquals(Event.VALUE, p.next());
+        assertNull(p.getValue());
+        assertEquals(Event.VALUE, p.next());
+        assertEquals(2, p.getValue());
+        assertEquals(Event.END_ARRAY, p.next());
+        assertEquals(Event.END_OBJECT, p.next());
+        assertFalse(p.hasNext());
+    }
+
+    @Test
+    public void testReadValue() throws JSONException {
+        final JSONParser p = parser("{\"a\" : {\"b\" : [1, {\"c\" : \"d\"}]}, \"e\" : 2}");
+        assertEquals(Event.START_OBJECT, p.next());
+        assertEquals(Event.KEY, p.next());
+        assertEquals(Event.START_OBJECT, p.next());
+        final JSONObject a = (JSONObject) p.readValue();
+        assertEquals("{\"b\":[1,{\"c\":\"d\"}]}", a.toString());
+        assertEquals(Event.KEY, p.next());
+        assertEquals("e", p.getKey());
+        assertEquals(Event.VALUE, p.next());
+        assertEquals(2, p.readValue());
+        assertEquals(Event.END_OBJECT, p.next());
+    }
+
+    @Test
+    public void testSameAsJSONObject() throws JSONException {
+        final String json = "{\"s\":\"a\\\"b\\u0041\",\"n\":-1.5,\"l\":12345678901,\"o\":{\"x\":[]},\"arr\":[[1],[2]]}";
+        final JSONParser p = parser(json);
+        assertEquals(Event.START_OBJECT, p.next());
+        assertEquals(new JSONObject(json).toString(), p.readValue().toString());
+    }
+
+    @Test
+    public void testSyntaxErrors() {
+        final String[] invalid = {"{\"a\" 1}", "{\"a\":1", "[1 : 2]", "{\"a\":1]", "[1}", ""};
+        for (final String json : invalid) {
+            final JSONParser p = parser(json);
+            try {
+                while (p.hasNext()) {
+                    p.next();
+                }
+                fail("Expected exception for " + json);
+            } catch (final JSONException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testLargeDocumentFromReader() throws JSONException {
+        final int count = 100000;
+        final JSONParser p = new JSONParser(new GeneratingReader(count));
+        assertEquals(Event.START_ARRAY, p.next());
+        int n = 0;
+        while (p.next() == Event.START_OBJECT) {
+            assertEquals(Event.KEY, p.next());
+            assertEquals("v", p.getKey());
+            assertEquals(Event.VALUE, p.next());
+            assertEquals(n, p.getValue());
+            assertEquals(Event.END_OBJECT, p.next());
+            n++;
+        }
+        assertEquals(count, n);
+        assertFalse(p.hasNext());
+    }
+
+    @Test
+    public void testTokenerFromReader() throws JSONException {
+        final JSONTokener x = new JSONTokener(new StringReader("abc<!-- x -->def"));
+        x.skipPast("-->");
+        assertEquals("def", x.nextTo('\n'));
+        final JSONTokener y = new JSONTokener(new StringReader("abc"));
+        assertEquals(0, y.skipTo('x'));
+        assertEquals('a', y.next());
+    }
+
+    /**
+     * Reader generating a large array of objects without keeping it in memory.
+     */
+    private static final class GeneratingReader extends Reader {
+
+        private final int count;
+
+        private int index = -1;
+
+        private String current = "[";
+
+        private int pos;
+
+        GeneratingReader(final int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) {
+            if (pos == current.length()) {
+                index++;
+                if (index > count) {
+                    return -1;
+                }
+                current = index == count ? "]" : (index > 0 ? "," : "") + "{\"v\":" + index + "}";
+                pos = 0;
+            }
+            final int n = Math.min(len, current.length() - pos);
+            current.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.json.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.apache.sling.commons.json.JSONArray;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.junit.Test;
+
+/** Test that the BufferedJSONWriter creates the same output as the JSONWriter */
+public class BufferedJSONWriterTest {
+
+    private static final Object[] VALUES = {
+        "", "simple", "quote \" and backslash \\", "</script>", "tab\tnewline\nreturn\r",
+        "control \u0001 \u001f", "latin \u0085 ä", "general punctuation   €", "中文",
+        0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE,
+        0.0, -0.0, 1.0, -2.5, 3.25, 0.1, 1e-4, 9999999.0, 1e7, 123456789.125, Double.MAX_VALUE,
+        1.5f, Boolean.TRUE, Boolean.FALSE, null, JSONObject.NULL
+    };
+
+    private void write(final JSONWriter w, final boolean tidy) throws JSONException {
+        w.setTidy(tidy);
+        w.object();
+        w.key("values").array();
+        for (final Object v : VALUES) {
+            w.value(v);
+        }
+        w.endArray();
+        w.key("long").value(42L);
+        w.key("double").value(42.5);
+        w.key("boolean").value(true);
+        w.key("key with \"quotes\"").value("v");
+        w.key("nested").object().key("array").array().array().endArray().endArray().endObject();
+        w.key("json").value(new JSONArray().put(1).put("a"));
+        w.endObject();
+    }
+
+    private void assertSameOutput(final boolean tidy, final int bufferSize) throws JSONException {
+        final StringWriter expected = new StringWriter();
+        write(new JSONWriter(expected), tidy);
+        final StringWriter actual = new StringWriter();
+        write(new BufferedJSONWriter(actual, bufferSize), tidy);
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testSameOutput() throws JSONException {
+        assertSameOutput(false, 8192);
+    }
+
+    @Test
+    public void testSameOutputTidy() throws JSONException {
+        assertSameOutput(true, 8192);
+    }
+
+    @Test
+    public void testSmallBuffer() throws JSONException {
+        assertSameOutput(false, 1);
+        assertSameOutput(true, 1);
+    }
+
+    @Test
+    public void testLongString() throws JSONException {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("</abc\"\n");
+        }
+        final StringWriter expected = new StringWriter();
+        new JSONWriter(expected).array().value(sb.toString()).endArray();
+        final StringWriter actual = new StringWriter();
+        new BufferedJSONWriter(actual, 100).array().value(sb.toString()).endArray();
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testIntValue() throws JSONException {
+        final StringWriter out = new StringWriter();
+        new BufferedJSONWriter(out).array().value(1).value(-20).endArray();
+        assertEquals("[1,-20]", out.toString());
+    }
+
+    @Test
+    public void testCalendar() throws JSONException {
+        final Calendar c = Calendar.getInstance(TimeZone.getTimeZone("GMT+02:00"));
+        c.clear();
+        c.set(2014, Calendar.MARCH, 9, 8, 5, 3);
+        final StringWriter out = new StringWriter();
+        new BufferedJSONWriter(out).array().value(c).endArray();
+        assertEquals("[\"Sun Mar 09 2014 08:05:03 GMT+0200\"]", out.toString());
+    }
+
+    @Test
+    public void testCalendarAsObject() throws JSONException {
+        final Calendar c = Calendar.getInstance(TimeZone.getTimeZone("GMT+02:00"));
+        c.clear();
+        c.set(2014, Calendar.MARCH, 9, 8, 5, 3);
+        final StringWriter expected = new StringWriter();
+        new JSONWriter(expected).array().value(c).endArray();
+        final StringWriter actual = new StringWriter();
+        new BufferedJSONWriter(actual).array().value((Object) c).endArray();
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test(expected = JSONException.class)
+    public void testNonFinite() throws JSONException {
+        new BufferedJSONWriter(new StringWriter()).array().value(Double.NaN);
+    }
+
+    @Test
+    public void testFlush() throws JSONException {
+        final StringWriter out = new StringWriter();
+        final BufferedJSONWriter w = new BufferedJSONWriter(out);
+        w.object().key("a").value(1);
+        assertEquals("", out.toString());
+        w.flush();
+        assertEquals("{\"a\":1", out.toString());
+        w.endObject();
+        assertEquals("{\"a\":1}", out.toString());
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The job state journal keeps track of the execution times of named jobs
+ * in a local file. This allows to continue schedules after a restart
+ * instead of starting them from scratch.
+ *
+ * The journal is an append only file with one line per execution. On
+ * startup and whenever the file grows too large, it is compacted to
+ * contain only the latest state per job. Entries which have not been
+ * updated within {@link #RETENTION} are dropped during compaction.
+ */
+public class JobStateJournal {
+
+    /** Keep entries for 31 days. */
+    static final long RETENTION = 31L * 24 * 60 * 60 * 1000;
+
+    /** Compact the file if it has this many more lines than entries. */
+    private static final int COMPACT_THRESHOLD = 1000;
+
+    private static final String ENCODING = "UTF-8";
+
+    /** The state of a job. */
+    public static final class State {
+
+        /** The time of the last execution. */
+        public final long lastFired;
+
+        /** The time of the next execution or -1 if there is none. */
+        public final long nextFire;
+
+        public State(final long lastFired, final long nextFire) {
+            this.lastFired = lastFired;
+            this.nextFire = nextFire;
+        }
+    }
+
+    /** Default logger. */
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final File file;
+
+    private final Map<String, State> states = new HashMap<String, State>();
+
+    private Writer writer;
+
+    private int lines;
+
+    /**
+     * Open the journal.
+     * @param file The journal file
+     * @throws IOException If the journal can't be read or written.
+     */
+    public JobStateJournal(final File file) throws IOException {
+        this.file = file;
+        this.load();
+        this.compact();
+    }
+
+    /**
+     * Get the state of a job.
+     * @param name The job name
+     * @return The state or {@code null}
+     */
+    public synchronized State get(final String name) {
+        return this.states.get(name);
+    }
+
+    /**
+     * Record an execution of a job.
+     * @param name The job name
+     * @param fireTime The time of the execution
+     * @param nextFireTime The time of the next execution or -1
+     */
+    public synchronized void fired(final String name, final long fireTime, final long nextFireTime) {
+        final State state = new State(fireTime, nextFireTime);
+        this.states.put(name, state);
+        if ( this.writer != null ) {
+            try {
+                this.write(this.writer, name, state);
+                this.writer.flush();
+                this.lines++;
+                if ( this.lines > this.states.size() + COMPACT_THRESHOLD ) {
+                    this.compact();
+                }
+            } catch ( final IOException ioe ) {
+                logger.warn("Unable to write scheduler journal " + this.file, ioe);
+            }
+        }
+    }
+
+    /**
+     * Close the journal.
+     */
+    public synchronized void close() {
+        if ( this.writer != null ) {
+            try {
+                this.writer.close();
+            } catch ( final IOException ignore ) {
+                // ignore
+            }
+            this.writer = null;
+        }
+    }
+
+    private void load() throws IOException {
+        if ( this.file.exists() ) {
+            // a last line without a line feed has been truncated by an interrupted write
+            final boolean complete = endsWithLineFeed(this.file);
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), ENCODING));
+            try {
+                String line = reader.readLine();
+                while ( line != null ) {
+                    final String next = reader.readLine();
+                    if ( next != null || complete ) {
+                        this.parse(line);
+                    } else {
+                        logger.debug("Ignoring truncated line in scheduler journal: {}", line);
+                    }
+                    line = next;
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    private void parse(final String line) throws IOException {
+        final String[] parts = line.split("\t");
+        if ( parts.length == 3 ) {
+            try {
+                this.states.put(URLDecoder.decode(parts[0], ENCODING),
+                        new State(Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+                return;
+            } catch ( final IllegalArgumentException iae ) {
+                // ignore corrupt line (invalid number or escape sequence)
+            }
+        }
+        logger.debug("Ignoring invalid line in scheduler journal: {}", line);
+    }
+
+    private static boolean endsWithLineFeed(final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if ( raf.length() == 0 ) {
+                return true;
+            }
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Rewrite the journal with the current state of all jobs.
+     */
+    private void compact() throws IOException {
+        this.close();
+        final long minTime = System.currentTimeMillis() - RETENTION;
+        final Iterator<State> iter = this.states.values().iterator();
+        while ( iter.hasNext() ) {
+            final State state = iter.next();
+            if ( state.lastFired < minTime && state.nextFire < minTime ) {
+                iter.remove();
+            }
+        }
+
+        final File parent = this.file.getAbsoluteFile().getParentFile();
+        if ( parent != null ) {
+            parent.mkdirs();
+        }
+        final File tmpFile = new File(this.file.getPath() + ".tmp");
+        final Writer tmpWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), ENCODING));
+        try {
+            for(final Map.Entry<String, State> entry : this.states.entrySet()) {
+                this.write(tmpWriter, entry.getKey(), entry.getValue());
+            }
+        } finally {
+            tmpWriter.close();
+        }
+        if ( this.file.exists() && !this.file.delete() ) {
+            throw new IOException("Unable to replace scheduler journal " + this.file);
+        }
+        if ( !tmpFile.renameTo(this.file) ) {
+            throw new IOException("Unable to rename " + tmpFile + " to " + this.file);
+        }
+        this.lines = this.states.size();
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.file, true), ENCODING));
+    }
+
+    private void write(final Writer w, final String name, final State state)
+    throws IOException {
+        w.write(encode(name));
+        w.write('\t');
+        w.write(String.valueOf(state.lastFired));
+        w.write('\t');
+        w.write(String.valueOf(state.nextFire));
+        w.write('\n');
+    }
+
+    private static String encode(final String name) {
+        try {
+            return URLEncoder.encode(name, ENCODING);
+        } catch ( final UnsupportedEncodingException uee ) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(uee);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import java.util.Date;
+
+import org.quartz.JobExecutionContext;
+import org.quartz.Trigger;
+import org.quartz.Trigger.CompletedExecutionInstruction;
+import org.quartz.TriggerListener;
+
+/**
+ * Trigger listener recording the executions of named jobs
+ * in the {@link JobStateJournal}.
+ */
+public class JobStateListener implements TriggerListener {
+
+    private final JobStateJournal journal;
+
+    public JobStateListener(final JobStateJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * @see org.quartz.TriggerListener#getName()
+     */
+    public String getName() {
+        return "Apache Sling Scheduler Journal";
+    }
+
+    /**
+     * @see org.quartz.TriggerListener#triggerFired(org.quartz.Trigger, org.quartz.JobExecutionContext)
+     */
+    public void triggerFired(final Trigger trigger, final JobExecutionContext context) {
+        // nothing to do
+    }
+
+    /**
+     * @see org.quartz.TriggerListener#vetoJobExecution(org.quartz.Trigger, org.quartz.JobExecutionContext)
+     */
+    public boolean vetoJobExecution(final Trigger trigger, final JobExecutionContext context) {
+        return false;
+    }
+
+    /**
+     * @see org.quartz.TriggerListener#triggerMisfired(org.quartz.Trigger)
+     */
+    public void triggerMisfired(final Trigger trigger) {
+        // nothing to do
+    }
+
+    /**
+     * @see org.quartz.TriggerListener#triggerComplete(org.quartz.Trigger, org.quartz.JobExecutionContext, org.quartz.Trigger.CompletedExecutionInstruction)
+     */
+    public void triggerComplete(final Trigger trigger,
+            final JobExecutionContext context,
+            final CompletedExecutionInstruction triggerInstructionCode) {
+        if ( Boolean.TRUE.equals(context.getJobDetail().getJobDataMap().get(QuartzScheduler.DATA_MAP_PERSISTENT)) ) {
+            final Date fireTime = context.getFireTime();
+            final Date nextFireTime = trigger.getNextFireTime();
+            this.journal.fired(trigger.getKey().getName(),
+                    fireTime == null ? System.currentTimeMillis() : fireTime.getTime(),
+                    nextFireTime == null ? -1 : nextFireTime.getTime());
+        }
+    }
+}
@@ -16,6 +16,8 @@
  */
 package org.apache.sling.commons.scheduler.impl;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Iterator;
@@ -29,10 +31,12 @@ import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.PropertyUnbounded;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.commons.scheduler.Job;
 import org.apache.sling.commons.scheduler.ScheduleOptions;
+import org.apache.sling.commons.scheduler.Scheduler;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolManager;
 import org.osgi.framework.BundleContext;
@@ -40,6 +44,7 @@ import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleListener;
 import org.quartz.CronExpression;
 import org.quartz.CronScheduleBuilder;
+import org.quartz.CronTrigger;
 import org.quartz.JobBuilder;
 import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
@@ -91,6 +96,12 @@ public class QuartzScheduler implements BundleListener {
     /** Map key for the bundle information (Long). */
     static final String DATA_MAP_BUNDLE_ID = "QuartzJobScheduler.bundleId";
 
+    /** Map key for the persistent flag (Boolean). */
+    static final String DATA_MAP_PERSISTENT = "QuartzJobScheduler.persistent";
+
+    /** Name of the journal file in the bundle data area. */
+    private static final String JOURNAL_FILE = "scheduler-journal";
+
     /** The quartz scheduler. */
     private volatile org.quartz.Scheduler scheduler;
 
@@ -104,6 +115,27 @@ public class QuartzScheduler implements BundleListener {
                           "the default pool is used.")
     private static final String PROPERTY_POOL_NAME = "poolName";
 
+    @Property(boolValue=false,
+              label="Persistent Schedules",
+              description="If enabled, the executions of named jobs are recorded in a local journal. " +
+                          "When such a job is scheduled again after a restart, periodic jobs keep their " +
+                          "schedule, missed executions are run once and jobs scheduled for a specific " +
+                          "date are not run again if they have already been executed.")
+    private static final String PROPERTY_PERSISTENT = "persistent";
+
+    @Property(unbounded=PropertyUnbounded.ARRAY,
+              label="Leader Only Jobs",
+              description="Names of jobs which are only executed on the leader of the cluster if they " +
+                          "don't specify a run on option themselves. A name ending with '*' matches " +
+                          "all jobs starting with that prefix.")
+    private static final String PROPERTY_LEADER_ONLY_JOBS = "leaderOnlyJobs";
+
+    /** The journal for persistent schedules or {@code null}. */
+    private JobStateJournal journal;
+
+    /** Job names (or prefixes ending with '*') which should only run on the leader. */
+    private String[] leaderOnlyJobs;
+
     /**
      * Activate this component.
      * Start the scheduler.
@@ -119,6 +151,21 @@ public class QuartzScheduler implements BundleListener {
             poolName = null;
         }
 
+        this.leaderOnlyJobs = toStringArray(props.get(PROPERTY_LEADER_ONLY_JOBS));
+        final Object persistentObj = props.get(PROPERTY_PERSISTENT);
+        if ( persistentObj != null && Boolean.valueOf(persistentObj.toString()) ) {
+            final File file = ctx.getDataFile(JOURNAL_FILE);
+            if ( file == null ) {
+                this.logger.warn(PREFIX + "no file system support available, schedules are not persisted.");
+            } else {
+                try {
+                    this.journal = new JobStateJournal(file);
+                } catch ( final IOException ioe ) {
+                    this.logger.error(PREFIX + "unable to open journal " + file + ", schedules are not persisted.", ioe);
+                }
+            }
+        }
+
         ctx.addBundleListener(this);
 
         // start scheduler
@@ -212,6 +259,9 @@ public class QuartzScheduler implements BundleListener {
         if ( s == null ) {
             throw new SchedulerException("Unable to find new scheduler with name " + QUARTZ_SCHEDULER_NAME + " and run ID " + runID);
         }
+        if ( this.journal != null ) {
+            s.getListenerManager().addTriggerListener(new JobStateListener(this.journal));
+        }
 
         s.start();
         if ( this.logger.isDebugEnabled() ) {
@@ -240,6 +290,83 @@ public class QuartzScheduler implements BundleListener {
             tpm.release(this.threadPool);
         }
         this.threadPool = null;
+        if ( this.journal != null ) {
+            this.journal.close();
+            this.journal = null;
+        }
+    }
+
+    /**
+     * Convert a configuration value into a string array.
+     */
+    private static String[] toStringArray(final Object value) {
+        if ( value instanceof String ) {
+            return new String[] {value.toString()};
+        } else if ( value instanceof String[] ) {
+            return (String[])value;
+        }
+        return null;
+    }
+
+    /**
+     * Check if the job should only run on the leader.
+     * @param leaderOnlyJobs The configured job names and prefixes or {@code null}
+     * @param jobName The job name
+     */
+    static boolean isLeaderOnly(final String[] leaderOnlyJobs, final String jobName) {
+        if ( leaderOnlyJobs != null && jobName != null ) {
+            for(final String pattern : leaderOnlyJobs) {
+                if ( pattern.endsWith("*") ) {
+                    if ( jobName.startsWith(pattern.substring(0, pattern.length() - 1)) ) {
+                        return true;
+                    }
+                } else if ( pattern.equals(jobName) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adjust the trigger of a named job based on the recorded state from the journal.
+     * @param state The recorded state or {@code null}
+     * @param trigger The trigger of the job
+     * @param now The current time
+     * @return The trigger to use or {@code null} if the job should not be scheduled.
+     */
+    static Trigger adjustTrigger(final JobStateJournal.State state, final Trigger trigger, final long now) {
+        if ( state == null ) {
+            return trigger;
+        }
+        if ( trigger instanceof SimpleTrigger ) {
+            final SimpleTrigger st = (SimpleTrigger)trigger;
+            if ( st.getRepeatCount() == 0 ) {
+                // one time job: don't run it again if it already has been executed
+                if ( st.getStartTime() != null && state.lastFired >= st.getStartTime().getTime() ) {
+                    return null;
+                }
+            } else if ( state.nextFire > 0 ) {
+                // periodic job: continue with the previous schedule, run missed executions now
+                final Date startAt = new Date(Math.max(now, state.nextFire));
+                return trigger.getTriggerBuilder().startAt(startAt).build();
+            }
+        } else if ( trigger instanceof CronTrigger ) {
+            if ( state.nextFire > 0 && state.nextFire < now ) {
+                // an execution has been missed: start the schedule after the last execution
+                // which results in a misfire and a single execution now
+                // (cron triggers have a precision of seconds)
+                final CronTrigger ct = (CronTrigger)trigger;
+                return TriggerBuilder.newTrigger()
+                        .withIdentity(trigger.getKey())
+                        .startAt(new Date(state.lastFired + 1000))
+                        .withSchedule(CronScheduleBuilder.cronSchedule(ct.getCronExpression())
+                                .inTimeZone(ct.getTimeZone())
+                                .withMisfireHandlingInstructionFireAndProceed())
+                        .build();
+            }
+        }
+        return trigger;
     }
 
 
@@ -269,6 +396,11 @@ public class QuartzScheduler implements BundleListener {
         }
         if ( options.runOn != null) {
             jobDataMap.put(DATA_MAP_RUN_ON, options.runOn);
+        } else if ( options.name != null && isLeaderOnly(this.leaderOnlyJobs, jobName) ) {
+            jobDataMap.put(DATA_MAP_RUN_ON, new String[] {Scheduler.VALUE_RUN_ON_LEADER});
+        }
+        if ( options.name != null && this.journal != null ) {
+            jobDataMap.put(DATA_MAP_PERSISTENT, Boolean.TRUE);
         }
 
         return jobDataMap;
@@ -654,7 +786,14 @@ public class QuartzScheduler implements BundleListener {
                 name = job.getClass().getName() + ':' + UUID.randomUUID();
             }
 
-            final Trigger trigger = opts.trigger.withIdentity(name).build();
+            Trigger trigger = opts.trigger.withIdentity(name).build();
+            if ( opts.name != null && this.journal != null ) {
+                trigger = adjustTrigger(this.journal.get(name), trigger, System.currentTimeMillis());
+                if ( trigger == null ) {
+                    this.logger.debug("Not scheduling job {} with name {} as it has already been executed", job, name);
+                    return;
+                }
+            }
 
             // create the data map
             final JobDataMap jobDataMap = this.initDataMap(bundleId, name, job, opts);
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JobStateJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    private long now;
+
+    @Before
+    public void setup() {
+        this.file = new File(folder.getRoot(), "journal");
+        this.now = System.currentTimeMillis();
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        final JobStateJournal journal = new JobStateJournal(file);
+        journal.fired("a", now - 2000, now + 1000);
+        journal.fired("b", now - 1000, -1);
+        journal.fired("a", now, now + 3000);
+        journal.close();
+
+        final JobStateJournal reopened = new JobStateJournal(file);
+        try {
+            assertState(reopened.get("a"), now, now + 3000);
+            assertState(reopened.get("b"), now - 1000, -1);
+            assertNull(reopened.get("c"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testSpecialCharactersInNames() throws IOException {
+        final String name = "job\twith\nspecial chars %";
+        final JobStateJournal journal = new JobStateJournal(file);
+        journal.fired(name, now, now + 1000);
+        journal.close();
+
+        final JobStateJournal reopened = new JobStateJournal(file);
+        try {
+            assertState(reopened.get(name), now, now + 1000);
+            assertEquals(1, readLines());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testCorruptLinesAreIgnored() throws IOException {
+        write("garbage\n"
+            + "a\t" + now + "\t" + (now + 1000) + "\n"
+            + "b\tnot-a-number\t1\n"
+            + "c\t1\t2\t3\n"
+            + "%zz\t" + now + "\t1\n"
+            + "\n"
+            + "d\t" + now + "\t-1\n");
+
+        final JobStateJournal journal = new JobStateJournal(file);
+        try {
+            assertState(journal.get("a"), now, now + 1000);
+            assertState(journal.get("d"), now, -1);
+            assertNull(journal.get("b"));
+            assertNull(journal.get("c"));
+            // the corrupt lines have been removed by the compaction
+            assertEquals(2, readLines());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testTruncatedLastLineIsIgnored() throws IOException {
+        // the last write has been interrupted, the value is incomplete
+        write("a\t" + now + "\t" + (now + 1000) + "\n"
+            + "a\t" + (now + 1000) + "\t" + String.valueOf(now + 2000).substring(0, 5));
+
+        final JobStateJournal journal = new JobStateJournal(file);
+        try {
+            assertState(journal.get("a"), now, now + 1000);
+            journal.fired("b", now, -1);
+        } finally {
+            journal.close();
+        }
+
+        final JobStateJournal reopened = new JobStateJournal(file);
+        try {
+            assertState(reopened.get("a"), now, now + 1000);
+            assertState(reopened.get("b"), now, -1);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        write("");
+        final JobStateJournal journal = new JobStateJournal(file);
+        try {
+            assertNull(journal.get("a"));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testCompactionOnStartup() throws IOException {
+        final JobStateJournal journal = new JobStateJournal(file);
+        for(int i = 0; i < 10; i++) {
+            journal.fired("a", now + i, now + i + 1);
+            journal.fired("b", now + i, now + i + 1);
+        }
+        journal.close();
+        assertEquals(20, readLines());
+
+        final JobStateJournal reopened = new JobStateJournal(file);
+        try {
+            assertEquals(2, readLines());
+            assertState(reopened.get("a"), now + 9, now + 10);
+            assertState(reopened.get("b"), now + 9, now + 10);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testCompactionWhenGrowing() throws IOException {
+        final JobStateJournal journal = new JobStateJournal(file);
+        try {
+            for(int i = 0; i < 1500; i++) {
+                journal.fired("a", now + i, now + i + 1);
+            }
+            assertTrue(readLines() < 1000);
+            assertState(journal.get("a"), now + 1499, now + 1500);
+        } finally {
+            journal.close();
+        }
+
+        final JobStateJournal reopened = new JobStateJournal(file);
+        try {
+            assertState(reopened.get("a"), now + 1499, now + 1500);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testOutdatedEntriesAreDropped() throws IOException {
+        final long old = now - JobStateJournal.RETENTION - 1000;
+        write("old\t" + old + "\t" + old + "\n"
+            + "scheduled\t" + old + "\t" + (now + 1000) + "\n"
+            + "recent\t" + now + "\t-1\n");
+
+        final JobStateJournal journal = new JobStateJournal(file);
+        try {
+            assertNull(journal.get("old"));
+            assertState(journal.get("scheduled"), old, now + 1000);
+            assertState(journal.get("recent"), now, -1);
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testMissingDirectoryIsCreated() throws IOException {
+        this.file = new File(new File(folder.getRoot(), "sub"), "journal");
+        final JobStateJournal journal = new JobStateJournal(file);
+        try {
+            journal.fired("a", now, -1);
+            assertEquals(1, readLines());
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static void assertState(final JobStateJournal.State state, final long lastFired, final long nextFire) {
+        assertNotNull(state);
+        assertEquals(lastFired, state.lastFired);
+        assertEquals(nextFire, state.nextFire);
+    }
+
+    private void write(final String content) throws IOException {
+        final OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(content.getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+    }
+
+    private int readLines() throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            int count = 0;
+            while ( reader.readLine() != null ) {
+                count++;
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.sling.commons.scheduler.Scheduler;
+import org.apache.sling.discovery.InstanceDescription;
+import org.apache.sling.discovery.TopologyEvent;
+import org.apache.sling.discovery.TopologyView;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.After;
+import org.junit.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Test the cluster leader gating of the job executor together with
+ * the topology handler providing the discovery information.
+ */
+public class QuartzJobExecutorTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    private final TopologyHandler handler = new TopologyHandler();
+
+    private int executions;
+
+    private final Runnable job = new Runnable() {
+
+        public void run() {
+            executions++;
+        }
+    };
+
+    @After
+    public void reset() {
+        QuartzJobExecutor.DISCOVERY_INFO_AVAILABLE.set(false);
+        QuartzJobExecutor.IS_LEADER.set(true);
+        QuartzJobExecutor.SLING_ID = null;
+    }
+
+    @Test
+    public void testLeaderOnlyJobOnLeader() throws JobExecutionException {
+        handler.handleTopologyEvent(new TopologyEvent(TopologyEvent.Type.TOPOLOGY_INIT, null, view("one", true)));
+        execute(Scheduler.VALUE_RUN_ON_LEADER);
+        assertEquals(1, executions);
+    }
+
+    @Test
+    public void testLeaderOnlyJobOnOtherInstance() throws JobExecutionException {
+        handler.handleTopologyEvent(new TopologyEvent(TopologyEvent.Type.TOPOLOGY_INIT, null, view("two", false)));
+        execute(Scheduler.VALUE_RUN_ON_LEADER);
+        execute(Scheduler.VALUE_RUN_ON_SINGLE);
+        assertEquals(0, executions);
+
+        // jobs without a run on option are executed everywhere
+        execute((String[])null);
+        assertEquals(1, executions);
+    }
+
+    @Test
+    public void testLeaderChange() throws JobExecutionException {
+        final TopologyView first = view("one", true);
+        handler.handleTopologyEvent(new TopologyEvent(TopologyEvent.Type.TOPOLOGY_INIT, null, first));
+        execute(Scheduler.VALUE_RUN_ON_LEADER);
+        assertEquals(1, executions);
+
+        // while the topology is changing, no discovery info is available and the job is executed anyway
+        handler.handleTopologyEvent(new TopologyEvent(TopologyEvent.Type.TOPOLOGY_CHANGING, first, null));
+        execute(Scheduler.VALUE_RUN_ON_LEADER);
+        assertEquals(2, executions);
+
+        final TopologyView second = view("one", false);
+        handler.handleTopologyEvent(new TopologyEvent(TopologyEvent.Type.TOPOLOGY_CHANGED, first, second));
+        execute(Scheduler.VALUE_RUN_ON_LEADER);
+        assertEquals(2, executions);
+
+        handler.handleTopologyEvent(new TopologyEvent(TopologyEvent.Type.TOPOLOGY_CHANGED, second, view("one", true)));
+        execute(Scheduler.VALUE_RUN_ON_LEADER);
+        assertEquals(3, executions);
+    }
+
+    @Test
+    public void testNoDiscoveryInfo() throws JobExecutionException {
+        // without discovery, leader only jobs are executed on every instance
+        execute(Scheduler.VALUE_RUN_ON_LEADER);
+        assertEquals(1, executions);
+    }
+
+    @Test
+    public void testRunOnSlingIds() throws JobExecutionException {
+        handler.handleTopologyEvent(new TopologyEvent(TopologyEvent.Type.TOPOLOGY_INIT, null, view("two", false)));
+        execute("one", "three");
+        assertEquals(0, executions);
+        execute("one", "two");
+        assertEquals(1, executions);
+    }
+
+    private void execute(final String... runOn) throws JobExecutionException {
+        final JobDataMap data = new JobDataMap();
+        data.put(QuartzScheduler.DATA_MAP_OBJECT, job);
+        data.put(QuartzScheduler.DATA_MAP_NAME, "job");
+        data.put(QuartzScheduler.DATA_MAP_LOGGER, LoggerFactory.getLogger(this.getClass()));
+        if ( runOn != null ) {
+            data.put(QuartzScheduler.DATA_MAP_RUN_ON, runOn);
+        }
+        final JobExecutionContext ctx = context.mock(JobExecutionContext.class, "ctx" + executions + System.nanoTime());
+        context.checking(new Expectations() {{
+            allowing(ctx).getJobDetail();
+            will(returnValue(JobBuilder.newJob(QuartzJobExecutor.class).withIdentity("job").usingJobData(data).build()));
+        }});
+        new QuartzJobExecutor().execute(ctx);
+    }
+
+    private TopologyView view(final String slingId, final boolean leader) {
+        final TopologyView view = context.mock(TopologyView.class, "view" + System.nanoTime());
+        final InstanceDescription instance = context.mock(InstanceDescription.class, "instance" + System.nanoTime());
+        context.checking(new Expectations() {{
+            allowing(view).getLocalInstance();
+            will(returnValue(instance));
+            allowing(instance).getSlingId();
+            will(returnValue(slingId));
+            allowing(instance).isLeader();
+            will(returnValue(leader));
+        }});
+        return view;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.Test;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.CronTrigger;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.spi.OperableTrigger;
+
+public class QuartzSchedulerTest {
+
+    private static final long MINUTE = 60 * 1000;
+
+    private final long now = System.currentTimeMillis();
+
+    @Test
+    public void testLeaderOnly() {
+        final String[] patterns = new String[] {"cleanup", "maintenance.*"};
+        assertTrue(QuartzScheduler.isLeaderOnly(patterns, "cleanup"));
+        assertTrue(QuartzScheduler.isLeaderOnly(patterns, "maintenance.daily"));
+        assertTrue(QuartzScheduler.isLeaderOnly(patterns, "maintenance."));
+        assertFalse(QuartzScheduler.isLeaderOnly(patterns, "cleanup.daily"));
+        assertFalse(QuartzScheduler.isLeaderOnly(patterns, "maintenance"));
+        assertFalse(QuartzScheduler.isLeaderOnly(patterns, null));
+        assertFalse(QuartzScheduler.isLeaderOnly(null, "cleanup"));
+        assertTrue(QuartzScheduler.isLeaderOnly(new String[] {"*"}, "any"));
+    }
+
+    @Test
+    public void testNoState() {
+        final Trigger trigger = periodic(now, MINUTE);
+        assertSame(trigger, QuartzScheduler.adjustTrigger(null, trigger, now));
+    }
+
+    @Test
+    public void testOneTimeJobAlreadyExecuted() {
+        final Trigger trigger = TriggerBuilder.newTrigger().withIdentity("job").startAt(new Date(now - MINUTE)).build();
+        final JobStateJournal.State state = new JobStateJournal.State(now - MINUTE, -1);
+        assertNull(QuartzScheduler.adjustTrigger(state, trigger, now));
+    }
+
+    @Test
+    public void testOneTimeJobRescheduled() {
+        // the job has been executed before, but is now scheduled for a later date
+        final Trigger trigger = TriggerBuilder.newTrigger().withIdentity("job").startAt(new Date(now + MINUTE)).build();
+        final JobStateJournal.State state = new JobStateJournal.State(now - MINUTE, -1);
+        assertSame(trigger, QuartzScheduler.adjustTrigger(state, trigger, now));
+    }
+
+    @Test
+    public void testPeriodicJobContinuesSchedule() {
+        final Trigger trigger = periodic(now, 10 * MINUTE);
+        final JobStateJournal.State state = new JobStateJournal.State(now - 7 * MINUTE, now + 3 * MINUTE);
+        final Trigger adjusted = QuartzScheduler.adjustTrigger(state, trigger, now);
+        assertEquals(new Date(now + 3 * MINUTE), adjusted.getStartTime());
+        assertEquals(trigger.getKey(), adjusted.getKey());
+    }
+
+    @Test
+    public void testPeriodicJobMissedExecution() {
+        final Trigger trigger = periodic(now, 10 * MINUTE);
+        final JobStateJournal.State state = new JobStateJournal.State(now - 25 * MINUTE, now - 15 * MINUTE);
+        final Trigger adjusted = QuartzScheduler.adjustTrigger(state, trigger, now);
+        // the missed execution is run now
+        assertEquals(new Date(now), adjusted.getStartTime());
+    }
+
+    @Test
+    public void testCronJobNoMissedExecution() {
+        final Trigger trigger = cron("0 0 * * * ?");
+        final JobStateJournal.State state = new JobStateJournal.State(now - MINUTE, now + MINUTE);
+        assertSame(trigger, QuartzScheduler.adjustTrigger(state, trigger, now));
+    }
+
+    @Test
+    public void testCronJobMissedExecutionsRunOnce() {
+        // every minute, the instance was down for an hour
+        final Trigger trigger = cron("0 * * * * ?");
+        final long lastFired = (now - 60 * MINUTE) / MINUTE * MINUTE;
+        final JobStateJournal.State state = new JobStateJournal.State(lastFired, lastFired + MINUTE);
+        final Trigger adjusted = QuartzScheduler.adjustTrigger(state, trigger, now);
+
+        assertEquals(trigger.getKey(), adjusted.getKey());
+        assertTrue(adjusted.getStartTime().getTime() > lastFired);
+        assertEquals(CronTrigger.MISFIRE_INSTRUCTION_FIRE_ONCE_NOW, adjusted.getMisfireInstruction());
+
+        // the first fire time is the first missed execution, which quartz detects as a misfire
+        final OperableTrigger operable = (OperableTrigger)adjusted;
+        final Date first = operable.computeFirstFireTime(null);
+        assertTrue(first.getTime() > lastFired);
+        assertTrue(first.getTime() < now);
+
+        // the misfire handling runs the job once and then proceeds with the schedule
+        final long before = System.currentTimeMillis();
+        operable.updateAfterMisfire(null);
+        final long fired = operable.getNextFireTime().getTime();
+        assertTrue(fired >= before && fired <= System.currentTimeMillis());
+        operable.triggered(null);
+        final long next = operable.getNextFireTime().getTime();
+        assertTrue(next > fired && next <= fired + MINUTE);
+    }
+
+    private static Trigger periodic(final long start, final long period) {
+        return TriggerBuilder.newTrigger()
+                .withIdentity("job")
+                .startAt(new Date(start))
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule().repeatForever().withIntervalInMilliseconds(period))
+                .build();
+    }
+
+    private static Trigger cron(final String expression) {
+        return TriggerBuilder.newTrigger()
+                .withIdentity("job")
+                .withSchedule(CronScheduleBuilder.cronSchedule(expression))
+                .build();
+    }
+}
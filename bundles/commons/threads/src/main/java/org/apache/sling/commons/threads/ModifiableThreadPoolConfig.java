@@ -54,6 +54,8 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
     public static final String PROPERTY_PRIORITY = "priority";
     /** Configuration property for the daemon flag. */
     public static final String PROPERTY_DAEMON = "daemon";
+    /** Configuration property for the thread pool mode. */
+    public static final String PROPERTY_MODE = "mode";
     /** Configuration property for the thread pool name. */
     public static final String PROPERTY_NAME = "name";
 
@@ -87,6 +89,9 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
     /** Create daemon threads? */
     private  boolean isDaemon = false;
 
+    /** The thread pool mode. Default is DEFAULT. */
+    private ThreadPoolMode mode = ThreadPoolMode.DEFAULT;
+
     /**
      * Create a new default configuration.
      */
@@ -110,6 +115,9 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
             this.factory = copy.getFactory();
             this.priority = copy.getPriority();
             this.isDaemon = copy.isDaemon();
+            if ( copy instanceof ModifiableThreadPoolConfig ) {
+                this.mode = ((ModifiableThreadPoolConfig)copy).getMode();
+            }
         }
     }
 
@@ -272,6 +280,28 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
         this.isDaemon = isDaemon;
     }
 
+    /**
+     * Return the mode of the thread pool.
+     * @return The thread pool mode.
+     * @since 3.3
+     */
+    public ThreadPoolMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Set the thread pool mode.
+     * @param mode The new mode.
+     * @throws IllegalArgumentException If mode is null.
+     * @since 3.3
+     */
+    public void setMode(final ThreadPoolMode mode) {
+        if ( mode == null ) {
+            throw new IllegalArgumentException("Mode must not be null.");
+        }
+        this.mode = mode;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if ( obj instanceof ModifiableThreadPoolConfig ) {
@@ -284,7 +314,8 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
                 && this.shutdownGraceful == o.shutdownGraceful
                 && this.shutdownWaitTimeMs == o.shutdownWaitTimeMs
                 && this.priority.equals(o.priority)
-                && this.isDaemon == o.isDaemon;
+                && this.isDaemon == o.isDaemon
+                && this.mode == o.mode;
         }
         return false;
     }
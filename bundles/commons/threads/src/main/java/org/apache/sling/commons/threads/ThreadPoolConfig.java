@@ -37,6 +37,30 @@ public interface ThreadPoolConfig {
         MAX
     };
 
+    /**
+     * The thread pool modes.
+     * The mode of a pool is set with {@link ModifiableThreadPoolConfig#setMode(ThreadPoolMode)},
+     * other configurations use the default mode.
+     * @since 3.3
+     */
+    public enum ThreadPoolMode {
+        /** A classic pool of threads with a queue. */
+        DEFAULT,
+        /**
+         * A work stealing pool for cpu bound tasks. The parallelism is
+         * the max pool size. If the platform does not provide a work
+         * stealing pool, the default mode is used.
+         */
+        WORK_STEALING,
+        /**
+         * A new thread for each task, for tasks mostly waiting for i/o.
+         * Virtual threads are used if the platform supports them and
+         * the pool uses daemon threads with normal priority, otherwise
+         * a new platform thread is started for each task.
+         */
+        THREAD_PER_TASK
+    };
+
     /**
      * Return the minimum pool size.
      * @return The minimum pool size.
@@ -98,4 +122,4 @@ public interface ThreadPoolConfig {
      * @return <code>true</code> if daemon threads should be created.
      */
     boolean isDaemon();
-}
\ No newline at end of file
+}
@@ -16,20 +16,30 @@
  */
 package org.apache.sling.commons.threads.impl;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolMode;
 import org.apache.sling.commons.threads.ThreadPoolManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,10 +48,18 @@ import org.slf4j.LoggerFactory;
 /**
  * The DefaultThreadPool class implements the {@link ThreadPool} interface.
  * Instances of this class are managed by the {@link ThreadPoolManager}.
+ *
+ * Depending on the configured {@link ThreadPoolMode} the pool is backed
+ * by a {@link ThreadPoolExecutor}, a work stealing pool or a thread per
+ * task executor. Work stealing pools and virtual threads are only
+ * available on newer platforms and are therefore created reflectively.
  */
 public class DefaultThreadPool
     implements ThreadPool {
 
+    /** The largest parallelism supported by a work stealing pool. */
+    private static final int MAX_PARALLELISM = 0x7fff;
+
     /** By default we use the logger for this class. */
     protected final Logger logger = LoggerFactory.getLogger(this.getClass());
 
@@ -49,10 +67,28 @@ public class DefaultThreadPool
     protected final String name;
 
     /** The executor. */
-    protected ThreadPoolExecutor executor;
+    protected ExecutorService executor;
 
     protected final ModifiableThreadPoolConfig configuration;
 
+    /** The mode actually used, might differ from the configured one. */
+    private final ThreadPoolMode mode;
+
+    /** Number of tasks waiting for execution - not used for a thread pool executor. */
+    private final AtomicLong queued = new AtomicLong();
+
+    /** Number of tasks currently executing - not used for a thread pool executor. */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /** Highest number of tasks executing at the same time - not used for a thread pool executor. */
+    private final AtomicInteger largest = new AtomicInteger();
+
+    /** Number of finished tasks - not used for a thread pool executor. */
+    private final AtomicLong completed = new AtomicLong();
+
+    /** Number of rejected tasks. */
+    private final AtomicLong rejected = new AtomicLong();
+
     /**
      * Create a new thread pool.
      * @param name - The name of the thread pool. If null {@link DefaultThreadPoolManager#DEFAULT_THREADPOOL_NAME}
@@ -99,18 +135,48 @@ public class DefaultThreadPool
             this.logger.warn("keep-alive-time-ms < 0 for pool \"" + this.name + "\". Set to 1000");
         }
 
-        // Queue
-        final BlockingQueue<Runnable> queue;
-        if (this.configuration.getQueueSize() != 0) {
-            if (this.configuration.getQueueSize() > 0) {
-                queue = new java.util.concurrent.ArrayBlockingQueue<Runnable>(this.configuration.getQueueSize());
+        ExecutorService service = null;
+        ThreadPoolMode usedMode = this.configuration.getMode();
+        if ( usedMode == ThreadPoolMode.WORK_STEALING ) {
+            service = this.createWorkStealingPool(threadFactory);
+        } else if ( usedMode == ThreadPoolMode.THREAD_PER_TASK ) {
+            service = this.createThreadPerTaskExecutor(threadFactory);
+        }
+        if ( service == null ) {
+            if ( usedMode != ThreadPoolMode.DEFAULT ) {
+                this.logger.warn("Mode {} is not available for thread pool \"{}\". Using default mode.", usedMode, this.name);
+                usedMode = ThreadPoolMode.DEFAULT;
+            }
+            // Queue
+            final BlockingQueue<Runnable> queue;
+            if (this.configuration.getQueueSize() != 0) {
+                if (this.configuration.getQueueSize() > 0) {
+                    queue = new java.util.concurrent.ArrayBlockingQueue<Runnable>(this.configuration.getQueueSize());
+                } else {
+                    queue = new LinkedBlockingQueue<Runnable>();
+                }
             } else {
-                queue = new LinkedBlockingQueue<Runnable>();
+                queue = new SynchronousQueue<Runnable>();
             }
-        } else {
-            queue = new SynchronousQueue<Runnable>();
+
+            service = new ThreadPoolExecutor(this.configuration.getMinPoolSize(),
+                    this.configuration.getMaxPoolSize(),
+                    this.configuration.getKeepAliveTime(),
+                    TimeUnit.MILLISECONDS,
+                    queue,
+                    threadFactory,
+                    this.createRejectedExecutionHandler());
         }
+        this.mode = usedMode;
+        this.executor = service;
+        this.logger.info("Thread pool [{}] initialized in mode {}.", name, this.mode);
+    }
 
+    /**
+     * Create the rejected execution handler for the configured block
+     * policy. Rejections are counted before the policy is applied.
+     */
+    private RejectedExecutionHandler createRejectedExecutionHandler() {
         RejectedExecutionHandler handler = null;
         switch (this.configuration.getBlockPolicy()) {
             case ABORT :
@@ -126,14 +192,87 @@ public class DefaultThreadPool
                 handler = new ThreadPoolExecutor.CallerRunsPolicy();
                 break;
         }
-        this.executor = new ThreadPoolExecutor(this.configuration.getMinPoolSize(),
-                this.configuration.getMaxPoolSize(),
-                this.configuration.getKeepAliveTime(),
-                TimeUnit.MILLISECONDS,
-                queue,
+        final RejectedExecutionHandler policy = handler;
+        return new RejectedExecutionHandler() {
+
+            public void rejectedExecution(final Runnable r, final ThreadPoolExecutor tpe) {
+                rejected.incrementAndGet();
+                policy.rejectedExecution(r, tpe);
+            }
+        };
+    }
+
+    /**
+     * Create a work stealing pool if the platform provides one.
+     * The priority and daemon flag of the worker threads are set
+     * by the thread factory.
+     * @return The pool or {@code null}
+     */
+    private ExecutorService createWorkStealingPool(final ExtendedThreadFactory threadFactory) {
+        int parallelism = this.configuration.getMaxPoolSize();
+        if ( parallelism == Integer.MAX_VALUE ) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        parallelism = Math.min(parallelism, MAX_PARALLELISM);
+        try {
+            final Class<?> poolClass = Class.forName("java.util.concurrent.ForkJoinPool");
+            final Class<?> factoryClass = Class.forName("java.util.concurrent.ForkJoinPool$ForkJoinWorkerThreadFactory");
+            final Object defaultFactory = poolClass.getField("defaultForkJoinWorkerThreadFactory").get(null);
+            final Object factory = Proxy.newProxyInstance(factoryClass.getClassLoader(), new Class<?>[] {factoryClass},
+                    new InvocationHandler() {
+
+                        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                        throws Throwable {
+                            try {
+                                final Object result = method.invoke(defaultFactory, args);
+                                if ( result instanceof Thread ) {
+                                    threadFactory.configure((Thread) result);
+                                }
+                                return result;
+                            } catch (final InvocationTargetException ite) {
+                                throw ite.getCause();
+                            }
+                        }
+                    });
+            // async mode uses fifo scheduling which is what clients of a pool expect
+            return (ExecutorService) poolClass.getConstructor(int.class, factoryClass, Thread.UncaughtExceptionHandler.class, boolean.class)
+                    .newInstance(parallelism, factory, null, true);
+        } catch (final ClassNotFoundException cnfe) {
+            return null;
+        } catch (final Exception e) {
+            this.logger.warn("Unable to create work stealing pool for thread pool [" + this.name + "]", e);
+            return null;
+        }
+    }
+
+    /**
+     * Create an executor starting a new thread for each task.
+     * Virtual threads are used if the platform provides them. As virtual
+     * threads are always daemon threads with normal priority, they are
+     * only used if the pool is configured this way. Otherwise a new
+     * thread is created by the thread factory for each task.
+     */
+    private ExecutorService createThreadPerTaskExecutor(final ExtendedThreadFactory threadFactory) {
+        if ( !threadFactory.isDefaultVirtual() ) {
+            this.logger.info("Virtual threads are always daemon threads with normal priority. " +
+                    "Thread pool [{}] is configured differently and uses platform threads.", this.name);
+        } else {
+            try {
+                final Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) m.invoke(null);
+            } catch (final NoSuchMethodException nsme) {
+                this.logger.debug("Virtual threads are not available, thread pool [{}] uses platform threads.", this.name);
+            } catch (final Exception e) {
+                this.logger.warn("Unable to create virtual thread executor for thread pool [" + this.name + "]", e);
+            }
+        }
+        // no idle threads are kept and the synchronous queue hands
+        // each task over to a new thread
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<Runnable>(),
                 threadFactory,
-                handler);
-        this.logger.info("Thread pool [{}] initialized.", name);
+                this.createRejectedExecutionHandler());
     }
 
     /**
@@ -151,16 +290,39 @@ public class DefaultThreadPool
         return this.configuration;
     }
 
+    /**
+     * Return the configured mode. Only a {@link ModifiableThreadPoolConfig}
+     * carries a mode, all other configurations use the default mode.
+     */
+    static ThreadPoolMode getConfiguredMode(final ThreadPoolConfig config) {
+        if ( config instanceof ModifiableThreadPoolConfig ) {
+            return ((ModifiableThreadPoolConfig)config).getMode();
+        }
+        return ThreadPoolMode.DEFAULT;
+    }
+
+    /**
+     * Return the mode used by this pool. If the configured mode is not
+     * supported by the platform, this is the mode used instead.
+     */
+    public ThreadPoolMode getMode() {
+        return this.mode;
+    }
+
     /**
      * @see org.apache.sling.commons.threads.ThreadPool#execute(java.lang.Runnable)
      */
     public void execute(final Runnable runnable) {
-        checkExecutor();
+        final ExecutorService service = checkExecutor();
         if ( runnable != null ) {
             if ( logger.isDebugEnabled() ) {
                 logOperation("Executing runnable: ", runnable);
             }
-            executor.execute(runnable);
+            if ( service instanceof ThreadPoolExecutor ) {
+                service.execute(runnable);
+            } else {
+                this.executeTracked(service, runnable);
+            }
         }
     }
 
@@ -168,22 +330,76 @@ public class DefaultThreadPool
      * @see org.apache.sling.commons.threads.ThreadPool#submit(java.util.concurrent.Callable)
      */
     public <T> Future<T> submit(final Callable<T> callable) {
-        checkExecutor();
+        final ExecutorService service = checkExecutor();
         if ( logger.isDebugEnabled() ) {
             logOperation("Submitting callable: ", callable);
         }
-        return executor.submit(callable);
+        if ( service instanceof ThreadPoolExecutor ) {
+            return service.submit(callable);
+        }
+        final FutureTask<T> task = new FutureTask<T>(callable);
+        this.executeTracked(service, task);
+        return task;
     }
 
     /**
      * @see org.apache.sling.commons.threads.ThreadPool#submit(java.lang.Runnable)
      */
     public Future<?> submit(final Runnable runnable) {
-        checkExecutor();
+        final ExecutorService service = checkExecutor();
         if ( logger.isDebugEnabled() ) {
             logOperation("Submitting runnable: ", runnable);
         }
-        return executor.submit(runnable);
+        if ( service instanceof ThreadPoolExecutor ) {
+            return service.submit(runnable);
+        }
+        final FutureTask<Object> task = new FutureTask<Object>(runnable, null);
+        this.executeTracked(service, task);
+        return task;
+    }
+
+    /**
+     * Execute a task on an executor which does not provide statistics
+     * and track the task ourselves. If the executor rejects the task,
+     * the block policy is applied.
+     */
+    private void executeTracked(final ExecutorService service, final Runnable runnable) {
+        this.queued.incrementAndGet();
+        try {
+            service.execute(new Runnable() {
+
+                public void run() {
+                    queued.decrementAndGet();
+                    final int current = active.incrementAndGet();
+                    int max = largest.get();
+                    while ( current > max && !largest.compareAndSet(max, current) ) {
+                        max = largest.get();
+                    }
+                    try {
+                        runnable.run();
+                    } finally {
+                        active.decrementAndGet();
+                        completed.incrementAndGet();
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException ree) {
+            this.queued.decrementAndGet();
+            this.rejected.incrementAndGet();
+            switch (this.configuration.getBlockPolicy()) {
+                case ABORT :
+                    throw ree;
+                case RUN :
+                    if ( !service.isShutdown() ) {
+                        runnable.run();
+                    }
+                    break;
+                default :
+                    // there is no queue to drop the oldest task from, so
+                    // both discard policies simply drop the task
+                    break;
+            }
+        }
     }
 
     /**
@@ -215,22 +431,172 @@ public class DefaultThreadPool
         this.logger.info("Thread pool [{}] is shut down.", this.name);
     }
 
+    /**
+     * Return the thread pool executor backing this pool.
+     * @return The executor or {@code null} if the pool is shut down or
+     *         is not backed by a thread pool executor.
+     */
     public ThreadPoolExecutor getExecutor() {
-        return this.executor;
+        final ExecutorService service = this.executor;
+        if ( service instanceof ThreadPoolExecutor ) {
+            return (ThreadPoolExecutor) service;
+        }
+        return null;
+    }
+
+    /**
+     * The number of tasks currently executing.
+     * @return The active count or -1 if the pool is shut down.
+     */
+    public int getActiveCount() {
+        final ExecutorService service = this.executor;
+        if ( service == null ) {
+            return -1;
+        }
+        if ( service instanceof ThreadPoolExecutor ) {
+            return ((ThreadPoolExecutor) service).getActiveCount();
+        }
+        return this.active.get();
+    }
+
+    /**
+     * The number of tasks waiting for execution.
+     * @return The queued task count or -1 if the pool is shut down.
+     */
+    public long getQueuedTaskCount() {
+        final ExecutorService service = this.executor;
+        if ( service == null ) {
+            return -1;
+        }
+        if ( service instanceof ThreadPoolExecutor ) {
+            return ((ThreadPoolExecutor) service).getQueue().size();
+        }
+        return this.queued.get();
     }
 
-    private void checkExecutor() {
+    /**
+     * The number of finished tasks.
+     * @return The completed task count or -1 if the pool is shut down.
+     */
+    public long getCompletedTaskCount() {
+        final ExecutorService service = this.executor;
+        if ( service == null ) {
+            return -1;
+        }
+        if ( service instanceof ThreadPoolExecutor ) {
+            return ((ThreadPoolExecutor) service).getCompletedTaskCount();
+        }
+        return this.completed.get();
+    }
+
+    /**
+     * The number of tasks rejected by the pool.
+     * @return The rejected task count or -1 if the pool is shut down.
+     */
+    public long getRejectedTaskCount() {
         if ( this.executor == null ) {
+            return -1;
+        }
+        return this.rejected.get();
+    }
+
+    /**
+     * The number of tasks ever scheduled for execution.
+     * @return The task count or -1 if the pool is shut down.
+     */
+    public long getTaskCount() {
+        final ExecutorService service = this.executor;
+        if ( service == null ) {
+            return -1;
+        }
+        if ( service instanceof ThreadPoolExecutor ) {
+            return ((ThreadPoolExecutor) service).getTaskCount();
+        }
+        return this.completed.get() + this.active.get() + this.queued.get();
+    }
+
+    /**
+     * The core pool size. Pools not backed by a thread pool executor
+     * do not keep idle threads and report 0.
+     * @return The core pool size or -1 if the pool is shut down.
+     */
+    public int getCorePoolSize() {
+        final ExecutorService service = this.executor;
+        if ( service == null ) {
+            return -1;
+        }
+        if ( service instanceof ThreadPoolExecutor ) {
+            return ((ThreadPoolExecutor) service).getCorePoolSize();
+        }
+        return 0;
+    }
+
+    /**
+     * The maximum pool size. For a work stealing pool this is the
+     * parallelism, for a thread per task executor it is unbounded.
+     * @return The maximum pool size or -1 if the pool is shut down.
+     */
+    public int getMaximumPoolSize() {
+        final ExecutorService service = this.executor;
+        if ( service == null ) {
+            return -1;
+        }
+        if ( service instanceof ThreadPoolExecutor ) {
+            return ((ThreadPoolExecutor) service).getMaximumPoolSize();
+        }
+        if ( this.mode == ThreadPoolMode.WORK_STEALING ) {
+            final int max = this.configuration.getMaxPoolSize();
+            return Math.min(max == Integer.MAX_VALUE ? Runtime.getRuntime().availableProcessors() : max, MAX_PARALLELISM);
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * The current number of threads. Pools not backed by a thread pool
+     * executor report the number of executing tasks.
+     * @return The pool size or -1 if the pool is shut down.
+     */
+    public int getPoolSize() {
+        final ExecutorService service = this.executor;
+        if ( service == null ) {
+            return -1;
+        }
+        if ( service instanceof ThreadPoolExecutor ) {
+            return ((ThreadPoolExecutor) service).getPoolSize();
+        }
+        return this.active.get();
+    }
+
+    /**
+     * The largest number of threads. Pools not backed by a thread pool
+     * executor report the largest number of tasks executing at the same time.
+     * @return The largest pool size or -1 if the pool is shut down.
+     */
+    public int getLargestPoolSize() {
+        final ExecutorService service = this.executor;
+        if ( service == null ) {
+            return -1;
+        }
+        if ( service instanceof ThreadPoolExecutor ) {
+            return ((ThreadPoolExecutor) service).getLargestPoolSize();
+        }
+        return this.largest.get();
+    }
+
+    private ExecutorService checkExecutor() {
+        final ExecutorService service = this.executor;
+        if ( service == null ) {
             throw new IllegalStateException("Thread pool " + this.name + " is already shutdown.");
         }
+        return service;
     }
 
     private void logOperation(final String msg, final Object obj) {
-        logger.debug("{} {}, pool={}, active={}, corePoolSize={}, maxPoolSize={}, queueSize={}",
-                new Object[] {msg, obj, name,
-                        executor.getActiveCount(),
-                        executor.getCorePoolSize(),
-                        executor.getMaximumPoolSize(),
-                        executor.getQueue().size()});
+        logger.debug("{} {}, pool={}, mode={}, active={}, corePoolSize={}, maxPoolSize={}, queueSize={}",
+                new Object[] {msg, obj, name, mode,
+                        getActiveCount(),
+                        getCorePoolSize(),
+                        getMaximumPoolSize(),
+                        getQueuedTaskCount()});
     }
 }
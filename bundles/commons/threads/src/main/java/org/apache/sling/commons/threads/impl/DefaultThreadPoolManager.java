@@ -21,11 +21,11 @@ import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolMode;
 import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolPolicy;
 import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPriority;
 import org.apache.sling.commons.threads.ThreadPoolManager;
@@ -116,6 +116,9 @@ public class DefaultThreadPoolManager
         if ( props.get(ModifiableThreadPoolConfig.PROPERTY_DAEMON) != null ) {
             config.setDaemon((Boolean)props.get(ModifiableThreadPoolConfig.PROPERTY_DAEMON));
         }
+        if ( props.get(ModifiableThreadPoolConfig.PROPERTY_MODE) != null ) {
+            config.setMode(ThreadPoolMode.valueOf(props.get(ModifiableThreadPoolConfig.PROPERTY_MODE).toString()));
+        }
         return config;
     }
 
@@ -397,9 +400,9 @@ public class DefaultThreadPoolManager
             return this.config;
         }
 
-        public ThreadPoolExecutor getExecutor() {
+        public DefaultThreadPool getThreadPool() {
             if ( this.pool != null ) {
-                return this.pool.getExecutor();
+                return this.pool.getPool();
             }
             return null;
         }
@@ -70,9 +70,26 @@ public final class ExtendedThreadFactory implements ThreadFactory {
      */
     public Thread newThread( final Runnable command ) {
         final Thread thread = this.factory.newThread(command);
+        this.configure(thread);
+
+        return thread;
+    }
+
+    /**
+     * Set the daemon flag and priority of a thread which has not been
+     * started yet.
+     * @param thread The thread
+     */
+    public void configure( final Thread thread ) {
         thread.setPriority( this.priority );
         thread.setDaemon( this.isDaemon );
+    }
 
-        return thread;
+    /**
+     * Whether threads are created with the default settings
+     * of virtual threads: daemon threads with normal priority.
+     */
+    public boolean isDefaultVirtual() {
+        return this.isDaemon && this.priority == Thread.NORM_PRIORITY;
     }
 }
@@ -18,7 +18,6 @@ package org.apache.sling.commons.threads.impl;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolConfig;
@@ -100,7 +99,7 @@ public final class ThreadPoolFacade implements ThreadPool {
         oldPool.shutdown();
     }
 
-    public ThreadPoolExecutor getExecutor() {
-        return this.delegatee.getExecutor();
+    public DefaultThreadPool getPool() {
+        return this.delegatee;
     }
 }
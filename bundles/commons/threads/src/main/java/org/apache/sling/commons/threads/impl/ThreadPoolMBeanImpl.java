@@ -16,8 +16,6 @@
  */
 package org.apache.sling.commons.threads.impl;
 
-import java.util.concurrent.ThreadPoolExecutor;
-
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
 
@@ -38,63 +36,81 @@ class ThreadPoolMBeanImpl extends StandardMBean implements ThreadPoolMBean {
     }
 
     public int getExecutorActiveCount() {
-        final ThreadPoolExecutor tpe = this.entry.getExecutor();
-        if ( tpe != null ) {
-            return tpe.getActiveCount();
+        final DefaultThreadPool pool = this.entry.getThreadPool();
+        if ( pool != null ) {
+            return pool.getActiveCount();
         } else {
             return -1;
         }
     }
 
     public long getExecutorCompletedTaskCount() {
-        final ThreadPoolExecutor tpe = this.entry.getExecutor();
-        if ( tpe != null ) {
-            return tpe.getCompletedTaskCount();
+        final DefaultThreadPool pool = this.entry.getThreadPool();
+        if ( pool != null ) {
+            return pool.getCompletedTaskCount();
         } else {
             return -1;
         }
     }
 
     public int getExecutorCorePoolSize() {
-        final ThreadPoolExecutor tpe = this.entry.getExecutor();
-        if ( tpe != null ) {
-            return tpe.getCorePoolSize();
+        final DefaultThreadPool pool = this.entry.getThreadPool();
+        if ( pool != null ) {
+            return pool.getCorePoolSize();
         } else {
             return -1;
         }
     }
 
     public int getExecutorLargestPoolSize() {
-        final ThreadPoolExecutor tpe = this.entry.getExecutor();
-        if ( tpe != null ) {
-            return tpe.getLargestPoolSize();
+        final DefaultThreadPool pool = this.entry.getThreadPool();
+        if ( pool != null ) {
+            return pool.getLargestPoolSize();
         } else {
             return -1;
         }
     }
 
     public int getExecutorMaximumPoolSize() {
-        final ThreadPoolExecutor tpe = this.entry.getExecutor();
-        if ( tpe != null ) {
-            return tpe.getMaximumPoolSize();
+        final DefaultThreadPool pool = this.entry.getThreadPool();
+        if ( pool != null ) {
+            return pool.getMaximumPoolSize();
         } else {
             return -1;
         }
     }
 
     public int getExecutorPoolSize() {
-        final ThreadPoolExecutor tpe = this.entry.getExecutor();
-        if ( tpe != null ) {
-            return tpe.getPoolSize();
+        final DefaultThreadPool pool = this.entry.getThreadPool();
+        if ( pool != null ) {
+            return pool.getPoolSize();
         } else {
             return -1;
         }
     }
 
     public long getExecutorTaskCount() {
-        final ThreadPoolExecutor tpe = this.entry.getExecutor();
-        if ( tpe != null ) {
-            return tpe.getTaskCount();
+        final DefaultThreadPool pool = this.entry.getThreadPool();
+        if ( pool != null ) {
+            return pool.getTaskCount();
+        } else {
+            return -1;
+        }
+    }
+
+    public long getExecutorQueuedTaskCount() {
+        final DefaultThreadPool pool = this.entry.getThreadPool();
+        if ( pool != null ) {
+            return pool.getQueuedTaskCount();
+        } else {
+            return -1;
+        }
+    }
+
+    public long getExecutorRejectedTaskCount() {
+        final DefaultThreadPool pool = this.entry.getThreadPool();
+        if ( pool != null ) {
+            return pool.getRejectedTaskCount();
         } else {
             return -1;
         }
@@ -112,6 +128,10 @@ class ThreadPoolMBeanImpl extends StandardMBean implements ThreadPoolMBean {
         return this.entry.getConfig().getMinPoolSize();
     }
 
+    public String getMode() {
+        return DefaultThreadPool.getConfiguredMode(this.entry.getConfig()).name();
+    }
+
     public String getName() {
         return this.entry.getName();
     }
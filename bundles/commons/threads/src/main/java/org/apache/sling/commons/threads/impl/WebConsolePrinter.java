@@ -21,7 +21,6 @@ package org.apache.sling.commons.threads.impl;
 import java.io.PrintWriter;
 import java.util.Dictionary;
 import java.util.Hashtable;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.sling.commons.threads.ThreadPoolConfig;
 import org.osgi.framework.BundleContext;
@@ -104,8 +103,14 @@ public class WebConsolePrinter {
                 pw.println(config.getShutdownWaitTimeMs());
                 pw.print("- daemon : ");
                 pw.println(config.isDaemon());
-                final ThreadPoolExecutor tpe = entry.getExecutor();
+                pw.print("- mode : ");
+                pw.println(DefaultThreadPool.getConfiguredMode(config));
+                final DefaultThreadPool tpe = entry.getThreadPool();
                 if ( tpe != null ) {
+                    if ( tpe.getMode() != DefaultThreadPool.getConfiguredMode(config) ) {
+                        pw.print("- used mode : ");
+                        pw.println(tpe.getMode());
+                    }
                     pw.print("- active count : ");
                     pw.println(tpe.getActiveCount());
                     pw.print("- completed task count : ");
@@ -120,6 +125,10 @@ public class WebConsolePrinter {
                     pw.println(tpe.getPoolSize());
                     pw.print("- task count : ");
                     pw.println(tpe.getTaskCount());
+                    pw.print("- queued task count : ");
+                    pw.println(tpe.getQueuedTaskCount());
+                    pw.print("- rejected task count : ");
+                    pw.println(tpe.getRejectedTaskCount());
                 }
                 pw.println();
             }
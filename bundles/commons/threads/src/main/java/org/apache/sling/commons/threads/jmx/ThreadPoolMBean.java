@@ -79,6 +79,22 @@ public interface ThreadPoolMBean {
      */
     long getExecutorTaskCount();
 
+    /**
+     * Retrieve the number of tasks waiting for execution in the pool's Executor.
+     * 
+     * @return the queued task count or -1 if the thread pool does not have an Executor
+     * @since 1.1
+     */
+    long getExecutorQueuedTaskCount();
+
+    /**
+     * Retrieve the number of tasks rejected by the pool's Executor.
+     * 
+     * @return the rejected task count or -1 if the thread pool does not have an Executor
+     * @since 1.1
+     */
+    long getExecutorRejectedTaskCount();
+
     /**
      * Return the configured keep alive time.
      * 
@@ -100,6 +116,14 @@ public interface ThreadPoolMBean {
      */
     int getMinPoolSize();
 
+    /**
+     * Return the configured mode of the thread pool.
+     * 
+     * @return the mode
+     * @since 1.1
+     */
+    String getMode();
+
     /**
      * Return the name of the thread pool
      * 
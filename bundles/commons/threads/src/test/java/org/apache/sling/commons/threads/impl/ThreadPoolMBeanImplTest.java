@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolMode;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolPolicy;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPriority;
+import org.apache.sling.commons.threads.impl.DefaultThreadPoolManager.Entry;
+import org.junit.After;
+import org.junit.Test;
+
+public class ThreadPoolMBeanImplTest {
+
+    private static final long TIMEOUT = 10000;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private Entry entry;
+
+    @After
+    public void shutdown() {
+        release.countDown();
+        if ( entry != null ) {
+            entry.shutdown();
+        }
+    }
+
+    @Test
+    public void testDefaultMode() throws Exception {
+        final ThreadPoolMBeanImpl mbean = createPool(ThreadPoolMode.DEFAULT, 2);
+        assertEquals("DEFAULT", mbean.getMode());
+        assertEquals(ThreadPoolMode.DEFAULT, entry.getThreadPool().getMode());
+        assertCounts(mbean, 2, 2);
+    }
+
+    @Test
+    public void testWorkStealingMode() throws Exception {
+        final ThreadPoolMBeanImpl mbean = createPool(ThreadPoolMode.WORK_STEALING, 2);
+        assertEquals("WORK_STEALING", mbean.getMode());
+        assertEquals(ThreadPoolMode.WORK_STEALING, entry.getThreadPool().getMode());
+        assertEquals(2, mbean.getExecutorMaximumPoolSize());
+        assertCounts(mbean, 2, 2);
+    }
+
+    @Test
+    public void testThreadPerTaskMode() throws Exception {
+        final ThreadPoolMBeanImpl mbean = createPool(ThreadPoolMode.THREAD_PER_TASK, 2);
+        assertEquals("THREAD_PER_TASK", mbean.getMode());
+        assertEquals(ThreadPoolMode.THREAD_PER_TASK, entry.getThreadPool().getMode());
+        assertEquals(Integer.MAX_VALUE, mbean.getExecutorMaximumPoolSize());
+        // the max pool size does not limit the number of threads
+        assertCounts(mbean, 4, 0);
+    }
+
+    @Test
+    public void testThreadPerTaskWithPlatformThreads() throws Exception {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setMode(ThreadPoolMode.THREAD_PER_TASK);
+        config.setDaemon(false);
+        config.setPriority(ThreadPriority.MIN);
+        entry = new Entry(null, config, "test", null);
+        final DefaultThreadPool pool = entry.incUsage().getPool();
+        // virtual threads can't be used, but the mode is kept
+        assertEquals(ThreadPoolMode.THREAD_PER_TASK, pool.getMode());
+
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        final CountDownLatch started = new CountDownLatch(3);
+        for(int i = 0; i < 3; i++) {
+            pool.execute(new Runnable() {
+
+                public void run() {
+                    threads.add(Thread.currentThread());
+                    started.countDown();
+                    await(release);
+                }
+            });
+        }
+        assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(3, threads.size());
+        for(final Thread t : threads) {
+            assertFalse(t.isDaemon());
+            assertEquals(Thread.MIN_PRIORITY, t.getPriority());
+        }
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setMinPoolSize(1);
+        config.setMaxPoolSize(1);
+        config.setQueueSize(1);
+        config.setBlockPolicy(ThreadPoolPolicy.ABORT);
+        entry = new Entry(null, config, "test", null);
+        final DefaultThreadPool pool = entry.incUsage().getPool();
+        final ThreadPoolMBeanImpl mbean = new ThreadPoolMBeanImpl(entry);
+
+        pool.execute(blocking());
+        pool.execute(blocking());
+        try {
+            pool.execute(blocking());
+            fail("Task should be rejected");
+        } catch (final RejectedExecutionException expected) {
+            // expected
+        }
+        assertEquals(1, mbean.getExecutorRejectedTaskCount());
+
+        // the discard policy drops the task but counts it as well
+        final ModifiableThreadPoolConfig discard = new ModifiableThreadPoolConfig(config);
+        discard.setBlockPolicy(ThreadPoolPolicy.DISCARD);
+        entry.update(discard, "test", null);
+        final DefaultThreadPool discarding = entry.getThreadPool();
+        discarding.execute(blocking());
+        discarding.execute(blocking());
+        discarding.execute(blocking());
+        assertEquals(1, mbean.getExecutorRejectedTaskCount());
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        for(final ThreadPoolMode mode : ThreadPoolMode.values()) {
+            final ThreadPoolMBeanImpl mbean = createPool(mode, 2);
+            entry.shutdown();
+            assertEquals(mode.name(), mbean.getMode());
+            assertEquals(-1, mbean.getExecutorActiveCount());
+            assertEquals(-1, mbean.getExecutorQueuedTaskCount());
+            assertEquals(-1, mbean.getExecutorCompletedTaskCount());
+            assertEquals(-1, mbean.getExecutorRejectedTaskCount());
+        }
+    }
+
+    @Test
+    public void testModeOfOtherConfigurations() throws Exception {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setMode(ThreadPoolMode.THREAD_PER_TASK);
+        final ModifiableThreadPoolConfig copy = new ModifiableThreadPoolConfig(config);
+        assertEquals(ThreadPoolMode.THREAD_PER_TASK, copy.getMode());
+        assertEquals(config, copy);
+        copy.setMode(ThreadPoolMode.DEFAULT);
+        assertFalse(config.equals(copy));
+
+        // configurations not created by this bundle use the default mode
+        final ThreadPoolConfig custom = new CustomConfig();
+        assertEquals(ThreadPoolMode.DEFAULT, new ModifiableThreadPoolConfig(custom).getMode());
+        entry = new Entry(null, custom, "test", null);
+        entry.incUsage();
+        assertEquals("DEFAULT", new ThreadPoolMBeanImpl(entry).getMode());
+        assertEquals(ThreadPoolMode.DEFAULT, entry.getThreadPool().getMode());
+    }
+
+    /**
+     * Create a pool with the max pool size, start four blocking tasks
+     * and return the mbean for the pool.
+     */
+    private ThreadPoolMBeanImpl createPool(final ThreadPoolMode mode, final int size) throws Exception {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setMinPoolSize(size);
+        config.setMaxPoolSize(size);
+        config.setQueueSize(-1);
+        config.setDaemon(true);
+        config.setMode(mode);
+        entry = new Entry(null, config, "test-" + mode, null);
+        entry.incUsage();
+        return new ThreadPoolMBeanImpl(entry);
+    }
+
+    /**
+     * Run four blocking tasks and check the statistics while they are
+     * blocked and after they are released.
+     */
+    private void assertCounts(final ThreadPoolMBeanImpl mbean, final int active, final long queued) throws Exception {
+        final DefaultThreadPool pool = entry.getThreadPool();
+        assertEquals(0, mbean.getExecutorActiveCount());
+        assertEquals(0, mbean.getExecutorQueuedTaskCount());
+        assertEquals(0, mbean.getExecutorCompletedTaskCount());
+
+        final CountDownLatch started = new CountDownLatch(active);
+        for(int i = 0; i < 4; i++) {
+            if ( i % 2 == 0 ) {
+                pool.execute(blocking(started));
+            } else {
+                pool.submit(blocking(started));
+            }
+        }
+        assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        waitFor(mbean, active, queued, 0);
+        assertEquals(4, mbean.getExecutorTaskCount());
+
+        release.countDown();
+        waitFor(mbean, 0, 0, 4);
+        assertEquals(4, mbean.getExecutorTaskCount());
+        assertEquals(0, mbean.getExecutorRejectedTaskCount());
+    }
+
+    private static void waitFor(final ThreadPoolMBeanImpl mbean, final int active, final long queued, final long completed)
+    throws InterruptedException {
+        final long end = System.currentTimeMillis() + TIMEOUT;
+        while ( mbean.getExecutorActiveCount() != active
+                || mbean.getExecutorQueuedTaskCount() != queued
+                || mbean.getExecutorCompletedTaskCount() != completed ) {
+            if ( System.currentTimeMillis() > end ) {
+                fail("Expected active=" + active + ", queued=" + queued + ", completed=" + completed
+                        + " but was active=" + mbean.getExecutorActiveCount()
+                        + ", queued=" + mbean.getExecutorQueuedTaskCount()
+                        + ", completed=" + mbean.getExecutorCompletedTaskCount());
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private Runnable blocking() {
+        return blocking(new CountDownLatch(0));
+    }
+
+    private Runnable blocking(final CountDownLatch started) {
+        return new Runnable() {
+
+            public void run() {
+                started.countDown();
+                await(release);
+            }
+        };
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class CustomConfig implements ThreadPoolConfig {
+
+        public int getMinPoolSize() {
+            return 1;
+        }
+
+        public int getMaxPoolSize() {
+            return 1;
+        }
+
+        public int getQueueSize() {
+            return -1;
+        }
+
+        public long getKeepAliveTime() {
+            return 1000;
+        }
+
+        public ThreadPoolPolicy getBlockPolicy() {
+            return ThreadPoolPolicy.RUN;
+        }
+
+        public boolean isShutdownGraceful() {
+            return false;
+        }
+
+        public int getShutdownWaitTimeMs() {
+            return -1;
+        }
+
+        public ThreadFactory getFactory() {
+            return null;
+        }
+
+        public ThreadPriority getPriority() {
+            return ThreadPriority.NORM;
+        }
+
+        public boolean isDaemon() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.engine.impl;
+
+import java.util.Map;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.apache.sling.engine.impl.filter.FilterHandle;
+import org.apache.sling.engine.impl.filter.ServletFilterManager;
+import org.apache.sling.engine.impl.filter.ServletFilterManager.FilterChainType;
+import org.apache.sling.engine.impl.stats.LatencyHistogram;
+import org.apache.sling.engine.impl.stats.RequestLatencyStatistics;
+import org.apache.sling.engine.jmx.RequestLatencyMBean;
+
+/**
+ * This is the implementation of the management interface for the request
+ * latency statistics.
+ */
+class RequestLatencyMBeanImpl extends StandardMBean implements RequestLatencyMBean {
+
+    private static final String[] ITEM_NAMES = { "key", "count", "minMsec",
+        "maxMsec", "meanMsec", "p50Msec", "p90Msec", "p99Msec" };
+
+    private static final OpenType<?>[] ITEM_TYPES = { SimpleType.STRING,
+        SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.DOUBLE,
+        SimpleType.LONG, SimpleType.LONG, SimpleType.LONG };
+
+    private static final String[] FILTER_ITEM_NAMES = { "key", "count", "minUsec",
+        "maxUsec", "meanUsec", "p50Usec", "p90Usec", "p99Usec" };
+
+    private static final TabularType LATENCY_TABLE;
+
+    private static final TabularType FILTER_LATENCY_TABLE;
+
+    static {
+        try {
+            final CompositeType rowType = new CompositeType("Latency",
+                "Latency of requests", ITEM_NAMES, ITEM_NAMES,
+                ITEM_TYPES);
+            LATENCY_TABLE = new TabularType("Latencies",
+                "Latencies of requests", rowType,
+                new String[] { "key" });
+            final CompositeType filterRowType = new CompositeType("FilterLatency",
+                "Latency of filters", FILTER_ITEM_NAMES, FILTER_ITEM_NAMES,
+                ITEM_TYPES);
+            FILTER_LATENCY_TABLE = new TabularType("FilterLatencies",
+                "Latencies of filters", filterRowType,
+                new String[] { "key" });
+        } catch (final OpenDataException ode) {
+            throw new IllegalStateException(ode);
+        }
+    }
+
+    private final RequestLatencyStatistics statistics;
+
+    private final ServletFilterManager filterManager;
+
+    RequestLatencyMBeanImpl(final RequestLatencyStatistics statistics,
+            final ServletFilterManager filterManager)
+            throws NotCompliantMBeanException {
+        super(RequestLatencyMBean.class);
+        this.statistics = statistics;
+        this.filterManager = filterManager;
+    }
+
+    public TabularData getRequestLatencies() {
+        return toTable(this.statistics.getHistograms());
+    }
+
+    public TabularData getLastIntervalRequestLatencies() {
+        return toTable(this.statistics.getLastIntervalHistograms());
+    }
+
+    public TabularData getFilterLatencies() {
+        return toFilterTable(false);
+    }
+
+    public TabularData getLastIntervalFilterLatencies() {
+        return toFilterTable(true);
+    }
+
+    public long getIntervalStartTime() {
+        return this.statistics.getIntervalStart();
+    }
+
+    public void resetStatistics() {
+        this.statistics.reset();
+        for (final FilterChainType type : FilterChainType.values()) {
+            final FilterHandle[] filters = this.filterManager.getFilters(type);
+            if (filters != null) {
+                for (final FilterHandle filter : filters) {
+                    filter.resetStatistics();
+                }
+            }
+        }
+    }
+
+    private TabularData toFilterTable(final boolean lastInterval) {
+        final TabularDataSupport table = new TabularDataSupport(FILTER_LATENCY_TABLE);
+        for (final FilterChainType type : FilterChainType.values()) {
+            final FilterHandle[] filters = this.filterManager.getFilters(type);
+            if (filters != null) {
+                for (final FilterHandle filter : filters) {
+                    final LatencyHistogram histogram = lastInterval
+                            ? filter.getLastIntervalTimeHistogram()
+                            : filter.getTimeHistogram();
+                    if (histogram != null) {
+                        final String key = type + " " + filter.getOrder() + " "
+                            + filter.getFilter().getClass().getName() + " (id: "
+                            + filter.getFilterId() + ")";
+                        table.put(toRow(FILTER_LATENCY_TABLE, FILTER_ITEM_NAMES, key, histogram));
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    private static TabularData toTable(final Map<String, LatencyHistogram> histograms) {
+        final TabularDataSupport table = new TabularDataSupport(LATENCY_TABLE);
+        for (final Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            table.put(toRow(LATENCY_TABLE, ITEM_NAMES, entry.getKey(), entry.getValue()));
+        }
+        return table;
+    }
+
+    private static CompositeDataSupport toRow(final TabularType tableType, final String[] itemNames,
+            final String key, final LatencyHistogram histogram) {
+        final long count = histogram.getCount();
+        try {
+            return new CompositeDataSupport(tableType.getRowType(),
+                itemNames, new Object[] { key, count,
+                    count > 0 ? histogram.getMin() : 0, histogram.getMax(),
+                    histogram.getMean(), histogram.getPercentile(50),
+                    histogram.getPercentile(90), histogram.getPercentile(99) });
+        } catch (final OpenDataException ode) {
+            throw new IllegalStateException(ode);
+        }
+    }
+}
@@ -20,182 +20,99 @@ import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
 
 import org.apache.sling.engine.impl.request.RequestData;
+import org.apache.sling.engine.impl.stats.StripedStatistics;
 import org.apache.sling.engine.jmx.RequestProcessorMBean;
 
 /**
  * This is the implementation of the management interface for the
  * RequestProcessor.
+ * <p>
+ * The statistics are collected without locking as this is called for
+ * every request.
  */
 class RequestProcessorMBeanImpl extends StandardMBean implements RequestProcessorMBean {
 
-    // number of requests
-    private volatile long n;
+    private final StripedStatistics duration = new StripedStatistics();
 
-    // shortest request
-    private volatile long durationMsecMin;
+    private final StripedStatistics servletCallCount = new StripedStatistics();
 
-    // longest request
-    private volatile long durationMsecMax;
-
-    // sum of request durations
-    private volatile double durationMsecSumX;
-
-    // sum of squared request durations
-    private volatile double durationMsecSumX2;
-
-    private volatile int servletCallCountMin;
-
-    private volatile int servletCallCountMax;
-
-    private volatile double servletCallCountSumX;
-
-    private volatile double servletCallCountSumX2;
-
-    private volatile int peakRecursionDepthMin;
-
-    private volatile int peakRecursionDepthMax;
-
-    private volatile double peakRecursionDepthSumX;
-
-    private volatile double peakRecursionDepthSumX2;
+    private final StripedStatistics peakRecursionDepth = new StripedStatistics();
 
     RequestProcessorMBeanImpl() throws NotCompliantMBeanException {
         super(RequestProcessorMBean.class);
         resetStatistics();
     }
 
-    synchronized void addRequestData(final RequestData data) {
-        this.n++;
-        
-        final long duration = data.getElapsedTimeMsec();
-        final int servletCallCount = data.getServletCallCount();
-        final int peakRecursionDepth = data.getPeakRecusionDepth();
-
-        if (duration < this.durationMsecMin) {
-            this.durationMsecMin = duration;
-        }
-        if (duration > this.durationMsecMax) {
-            this.durationMsecMax = duration;
-        }
-
-        this.durationMsecSumX += duration;
-        this.durationMsecSumX2 += (duration * duration);
-        
-        if (servletCallCount < this.servletCallCountMin) {
-            this.servletCallCountMin = servletCallCount;
-        }
-        if (servletCallCount > this.servletCallCountMax) {
-            this.servletCallCountMax = servletCallCount;
-        }
-        this.servletCallCountSumX += servletCallCount;
-        this.servletCallCountSumX2 += (servletCallCount * servletCallCount);
-        
-        if (peakRecursionDepth < this.peakRecursionDepthMin) {
-            this.peakRecursionDepthMin = peakRecursionDepth;
-        }
-        if (peakRecursionDepth > this.peakRecursionDepthMax) {
-            this.peakRecursionDepthMax = peakRecursionDepth;
-        }
-        this.peakRecursionDepthSumX += peakRecursionDepth;
-        this.peakRecursionDepthSumX2 += (peakRecursionDepth * peakRecursionDepth);
+    void addRequestData(final RequestData data) {
+        this.duration.addValue(data.getElapsedTimeMsec());
+        this.servletCallCount.addValue(data.getServletCallCount());
+        this.peakRecursionDepth.addValue(data.getPeakRecusionDepth());
     }
 
     public long getRequestsCount() {
-        return this.n;
+        return this.duration.getCount();
     }
 
     public long getMinRequestDurationMsec() {
-        return this.durationMsecMin;
+        return this.duration.getMin();
     }
 
     public long getMaxRequestDurationMsec() {
-        return this.durationMsecMax;
+        return this.duration.getMax();
     }
 
-    public synchronized double getStandardDeviationDurationMsec() {
-        if (this.n > 1) {
-            // algorithm taken from
-            // http://de.wikipedia.org/wiki/Standardabweichung section
-            // "Berechnung fuer auflaufende Messwerte"
-            return Math.sqrt((this.durationMsecSumX2 - this.durationMsecSumX * this.durationMsecSumX / this.n) / (this.n - 1));
-        }
-
-        // single data point has no deviation
-        return 0;
+    public double getStandardDeviationDurationMsec() {
+        return this.duration.getStandardDeviation();
     }
 
-    public synchronized double getMeanRequestDurationMsec() {
-        if (this.n > 0) {
-            return this.durationMsecSumX / this.n;
-        } else {
-            return 0;
-        }
+    public double getMeanRequestDurationMsec() {
+        return this.duration.getMean();
     }
 
-    public synchronized void resetStatistics() {
-        this.durationMsecMin = Long.MAX_VALUE;
-        this.durationMsecMax = 0;
-        this.servletCallCountMin = Integer.MAX_VALUE;
-        this.servletCallCountMax = 0;
-        this.peakRecursionDepthMin = Integer.MAX_VALUE;
-        this.peakRecursionDepthMax = 0;
-        this.durationMsecSumX=0d;
-        this.durationMsecSumX2=0d;
-        this.peakRecursionDepthSumX=0d;
-        this.peakRecursionDepthSumX2=0d;
-        this.servletCallCountSumX=0d;
-        this.servletCallCountSumX2=0d;
-        this.n = 0;
+    public void resetStatistics() {
+        this.duration.reset();
+        this.servletCallCount.reset();
+        this.peakRecursionDepth.reset();
     }
 
     public int getMaxPeakRecursionDepth() {
-        return peakRecursionDepthMax;
+        return (int) this.peakRecursionDepth.getMax();
     }
 
     public int getMinPeakRecursionDepth() {
-        return peakRecursionDepthMin;
+        return toIntMin(this.peakRecursionDepth);
     }
 
     public double getMeanPeakRecursionDepth() {
-        if (this.n > 0) {
-            return this.peakRecursionDepthSumX / this.n;
-        } else {
-            return 0;
-        }
+        return this.peakRecursionDepth.getMean();
     }
 
     public double getStandardDeviationPeakRecursionDepth() {
-        if (this.n > 1) {
-            return Math.sqrt((this.peakRecursionDepthSumX2 - this.peakRecursionDepthSumX * this.peakRecursionDepthSumX / this.n) / (this.n - 1));
-        }
-
-        // single data point has no deviation
-        return 0;
+        return this.peakRecursionDepth.getStandardDeviation();
     }
 
     public int getMaxServletCallCount() {
-        return this.servletCallCountMax;
+        return (int) this.servletCallCount.getMax();
     }
 
     public int getMinServletCallCount() {
-        return this.servletCallCountMin;
+        return toIntMin(this.servletCallCount);
     }
 
     public double getMeanServletCallCount() {
-        if (this.n > 0) {
-            return this.servletCallCountSumX / this.n;
-        } else {
-            return 0;
-        }
+        return this.servletCallCount.getMean();
     }
 
     public double getStandardDeviationServletCallCount() {
-        if (this.n > 1) {
-            return Math.sqrt((this.servletCallCountSumX2 - this.servletCallCountSumX * this.servletCallCountSumX / this.n) / (this.n - 1));
-        }
-
-        // single data point has no deviation
-        return 0;
+        return this.servletCallCount.getStandardDeviation();
     }
 
+    /**
+     * The minimum of int values, which is <code>Integer.MAX_VALUE</code>
+     * if no value has been added.
+     */
+    private static int toIntMin(final StripedStatistics statistics) {
+        final long min = statistics.getMin();
+        return (min > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) min;
+    }
 }
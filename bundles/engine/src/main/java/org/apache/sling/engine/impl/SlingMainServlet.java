@@ -58,6 +58,8 @@ import org.apache.sling.engine.impl.helper.SlingServletContext;
 import org.apache.sling.engine.impl.helper.SlingServletContext3;
 import org.apache.sling.engine.impl.request.RequestData;
 import org.apache.sling.engine.impl.request.RequestHistoryConsolePlugin;
+import org.apache.sling.engine.impl.stats.RequestLatencyStatistics;
+import org.apache.sling.engine.jmx.RequestLatencyMBean;
 import org.apache.sling.engine.jmx.RequestProcessorMBean;
 import org.apache.sling.engine.servlets.ErrorHandler;
 import org.osgi.framework.BundleContext;
@@ -106,6 +108,16 @@ public class SlingMainServlet extends GenericServlet {
     @Property(unbounded=PropertyUnbounded.ARRAY)
     private static final String PROP_TRACK_PATTERNS_REQUESTS = "sling.store.pattern.requests";
 
+    private static final int DEFAULT_LATENCY_MAX_KEYS = 500;
+
+    @Property(intValue = DEFAULT_LATENCY_MAX_KEYS)
+    private static final String PROP_LATENCY_MAX_KEYS = "sling.latency.max.keys";
+
+    private static final int DEFAULT_LATENCY_INTERVAL = 300;
+
+    @Property(intValue = DEFAULT_LATENCY_INTERVAL)
+    private static final String PROP_LATENCY_INTERVAL = "sling.latency.interval";
+
     private static final String PROP_DEFAULT_PARAMETER_ENCODING = "sling.default.parameter.encoding";
 
     @Property
@@ -180,6 +192,8 @@ public class SlingMainServlet extends GenericServlet {
 
     private ServiceRegistration requestProcessorMBeanRegistration;
 
+    private ServiceRegistration requestLatencyMBeanRegistration;
+
     private String configuredServerInfo;
     
     // ---------- Servlet API -------------------------------------------------
@@ -419,17 +433,27 @@ public class SlingMainServlet extends GenericServlet {
         // register render filters already registered after registration with
         // the HttpService as filter initialization may cause the servlet
         // context to be required (see SLING-42)
+        final int latencyInterval = PropertiesUtil.toInteger(componentConfig.get(PROP_LATENCY_INTERVAL),
+            DEFAULT_LATENCY_INTERVAL);
         filterManager = new ServletFilterManager(bundleContext,
             slingServletContext,
-            PropertiesUtil.toBoolean(componentConfig.get(PROP_FILTER_COMPAT_MODE), DEFAULT_FILTER_COMPAT_MODE));
+            PropertiesUtil.toBoolean(componentConfig.get(PROP_FILTER_COMPAT_MODE), DEFAULT_FILTER_COMPAT_MODE),
+            latencyInterval);
         filterManager.open();
         requestProcessor.setFilterManager(filterManager);
 
         // initialize requestListenerManager
         requestListenerManager = new RequestListenerManager( bundleContext, slingServletContext );
 
+        // setup the request latency statistics
+        final RequestLatencyStatistics latencyStatistics = new RequestLatencyStatistics(
+            PropertiesUtil.toInteger(componentConfig.get(PROP_LATENCY_MAX_KEYS), DEFAULT_LATENCY_MAX_KEYS),
+            latencyInterval);
+        requestProcessor.setLatencyStatistics(latencyStatistics);
+
         // Setup configuration printer
-        this.printerRegistration = WebConsoleConfigPrinter.register(bundleContext, filterManager);
+        this.printerRegistration = WebConsoleConfigPrinter.register(bundleContext, filterManager,
+            latencyStatistics);
 
         // setup the request info recorder
         try {
@@ -460,6 +484,16 @@ public class SlingMainServlet extends GenericServlet {
             log.debug("Unable to register mbean");
         }
 
+        try {
+            Dictionary<String, String> mbeanProps = new Hashtable<String, String>();
+            mbeanProps.put("jmx.objectname", "org.apache.sling:type=engine,service=RequestLatency");
+
+            RequestLatencyMBeanImpl mbean = new RequestLatencyMBeanImpl(latencyStatistics, filterManager);
+            requestLatencyMBeanRegistration = bundleContext.registerService(RequestLatencyMBean.class.getName(), mbean, mbeanProps);
+        } catch (Throwable t) {
+            log.debug("Unable to register request latency mbean");
+        }
+
         // provide the SlingRequestProcessor service
         Hashtable<String, String> srpProps = new Hashtable<String, String>();
         srpProps.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
@@ -486,6 +520,11 @@ public class SlingMainServlet extends GenericServlet {
             requestProcessorMBeanRegistration = null;
         }
 
+        if (requestLatencyMBeanRegistration != null) {
+            requestLatencyMBeanRegistration.unregister();
+            requestLatencyMBeanRegistration = null;
+        }
+
         // unregister request recorder plugin
         try {
             RequestHistoryConsolePlugin.destroyPlugin();
@@ -57,6 +57,7 @@ import org.apache.sling.engine.impl.parameters.ParameterSupport;
 import org.apache.sling.engine.impl.request.ContentData;
 import org.apache.sling.engine.impl.request.RequestData;
 import org.apache.sling.engine.impl.request.RequestHistoryConsolePlugin;
+import org.apache.sling.engine.impl.stats.RequestLatencyStatistics;
 import org.apache.sling.engine.servlets.ErrorHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,6 +77,8 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
 
     private RequestProcessorMBeanImpl mbean;
 
+    private RequestLatencyStatistics latencyStatistics;
+
     // ---------- helper setters
 
     void setServerInfo(final String serverInfo) {
@@ -110,6 +113,10 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         this.mbean = mbean;
     }
 
+    void setLatencyStatistics(final RequestLatencyStatistics latencyStatistics) {
+        this.latencyStatistics = latencyStatistics;
+    }
+
     /**
      * This method is directly called by the Sling main servlet.
      */
@@ -140,7 +147,7 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             Resource resource = requestData.initResource(resourceResolver);
             requestData.initServlet(resource, sr);
 
-            FilterHandle[] filters = filterManager.getFilters(FilterChainType.REQUEST);
+            FilterHandle[] filters = filterManager.getFilters(FilterChainType.REQUEST, request);
             if (filters != null) {
                 FilterChain processor = new RequestSlingFilterChain(this,
                     filters);
@@ -229,6 +236,9 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             if (mbean != null) {
                 mbean.addRequestData(requestData);
             }
+            if (latencyStatistics != null) {
+                latencyStatistics.addRequestData(requestData);
+            }
         }
     }
 
@@ -273,7 +283,7 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             final FilterChainType filterChainType) throws IOException,
             ServletException {
 
-        FilterHandle filters[] = filterManager.getFilters(filterChainType);
+        FilterHandle filters[] = filterManager.getFilters(filterChainType, request);
         if (filters != null) {
 
             FilterChain processor = new SlingComponentFilterChain(filters);
@@ -335,7 +345,7 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         // the response output stream if reset does not reset this
         response = new ErrorResponseWrapper(response);
 
-        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR);
+        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR, request);
         if (filters != null && filters.length > 0) {
             FilterChain processor = new AbstractSlingFilterChain(filters) {
 
@@ -367,7 +377,7 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
         // the response output stream if reset does not reset this
         response = new ErrorResponseWrapper(response);
 
-        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR);
+        FilterHandle[] filters = filterManager.getFilters(FilterChainType.ERROR, request);
         if (filters != null && filters.length > 0) {
             FilterChain processor = new AbstractSlingFilterChain(filters) {
 
@@ -19,12 +19,16 @@
 package org.apache.sling.engine.impl;
 
 import java.io.PrintWriter;
+import java.util.Date;
 import java.util.Dictionary;
 import java.util.Hashtable;
+import java.util.Map;
 
 import org.apache.sling.engine.impl.filter.FilterHandle;
 import org.apache.sling.engine.impl.filter.ServletFilterManager;
 import org.apache.sling.engine.impl.filter.ServletFilterManager.FilterChainType;
+import org.apache.sling.engine.impl.stats.LatencyHistogram;
+import org.apache.sling.engine.impl.stats.RequestLatencyStatistics;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
@@ -32,6 +36,7 @@ import org.osgi.framework.ServiceRegistration;
 /**
  * This is a configuration printer for the web console which
  * prints out the currently configured filter chains.
+ * A second printer prints out the request latency statistics.
  *
  */
 public class WebConsoleConfigPrinter {
@@ -44,10 +49,12 @@ public class WebConsoleConfigPrinter {
 
     private static final class Registration {
         public ServiceRegistration filterPlugin;
+        public ServiceRegistration latencyPlugin;
     }
 
     public static Object register(final BundleContext bundleContext,
-            final ServletFilterManager filterManager) {
+            final ServletFilterManager filterManager,
+            final RequestLatencyStatistics latencyStatistics) {
         final Registration reg = new Registration();
 
         // first we register the plugin for the filters
@@ -63,6 +70,20 @@ public class WebConsoleConfigPrinter {
         reg.filterPlugin = bundleContext.registerService(WebConsoleConfigPrinter.class.getName(),
                 filterPrinter,
                 serviceProps);
+
+        // then the plugin for the request latencies
+        final LatencyPrinter latencyPrinter = new LatencyPrinter(latencyStatistics);
+        final Dictionary<String, String> latencyProps = new Hashtable<String, String>();
+        latencyProps.put(Constants.SERVICE_DESCRIPTION,
+            "Apache Sling Request Latency Configuration Printer");
+        latencyProps.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        latencyProps.put("felix.webconsole.label", "slinglatency");
+        latencyProps.put("felix.webconsole.title", "Sling Request Latency");
+        latencyProps.put("felix.webconsole.configprinter.modes", "always");
+
+        reg.latencyPlugin = bundleContext.registerService(LatencyPrinter.class.getName(),
+                latencyPrinter,
+                latencyProps);
         return reg;
     }
 
@@ -73,6 +94,10 @@ public class WebConsoleConfigPrinter {
                 registration.filterPlugin.unregister();
                 registration.filterPlugin = null;
             }
+            if ( registration.latencyPlugin != null) {
+                registration.latencyPlugin.unregister();
+                registration.latencyPlugin = null;
+            }
         }
     }
 
@@ -84,9 +109,11 @@ public class WebConsoleConfigPrinter {
             pw.println("---");
         } else {
             for(final FilterHandle entry : entries) {
-                pw.printf("%d : %s (id: %d, property: %s); called: %d; time: %dms; time/call: %dµs%n",
+                final LatencyHistogram histogram = entry.getTimeHistogram();
+                pw.printf("%d : %s (id: %d, property: %s); called: %d; time: %dms; time/call: %dµs; p50: %dµs; p90: %dµs; p99: %dµs%n",
                     entry.getOrder(), entry.getFilter().getClass(), entry.getFilterId(), entry.getOrderSource(),
-                    entry.getCalls(), entry.getTime(), entry.getTimePerCall());
+                    entry.getCalls(), entry.getTime() / 1000, entry.getTimePerCall(),
+                    histogram.getPercentile(50), histogram.getPercentile(90), histogram.getPercentile(99));
             }
         }
     }
@@ -104,4 +131,44 @@ public class WebConsoleConfigPrinter {
                 filterManager.getFilterChain(type).getFilters());
         }
     }
+
+    /**
+     * Configuration printer for the request latency statistics.
+     */
+    public static final class LatencyPrinter {
+
+        private final RequestLatencyStatistics statistics;
+
+        LatencyPrinter(final RequestLatencyStatistics statistics) {
+            this.statistics = statistics;
+        }
+
+        private void printHistograms(final PrintWriter pw, final Map<String, LatencyHistogram> histograms) {
+            if ( histograms.isEmpty() ) {
+                pw.println("---");
+            } else {
+                for(final Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+                    final LatencyHistogram histogram = entry.getValue();
+                    pw.printf("%s; count: %d; min: %dms; max: %dms; mean: %.1fms; p50: %dms; p90: %dms; p99: %dms%n",
+                        entry.getKey(), histogram.getCount(), histogram.getMin(), histogram.getMax(),
+                        histogram.getMean(), histogram.getPercentile(50), histogram.getPercentile(90),
+                        histogram.getPercentile(99));
+                }
+            }
+        }
+
+        /**
+         * Print out the request latencies of the current and the last interval.
+         * @see org.apache.felix.webconsole.ConfigurationPrinter#printConfiguration(java.io.PrintWriter)
+         */
+        public void printConfiguration(final PrintWriter pw) {
+            pw.println("Apache Sling Request Latency (servlet, resource type, method, extension)");
+            pw.println();
+            pw.println("Current Interval (since " + new Date(statistics.getIntervalStart()) + "):");
+            printHistograms(pw, statistics.getHistograms());
+            pw.println();
+            pw.println("Last Interval:");
+            printHistograms(pw, statistics.getLastIntervalHistograms());
+        }
+    }
 }
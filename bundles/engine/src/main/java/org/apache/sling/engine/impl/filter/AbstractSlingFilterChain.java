@@ -36,6 +36,7 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
 
     private int current;
 
+    /** The time in microseconds spent in each filter including the rest of the chain */
     private long[] times;
 
     protected AbstractSlingFilterChain(FilterHandle[] filters) {
@@ -48,7 +49,7 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
             throws ServletException, IOException {
 
         final int filterIdx = ++this.current;
-        final long start = System.currentTimeMillis();
+        final long start = System.nanoTime();
 
         // the previous filter may have wrapped non-Sling request and response
         // wrappers (e.g. WebCastellum does this), so we have to make
@@ -60,21 +61,17 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
 
             if (this.current < this.filters.length) {
 
-                // continue filtering with the next filter
+                // continue filtering with the next filter, the filters
+                // applying to the request have been selected in advance
                 FilterHandle filter = this.filters[this.current];
-                
-                if (filter.select(slingRequest)) {
-                    trackFilter(slingRequest, filter);
-                    filter.getFilter().doFilter(slingRequest, slingResponse, this);
-                } else if (this.current == this.filters.length-1) {
-                    this.render(slingRequest, slingResponse);
-                }
+                trackFilter(slingRequest, filter);
+                filter.getFilter().doFilter(slingRequest, slingResponse, this);
             } else {
                 this.render(slingRequest, slingResponse);
             }
 
         } finally {
-            times[filterIdx] = System.currentTimeMillis() - start;
+            times[filterIdx] = (System.nanoTime() - start) / 1000;
             if (filterIdx == 0) {
                 consolidateFilterTimings(slingRequest);
             }
@@ -105,7 +102,7 @@ public abstract class AbstractSlingFilterChain implements FilterChain {
             for (int i = filters.length - 1; i > 0; i--) {
                 filters[i].trackTime(times[i] - times[i + 1]);
                 if (tracker != null) {
-                    tracker.log("Filter timing: filter={0}, inner={1}, total={2}, outer={3}",
+                    tracker.log("Filter timing: filter={0}, inner={1}µs, total={2}µs, outer={3}µs",
                         filters[i].getFilter().getClass().getName(), times[i + 1], times[i], (times[i] - times[i + 1]));
                 }
             }
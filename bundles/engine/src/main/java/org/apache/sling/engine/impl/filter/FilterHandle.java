@@ -23,7 +23,8 @@ import java.util.regex.Pattern;
 
 import javax.servlet.Filter;
 
-import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.engine.impl.stats.IntervalLatencyHistogram;
+import org.apache.sling.engine.impl.stats.LatencyHistogram;
 
 public class FilterHandle implements Comparable<FilterHandle> {
 
@@ -31,6 +32,10 @@ public class FilterHandle implements Comparable<FilterHandle> {
     
     private final Pattern regex;
 
+    private final String literalPrefix;
+
+    private final boolean prefixOnly;
+
     private final Long filterId;
 
     private final int order;
@@ -41,19 +46,37 @@ public class FilterHandle implements Comparable<FilterHandle> {
 
     private AtomicLong time;
 
+    private final IntervalLatencyHistogram timeHistogram;
+
     FilterHandle(Filter filter, String pattern, Long filterId, int order, final String orderSource) {
+        this(filter, pattern, filterId, order, orderSource, 0);
+    }
+
+    /**
+     * @param latencyIntervalSec The length in seconds of the interval for
+     *            which the histogram of the filter times is collected
+     */
+    FilterHandle(Filter filter, String pattern, Long filterId, int order, final String orderSource,
+            final int latencyIntervalSec) {
         this.filter = filter;
         if (pattern != null && pattern.length() > 0) {
             this.regex = Pattern.compile(pattern);
+            this.literalPrefix = getLiteralPrefix(pattern);
+            this.prefixOnly = this.literalPrefix.length() > 0
+                && pattern.endsWith(".*")
+                && pattern.length() - 2 == this.literalPrefix.length() + (pattern.startsWith("^") ? 1 : 0);
         } else {
             this.regex = null;
+            this.literalPrefix = "";
+            this.prefixOnly = false;
         }
-        
+
         this.filterId = filterId;
         this.order = order;
         this.orderSource = orderSource;
         this.calls = new AtomicLong();
         this.time = new AtomicLong();
+        this.timeHistogram = new IntervalLatencyHistogram(latencyIntervalSec);
     }
 
     public Filter getFilter() {
@@ -72,30 +95,74 @@ public class FilterHandle implements Comparable<FilterHandle> {
         return orderSource;
     }
     
-    boolean select(SlingHttpServletRequest slingHttpServletRequest) {
-        boolean select = true;        
-        if (regex != null) {
-            String uri = slingHttpServletRequest.getPathInfo();
-            // assume root if uri is null
-            if (uri == null)
-            {
-                uri = "/";
-            }
-            select = this.regex.matcher(uri).matches();
-        }        
-        return select;
+    /**
+     * Returns <code>true</code> if the filter only applies to paths matching
+     * a pattern.
+     */
+    boolean hasPattern() {
+        return regex != null;
+    }
+
+    /**
+     * Returns the literal prefix of the pattern, which is a prefix of all
+     * paths matching the pattern, or an empty string if there is none.
+     */
+    String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
+    /**
+     * Returns <code>true</code> if the filter applies to the path.
+     */
+    boolean matches(final String path) {
+        if (regex == null) {
+            return true;
+        } else if (prefixOnly) {
+            return path.startsWith(literalPrefix);
+        }
+        return regex.matcher(path).matches();
     }
 
     public long getCalls() {
         return calls.get();
     }
 
+    /**
+     * Returns the total time in microseconds spent in the filter.
+     */
     public long getTime() {
         return time.get();
     }
 
+    /**
+     * Returns the time in microseconds spent in the filter per call or -1
+     * if the filter has not been called.
+     */
     public long getTimePerCall() {
-        return (getCalls() > 0) ? (1000L * getTime() / getCalls()) : -1;
+        return (getCalls() > 0) ? (getTime() / getCalls()) : -1;
+    }
+
+    /**
+     * Returns the statistics of the time in microseconds spent in the
+     * filter per call in the current interval.
+     */
+    public LatencyHistogram getTimeHistogram() {
+        return timeHistogram.getHistogram();
+    }
+
+    /**
+     * Returns the statistics of the time in microseconds spent in the
+     * filter per call in the last completed interval or <code>null</code>
+     * if no interval has been completed yet.
+     */
+    public LatencyHistogram getLastIntervalTimeHistogram() {
+        return timeHistogram.getLastIntervalHistogram();
+    }
+
+    public void resetStatistics() {
+        calls.set(0);
+        time.set(0);
+        timeHistogram.reset();
     }
 
     void track() {
@@ -104,6 +171,28 @@ public class FilterHandle implements Comparable<FilterHandle> {
 
     void trackTime(long time) {
         this.time.addAndGet(time);
+        this.timeHistogram.addValue(time);
+    }
+
+    /**
+     * Returns the literal characters at the start of the pattern which must
+     * be present in any matching path. The prefix is empty if the pattern
+     * contains an alternation.
+     */
+    static String getLiteralPrefix(final String pattern) {
+        if (pattern.indexOf('|') >= 0) {
+            return "";
+        }
+        int start = pattern.startsWith("^") ? 1 : 0;
+        int end = start;
+        while (end < pattern.length() && "\\.[]{}()*+?^$|".indexOf(pattern.charAt(end)) < 0) {
+            end++;
+        }
+        // a quantifier allowing zero occurrences makes the last character optional
+        if (end < pattern.length() && end > start && "*?{".indexOf(pattern.charAt(end)) >= 0) {
+            end--;
+        }
+        return pattern.substring(start, end);
     }
 
     /**
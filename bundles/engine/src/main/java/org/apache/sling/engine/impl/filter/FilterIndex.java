@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>FilterIndex</code> selects the filters of a chain applying to a
+ * request path without evaluating the pattern of each filter.
+ * <p>
+ * Filters without a pattern always apply. The patterns of the other filters
+ * are indexed by their literal prefix in a trie, such that only the filters
+ * whose prefix is a prefix of the path are considered. Patterns consisting
+ * of a literal prefix followed by <code>.*</code> need no regular expression
+ * match at all. Patterns without a literal prefix are matched for each path.
+ * <p>
+ * An index is immutable and built whenever a filter is added to or removed
+ * from the {@link SlingFilterChainHelper}.
+ */
+class FilterIndex {
+
+    private static final FilterHandle[] EMPTY_FILTER_ARRAY = new FilterHandle[0];
+
+    /** All filters in chain order */
+    private final FilterHandle[] filters;
+
+    /** Whether no filter has a pattern */
+    private final boolean unconditional;
+
+    /** Indexes of the filters without a pattern */
+    private final int[] always;
+
+    /** Indexes of the filters with a pattern without literal prefix */
+    private final int[] fallback;
+
+    /** Root of the trie of literal pattern prefixes */
+    private final Node root;
+
+    FilterIndex(final FilterHandle[] filters) {
+        this.filters = filters;
+
+        final List<Integer> always = new ArrayList<Integer>();
+        final List<Integer> fallback = new ArrayList<Integer>();
+        this.root = new Node();
+        for (int i = 0; i < filters.length; i++) {
+            final FilterHandle filter = filters[i];
+            if (!filter.hasPattern()) {
+                always.add(i);
+            } else if (filter.getLiteralPrefix().length() == 0) {
+                fallback.add(i);
+            } else {
+                Node node = this.root;
+                final String prefix = filter.getLiteralPrefix();
+                for (int c = 0; c < prefix.length(); c++) {
+                    node = node.child(prefix.charAt(c));
+                }
+                node.add(i);
+            }
+        }
+        this.unconditional = always.size() == filters.length;
+        this.always = toArray(always);
+        this.fallback = toArray(fallback);
+    }
+
+    /**
+     * Returns all filters in chain order.
+     */
+    FilterHandle[] getFilters() {
+        return this.filters;
+    }
+
+    /**
+     * Returns <code>true</code> if all filters apply to all paths.
+     */
+    boolean isUnconditional() {
+        return this.unconditional;
+    }
+
+    /**
+     * Returns the filters applying to the path in chain order.
+     *
+     * @param path The path info of the request, <code>null</code> being
+     *            treated as the root path.
+     */
+    FilterHandle[] select(String path) {
+        if (this.unconditional) {
+            return this.filters;
+        }
+        if (path == null) {
+            path = "/";
+        }
+
+        final boolean[] selected = new boolean[this.filters.length];
+        int count = 0;
+        for (final int i : this.always) {
+            selected[i] = true;
+            count++;
+        }
+        for (final int i : this.fallback) {
+            if (this.filters[i].matches(path)) {
+                selected[i] = true;
+                count++;
+            }
+        }
+        Node node = this.root;
+        for (int c = 0; c < path.length() && node != null; c++) {
+            node = node.children == null ? null : node.children.get(path.charAt(c));
+            if (node != null && node.filters != null) {
+                for (final int i : node.filters) {
+                    if (this.filters[i].matches(path)) {
+                        selected[i] = true;
+                        count++;
+                    }
+                }
+            }
+        }
+
+        if (count == this.filters.length) {
+            return this.filters;
+        } else if (count == 0) {
+            return EMPTY_FILTER_ARRAY;
+        }
+        final FilterHandle[] result = new FilterHandle[count];
+        for (int i = 0, r = 0; r < count; i++) {
+            if (selected[i]) {
+                result[r++] = this.filters[i];
+            }
+        }
+        return result;
+    }
+
+    private static int[] toArray(final List<Integer> list) {
+        final int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * A node of the prefix trie with the filters whose literal prefix ends
+     * at this node.
+     */
+    private static final class Node {
+
+        Map<Character, Node> children;
+
+        int[] filters;
+
+        Node child(final char c) {
+            if (this.children == null) {
+                this.children = new HashMap<Character, Node>();
+            }
+            Node child = this.children.get(c);
+            if (child == null) {
+                child = new Node();
+                this.children.put(c, child);
+            }
+            return child;
+        }
+
+        void add(final int filter) {
+            if (this.filters == null) {
+                this.filters = new int[] { filter };
+            } else {
+                final int[] newFilters = new int[this.filters.length + 1];
+                System.arraycopy(this.filters, 0, newFilters, 0, this.filters.length);
+                newFilters[this.filters.length] = filter;
+                this.filters = newFilters;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The <code>FilterSelectionCache</code> remembers the filters selected for
+ * the paths of a single request, such that repeated includes and forwards of
+ * the same path do not select the filters again. The selection is kept per
+ * {@link FilterIndex}, so filters registered or unregistered while the
+ * request is processed are considered.
+ * <p>
+ * Like the request, this class is not thread safe.
+ */
+public class FilterSelectionCache {
+
+    private final Map<FilterIndex, Map<String, FilterHandle[]>> selections = new HashMap<FilterIndex, Map<String, FilterHandle[]>>();
+
+    FilterHandle[] select(final FilterIndex index, final String path) {
+        Map<String, FilterHandle[]> paths = this.selections.get(index);
+        if (paths == null) {
+            paths = new HashMap<String, FilterHandle[]>();
+            this.selections.put(index, paths);
+        }
+        FilterHandle[] filters = paths.get(path);
+        if (filters == null) {
+            filters = index.select(path);
+            paths.put(path, filters);
+        }
+        return filters;
+    }
+}
@@ -22,10 +22,12 @@ import javax.servlet.Filter;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 
+import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.commons.osgi.OsgiUtil;
 import org.apache.sling.engine.EngineConstants;
 import org.apache.sling.engine.impl.helper.SlingFilterConfig;
 import org.apache.sling.engine.impl.helper.SlingServletContext;
+import org.apache.sling.engine.impl.request.RequestData;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
@@ -101,17 +103,22 @@ public class ServletFilterManager extends ServiceTracker {
 
     private final boolean compatMode;
 
+    /**
+     * @param latencyIntervalSec The length in seconds of the interval for
+     *            which the filter time histograms are collected
+     */
     public ServletFilterManager(final BundleContext context,
             final SlingServletContext servletContext,
-            final boolean compatMode) {
+            final boolean compatMode,
+            final int latencyIntervalSec) {
         super(context, FILTER_SERVICE_NAME, null);
         this.servletContext = servletContext;
         this.filterChains = new SlingFilterChainHelper[FilterChainType.values().length];
-        this.filterChains[FilterChainType.REQUEST.ordinal()] = new SlingFilterChainHelper();
-        this.filterChains[FilterChainType.ERROR.ordinal()] = new SlingFilterChainHelper();
-        this.filterChains[FilterChainType.INCLUDE.ordinal()] = new SlingFilterChainHelper();
-        this.filterChains[FilterChainType.FORWARD.ordinal()] = new SlingFilterChainHelper();
-        this.filterChains[FilterChainType.COMPONENT.ordinal()] = new SlingFilterChainHelper();
+        this.filterChains[FilterChainType.REQUEST.ordinal()] = new SlingFilterChainHelper(latencyIntervalSec);
+        this.filterChains[FilterChainType.ERROR.ordinal()] = new SlingFilterChainHelper(latencyIntervalSec);
+        this.filterChains[FilterChainType.INCLUDE.ordinal()] = new SlingFilterChainHelper(latencyIntervalSec);
+        this.filterChains[FilterChainType.FORWARD.ordinal()] = new SlingFilterChainHelper(latencyIntervalSec);
+        this.filterChains[FilterChainType.COMPONENT.ordinal()] = new SlingFilterChainHelper(latencyIntervalSec);
         this.compatMode = compatMode;
     }
 
@@ -123,6 +130,20 @@ public class ServletFilterManager extends ServiceTracker {
         return getFilterChain(chain).getFilters();
     }
 
+    /**
+     * Returns the filters of the chain applying to the path info of the
+     * request. The selection is remembered for the request, such that
+     * repeated includes of the same path reuse it.
+     */
+    public FilterHandle[] getFilters(final FilterChainType chain, final SlingHttpServletRequest request) {
+        final FilterIndex index = getFilterChain(chain).getIndex();
+        if (index.isUnconditional()) {
+            return index.getFilters();
+        }
+        final RequestData requestData = RequestData.getRequestData(request);
+        return requestData.getFilterSelectionCache().select(index, request.getPathInfo());
+    }
+
     @Override
     public Object addingService(ServiceReference reference) {
         Object service = super.addingService(reference);
@@ -37,9 +37,17 @@ public class SlingFilterChainHelper {
 
     private SortedSet<FilterHandle> filterList;
 
-    private FilterHandle[] filters = EMPTY_FILTER_ARRAY;
+    private volatile FilterIndex index = new FilterIndex(EMPTY_FILTER_ARRAY);
+
+    /** The interval in seconds of the filter time histograms */
+    private final int latencyIntervalSec;
 
     SlingFilterChainHelper() {
+        this(0);
+    }
+
+    SlingFilterChainHelper(final int latencyIntervalSec) {
+        this.latencyIntervalSec = latencyIntervalSec;
     }
 
     public synchronized Filter addFilter(final Filter filter,  String pattern,
@@ -47,8 +55,8 @@ public class SlingFilterChainHelper {
         if (filterList == null) {
             filterList = new TreeSet<FilterHandle>();
         }
-        filterList.add(new FilterHandle(filter, pattern, filterId, order, orderSource));
-        filters = getFiltersInternal();
+        filterList.add(new FilterHandle(filter, pattern, filterId, order, orderSource, latencyIntervalSec));
+        index = new FilterIndex(getFiltersInternal());
         return filter;
     }
 
@@ -60,7 +68,7 @@ public class SlingFilterChainHelper {
                     || (test.getFilterId() != null && test.getFilterId().equals(
                         filterId))) {
                     fi.remove();
-                    filters = getFiltersInternal();
+                    index = new FilterIndex(getFiltersInternal());
                     return true;
                 }
             }
@@ -76,7 +84,14 @@ public class SlingFilterChainHelper {
      * This method doesn't need to be synced as it is called from synced methods.
      */
     public FilterHandle[] getFilters() {
-        return filters;
+        return index.getFilters();
+    }
+
+    /**
+     * Returns the index to select the filters applying to a request path.
+     */
+    FilterIndex getIndex() {
+        return index;
     }
 
     private FilterHandle[] getFiltersInternal() {
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>AsyncLogFile</code> writes log messages to a file from a
+ * separate writer thread, such that request threads never wait for the file
+ * system.
+ * <p>
+ * Request threads add the messages to a bounded ring buffer without locking.
+ * The writer thread collects the messages from the ring buffer into a byte
+ * buffer which is written to the file channel when it is full or when no
+ * more messages are waiting.
+ * <p>
+ * If the ring buffer is full, the message is either dropped or the request
+ * thread waits for the writer thread to make room, depending on the policy.
+ * The number of dropped messages and of messages which had to wait is
+ * counted.
+ * <p>
+ * If the ring buffer is empty the writer thread parks until a request thread
+ * adds a message and unparks it.
+ */
+class AsyncLogFile {
+
+    /** Time a request thread waits for the writer if the ring buffer is full */
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /** Time to wait for the writer thread to write all messages on close */
+    private static final long CLOSE_WAIT_MILLIS = 5000;
+
+    /** Default number of messages in the ring buffer */
+    static final int DEFAULT_CAPACITY = 8192;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] LINE_SEPARATOR;
+
+    static {
+        byte[] separator;
+        try {
+            separator = System.getProperty("line.separator", "\n").getBytes("UTF-8");
+        } catch (final UnsupportedEncodingException uee) {
+            separator = new byte[] { '\n' };
+        }
+        LINE_SEPARATOR = separator;
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String fileName;
+
+    private final AtomicReferenceArray<String> ring;
+
+    private final int mask;
+
+    /** Sequence of the next message to be added by a request thread */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Sequence of the next message to be taken by the writer thread */
+    private volatile long head;
+
+    private final boolean blockWhenFull;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong waited = new AtomicLong();
+
+    private volatile long written;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    /** Whether the writer thread is parked waiting for messages */
+    private volatile boolean idle;
+
+    /**
+     * Opens the file for appending and starts the writer thread.
+     *
+     * @param file The log file
+     * @param capacity The number of messages in the ring buffer, rounded up
+     *            to the next power of two
+     * @param blockWhenFull Whether to wait for the writer thread (
+     *            <code>true</code>) or drop the message if the ring buffer is
+     *            full
+     */
+    AsyncLogFile(final File file, final int capacity, final boolean blockWhenFull) throws IOException {
+        final int size = ringSize(capacity);
+        this.ring = new AtomicReferenceArray<String>(size);
+        this.mask = size - 1;
+        this.blockWhenFull = blockWhenFull;
+        this.fileName = file.getAbsolutePath();
+        this.channel = new FileOutputStream(file, true).getChannel();
+
+        this.writer = new Thread(new Runnable() {
+            public void run() {
+                AsyncLogFile.this.writeMessages();
+            }
+        }, "Apache Sling Request Log Writer " + this.fileName);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Returns the size of the ring buffer holding the given number of
+     * messages, which is the next power of two.
+     */
+    static int ringSize(final int capacity) {
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * Adds the message to the ring buffer. Messages written after the file
+     * has been closed are dropped.
+     */
+    void write(final String message) {
+        if (!this.running) {
+            this.dropped.incrementAndGet();
+            return;
+        }
+        boolean hasWaited = false;
+        for (;;) {
+            final long t = this.tail.get();
+            if (t - this.head > this.mask) {
+                if (!this.blockWhenFull || !this.running) {
+                    this.dropped.incrementAndGet();
+                    return;
+                }
+                if (!hasWaited) {
+                    hasWaited = true;
+                    this.waited.incrementAndGet();
+                    LockSupport.unpark(this.writer);
+                }
+                LockSupport.parkNanos(FULL_WAIT_NANOS);
+            } else if (this.tail.compareAndSet(t, t + 1)) {
+                this.ring.set((int) t & this.mask, message);
+                if (this.idle) {
+                    LockSupport.unpark(this.writer);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the writer thread after all messages have been written and
+     * closes the file.
+     */
+    void close() {
+        this.running = false;
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join(CLOSE_WAIT_MILLIS);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.dropped.get() > 0 || this.waited.get() > 0) {
+            log.info("Closed request log {}: {} messages written, {} dropped, {} waited for the writer",
+                new Object[] { this.fileName, this.written, this.dropped.get(), this.waited.get() });
+        }
+    }
+
+    /** The number of messages the ring buffer holds */
+    int getCapacity() {
+        return this.ring.length();
+    }
+
+    /** Whether to wait for the writer thread if the ring buffer is full */
+    boolean isBlockWhenFull() {
+        return this.blockWhenFull;
+    }
+
+    /** The number of messages written to the file */
+    long getWrittenCount() {
+        return this.written;
+    }
+
+    /** The number of messages dropped as the ring buffer was full */
+    long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    /** The number of messages which had to wait as the ring buffer was full */
+    long getWaitedCount() {
+        return this.waited.get();
+    }
+
+    private void writeMessages() {
+        try {
+            while (this.running || this.head != this.tail.get()) {
+                if (!this.takeMessages()) {
+                    this.flush();
+                    if (this.running && this.head == this.tail.get()) {
+                        // announce parking before checking again such that a
+                        // request thread adding a message either is seen here
+                        // or sees the writer idle and unparks it
+                        this.idle = true;
+                        if (this.running && this.head == this.tail.get()) {
+                            LockSupport.park(this);
+                        }
+                        this.idle = false;
+                    } else {
+                        // a request thread has reserved but not yet set a message
+                        Thread.yield();
+                    }
+                }
+            }
+            this.flush();
+        } catch (final IOException ioe) {
+            log.error("Cannot write request log " + this.fileName + ", further messages are dropped", ioe);
+            this.running = false;
+        } finally {
+            try {
+                this.channel.close();
+            } catch (final IOException ignore) {
+                // don't care
+            }
+        }
+    }
+
+    /**
+     * Takes the available messages from the ring buffer into the byte buffer.
+     * Returns <code>false</code> if no message is available.
+     */
+    private boolean takeMessages() throws IOException {
+        long h = this.head;
+        int index = (int) h & this.mask;
+        String message = this.ring.get(index);
+        if (message == null) {
+            return false;
+        }
+        do {
+            this.ring.set(index, null);
+            this.head = ++h;
+            this.append(message.getBytes("UTF-8"));
+            this.written++;
+
+            index = (int) h & this.mask;
+            message = this.ring.get(index);
+        } while (message != null);
+        return true;
+    }
+
+    private void append(final byte[] message) throws IOException {
+        if (this.buffer.remaining() < message.length + LINE_SEPARATOR.length) {
+            this.flush();
+            if (this.buffer.remaining() < message.length + LINE_SEPARATOR.length) {
+                this.writeFully(ByteBuffer.wrap(message));
+                this.writeFully(ByteBuffer.wrap(LINE_SEPARATOR));
+                return;
+            }
+        }
+        this.buffer.put(message);
+        this.buffer.put(LINE_SEPARATOR);
+    }
+
+    private void flush() throws IOException {
+        if (this.buffer.position() > 0) {
+            this.buffer.flip();
+            this.writeFully(this.buffer);
+            this.buffer.clear();
+        }
+    }
+
+    private void writeFully(final ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            this.channel.write(data);
+        }
+    }
+}
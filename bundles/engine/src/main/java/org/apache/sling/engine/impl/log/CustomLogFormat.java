@@ -23,11 +23,11 @@ import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.text.StringCharacterIterator;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
+import java.util.TimeZone;
 
 import javax.servlet.http.Cookie;
 
@@ -607,23 +607,26 @@ class CustomLogFormat {
     static class TimeParameter extends BaseParameter {
 
         /** date format - see access logging in service() */
-        private static final SimpleDateFormat accessLogFmt = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss ", Locale.US);
+        private static final ThreadLocal<SimpleDateFormat> accessLogFmt = new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss ", Locale.US);
+            }
+        };
 
         /** time format for GMT offset - see access logging in service() */
-        private static final DecimalFormat dfmt = new DecimalFormat("+0000;-0000");
-
-        /** the timezone for the timezone offset calculation */
-        private static final Calendar calendar = Calendar.getInstance();
-
-        /** last zone offset (cached by hours) */
-        private static String lastZoneOffset = "";
-
-        private static long lastZoneOffsetHour = -1;
-
-        /** last formatted time (cached in seconds) */
-        private static String lastTimeFormatted = "";
+        private static final ThreadLocal<DecimalFormat> dfmt = new ThreadLocal<DecimalFormat>() {
+            @Override
+            protected DecimalFormat initialValue() {
+                return new DecimalFormat("+0000;-0000");
+            }
+        };
 
-        private static long lastTimeFormattedSeconds = -1;
+        /**
+         * last formatted time (cached in seconds), replaced as a whole such
+         * that request threads formatting concurrently need no locking
+         */
+        private static volatile FormattedTime lastTimeFormatted = new FormattedTime(-1, "");
 
         private final boolean requestStart;
 
@@ -646,23 +649,32 @@ class CustomLogFormat {
         // -----------------------------------------------------
 
         static String timeFormatted(long time) {
-            if (time / 1000 != lastTimeFormattedSeconds) {
-                lastTimeFormattedSeconds = time / 1000;
-                Date date = new Date(time);
-                StringBuilder buf = new StringBuilder(accessLogFmt.format(date));
-                if (time / 3600000 != lastZoneOffsetHour) {
-                    lastZoneOffsetHour = time / 3600000;
-                    calendar.setTime(date);
-                    int tzOffset = calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET);
-                    tzOffset /= (60 * 1000);
-                    tzOffset = ((tzOffset / 60) * 100) + (tzOffset % 60);
-
-                    lastZoneOffset = dfmt.format(tzOffset);
-                }
-                buf.append(lastZoneOffset);
-                lastTimeFormatted = buf.toString();
+            final long seconds = time / 1000;
+            FormattedTime last = lastTimeFormatted;
+            if (seconds != last.seconds) {
+                final Date date = new Date(time);
+                StringBuilder buf = new StringBuilder(accessLogFmt.get().format(date));
+                int tzOffset = TimeZone.getDefault().getOffset(time);
+                tzOffset /= (60 * 1000);
+                tzOffset = ((tzOffset / 60) * 100) + (tzOffset % 60);
+                buf.append(dfmt.get().format(tzOffset));
+
+                last = new FormattedTime(seconds, buf.toString());
+                lastTimeFormatted = last;
+            }
+            return last.formatted;
+        }
+
+        private static final class FormattedTime {
+
+            final long seconds;
+
+            final String formatted;
+
+            FormattedTime(final long seconds, final String formatted) {
+                this.seconds = seconds;
+                this.formatted = formatted;
             }
-            return lastTimeFormatted;
         }
     }
 
@@ -19,10 +19,10 @@
 package org.apache.sling.engine.impl.log;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -35,53 +35,95 @@ import org.apache.sling.engine.RequestLog;
  * internal map of log files is kept and access to the <code>PrintWriter</code>s
  * to write to the file is synchronized.
  * <p>
- * This class has a defined lifecycle to ensure correct operation: To ensure no
- * log files are kept open, the {@link RequestLoggerFilter} object calls
- * {@link #dispose()} when it is being deactivated.
+ * Each log file is kept open from the moment it is first opened until the
+ * last log using it is closed. As a safety net the {@link RequestLoggerFilter}
+ * object calls {@link #dispose()} when it is being deactivated to close all
+ * files still open.
  * <p>
- * Note: Currently, each log file is kept open from the moment the log file is
- * first moment until the {@link #dispose()} method is called. Future
- * development should probably focus on the following issues: (1) Implement an
- * open/write/close cycle when logging a message, (2) close log files when the
- * last user has closed the log, (3) optimize the first strategy by keeping the
- * files open for some time.
- * <p>
- * Note: Currently, the <code>PrintWriter</code> used to log the message is
- * flushed after each log message written. Future development should probably
- * implement better buffering in conjunction with the temporary open/close
- * cycles of the files.
+ * By default the <code>PrintWriter</code> used to log the message is flushed
+ * after each log message written. Alternatively a log file may be written
+ * asynchronously by an {@link AsyncLogFile}, in which case request threads
+ * only hand the message over to the writer thread of the file. Since log files
+ * are shared, the mode of the log last opening a file applies to the file: if
+ * it differs from the mode the file is open with, the file is reopened in the
+ * new mode for all logs sharing it. Messages are written UTF-8 encoded in
+ * either mode.
  */
 class FileRequestLog implements RequestLog {
 
-    // The map of shared open files (actually PrintWriter instances)
-    private static Map<String, PrintWriter> logFiles = new HashMap<String, PrintWriter>();
+    // The map of shared open files
+    private static Map<String, SharedFile> logFiles = new HashMap<String, SharedFile>();
 
-    // Dispose class by closing all open PrintWeiter instances
+    // Dispose class by closing all open files
     static void dispose() {
-        for (final Writer w : logFiles.values()) {
-            try {
-                w.close();
-            } catch (IOException ioe) {
-                // don't care
+        synchronized (logFiles) {
+            for (final SharedFile file : logFiles.values()) {
+                file.close();
+            }
+            logFiles.clear();
+        }
+    }
+
+    /**
+     * Prints the mode and the number of users of the open log files and for
+     * asynchronously written files the number of messages written, dropped
+     * and waited for the writer.
+     */
+    static void printStatistics(final PrintWriter pw) {
+        synchronized (logFiles) {
+            if (logFiles.isEmpty()) {
+                pw.println("---");
+            }
+            for (final Map.Entry<String, SharedFile> entry : logFiles.entrySet()) {
+                pw.printf("%s; users: %d; %s%n", entry.getKey(), entry.getValue().users,
+                    entry.getValue().output.getStatistics());
             }
         }
-        logFiles.clear();
     }
 
-    // The PrintWriter used by this instance to write the messages
-    private PrintWriter output;
+    // The name of the file used by this instance
+    private final String fileName;
+
+    // The shared file used by this instance to write the messages
+    private volatile SharedFile file;
 
     FileRequestLog(File logFile) throws IOException {
+        this(logFile, 0, true);
+    }
+
+    /**
+     * Creates a log writing to the given file.
+     *
+     * @param logFile The log file
+     * @param asyncBufferSize The number of messages buffered for asynchronous
+     *            writing or <code>0</code> to write synchronously
+     * @param blockWhenFull Whether to wait for or to drop a message if the
+     *            asynchronous buffer is full
+     */
+    FileRequestLog(File logFile, int asyncBufferSize, boolean blockWhenFull) throws IOException {
+        this.fileName = logFile.getAbsolutePath();
         synchronized (logFiles) {
-            final String fileName = logFile.getAbsolutePath();
-            this.output = logFiles.get(fileName);
-            if (this.output == null) {
+            SharedFile shared = logFiles.get(this.fileName);
+            if (shared == null) {
                 logFile.getParentFile().mkdirs();
-                FileWriter fw = new FileWriter(logFile, true);
-                this.output = new PrintWriter(fw);
-                logFiles.put(fileName, this.output);
+                shared = new SharedFile(open(logFile, asyncBufferSize, blockWhenFull));
+                logFiles.put(this.fileName, shared);
+            } else if (!shared.output.hasMode(asyncBufferSize, blockWhenFull)) {
+                // the mode changed: reopen the file for all users
+                final LogFile previous = shared.output;
+                shared.output = open(logFile, asyncBufferSize, blockWhenFull);
+                previous.close();
             }
+            shared.users++;
+            this.file = shared;
+        }
+    }
+
+    private static LogFile open(File logFile, int asyncBufferSize, boolean blockWhenFull) throws IOException {
+        if (asyncBufferSize > 0) {
+            return new AsyncFile(new AsyncLogFile(logFile, asyncBufferSize, blockWhenFull));
         }
+        return new SyncFile(new PrintWriter(new OutputStreamWriter(new FileOutputStream(logFile, true), "UTF-8")));
     }
 
     /**
@@ -91,17 +133,119 @@ class FileRequestLog implements RequestLog {
         // use a local copy of the reference to not encounter NPE when this
         // log happens to be closed asynchronously while at the same time not
         // requiring synchronization
-        PrintWriter writer = this.output;
-        if (writer != null) {
+        SharedFile shared = this.file;
+        if (shared != null) {
+            shared.output.write(message);
+        }
+    }
+
+    public void close() {
+        synchronized (logFiles) {
+            final SharedFile shared = this.file;
+            this.file = null;
+
+            // close the file when the last user is closed unless the file
+            // has been disposed of in the meantime
+            if (shared != null && --shared.users <= 0 && logFiles.get(this.fileName) == shared) {
+                logFiles.remove(this.fileName);
+                shared.close();
+            }
+        }
+    }
+
+    /**
+     * A log file shared by all logs writing to the same file
+     */
+    private static class SharedFile {
+
+        // The file currently written, replaced if the mode changes
+        volatile LogFile output;
+
+        // The number of logs using this file, guarded by logFiles
+        int users;
+
+        SharedFile(final LogFile output) {
+            this.output = output;
+        }
+
+        void close() {
+            this.output.close();
+        }
+    }
+
+    /**
+     * An open log file
+     */
+    private static interface LogFile {
+
+        void write(String message);
+
+        void close();
+
+        boolean hasMode(int asyncBufferSize, boolean blockWhenFull);
+
+        String getStatistics();
+    }
+
+    /**
+     * Writes and flushes each message while holding the lock of the writer
+     */
+    private static class SyncFile implements LogFile {
+
+        private final PrintWriter writer;
+
+        SyncFile(final PrintWriter writer) {
+            this.writer = writer;
+        }
+
+        public void write(String message) {
             synchronized (writer) {
                 writer.println(message);
                 writer.flush();
             }
         }
+
+        public void close() {
+            writer.close();
+        }
+
+        public boolean hasMode(int asyncBufferSize, boolean blockWhenFull) {
+            return asyncBufferSize <= 0;
+        }
+
+        public String getStatistics() {
+            return "synchronous";
+        }
     }
 
-    public void close() {
-        // just drop the reference to the output
-        this.output = null;
+    /**
+     * Hands the messages over to the writer thread of an {@link AsyncLogFile}
+     */
+    private static class AsyncFile implements LogFile {
+
+        private final AsyncLogFile file;
+
+        AsyncFile(final AsyncLogFile file) {
+            this.file = file;
+        }
+
+        public void write(String message) {
+            file.write(message);
+        }
+
+        public void close() {
+            file.close();
+        }
+
+        public boolean hasMode(int asyncBufferSize, boolean blockWhenFull) {
+            return asyncBufferSize > 0 && AsyncLogFile.ringSize(asyncBufferSize) == file.getCapacity()
+                && blockWhenFull == file.isBlockWhenFull();
+        }
+
+        public String getStatistics() {
+            return String.format("asynchronous (buffer: %d, when full: %s); written: %d; dropped: %d; waited: %d",
+                file.getCapacity(), file.isBlockWhenFull() ? "wait" : "drop", file.getWrittenCount(),
+                file.getDroppedCount(), file.getWaitedCount());
+        }
     }
 }
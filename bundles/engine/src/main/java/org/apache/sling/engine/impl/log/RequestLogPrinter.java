@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.io.PrintWriter;
+import java.util.Dictionary;
+import java.util.Hashtable;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+
+/**
+ * The <code>RequestLogPrinter</code> is a configuration printer for the web
+ * console which prints out the request log files currently open together
+ * with the numbers of messages written, dropped and waited for the writer of
+ * asynchronously written files.
+ */
+public class RequestLogPrinter {
+
+    static ServiceRegistration register(final BundleContext bundleContext) {
+        final Dictionary<String, String> props = new Hashtable<String, String>();
+        props.put(Constants.SERVICE_DESCRIPTION, "Apache Sling Request Log Configuration Printer");
+        props.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        props.put("felix.webconsole.label", "slingrequestlog");
+        props.put("felix.webconsole.title", "Sling Request Log");
+        props.put("felix.webconsole.configprinter.modes", "always");
+        return bundleContext.registerService(RequestLogPrinter.class.getName(), new RequestLogPrinter(), props);
+    }
+
+    /**
+     * Print out the open request log files.
+     * @see org.apache.felix.webconsole.ConfigurationPrinter#printConfiguration(java.io.PrintWriter)
+     */
+    public void printConfiguration(final PrintWriter pw) {
+        pw.println("Apache Sling Request Log Files");
+        pw.println();
+        FileRequestLog.printStatistics(pw);
+    }
+}
@@ -67,6 +67,15 @@ public class RequestLogger {
     @Property(boolValue = true)
     public static final String PROP_ACCESS_LOG_ENABLED = "access.log.enabled";
 
+    @Property(boolValue = false)
+    public static final String PROP_ASYNC = "request.log.async";
+
+    @Property(value = RequestLoggerService.ASYNC_POLICY_BLOCK, options = {
+        @PropertyOption(name = RequestLoggerService.ASYNC_POLICY_BLOCK, value = "Wait for the writer"),
+        @PropertyOption(name = RequestLoggerService.ASYNC_POLICY_DROP, value = "Drop the message")
+    })
+    public static final String PROP_ASYNC_POLICY = "request.log.async.policy";
+
     /**
      * The log format string for the request log entry message (value is "%t
      * [%R] -> %m %U%q %H").
@@ -92,6 +101,11 @@ public class RequestLogger {
      */
     private Map<ServiceRegistration, RequestLoggerService> services = new HashMap<ServiceRegistration, RequestLoggerService>();
 
+    /**
+     * The web console printer for the open log files.
+     */
+    private ServiceRegistration printerRegistration;
+
     // ---------- SCR Integration ----------------------------------------------
 
     @Activate
@@ -105,9 +119,9 @@ public class RequestLogger {
             && ((Boolean) requestLogEnabled).booleanValue()) {
             Object requestLogType = props.get(PROP_REQUEST_LOG_OUTPUT_TYPE);
             createRequestLoggerService(services, bundleContext, true, REQUEST_LOG_ENTRY_FORMAT, requestLogName,
-                requestLogType);
+                requestLogType, props);
             createRequestLoggerService(services, bundleContext, false, REQUEST_LOG_EXIT_FORMAT, requestLogName,
-                requestLogType);
+                requestLogType, props);
         }
 
         // prepare the access logger if a name is configured and the
@@ -116,12 +130,19 @@ public class RequestLogger {
         Object accessLogEnabled = props.get(PROP_ACCESS_LOG_ENABLED);
         if (accessLogName != null && accessLogEnabled instanceof Boolean && ((Boolean) accessLogEnabled).booleanValue()) {
             Object accessLogType = props.get(PROP_ACCESS_LOG_OUTPUT_TYPE);
-            createRequestLoggerService(services, bundleContext, false, ACCESS_LOG_FORMAT, accessLogName, accessLogType);
+            createRequestLoggerService(services, bundleContext, false, ACCESS_LOG_FORMAT, accessLogName, accessLogType,
+                props);
         }
+
+        this.printerRegistration = RequestLogPrinter.register(bundleContext);
     }
 
     @Deactivate
     protected void deactivate() {
+        if (this.printerRegistration != null) {
+            this.printerRegistration.unregister();
+            this.printerRegistration = null;
+        }
         for (Entry<ServiceRegistration, RequestLoggerService> entry : services.entrySet()) {
             entry.getKey().unregister();
             entry.getValue().shutdown();
@@ -130,12 +151,21 @@ public class RequestLogger {
     }
 
     private static void createRequestLoggerService(Map<ServiceRegistration, RequestLoggerService> services,
-            BundleContext bundleContext, boolean onEntry, Object format, Object output, Object outputType) {
+            BundleContext bundleContext, boolean onEntry, Object format, Object output, Object outputType,
+            Map<String, Object> props) {
         final Hashtable<String, Object> config = new Hashtable<String, Object>();
         config.put(RequestLoggerService.PARAM_ON_ENTRY, onEntry ? Boolean.TRUE : Boolean.FALSE);
         config.put(RequestLoggerService.PARAM_FORMAT, format);
         config.put(RequestLoggerService.PARAM_OUTPUT, output);
         config.put(RequestLoggerService.PARAM_OUTPUT_TYPE, outputType);
+        final Object async = props.get(PROP_ASYNC);
+        if (async != null) {
+            config.put(RequestLoggerService.PARAM_ASYNC, async);
+        }
+        final Object asyncPolicy = props.get(PROP_ASYNC_POLICY);
+        if (asyncPolicy != null) {
+            config.put(RequestLoggerService.PARAM_ASYNC_POLICY, asyncPolicy);
+        }
 
         final RequestLoggerService service = new RequestLoggerService(bundleContext, config);
         final ServiceRegistration reg = bundleContext.registerService(service.getClass().getName(), service, config);
@@ -65,6 +65,22 @@ public class RequestLoggerService {
     @Property(boolValue = false)
     public static final String PARAM_ON_ENTRY = "request.log.service.onentry";
 
+    static final String ASYNC_POLICY_BLOCK = "block";
+
+    static final String ASYNC_POLICY_DROP = "drop";
+
+    @Property(boolValue = false)
+    public static final String PARAM_ASYNC = "request.log.service.async";
+
+    @Property(intValue = AsyncLogFile.DEFAULT_CAPACITY)
+    public static final String PARAM_ASYNC_BUFFER = "request.log.service.async.buffer";
+
+    @Property(value = ASYNC_POLICY_BLOCK, options = {
+        @PropertyOption(name = ASYNC_POLICY_BLOCK, value = "Wait for the writer"),
+        @PropertyOption(name = ASYNC_POLICY_DROP, value = "Drop the message")
+    })
+    public static final String PARAM_ASYNC_POLICY = "request.log.service.async.policy";
+
     private static final int OUTPUT_TYPE_LOGGER = 0;
 
     private static final int OUTPUT_TYPE_FILE = 1;
@@ -106,7 +122,7 @@ public class RequestLoggerService {
             int outputType = (outputTypeObject instanceof Number)
                     ? ((Number) outputTypeObject).intValue()
                     : OUTPUT_TYPE_LOGGER;
-            this.log = this.getLog(bundleContext, output.toString(), outputType);
+            this.log = this.getLog(bundleContext, output.toString(), outputType, configuration);
         }
     }
 
@@ -130,7 +146,8 @@ public class RequestLoggerService {
         return this.onEntry;
     }
 
-    private RequestLog getLog(BundleContext bundleContext, String output, int outputType) {
+    private RequestLog getLog(BundleContext bundleContext, String output, int outputType,
+            Map<String, Object> configuration) {
         switch (outputType) {
             case OUTPUT_TYPE_FILE:
                 // file logging
@@ -145,7 +162,21 @@ public class RequestLoggerService {
                         file = file.getAbsoluteFile();
                     }
 
-                    return new FileRequestLog(file);
+                    // asynchronous writing only applies if the file is not open yet
+                    Object asyncObject = configuration.get(PARAM_ASYNC);
+                    int asyncBufferSize = 0;
+                    if ((asyncObject instanceof Boolean) && ((Boolean) asyncObject).booleanValue()) {
+                        Object bufferObject = configuration.get(PARAM_ASYNC_BUFFER);
+                        asyncBufferSize = (bufferObject instanceof Number)
+                                ? ((Number) bufferObject).intValue()
+                                : AsyncLogFile.DEFAULT_CAPACITY;
+                        if (asyncBufferSize <= 0) {
+                            asyncBufferSize = AsyncLogFile.DEFAULT_CAPACITY;
+                        }
+                    }
+                    final boolean blockWhenFull = !ASYNC_POLICY_DROP.equals(configuration.get(PARAM_ASYNC_POLICY));
+
+                    return new FileRequestLog(file, asyncBufferSize, blockWhenFull);
                 } catch (IOException ioe) {
                     // TODO: log
                 }
@@ -34,11 +34,13 @@ import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.RequestContext;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.fileupload.servlet.ServletRequestContext;
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.request.RequestParameter;
 import org.apache.sling.api.request.RequestParameterMap;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -63,6 +65,36 @@ public class ParameterSupport {
      */
     public final static String MARKER_IS_SERVICE_PROCESSING = ParameterSupport.class.getName() + "/ServiceProcessingMarker";
 
+    /**
+     * Request attribute which is set to an {@code Iterator<RequestParameter>}
+     * over the parts of a multipart/form-data POST request if the request
+     * is sent in streaming upload mode. In this mode the request body is not
+     * parsed into request parameters but the parts are read from the
+     * request while iterating.
+     *
+     * @see #UPLOAD_MODE_HEADER
+     * @see #UPLOAD_MODE_PARAMETER
+     * @see SlingConstants#ATTR_REQUEST_PARTS_ITERATOR
+     */
+    public final static String REQUEST_PARTS_ITERATOR_ATTRIBUTE = SlingConstants.ATTR_REQUEST_PARTS_ITERATOR;
+
+    /**
+     * Request header selecting the upload mode of a multipart/form-data POST
+     * request. Setting this header to {@link #UPLOAD_MODE_STREAM} enables
+     * the streaming upload mode.
+     */
+    public final static String UPLOAD_MODE_HEADER = "Sling-UploadMode";
+
+    /**
+     * Query parameter selecting the upload mode of a multipart/form-data POST
+     * request. This parameter can be used instead of the
+     * {@link #UPLOAD_MODE_HEADER} header.
+     */
+    public final static String UPLOAD_MODE_PARAMETER = "uploadmode";
+
+    /** The upload mode value enabling streaming uploads. */
+    public final static String UPLOAD_MODE_STREAM = "stream";
+
     // name of the request attribute caching the ParameterSupport instance
     // used during the request
     private static final String ATTR_NAME = ParameterSupport.class.getName();
@@ -276,7 +308,11 @@ public class ParameterSupport {
 
                 // Multipart POST
                 if (ServletFileUpload.isMultipartContent(new ServletRequestContext(this.getServletRequest()))) {
-                    this.parseMultiPartPost(parameters);
+                    if (this.isStreamedUpload(parameters)) {
+                        this.parseMultiPartPostStreamed(parameters);
+                    } else {
+                        this.parseMultiPartPost(parameters);
+                    }
                     this.requestDataUsed = true;
                     useFallback = false;
                 }
@@ -326,6 +362,53 @@ public class ParameterSupport {
     }
 
 
+    private boolean isStreamedUpload(final ParameterMap parameters) {
+        if (UPLOAD_MODE_STREAM.equalsIgnoreCase(this.getServletRequest().getHeader(UPLOAD_MODE_HEADER))) {
+            return true;
+        }
+        final RequestParameter mode = parameters.getValue(UPLOAD_MODE_PARAMETER);
+        return mode != null && UPLOAD_MODE_STREAM.equalsIgnoreCase(mode.getString());
+    }
+
+    private RequestContext getMultiPartRequestContext() {
+        return new ServletRequestContext(this.getServletRequest()) {
+            @Override
+            public String getCharacterEncoding() {
+                String enc = super.getCharacterEncoding();
+                return (enc != null) ? enc : Util.ENCODING_DIRECT;
+            }
+        };
+    }
+
+    /**
+     * Prepares the iteration over the parts of the request without parsing
+     * the request body. File parts are neither kept in memory nor written to
+     * temporary files but are read from the request by the consumer of the
+     * {@link #REQUEST_PARTS_ITERATOR_ATTRIBUTE} iterator.
+     */
+    private void parseMultiPartPostStreamed(final ParameterMap parameters) {
+        final ServletFileUpload upload = new ServletFileUpload();
+        upload.setSizeMax(ParameterSupport.maxRequestSize);
+        upload.setFileSizeMax(ParameterSupport.maxFileSize);
+
+        // form encoding from the query string, if any
+        String formEncoding = Util.getDefaultFixEncoding();
+        final RequestParameter feParm = parameters.getValue(PARAMETER_FORMENCODING);
+        if (feParm != null) {
+            formEncoding = Util.validateEncoding(Util.toIdentityEncodedString(feParm.get()));
+        }
+
+        try {
+            final FileItemIterator items = upload.getItemIterator(this.getMultiPartRequestContext());
+            this.getServletRequest().setAttribute(REQUEST_PARTS_ITERATOR_ATTRIBUTE,
+                new RequestPartsIterator(items, formEncoding));
+        } catch (FileUploadException fue) {
+            this.log.error("parseMultiPartPostStreamed: Error parsing request", fue);
+        } catch (IOException ioe) {
+            this.log.error("parseMultiPartPostStreamed: Error parsing request", ioe);
+        }
+    }
+
     private void parseMultiPartPost(ParameterMap parameters) {
 
         // Create a new file upload handler
@@ -335,13 +418,7 @@ public class ParameterSupport {
         upload.setFileItemFactory(new DiskFileItemFactory(ParameterSupport.fileSizeThreshold,
             ParameterSupport.location));
 
-        RequestContext rc = new ServletRequestContext(this.getServletRequest()) {
-            @Override
-            public String getCharacterEncoding() {
-                String enc = super.getCharacterEncoding();
-                return (enc != null) ? enc : Util.ENCODING_DIRECT;
-            }
-        };
+        RequestContext rc = this.getMultiPartRequestContext();
 
         // Parse the request
         List<?> /* FileItem */items = null;
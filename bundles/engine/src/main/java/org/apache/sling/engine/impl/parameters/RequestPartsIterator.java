@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.sling.api.SlingIOException;
+import org.apache.sling.api.request.RequestParameter;
+
+/**
+ * The <code>RequestPartsIterator</code> iterates over the parts of a
+ * multipart/form-data POST request in the order in which they are sent,
+ * reading the request body while iterating. The parts are provided as
+ * {@link StreamedRequestParameter} instances.
+ * <p>
+ * The form encoding is taken from the <code>_charset_</code> request
+ * parameter if it is sent in the query string or as a form field before
+ * the parts to which it should apply.
+ */
+class RequestPartsIterator implements Iterator<RequestParameter> {
+
+    private final FileItemIterator delegatee;
+
+    private String formEncoding;
+
+    RequestPartsIterator(final FileItemIterator delegatee, final String formEncoding) {
+        this.delegatee = delegatee;
+        this.formEncoding = formEncoding;
+    }
+
+    public boolean hasNext() {
+        try {
+            return this.delegatee.hasNext();
+        } catch (FileUploadException fue) {
+            throw new SlingIOException(new IOException("Error parsing request: " + fue.getMessage(), fue));
+        } catch (IOException ioe) {
+            throw new SlingIOException(ioe);
+        }
+    }
+
+    public RequestParameter next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            final FileItemStream item = this.delegatee.next();
+            final StreamedRequestParameter param = new StreamedRequestParameter(item, this.formEncoding);
+            param.setName(Util.reencode(param.getName(), this.formEncoding));
+            if (param.isFormField() && ParameterSupport.PARAMETER_FORMENCODING.equals(param.getName())) {
+                this.formEncoding = Util.validateEncoding(Util.toIdentityEncodedString(param.get()));
+            }
+            return param;
+        } catch (FileUploadException fue) {
+            throw new SlingIOException(new IOException("Error parsing request: " + fue.getMessage(), fue));
+        } catch (IOException ioe) {
+            throw new SlingIOException(ioe);
+        }
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+}
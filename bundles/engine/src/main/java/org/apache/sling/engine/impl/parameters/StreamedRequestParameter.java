@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.util.Streams;
+
+/**
+ * The <code>StreamedRequestParameter</code> represents a part of a
+ * multipart/form-data POST request which is read while iterating over the
+ * request parts with a {@link RequestPartsIterator}.
+ * <p>
+ * Form fields are read into memory when the part is reached. The content of
+ * a file is not buffered: the stream returned by {@link #getInputStream()}
+ * reads directly from the request and is only valid until the iterator
+ * advances to the next part. As the size of such a file is not known in
+ * advance, {@link #getSize()} returns <code>-1</code> until the content has
+ * been read with {@link #get()}. An empty file is detected by peeking at the
+ * stream, in this case <code>0</code> is returned.
+ */
+public class StreamedRequestParameter extends AbstractRequestParameter {
+
+    private final FileItemStream item;
+
+    private final PushbackInputStream stream;
+
+    private byte[] content;
+
+    private String encodedFileName;
+
+    private String cachedValue;
+
+    StreamedRequestParameter(final FileItemStream item, final String encoding) throws IOException {
+        super(item.getFieldName(), encoding);
+        this.item = item;
+        if (item.isFormField()) {
+            this.content = readFully(item.openStream());
+            this.stream = null;
+        } else {
+            this.stream = new PushbackInputStream(item.openStream(), 1);
+        }
+    }
+
+    public boolean isFormField() {
+        return this.item.isFormField();
+    }
+
+    public String getContentType() {
+        return this.item.getContentType();
+    }
+
+    public long getSize() {
+        if (this.content == null && this.isEmpty()) {
+            this.content = new byte[0];
+        }
+        return (this.content != null) ? this.content.length : -1;
+    }
+
+    /**
+     * Check whether the stream of a file has no content without consuming it.
+     */
+    private boolean isEmpty() {
+        try {
+            final int b = this.stream.read();
+            if (b == -1) {
+                return true;
+            }
+            this.stream.unread(b);
+            return false;
+        } catch (IOException ioe) {
+            // the content can't be read, let the consumer fail
+            return false;
+        }
+    }
+
+    /**
+     * Returns the content of the part. For a file this reads the remainder
+     * of the file into memory, which defeats streaming and should be
+     * avoided for large files.
+     */
+    public byte[] get() {
+        if (this.content == null) {
+            try {
+                this.content = readFully(this.stream);
+            } catch (IOException ioe) {
+                throw new IllegalStateException("Cannot read content of " + this.getName(), ioe);
+            }
+        }
+        return this.content;
+    }
+
+    public InputStream getInputStream() throws IOException {
+        if (this.stream == null) {
+            return new ByteArrayInputStream(this.content);
+        }
+        return this.stream;
+    }
+
+    public String getFileName() {
+        if (this.encodedFileName == null && this.item.getName() != null) {
+            String tmpFileName = this.item.getName();
+            if (this.getEncoding() != null) {
+                try {
+                    byte[] rawName = tmpFileName.getBytes(Util.ENCODING_DIRECT);
+                    tmpFileName = new String(rawName, this.getEncoding());
+                } catch (UnsupportedEncodingException uee) {
+                    // might log, but actually don't care
+                }
+            }
+            this.encodedFileName = tmpFileName;
+        }
+
+        return this.encodedFileName;
+    }
+
+    public String getString() {
+        if (this.cachedValue == null) {
+            final byte[] data = this.get();
+            final String encoding = this.getEncoding();
+            if (encoding != null) {
+                try {
+                    this.cachedValue = new String(data, encoding);
+                } catch (UnsupportedEncodingException uee) {
+                    // don't care, fall back to platform default
+                }
+            }
+            if (this.cachedValue == null) {
+                this.cachedValue = new String(data);
+            }
+        }
+        return this.cachedValue;
+    }
+
+    public String getString(final String enc) throws UnsupportedEncodingException {
+        return new String(this.get(), enc);
+    }
+
+    public String toString() {
+        if (this.isFormField()) {
+            return this.getString();
+        }
+
+        return "File: " + this.getFileName() + " (streamed)";
+    }
+
+    private static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Streams.copy(in, out, true);
+        return out.toByteArray();
+    }
+}
@@ -55,6 +55,7 @@ import org.apache.sling.engine.impl.SlingRequestProcessorImpl;
 import org.apache.sling.engine.impl.StaticResponseHeader;
 import org.apache.sling.engine.impl.adapter.SlingServletRequestAdapter;
 import org.apache.sling.engine.impl.adapter.SlingServletResponseAdapter;
+import org.apache.sling.engine.impl.filter.FilterSelectionCache;
 import org.apache.sling.engine.impl.parameters.ParameterSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -174,6 +175,9 @@ public class RequestData {
      */
     private int peakRecusionDepth;
 
+    /** The filters selected for the paths processed in this request */
+    private FilterSelectionCache filterSelectionCache;
+
     public static void setMaxCallCounter(int maxCallCounter) {
         RequestData.maxCallCounter = maxCallCounter;
     }
@@ -610,6 +614,16 @@ public class RequestData {
         return (maxCallCounter >= 0) && getServletCallCount() >= maxCallCounter;
     }
 
+    /**
+     * Returns the filters selected for the paths processed in this request.
+     */
+    public FilterSelectionCache getFilterSelectionCache() {
+        if (filterSelectionCache == null) {
+            filterSelectionCache = new FilterSelectionCache();
+        }
+        return filterSelectionCache;
+    }
+
     public long getElapsedTimeMsec() {
         return System.currentTimeMillis() - startTimestamp;
     }
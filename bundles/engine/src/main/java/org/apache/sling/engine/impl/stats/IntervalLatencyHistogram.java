@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.engine.impl.stats;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The <code>IntervalLatencyHistogram</code> keeps a {@link LatencyHistogram}
+ * for an interval like the {@link RequestLatencyStatistics} do for their
+ * keys: when the interval has ended the histogram is kept as the snapshot of
+ * the last interval and a new histogram is started.
+ */
+public class IntervalLatencyHistogram {
+
+    private final long intervalMsec;
+
+    private final AtomicReference<Interval> current = new AtomicReference<Interval>();
+
+    private volatile Interval last;
+
+    /**
+     * @param intervalSec The length of an interval in seconds. If this is
+     *            zero or negative, the histogram is only reset by calling
+     *            {@link #reset()}.
+     */
+    public IntervalLatencyHistogram(final int intervalSec) {
+        this.intervalMsec = intervalSec * 1000L;
+        this.current.set(new Interval(System.currentTimeMillis()));
+    }
+
+    public void addValue(final long value) {
+        this.getCurrentInterval().histogram.addValue(value);
+    }
+
+    /**
+     * Returns the histogram of the current interval.
+     */
+    public LatencyHistogram getHistogram() {
+        return this.getCurrentInterval().histogram;
+    }
+
+    /**
+     * Returns the histogram of the last completed interval or
+     * <code>null</code> if no interval has been completed yet.
+     */
+    public LatencyHistogram getLastIntervalHistogram() {
+        this.getCurrentInterval();
+        final Interval interval = this.last;
+        return (interval == null) ? null : interval.histogram;
+    }
+
+    /**
+     * Returns the start time of the current interval.
+     */
+    public long getIntervalStart() {
+        return this.getCurrentInterval().start;
+    }
+
+    /**
+     * Ends the current interval and starts a new one.
+     */
+    public void reset() {
+        this.last = this.current.getAndSet(new Interval(System.currentTimeMillis()));
+    }
+
+    private Interval getCurrentInterval() {
+        final Interval interval = this.current.get();
+        if (this.intervalMsec > 0) {
+            final long now = System.currentTimeMillis();
+            if (now - interval.start >= this.intervalMsec) {
+                final Interval next = new Interval(now);
+                if (this.current.compareAndSet(interval, next)) {
+                    this.last = interval;
+                    return next;
+                }
+                return this.current.get();
+            }
+        }
+        return interval;
+    }
+
+    private static final class Interval {
+
+        final long start;
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        Interval(final long start) {
+            this.start = start;
+        }
+    }
+}
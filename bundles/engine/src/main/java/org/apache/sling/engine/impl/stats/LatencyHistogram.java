@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.engine.impl.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free statistics of latencies which in addition to the
+ * {@link StripedStatistics} keep a histogram of the values to provide
+ * percentiles.
+ * <p>
+ * The histogram uses buckets growing exponentially with eight buckets per
+ * power of two, so a percentile is accurate within 12.5% of its value.
+ * Values from 0 to 7 are counted exactly and values above 2^40 are counted
+ * in the last bucket.
+ */
+public class LatencyHistogram extends StripedStatistics {
+
+    /** Number of bits of the value used to select the bucket */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_EXPONENT = 40;
+
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets;
+
+    /**
+     * Creates a histogram with a stripe per available processor.
+     */
+    public LatencyHistogram() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a histogram with the given number of stripes which is
+     * rounded up to the next power of two.
+     */
+    public LatencyHistogram(final int stripes) {
+        super(stripes);
+        this.buckets = new AtomicLongArray(this.getStripes() * BUCKETS);
+    }
+
+    @Override
+    protected void addValue(final int stripe, final long value) {
+        this.buckets.incrementAndGet(stripe * BUCKETS + bucketIndex(value));
+    }
+
+    /**
+     * Returns the value below or at which the given percentage of values
+     * is found, for example <code>getPercentile(99)</code> for the 99th
+     * percentile. If no value has been added, zero is returned.
+     *
+     * @param percent The percentage between 0 and 100
+     */
+    public long getPercentile(final double percent) {
+        final long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < this.buckets.length(); i++) {
+            final long count = this.buckets.get(i);
+            counts[i % BUCKETS] += count;
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(total * percent / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        for (int i = 0; i < this.buckets.length(); i++) {
+            this.buckets.set(i, 0);
+        }
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (value < 0) ? 0 : (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS
+            + (int) ((value >> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long bucketUpperBound(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        final int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1L) << shift) - 1;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.engine.impl.stats;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.Servlet;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.engine.RequestUtil;
+import org.apache.sling.engine.impl.request.ContentData;
+import org.apache.sling.engine.impl.request.RequestData;
+
+/**
+ * The <code>RequestLatencyStatistics</code> keeps a {@link LatencyHistogram}
+ * of the request durations per servlet, resource type, request method and
+ * extension.
+ * <p>
+ * The number of histograms is bounded: once the maximum number of keys is
+ * reached, the durations of requests with new keys are recorded in the
+ * histogram of the {@link #OTHER_KEY}. The histograms are collected for an
+ * interval: when the interval has ended the histograms are kept as the
+ * snapshot of the last interval and new histograms are started.
+ */
+public class RequestLatencyStatistics {
+
+    /** The key of the histogram of requests exceeding the number of keys */
+    public static final String OTHER_KEY = "(other)";
+
+    /** Number of stripes of the histograms, lower than the default to save memory */
+    private static final int STRIPES = 4;
+
+    private final int maxKeys;
+
+    private final long intervalMsec;
+
+    private final AtomicReference<Interval> current = new AtomicReference<Interval>();
+
+    private volatile Interval last;
+
+    /**
+     * @param maxKeys The maximum number of histograms per interval
+     * @param intervalSec The length of an interval in seconds. If this
+     *            is zero or negative, the histograms are only reset
+     *            by calling {@link #reset()}.
+     */
+    public RequestLatencyStatistics(final int maxKeys, final int intervalSec) {
+        this.maxKeys = Math.max(1, maxKeys);
+        this.intervalMsec = intervalSec * 1000L;
+        this.current.set(new Interval(System.currentTimeMillis()));
+    }
+
+    /**
+     * Records the duration of the request.
+     */
+    public void addRequestData(final RequestData requestData) {
+        final SlingHttpServletRequest request = requestData.getSlingRequest();
+        final ContentData contentData = requestData.getContentData();
+
+        String servletName = null;
+        String resourceType = null;
+        if (contentData != null) {
+            final Servlet servlet = contentData.getServlet();
+            if (servlet != null) {
+                servletName = RequestUtil.getServletName(servlet);
+            }
+            final Resource resource = contentData.getResource();
+            if (resource != null) {
+                resourceType = resource.getResourceType();
+            }
+        }
+        final String extension = (request.getRequestPathInfo() != null)
+                ? request.getRequestPathInfo().getExtension()
+                : null;
+
+        this.addValue(createKey(servletName, resourceType, request.getMethod(), extension),
+            requestData.getElapsedTimeMsec());
+    }
+
+    /**
+     * Records a duration for the key.
+     */
+    public void addValue(final String key, final long durationMsec) {
+        final Interval interval = this.getCurrentInterval();
+        LatencyHistogram histogram = interval.histograms.get(key);
+        if (histogram == null) {
+            if (interval.histograms.size() >= this.maxKeys) {
+                histogram = interval.getHistogram(OTHER_KEY);
+            } else {
+                histogram = interval.getHistogram(key);
+            }
+        }
+        histogram.addValue(durationMsec);
+    }
+
+    /**
+     * Returns the histograms of the current interval sorted by key.
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return sorted(this.getCurrentInterval());
+    }
+
+    /**
+     * Returns the histograms of the last completed interval sorted by key.
+     * If no interval has been completed yet, an empty map is returned.
+     */
+    public Map<String, LatencyHistogram> getLastIntervalHistograms() {
+        this.getCurrentInterval();
+        return sorted(this.last);
+    }
+
+    /**
+     * Returns the start time of the current interval.
+     */
+    public long getIntervalStart() {
+        return this.getCurrentInterval().start;
+    }
+
+    /**
+     * Ends the current interval and starts a new one.
+     */
+    public void reset() {
+        this.last = this.current.getAndSet(new Interval(System.currentTimeMillis()));
+    }
+
+    static String createKey(final String servletName, final String resourceType,
+            final String method, final String extension) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(servletName == null ? "-" : servletName);
+        sb.append(' ').append(resourceType == null ? "-" : resourceType);
+        sb.append(' ').append(method == null ? "-" : method);
+        sb.append(' ').append(extension == null ? "-" : extension);
+        return sb.toString();
+    }
+
+    private Interval getCurrentInterval() {
+        final Interval interval = this.current.get();
+        if (this.intervalMsec > 0) {
+            final long now = System.currentTimeMillis();
+            if (now - interval.start >= this.intervalMsec) {
+                final Interval next = new Interval(now);
+                if (this.current.compareAndSet(interval, next)) {
+                    this.last = interval;
+                    return next;
+                }
+                return this.current.get();
+            }
+        }
+        return interval;
+    }
+
+    private static Map<String, LatencyHistogram> sorted(final Interval interval) {
+        if (interval == null) {
+            return Collections.emptyMap();
+        }
+        return new TreeMap<String, LatencyHistogram>(interval.histograms);
+    }
+
+    private static final class Interval {
+
+        final long start;
+
+        final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+
+        Interval(final long start) {
+            this.start = start;
+        }
+
+        LatencyHistogram getHistogram(final String key) {
+            LatencyHistogram histogram = this.histograms.get(key);
+            if (histogram == null) {
+                histogram = new LatencyHistogram(STRIPES);
+                final LatencyHistogram existing = this.histograms.putIfAbsent(key, histogram);
+                if (existing != null) {
+                    histogram = existing;
+                }
+            }
+            return histogram;
+        }
+    }
+}
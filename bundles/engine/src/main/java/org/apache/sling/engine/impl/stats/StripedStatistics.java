@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.engine.impl.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free statistics of long values: count, minimum, maximum, mean and
+ * standard deviation.
+ * <p>
+ * To not have all request threads update the same counters, the counters
+ * are striped: each thread updates the stripe selected by its thread id.
+ * The statistics are calculated by summing up all stripes. As the stripes
+ * are not read atomically, the statistics might be slightly inconsistent
+ * while values are added.
+ */
+public class StripedStatistics {
+
+    /** Number of longs per stripe, one cache line to avoid false sharing */
+    private static final int STRIPE_SIZE = 8;
+
+    private static final int COUNT = 0;
+
+    private static final int SUM = 1;
+
+    private static final int SUM_SQUARES = 2;
+
+    private final int stripeMask;
+
+    private final AtomicLongArray counters;
+
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * Creates statistics with a stripe per available processor.
+     */
+    public StripedStatistics() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates statistics with the given number of stripes which is
+     * rounded up to the next power of two.
+     */
+    public StripedStatistics(final int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripeMask = size - 1;
+        this.counters = new AtomicLongArray(size * STRIPE_SIZE);
+    }
+
+    /**
+     * Adds a value to the statistics.
+     */
+    public void addValue(final long value) {
+        final int stripe = this.stripe();
+        final int offset = stripe * STRIPE_SIZE;
+        this.counters.incrementAndGet(offset + COUNT);
+        this.counters.addAndGet(offset + SUM, value);
+        this.counters.addAndGet(offset + SUM_SQUARES, value * value);
+
+        long current;
+        while (value < (current = this.min.get())) {
+            if (this.min.compareAndSet(current, value)) {
+                break;
+            }
+        }
+        while (value > (current = this.max.get())) {
+            if (this.max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+        this.addValue(stripe, value);
+    }
+
+    /**
+     * Hook for subclasses to record the value in the stripe.
+     */
+    protected void addValue(final int stripe, final long value) {
+        // nothing to do
+    }
+
+    /**
+     * The number of values added since the last reset.
+     */
+    public long getCount() {
+        return this.sum(COUNT);
+    }
+
+    /**
+     * The smallest value or <code>Long.MAX_VALUE</code> if no value has
+     * been added.
+     */
+    public long getMin() {
+        return this.min.get();
+    }
+
+    /**
+     * The largest value or zero if no value has been added.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * The mean of the values or zero if no value has been added.
+     */
+    public double getMean() {
+        final long n = this.getCount();
+        if (n > 0) {
+            return (double) this.sum(SUM) / n;
+        }
+        return 0;
+    }
+
+    /**
+     * The standard deviation of the values. If zero or one value has been
+     * added, this method returns zero.
+     */
+    public double getStandardDeviation() {
+        final long n = this.getCount();
+        if (n > 1) {
+            // algorithm taken from
+            // http://de.wikipedia.org/wiki/Standardabweichung section
+            // "Berechnung fuer auflaufende Messwerte"
+            final double sumX = this.sum(SUM);
+            final double sumX2 = this.sum(SUM_SQUARES);
+            return Math.sqrt(Math.max(0, (sumX2 - sumX * sumX / n) / (n - 1)));
+        }
+
+        // single data point has no deviation
+        return 0;
+    }
+
+    /**
+     * Resets the statistics. Values added concurrently might be lost or
+     * only be partially recorded.
+     */
+    public void reset() {
+        for (int i = 0; i < this.counters.length(); i++) {
+            this.counters.set(i, 0);
+        }
+        this.min.set(Long.MAX_VALUE);
+        this.max.set(0);
+    }
+
+    /**
+     * The number of stripes.
+     */
+    protected int getStripes() {
+        return this.stripeMask + 1;
+    }
+
+    private int stripe() {
+        return (int) Thread.currentThread().getId() & this.stripeMask;
+    }
+
+    private long sum(final int counter) {
+        long result = 0;
+        for (int i = counter; i < this.counters.length(); i += STRIPE_SIZE) {
+            result += this.counters.get(i);
+        }
+        return result;
+    }
+}
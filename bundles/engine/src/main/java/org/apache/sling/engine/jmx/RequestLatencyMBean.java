@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.engine.jmx;
+
+import javax.management.openmbean.TabularData;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * This is the management interface for the request latency statistics
+ * collected by the SlingRequestProcessor.
+ * <p>
+ * Request latencies are collected per servlet, resource type, request
+ * method and extension for an interval. Each row of the tabular data has
+ * the key, the number of requests and the minimum, maximum, mean, 50th,
+ * 90th and 99th percentile duration in milliseconds. Filter latencies are
+ * collected for the same interval and have the same columns in
+ * microseconds.
+ *
+ * @since 1.1, Sling Engine 2.4.2
+ */
+@ProviderType
+public interface RequestLatencyMBean {
+
+    /**
+     * Returns the request latencies of the current interval.
+     */
+    TabularData getRequestLatencies();
+
+    /**
+     * Returns the request latencies of the last completed interval. If no
+     * interval has been completed yet, the table is empty.
+     */
+    TabularData getLastIntervalRequestLatencies();
+
+    /**
+     * Returns the latencies of the servlet filters of the current interval.
+     * The key of each row is the filter chain type, the order and the class
+     * name of the filter.
+     */
+    TabularData getFilterLatencies();
+
+    /**
+     * Returns the latencies of the servlet filters of the last completed
+     * interval. Filters without a completed interval are not listed.
+     */
+    TabularData getLastIntervalFilterLatencies();
+
+    /**
+     * Returns the start time of the current interval in milliseconds since
+     * the epoch.
+     */
+    long getIntervalStartTime();
+
+    /**
+     * Ends the current interval of the request and filter latencies and
+     * resets the filter call statistics.
+     */
+    void resetStatistics();
+}
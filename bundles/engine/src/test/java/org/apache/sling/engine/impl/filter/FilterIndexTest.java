@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.engine.impl.filter;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import javax.servlet.Filter;
+
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests the selection of filters by path.
+ */
+@RunWith(JMock.class)
+public class FilterIndexTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    @Test public void testLiteralPrefix() {
+        assertEquals("/content/", FilterHandle.getLiteralPrefix("/content/.*"));
+        assertEquals("/content/", FilterHandle.getLiteralPrefix("^/content/.*"));
+        assertEquals("/content/pag", FilterHandle.getLiteralPrefix("/content/page?.*"));
+        assertEquals("/content/page", FilterHandle.getLiteralPrefix("/content/page+.*"));
+        assertEquals("/apps", FilterHandle.getLiteralPrefix("/apps"));
+        assertEquals("", FilterHandle.getLiteralPrefix(".*\\.json"));
+        assertEquals("", FilterHandle.getLiteralPrefix("/content/.*|/apps/.*"));
+        assertEquals("", FilterHandle.getLiteralPrefix("(?i)/content/.*"));
+    }
+
+    @Test public void testUnconditional() {
+        final SlingFilterChainHelper chain = new SlingFilterChainHelper();
+        chain.addFilter(context.mock(Filter.class, "A"), null, 1L, 100, "A");
+        chain.addFilter(context.mock(Filter.class, "B"), "", 2L, 200, "B");
+
+        final FilterIndex index = chain.getIndex();
+        assertTrue(index.isUnconditional());
+        assertSame(index.getFilters(), index.select("/content/page"));
+    }
+
+    @Test public void testSelect() {
+        final SlingFilterChainHelper chain = new SlingFilterChainHelper();
+        chain.addFilter(context.mock(Filter.class, "A"), null, 1L, 600, "A");
+        chain.addFilter(context.mock(Filter.class, "B"), "/content/.*", 2L, 500, "B");
+        chain.addFilter(context.mock(Filter.class, "C"), "/content/site/.*\\.html", 3L, 400, "C");
+        chain.addFilter(context.mock(Filter.class, "D"), ".*\\.json", 4L, 300, "D");
+        chain.addFilter(context.mock(Filter.class, "E"), "/apps/.*", 5L, 200, "E");
+        chain.addFilter(context.mock(Filter.class, "F"), "/", 6L, 100, "F");
+
+        final FilterIndex index = chain.getIndex();
+        assertFalse(index.isUnconditional());
+        assertOrderSources(index.select("/content/site/page.html"), "A", "B", "C");
+        assertOrderSources(index.select("/content/site/page.json"), "A", "B", "D");
+        assertOrderSources(index.select("/content"), "A");
+        assertOrderSources(index.select("/apps/x.json"), "A", "D", "E");
+        assertOrderSources(index.select("/"), "A", "F");
+        assertOrderSources(index.select(null), "A", "F");
+    }
+
+    @Test public void testSelectMatchesRegex() {
+        final String[] patterns = { "/content/.*", "/content/site/.*\\.html", ".*\\.json", "/a?pps/.*", "/content" };
+        final String[] paths = { "/content/site/page.html", "/content", "/content/", "/pps/x", "/apps/x.json",
+            "/etc", "" };
+
+        final SlingFilterChainHelper chain = new SlingFilterChainHelper();
+        for (int i = 0; i < patterns.length; i++) {
+            chain.addFilter(context.mock(Filter.class, patterns[i]), patterns[i], (long) i, i, patterns[i]);
+        }
+        final FilterIndex index = chain.getIndex();
+        for (final String path : paths) {
+            int count = 0;
+            for (final FilterHandle filter : chain.getFilters()) {
+                if (path.matches(filter.getOrderSource())) {
+                    count++;
+                }
+            }
+            final FilterHandle[] selected = index.select(path);
+            assertEquals(path, count, selected.length);
+            for (final FilterHandle filter : selected) {
+                assertTrue(path, path.matches(filter.getOrderSource()));
+            }
+        }
+    }
+
+    @Test public void testSelectionCache() {
+        final SlingFilterChainHelper chain = new SlingFilterChainHelper();
+        chain.addFilter(context.mock(Filter.class, "A"), "/content/.*", 1L, 100, "A");
+
+        final FilterSelectionCache cache = new FilterSelectionCache();
+        final FilterHandle[] first = cache.select(chain.getIndex(), "/content/page");
+        assertSame(first, cache.select(chain.getIndex(), "/content/page"));
+
+        // a new filter creates a new index and a new selection
+        chain.addFilter(context.mock(Filter.class, "B"), null, 2L, 200, "B");
+        assertOrderSources(cache.select(chain.getIndex(), "/content/page"), "B", "A");
+    }
+
+    private void assertOrderSources(final FilterHandle[] filters, final String... expected) {
+        final String[] actual = new String[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            actual[i] = filters[i].getOrderSource();
+        }
+        assertArrayEquals(expected, actual);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * The <code>AsyncLogFileTest</code> class tests the
+ * <code>AsyncLogFile</code> class.
+ */
+public class AsyncLogFileTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.file = File.createTempFile("asynclog", ".log");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.file.delete();
+        super.tearDown();
+    }
+
+    public void testWriteInOrder() throws IOException {
+        final AsyncLogFile log = new AsyncLogFile(this.file, 16, true);
+        for (int i = 0; i < 1000; i++) {
+            log.write("message " + i);
+        }
+        log.close();
+
+        final List<String> lines = this.readLines();
+        assertEquals(1000, lines.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("message " + i, lines.get(i));
+        }
+        assertEquals(1000, log.getWrittenCount());
+        assertEquals(0, log.getDroppedCount());
+    }
+
+    public void testConcurrentWriters() throws Exception {
+        final AsyncLogFile log = new AsyncLogFile(this.file, 64, true);
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 500; i++) {
+                        log.write(id + ":" + i);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        log.close();
+
+        // all messages are written and the messages of each thread are in order
+        final List<String> lines = this.readLines();
+        assertEquals(2000, lines.size());
+        final int[] next = new int[threads.length];
+        for (final String line : lines) {
+            final int sep = line.indexOf(':');
+            final int id = Integer.parseInt(line.substring(0, sep));
+            assertEquals(next[id]++, Integer.parseInt(line.substring(sep + 1)));
+        }
+    }
+
+    public void testDropWhenClosed() throws IOException {
+        final AsyncLogFile log = new AsyncLogFile(this.file, 16, false);
+        log.write("before");
+        log.close();
+        log.write("after");
+
+        assertEquals(1, log.getWrittenCount());
+        assertEquals(1, log.getDroppedCount());
+        assertEquals(1, this.readLines().size());
+    }
+
+    public void testAppend() throws IOException {
+        AsyncLogFile log = new AsyncLogFile(this.file, 16, true);
+        log.write("first");
+        log.close();
+        log = new AsyncLogFile(this.file, 16, true);
+        log.write("second");
+        log.close();
+
+        final List<String> lines = this.readLines();
+        assertEquals(2, lines.size());
+        assertEquals("first", lines.get(0));
+        assertEquals("second", lines.get(1));
+    }
+
+    public void testWakeUpWhenIdle() throws Exception {
+        final AsyncLogFile log = new AsyncLogFile(this.file, 16, true);
+        log.write("first");
+        // the writer thread is parked waiting for messages
+        this.waitForWritten(log, 1);
+        log.write("second");
+        this.waitForWritten(log, 2);
+        log.close();
+
+        assertEquals(2, this.readLines().size());
+    }
+
+    private void waitForWritten(final AsyncLogFile log, final long count) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 5000;
+        while (log.getWrittenCount() < count && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, log.getWrittenCount());
+    }
+
+    private List<String> readLines() throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file),
+            "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
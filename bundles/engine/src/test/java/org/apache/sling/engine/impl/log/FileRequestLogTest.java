@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * The <code>FileRequestLogTest</code> class tests sharing the log files of
+ * the <code>FileRequestLog</code> class.
+ */
+public class FileRequestLogTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.file = File.createTempFile("filelog", ".log");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileRequestLog.dispose();
+        this.file.delete();
+        super.tearDown();
+    }
+
+    public void testCloseWithLastUser() throws IOException {
+        final FileRequestLog first = new FileRequestLog(this.file);
+        final FileRequestLog second = new FileRequestLog(this.file);
+        assertTrue(this.getStatistics().contains("users: 2; synchronous"));
+
+        first.write("first");
+        first.close();
+        second.write("second");
+        assertTrue(this.getStatistics().contains("users: 1; synchronous"));
+
+        second.close();
+        assertFalse(this.getStatistics().contains(this.file.getAbsolutePath()));
+
+        // written after closing
+        first.write("dropped");
+
+        final List<String> lines = this.readLines();
+        assertEquals(2, lines.size());
+        assertEquals("first", lines.get(0));
+        assertEquals("second", lines.get(1));
+    }
+
+    public void testReopenInNewMode() throws IOException {
+        final FileRequestLog sync = new FileRequestLog(this.file);
+        sync.write("sync");
+
+        final FileRequestLog async = new FileRequestLog(this.file, 100, false);
+        assertTrue(this.getStatistics().contains("users: 2; asynchronous (buffer: 128, when full: drop)"));
+
+        // both logs write to the reopened file
+        sync.write("first");
+        async.write("second");
+        sync.close();
+        async.close();
+
+        final List<String> lines = this.readLines();
+        assertEquals(3, lines.size());
+        assertEquals("sync", lines.get(0));
+        assertEquals("first", lines.get(1));
+        assertEquals("second", lines.get(2));
+    }
+
+    public void testReopenAfterClose() throws IOException {
+        final FileRequestLog async = new FileRequestLog(this.file, 16, true);
+        async.write("async");
+        async.close();
+
+        final FileRequestLog sync = new FileRequestLog(this.file);
+        assertTrue(this.getStatistics().contains("users: 1; synchronous"));
+        sync.write("sync");
+        sync.close();
+
+        assertEquals(2, this.readLines().size());
+    }
+
+    public void testStatistics() throws IOException {
+        final FileRequestLog async = new FileRequestLog(this.file, 16, true);
+        async.write("message");
+        async.close();
+
+        // the counters are kept while the file is open
+        final FileRequestLog open = new FileRequestLog(this.file, 16, true);
+        final FileRequestLog same = new FileRequestLog(this.file, 10, true);
+        open.write("first");
+        same.write("second");
+        assertTrue(this.getStatistics().contains("users: 2; asynchronous (buffer: 16, when full: wait)"));
+        assertTrue(this.getStatistics().contains("dropped: 0; waited: 0"));
+        open.close();
+        same.close();
+        assertEquals(3, this.readLines().size());
+    }
+
+    private String getStatistics() {
+        final StringWriter out = new StringWriter();
+        final PrintWriter pw = new PrintWriter(out);
+        FileRequestLog.printStatistics(pw);
+        pw.flush();
+        return out.toString();
+    }
+
+    private List<String> readLines() throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file),
+            "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
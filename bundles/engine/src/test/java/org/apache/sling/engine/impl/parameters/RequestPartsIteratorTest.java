@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.fileupload.UploadContext;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
+import org.apache.sling.api.request.RequestParameter;
+
+public class RequestPartsIteratorTest extends TestCase {
+
+    private static final String BOUNDARY = "---boundary";
+
+    public void testPartsInOrder() throws Exception {
+        final RequestPartsIterator parts = createIterator(
+            field("./title", "Hello"),
+            file("./file", "test.txt", "text/plain", "file content"));
+
+        assertTrue(parts.hasNext());
+        final RequestParameter title = parts.next();
+        assertTrue(title.isFormField());
+        assertEquals("Hello", title.getString());
+        assertEquals(5, title.getSize());
+
+        assertTrue(parts.hasNext());
+        final RequestParameter file = parts.next();
+        assertFalse(file.isFormField());
+        assertEquals("test.txt", file.getFileName());
+        assertEquals("text/plain", file.getContentType());
+        assertEquals(-1, file.getSize());
+        assertEquals("file content", Streams.asString(file.getInputStream()));
+
+        assertFalse(parts.hasNext());
+    }
+
+    public void testEmptyFile() throws Exception {
+        final RequestPartsIterator parts = createIterator(
+            file("./file", "", "application/octet-stream", ""),
+            file("./other", "other.txt", "text/plain", "x"));
+
+        final RequestParameter empty = parts.next();
+        assertEquals(0, empty.getSize());
+        final RequestParameter other = parts.next();
+        assertEquals(-1, other.getSize());
+        // peeking does not consume the content
+        assertEquals("x", Streams.asString(other.getInputStream()));
+    }
+
+    public void testFormEncoding() throws Exception {
+        // latin small letter o with diaresis encoded in UTF-8
+        final RequestPartsIterator parts = createIterator(
+            field("_charset_", "UTF-8"),
+            field("name", "\u00c3\u00b6"));
+
+        parts.next();
+        assertEquals("\u00f6", parts.next().getString());
+    }
+
+    public void testFileContentReadOnDemand() throws Exception {
+        final RequestPartsIterator parts = createIterator(
+            file("a", "a.bin", "application/octet-stream", "first"),
+            file("b", "b.bin", "application/octet-stream", "second"));
+
+        final RequestParameter a = parts.next();
+        assertEquals("first", new String(a.get(), "ISO-8859-1"));
+        assertEquals(5, a.getSize());
+
+        // skipping an unread file part is fine
+        assertEquals("b", parts.next().getName());
+        assertFalse(parts.hasNext());
+    }
+
+    private RequestPartsIterator createIterator(final String... parts) throws Exception {
+        final StringBuilder body = new StringBuilder();
+        for (final String part : parts) {
+            body.append("--").append(BOUNDARY).append("\r\n").append(part).append("\r\n");
+        }
+        body.append("--").append(BOUNDARY).append("--\r\n");
+        final byte[] data = body.toString().getBytes("ISO-8859-1");
+
+        final UploadContext rc = new UploadContext() {
+
+            public String getCharacterEncoding() {
+                return Util.ENCODING_DIRECT;
+            }
+
+            public String getContentType() {
+                return "multipart/form-data; boundary=" + BOUNDARY;
+            }
+
+            public long contentLength() {
+                return data.length;
+            }
+
+            /**
+             * @deprecated Replaced by {@link #contentLength()}
+             */
+            @Deprecated
+            public int getContentLength() {
+                return data.length;
+            }
+
+            public InputStream getInputStream() throws IOException {
+                return new ByteArrayInputStream(data);
+            }
+        };
+        return new RequestPartsIterator(new ServletFileUpload().getItemIterator(rc), Util.ENCODING_DIRECT);
+    }
+
+    private static String field(final String name, final String value) {
+        return "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value;
+    }
+
+    private static String file(final String name, final String fileName, final String contentType, final String content) {
+        return "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + fileName + "\"\r\n"
+            + "Content-Type: " + contentType + "\r\n\r\n" + content;
+    }
+}
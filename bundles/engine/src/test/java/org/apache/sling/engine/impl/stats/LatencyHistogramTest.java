@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.engine.impl.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void test_buckets() {
+        long lastUpper = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+            final long upper = LatencyHistogram.bucketUpperBound(i);
+            assertTrue("Bucket bounds must increase", upper > lastUpper);
+            assertEquals(i, LatencyHistogram.bucketIndex(lastUpper + 1));
+            assertEquals(i, LatencyHistogram.bucketIndex(upper));
+            lastUpper = upper;
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+        assertEquals(0, LatencyHistogram.bucketIndex(-1));
+    }
+
+    @Test
+    public void test_percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.addValue(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getMean(), 0.001);
+        assertWithin(500, histogram.getPercentile(50));
+        assertWithin(900, histogram.getPercentile(90));
+        assertWithin(990, histogram.getPercentile(99));
+        assertEquals(1000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void test_bounded_keys() {
+        final RequestLatencyStatistics statistics = new RequestLatencyStatistics(2, 0);
+        statistics.addValue("a", 1);
+        statistics.addValue("b", 2);
+        statistics.addValue("c", 3);
+        statistics.addValue("a", 4);
+
+        final Map<String, LatencyHistogram> histograms = statistics.getHistograms();
+        assertEquals(3, histograms.size());
+        assertEquals(2, histograms.get("a").getCount());
+        assertEquals(1, histograms.get(RequestLatencyStatistics.OTHER_KEY).getCount());
+
+        statistics.reset();
+        assertEquals(0, statistics.getHistograms().size());
+        assertEquals(3, statistics.getLastIntervalHistograms().size());
+    }
+
+    @Test
+    public void test_interval_histogram() {
+        final IntervalLatencyHistogram histogram = new IntervalLatencyHistogram(0);
+        histogram.addValue(10);
+        histogram.addValue(20);
+        assertEquals(2, histogram.getHistogram().getCount());
+        assertNull(histogram.getLastIntervalHistogram());
+
+        histogram.reset();
+        histogram.addValue(30);
+        assertEquals(1, histogram.getHistogram().getCount());
+        assertEquals(2, histogram.getLastIntervalHistogram().getCount());
+        assertEquals(20, histogram.getLastIntervalHistogram().getMax());
+    }
+
+    @Test
+    public void test_key_without_extension() {
+        assertEquals("servlet type GET html", RequestLatencyStatistics.createKey("servlet", "type", "GET", "html"));
+        assertEquals("- - GET -", RequestLatencyStatistics.createKey(null, null, "GET", null));
+    }
+
+    private void assertWithin(final long expected, final long actual) {
+        assertTrue("Expected " + expected + " but got " + actual,
+            actual >= expected && actual <= expected * 1.125);
+    }
+}
@@ -18,99 +18,134 @@
  */
 package org.apache.sling.bundleresource.impl;
 
-import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
 
 import org.osgi.framework.Bundle;
 
 /**
- * The <code>BundleResourceCache</code> implements a simple caching for
- * resources provided from a bundle. Each {@link BundleResourceProvider}
- * instance uses an instance of this class to access the bundle resources (or
- * bundle entries) through the cache.
+ * The <code>BundleResourceCache</code> provides access to the resources
+ * provided from a bundle. Each {@link BundleResourceProvider} instance uses an
+ * instance of this class to access the bundle resources (or bundle entries).
  * <p>
- * The cache on the one hand caches single entries as URLs. The other part of
- * the cache is for the child entries of a given bundle entry path. This caches
- * lists of strings (entry path).
- * <p>
- * Currently the cache limits are fixed at {@value #CACHE_SIZE} for the entries
- * cache and at {@value #LIST_CACHE_SIZE} for the child entries cache.
+ * As the entries of a bundle do not change while the bundle is started, all
+ * entries below the mapped entry roots are read once when the instance is
+ * created. They are stored in an immutable index: a sorted array of entry
+ * paths, the URL of each entry and for each folder the positions of its
+ * children in the order returned by <code>Bundle.getEntryPaths(String)</code>.
+ * Lookups and listings are answered from this index without accessing the
+ * bundle and without locking.
  */
 class BundleResourceCache {
 
     /**
-     * The maximum size of the single entry cache (value is 50).
+     * The sorted entry paths. Each path starts with a slash, folders end
+     * with a slash.
      */
-    private static final int CACHE_SIZE = 50;
+    private final String[] paths;
 
     /**
-     * The maximum size of the child entry cache (value is 20).
+     * The entry URLs in the order of {@link #paths}.
      */
-    private static final int LIST_CACHE_SIZE = 20;
+    private final URL[] urls;
 
     /**
-     * Sentinel for the single entry cache representing a missing entry to
-     * prevent looking for non-existing bundle entries multiple times (value is
-     * "file:///not_found").
+     * The positions of the child entries in {@link #paths} for folders or
+     * <code>null</code> if the entry has no children.
      */
-    private static final URL NOT_FOUND_URL;
+    private final int[][] children;
 
     /**
-     * Sentinel for the child entry cache representing a missing child list for
-     * a given path to prevent looking for non-existing bundle entries multiple
-     * times (value is an empty list).
+     * The number of folders with child entries.
      */
-    private static final List<String> NOT_FOUND_CHILDREN = Collections.<String> emptyList();
+    private final int folderCount;
 
     /**
-     * Single entry cache. This is a synchronized map with a size limit.
+     * The Bundle providing the resource entries.
      */
-    private final Map<String, URL> cache;
+    private final Bundle bundle;
 
     /**
-     * The child entry cache. This is a synchronized map with a size limit.
+     * Creates a new instance of this class providing access to the entries in
+     * the given <code>bundle</code> below the entry roots of the mapped paths.
+     *
+     * @param bundle The bundle providing the entries
+     * @param mappedPaths The mapped paths whose entries are indexed
      */
-    private final Map<String, List<String>> listCache;
+    BundleResourceCache(Bundle bundle, MappedPath[] mappedPaths) {
+        this.bundle = bundle;
 
-    /**
-     * The Bundle providing the resource entries.
-     */
-    private final Bundle bundle;
+        final Map<String, Entry> entries = new TreeMap<String, Entry>();
+        for (final MappedPath mappedPath : mappedPaths) {
+            final String root = normalize(mappedPath.getEntryPath(mappedPath.getResourceRoot()));
+            final String folder = root.endsWith("/") ? root : root.concat("/");
+            final String file = root.endsWith("/") ? root.substring(0, root.length() - 1) : root;
+            addEntry(entries, folder);
+            if (file.length() > 0) {
+                addEntry(entries, file);
+            }
+        }
 
-    // static initializer setting the NOT_FOUND_URL. Because the
-    // constructor may throw an exception we use a static initializer
-    // which fails the class initialization in the unlikely case
-    // of the URL constructor failing.
-    static {
-        try {
-            NOT_FOUND_URL = new URL("file:/not_found");
-        } catch (MalformedURLException mue) {
-            throw new ExceptionInInitializerError(mue);
+        this.paths = entries.keySet().toArray(new String[entries.size()]);
+        this.urls = new URL[this.paths.length];
+        this.children = new int[this.paths.length][];
+        int folders = 0;
+        int i = 0;
+        for (final Entry entry : entries.values()) {
+            this.urls[i] = entry.url;
+            if (entry.children != null) {
+                final int[] positions = new int[entry.children.size()];
+                int n = 0;
+                for (final String child : entry.children) {
+                    positions[n++] = Arrays.binarySearch(this.paths, child);
+                }
+                this.children[i] = positions;
+                folders++;
+            }
+            i++;
         }
+        this.folderCount = folders;
     }
 
     /**
-     * Creates a new instance of this class providing access to the entries in
-     * the given <code>bundle</code>.
-     *
-     * @param bundle
+     * Adds the entry at the given path and, for a folder, all entries below
+     * it to the index if the bundle contains it.
      */
-    BundleResourceCache(Bundle bundle) {
-        this.bundle = bundle;
+    private void addEntry(final Map<String, Entry> entries, final String path) {
+        if (entries.containsKey(path)) {
+            return;
+        }
+        final URL url = bundle.getEntry(path);
+        if (url == null) {
+            return;
+        }
+        final Entry entry = new Entry(url);
+        entries.put(path, entry);
 
-        // create the limited maps wrapping in synchronized maps
-        this.cache = Collections.synchronizedMap(new BundleResourceMap<String, URL>(
-            CACHE_SIZE));
-        this.listCache = Collections.synchronizedMap(new BundleResourceMap<String, List<String>>(
-            LIST_CACHE_SIZE));
+        if (path.endsWith("/")) {
+            @SuppressWarnings("unchecked")
+            final Enumeration<String> childPaths = bundle.getEntryPaths(path);
+            if (childPaths != null && childPaths.hasMoreElements()) {
+                entry.children = new ArrayList<String>();
+                while (childPaths.hasMoreElements()) {
+                    final String child = normalize(childPaths.nextElement());
+                    addEntry(entries, child);
+                    if (entries.containsKey(child)) {
+                        entry.children.add(child);
+                    }
+                }
+                if (entry.children.isEmpty()) {
+                    entry.children = null;
+                }
+            }
+        }
     }
 
     /**
@@ -125,26 +160,17 @@ class BundleResourceCache {
      * is assumed to be an absolute path. If relative it is resolved relative to
      * the bundle root.
      * <p>
-     * This method is backed by the <code>Bundle.getEntry(String)</code>
-     * method.
+     * This method returns the URL of the <code>Bundle.getEntry(String)</code>
+     * method recorded in the index.
      *
      * @param path The path to the bundle entry to return
      * @return The URL to access the bundle entry or <code>null</code> if the
-     *         bundle does not contain the request entry.
+     *         bundle does not contain the request entry below one of the
+     *         mapped entry roots.
      */
     URL getEntry(String path) {
-        URL url = cache.get(path);
-        if (url == null) {
-            url = bundle.getEntry(path);
-
-            if (url == null) {
-                url = NOT_FOUND_URL;
-            }
-
-            cache.put(path, url);
-        }
-
-        return (url == NOT_FOUND_URL) ? null : url;
+        final int pos = indexOf(path);
+        return (pos < 0) ? null : urls[pos];
     }
 
     /**
@@ -152,8 +178,9 @@ class BundleResourceCache {
      * <code>parentPath</code>. This parent path is assumed to be an absolute
      * path. If relative it is resolved relative to the bundle root.
      * <p>
-     * This method is backed by the <code>Bundle.getEntryPaths(String)</code>
-     * method but returns an <code>Iterator<String></code> instead of an
+     * This method returns the entries of the
+     * <code>Bundle.getEntryPaths(String)</code> method recorded in the index
+     * as an <code>Iterator<String></code> instead of an
      * <code>Enumeration</code> of strings.
      *
      * @param parentPath The path to the parent entry whose child entries are to
@@ -163,115 +190,72 @@ class BundleResourceCache {
      *         or <code>null</code> if the parent entry does not exist.
      */
     Iterator<String> getEntryPaths(String path) {
-        List<String> list = listCache.get(path);
-        if (list == null) {
+        final int pos = indexOf(path);
+        if (pos < 0 || children[pos] == null) {
+            return null;
+        }
+        final int[] positions = children[pos];
+        return new Iterator<String>() {
 
-            @SuppressWarnings("unchecked")
-            Enumeration<String> entries = bundle.getEntryPaths(path);
-            if (entries != null && entries.hasMoreElements()) {
-                list = new LinkedList<String>();
-                while (entries.hasMoreElements()) {
-                    list.add(entries.nextElement());
+            private int index;
+
+            public boolean hasNext() {
+                return index < positions.length;
+            }
+
+            public String next() {
+                if (index >= positions.length) {
+                    throw new NoSuchElementException();
                 }
+                return paths[positions[index++]];
             }
 
-            if (list == null) {
-                list = NOT_FOUND_CHILDREN;
+            public void remove() {
+                throw new UnsupportedOperationException();
             }
+        };
+    }
 
-            listCache.put(path, list);
+    private int indexOf(final String path) {
+        if (path == null) {
+            return -1;
         }
-
-        return (list == NOT_FOUND_CHILDREN) ? null : list.iterator();
+        return Arrays.binarySearch(paths, normalize(path));
     }
 
-    // ---------- Management API
-
-    /**
-     * Returns the current number of entries stored in the entry cache. This
-     * number includes "negative" entries, which are requested entries not found
-     * in the bundle.
-     */
-    int getEntryCacheSize() {
-        return cache.size();
+    private static String normalize(final String path) {
+        return path.startsWith("/") ? path : "/".concat(path);
     }
 
-    /**
-     * Returns the maximum number of entries to be stored in the cache. This
-     * number is currently fixed at {@link #CACHE_SIZE}
-     */
-    int getEntryCacheMaxSize() {
-        return CACHE_SIZE;
-    }
+    // ---------- Management API
 
     /**
-     * Returns the current number of list entries stored in the list cache. This
-     * number includes "negative" list entries, which are requested list entries
-     * not found in the bundle.
+     * Returns the number of entries in the index.
      */
-    int getListCacheSize() {
-        return listCache.size();
+    int getEntryCount() {
+        return paths.length;
     }
 
     /**
-     * Returns the maximum number of list entries to be stored in the cache.
-     * This number is currently fixed at {@link #LIST_CACHE_SIZE}
+     * Returns the number of folders with child entries in the index.
      */
-    int getListCacheMaxSize() {
-        return LIST_CACHE_SIZE;
+    int getFolderCount() {
+        return folderCount;
     }
 
     // ---------- inner class
 
     /**
-     * The <code>BundleResourceMap</code> class extends the
-     * <code>LinkedHashMap</code> class overwriting the
-     * {@link #removeEldestEntry(Entry)} method to implement the size limit,
-     * which is set in the constructor.
+     * An entry while building the index.
      */
-    private static class BundleResourceMap<K, V> extends
-            LinkedHashMap<String, V> {
-
-        private static final long serialVersionUID = 7455098291380945276L;
+    private static final class Entry {
 
-        /**
-         * The default size of a bundle resource cache (value is 20).
-         */
-        private static final int DEFAULT_LIMIT = 20;
+        final URL url;
 
-        /**
-         * The limit configured for this map.
-         */
-        private final int limit;
+        List<String> children;
 
-        /**
-         * Creates a new instance of this size limited map.
-         *
-         * @param limit The maximum number of entries in this map. If this value
-         *            is less than or equal to zero, the default size of
-         *            {@link #DEFAULT_LIMIT} is used.
-         */
-        BundleResourceMap(int limit) {
-            // deliberately chosen initial size and load factor, but
-            // we need the access-order to implement the LRU mechanism
-            super(8, 0.75f, true);
-
-            // normalize size to a possitive number
-            if (limit <= 0) {
-                limit = DEFAULT_LIMIT;
-            }
-
-            this.limit = limit;
-        }
-
-        /**
-         * Returns <code>true</code> if the current number of elements in the
-         * map exceeds the configured limit.
-         */
-        @Override
-        protected boolean removeEldestEntry(Entry<String, V> eldest) {
-            return size() > limit;
+        Entry(final URL url) {
+            this.url = url;
         }
     }
-
 }
@@ -53,7 +53,6 @@ public class BundleResourceProvider implements ResourceProvider {
      * comma (and whitespace) separated list of absolute paths.
      */
     public BundleResourceProvider(Bundle bundle, String rootList) {
-        this.bundle = new BundleResourceCache(bundle);
         List<MappedPath> prefixList = new ArrayList<MappedPath>();
 
         final ManifestHeader header = ManifestHeader.parse(rootList);
@@ -67,6 +66,7 @@ public class BundleResourceProvider implements ResourceProvider {
             }
         }
         this.roots = prefixList.toArray(new MappedPath[prefixList.size()]);
+        this.bundle = new BundleResourceCache(bundle, this.roots);
     }
 
     //---------- Service Registration
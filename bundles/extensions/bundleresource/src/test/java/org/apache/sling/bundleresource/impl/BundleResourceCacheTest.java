@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.bundleresource.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.framework.Bundle;
+
+public class BundleResourceCacheTest {
+
+    /** The bundle entries and their child entry paths in bundle order */
+    private final Map<String, List<String>> entries = new LinkedHashMap<String, List<String>>();
+
+    private BundleResourceCache cache;
+
+    @Before
+    public void setup() {
+        // like a bundle, entry paths are listed without a leading slash
+        entry("libs/");
+        entry("libs/foo/", "libs/foo/c.txt", "libs/foo/a/", "libs/foo/a", "libs/foo/b.txt");
+        entry("libs/foo/c.txt");
+        entry("libs/foo/a/", "libs/foo/a/x.txt");
+        entry("libs/foo/a/x.txt");
+        entry("libs/foo/a");
+        entry("libs/foo/b.txt");
+        entry("other/", "other/y.txt");
+        entry("other/y.txt");
+
+        this.cache = new BundleResourceCache(createBundle(), new MappedPath[] {
+            new MappedPath("/libs/foo", null)
+        });
+    }
+
+    private void entry(final String path, final String... children) {
+        this.entries.put(path, Arrays.asList(children));
+    }
+
+    private Bundle createBundle() {
+        final Bundle bundle = mock(Bundle.class);
+        when(bundle.getEntry(anyString())).thenAnswer(new Answer<URL>() {
+            public URL answer(final InvocationOnMock invocation) throws MalformedURLException {
+                final String path = stripSlash((String) invocation.getArguments()[0]);
+                return entries.containsKey(path) ? toURL(path) : null;
+            }
+        });
+        when(bundle.getEntryPaths(anyString())).thenAnswer(new Answer<Object>() {
+            public Object answer(final InvocationOnMock invocation) {
+                final List<String> children = entries.get(stripSlash((String) invocation.getArguments()[0]));
+                return (children == null || children.isEmpty()) ? null : Collections.enumeration(children);
+            }
+        });
+        return bundle;
+    }
+
+    private static String stripSlash(final String path) {
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    private static URL toURL(final String path) throws MalformedURLException {
+        return new URL("file:/bundle/" + stripSlash(path));
+    }
+
+    private List<String> list(final String path) {
+        final List<String> paths = new ArrayList<String>();
+        final Iterator<String> i = this.cache.getEntryPaths(path);
+        while (i.hasNext()) {
+            paths.add(i.next());
+        }
+        return paths;
+    }
+
+    @Test
+    public void testLeadingSlash() throws Exception {
+        assertEquals(toURL("libs/foo/c.txt"), this.cache.getEntry("/libs/foo/c.txt"));
+        assertEquals(toURL("libs/foo/c.txt"), this.cache.getEntry("libs/foo/c.txt"));
+        assertEquals(this.list("/libs/foo/a/"), this.list("libs/foo/a/"));
+
+        // listed entry paths start with a slash
+        assertEquals(Arrays.asList("/libs/foo/a/x.txt"), this.list("libs/foo/a/"));
+    }
+
+    @Test
+    public void testFolderAndFileWithSameName() throws Exception {
+        assertEquals(toURL("libs/foo/a/"), this.cache.getEntry("/libs/foo/a/"));
+        assertEquals(toURL("libs/foo/a"), this.cache.getEntry("/libs/foo/a"));
+        assertEquals(Arrays.asList("/libs/foo/a/x.txt"), this.list("/libs/foo/a/"));
+        // the file has no children
+        assertNull(this.cache.getEntryPaths("/libs/foo/a"));
+    }
+
+    @Test
+    public void testListingOrder() {
+        // the order of the bundle, not the sorted order
+        assertEquals(Arrays.asList("/libs/foo/c.txt", "/libs/foo/a/", "/libs/foo/a", "/libs/foo/b.txt"),
+            this.list("/libs/foo/"));
+
+        final Iterator<String> i = this.cache.getEntryPaths("/libs/foo/a/");
+        i.next();
+        assertFalse(i.hasNext());
+    }
+
+    @Test
+    public void testEntriesOutsideMappedRoots() {
+        assertNull(this.cache.getEntry("/other/y.txt"));
+        assertNull(this.cache.getEntryPaths("/other/"));
+        assertNull(this.cache.getEntry("/libs/"));
+        assertNull(this.cache.getEntryPaths("/libs/"));
+        assertNull(this.cache.getEntry("/libs/foo/missing.txt"));
+        assertNull(this.cache.getEntry(null));
+
+        assertEquals(6, this.cache.getEntryCount());
+        assertEquals(2, this.cache.getFolderCount());
+    }
+}
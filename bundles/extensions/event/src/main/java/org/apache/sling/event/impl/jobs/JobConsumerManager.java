@@ -97,6 +97,15 @@ public class JobConsumerManager {
                         + "this topic.")
     private static final String PROPERTY_BLACKLIST = "job.consumermanager.blacklist";
 
+    private static final int DEFAULT_WEIGHT = 1;
+
+    @Property(intValue = DEFAULT_WEIGHT,
+              label="Weight",
+              description="The relative weight of this instance when jobs are distributed across the topology. "
+                        + "An instance with weight 2 gets twice as many jobs and ordered queues assigned as an "
+                        + "instance with weight 1. The value must be between 1 and 100.")
+    private static final String PROPERTY_WEIGHT = "job.consumermanager.weight";
+
     /** The map with the consumers, keyed by topic, sorted by service ranking. */
     private final Map<String, List<ConsumerInfo>> topicToConsumerMap = new HashMap<String, List<ConsumerInfo>>();
 
@@ -108,6 +117,8 @@ public class JobConsumerManager {
 
     private String topics;
 
+    private volatile String weight;
+
     private TopicMatcher[] whitelistMatchers;
 
     private TopicMatcher[] blacklistMatchers;
@@ -120,7 +131,8 @@ public class JobConsumerManager {
 
     private Dictionary<String, Object> getRegistrationProperties() {
         final Dictionary<String, Object> serviceProps = new Hashtable<String, Object>();
-        serviceProps.put(PropertyProvider.PROPERTY_PROPERTIES, TopologyCapabilities.PROPERTY_TOPICS);
+        serviceProps.put(PropertyProvider.PROPERTY_PROPERTIES,
+                new String[] {TopologyCapabilities.PROPERTY_TOPICS, TopologyCapabilities.PROPERTY_WEIGHT});
         // we add a changing property to the service registration
         // to make sure a modification event is really sent
         synchronized ( this ) {
@@ -140,6 +152,7 @@ public class JobConsumerManager {
         final boolean wasEnabled = this.propagationService != null;
         this.whitelistMatchers = TopicMatcherHelper.buildMatchers(PropertiesUtil.toStringArray(props.get(PROPERTY_WHITELIST)));
         this.blacklistMatchers = TopicMatcherHelper.buildMatchers(PropertiesUtil.toStringArray(props.get(PROPERTY_BLACKLIST)));
+        this.weight = String.valueOf(PropertiesUtil.toInteger(props.get(PROPERTY_WEIGHT), DEFAULT_WEIGHT));
 
         final boolean enable = this.whitelistMatchers != null && this.blacklistMatchers != TopicMatcherHelper.MATCH_ALL;
         if ( wasEnabled != enable ) {
@@ -156,6 +169,9 @@ public class JobConsumerManager {
                                 if ( TopologyCapabilities.PROPERTY_TOPICS.equals(name) ) {
                                     return topics;
                                 }
+                                if ( TopologyCapabilities.PROPERTY_WEIGHT.equals(name) ) {
+                                    return weight;
+                                }
                                 return null;
                             }
                         }, this.getRegistrationProperties());
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.discovery.InstanceDescription;
+
+/**
+ * A consistent hash ring over a fixed set of target instances.
+ *
+ * Each instance is placed on the ring with a number of virtual nodes
+ * proportional to its weight. Keys are mapped to the first virtual node
+ * following the hash of the key. As the hash function only depends on
+ * the key and the sling ids, all instances in the topology calculate the
+ * same target for a key. If an instance leaves or joins the topology, only
+ * the keys mapped to its virtual nodes change their target.
+ *
+ * A ring is immutable and can be used concurrently, lookups do not allocate
+ * any objects.
+ */
+final class TargetRing {
+
+    /** Number of virtual nodes per weight unit. */
+    static final int VIRTUAL_NODES = 64;
+
+    /** The maximum weight of an instance. */
+    static final int MAX_WEIGHT = 100;
+
+    /** The targets sorted by the instance comparator. */
+    private final List<InstanceDescription> targets;
+
+    /** The sorted sling ids of the targets, for lookups. */
+    private final String[] sortedIds;
+
+    /** The target for each entry of {@link #sortedIds}. */
+    private final InstanceDescription[] sortedTargets;
+
+    /** The sorted hash values of the virtual nodes. */
+    private final long[] points;
+
+    /** The target for each virtual node. */
+    private final InstanceDescription[] owners;
+
+    /** Counter for round robin. */
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    /**
+     * Create a new ring
+     * @param targets The target instances, sorted by the instance comparator
+     */
+    TargetRing(final List<InstanceDescription> targets) {
+        this.targets = Collections.unmodifiableList(targets);
+
+        final InstanceDescription[] byId = targets.toArray(new InstanceDescription[targets.size()]);
+        Arrays.sort(byId, new Comparator<InstanceDescription>() {
+
+            @Override
+            public int compare(final InstanceDescription o1, final InstanceDescription o2) {
+                return o1.getSlingId().compareTo(o2.getSlingId());
+            }
+        });
+        this.sortedTargets = byId;
+        this.sortedIds = new String[byId.length];
+        int nodes = 0;
+        final int[] weights = new int[byId.length];
+        for(int i = 0; i < byId.length; i++) {
+            this.sortedIds[i] = byId[i].getSlingId();
+            weights[i] = getWeight(byId[i]);
+            nodes += weights[i] * VIRTUAL_NODES;
+        }
+
+        // build the ring: calculate the hash of all virtual nodes
+        // and sort the node indexes by these hash values
+        final long[] hashes = new long[nodes];
+        int pos = 0;
+        for(int i = 0; i < byId.length; i++) {
+            for(int n = 0; n < weights[i] * VIRTUAL_NODES; n++) {
+                hashes[pos] = hash(this.sortedIds[i] + '#' + n);
+                pos++;
+            }
+        }
+        final Integer[] order = new Integer[nodes];
+        for(int i = 0; i < nodes; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            @Override
+            public int compare(final Integer o1, final Integer o2) {
+                final long h1 = hashes[o1];
+                final long h2 = hashes[o2];
+                if ( h1 == h2 ) {
+                    return o1.compareTo(o2);
+                }
+                return h1 < h2 ? -1 : 1;
+            }
+        });
+        this.points = new long[nodes];
+        this.owners = new InstanceDescription[nodes];
+        for(int i = 0; i < nodes; i++) {
+            final int node = order[i];
+            this.points[i] = hashes[node];
+            this.owners[i] = byId[ownerOf(weights, node)];
+        }
+    }
+
+    private static int ownerOf(final int[] weights, final int node) {
+        int remaining = node;
+        for(int i = 0; i < weights.length; i++) {
+            final int count = weights[i] * VIRTUAL_NODES;
+            if ( remaining < count ) {
+                return i;
+            }
+            remaining -= count;
+        }
+        throw new IllegalStateException("Invalid virtual node " + node);
+    }
+
+    /**
+     * Get the weight of an instance.
+     * @param desc The instance description
+     * @return The weight between 1 and {@link #MAX_WEIGHT}
+     */
+    static int getWeight(final InstanceDescription desc) {
+        final String value = desc.getProperty(TopologyCapabilities.PROPERTY_WEIGHT);
+        if ( value != null ) {
+            try {
+                final int weight = Integer.parseInt(value.trim());
+                return Math.max(1, Math.min(MAX_WEIGHT, weight));
+            } catch ( final NumberFormatException nfe ) {
+                // ignore and use default
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Is the ring empty?
+     */
+    public boolean isEmpty() {
+        return this.targets.isEmpty();
+    }
+
+    /**
+     * The targets, sorted by the instance comparator.
+     */
+    public List<InstanceDescription> getTargets() {
+        return this.targets;
+    }
+
+    /**
+     * Find a target by sling id.
+     * @param slingId The sling id
+     * @return The target or {@code null}
+     */
+    public InstanceDescription find(final String slingId) {
+        if ( slingId == null ) {
+            return null;
+        }
+        final int index = Arrays.binarySearch(this.sortedIds, slingId);
+        return index < 0 ? null : this.sortedTargets[index];
+    }
+
+    /**
+     * Get the target for the key.
+     * @param key The key
+     * @return The target or {@code null} if the ring is empty.
+     */
+    public InstanceDescription get(final String key) {
+        if ( this.points.length == 0 ) {
+            return null;
+        }
+        final long h = hash(key);
+        int index = Arrays.binarySearch(this.points, h);
+        if ( index < 0 ) {
+            index = -index - 1;
+        }
+        if ( index == this.points.length ) {
+            index = 0;
+        }
+        return this.owners[index];
+    }
+
+    /**
+     * Get the next target in a round robin fashion.
+     * As the virtual nodes are used as the sequence, the
+     * targets are picked according to their weights.
+     * @return The target or {@code null} if the ring is empty.
+     */
+    public InstanceDescription next() {
+        if ( this.owners.length == 0 ) {
+            return null;
+        }
+        final int index = (this.roundRobin.getAndIncrement() & Integer.MAX_VALUE) % this.owners.length;
+        return this.owners[index];
+    }
+
+    /**
+     * Stable 64 bit hash (FNV-1a with a final avalanche step).
+     */
+    static long hash(final String key) {
+        long h = 0xcbf29ce484222325L;
+        for(int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "TargetRing [targets=" + this.targets + ", virtualNodes=" + this.points.length + "]";
+    }
+}
@@ -25,11 +25,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.sling.discovery.InstanceDescription;
 import org.apache.sling.discovery.TopologyView;
 import org.apache.sling.event.impl.jobs.JobImpl;
 import org.apache.sling.event.impl.jobs.config.QueueConfigurationManager.QueueInfo;
+import org.apache.sling.event.impl.support.ResourceHelper;
 import org.apache.sling.event.impl.support.Environment;
 import org.apache.sling.event.jobs.QueueConfiguration;
 import org.slf4j.Logger;
@@ -42,14 +45,19 @@ public class TopologyCapabilities {
 
     public static final String PROPERTY_TOPICS = "org.apache.sling.event.jobs.consumer.topics";
 
+    public static final String PROPERTY_WEIGHT = "org.apache.sling.event.jobs.consumer.weight";
+
     /** Logger. */
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     /** Map: key: topic, value: sling IDs */
     private final Map<String, List<InstanceDescription>> instanceCapabilities;
 
-    /** Round robin map. */
-    private final Map<String, Integer> roundRobinMap = new HashMap<String, Integer>();
+    /** Target rings by topic for non bridged jobs. */
+    private final ConcurrentMap<String, TopicTargets> topicTargets = new ConcurrentHashMap<String, TopicTargets>();
+
+    /** Target rings by topic for bridged jobs. */
+    private final ConcurrentMap<String, TopicTargets> bridgedTopicTargets = new ConcurrentHashMap<String, TopicTargets>();
 
     /** Instance map. */
     private final Map<String, InstanceDescription> instanceMap = new HashMap<String, InstanceDescription>();
@@ -102,15 +110,38 @@ public class TopologyCapabilities {
         }
     }
 
+    /**
+     * The target rings for a single topic.
+     * As the topology capabilities are immutable, the rings
+     * are calculated once and then reused for all jobs.
+     */
+    private static final class TopicTargets {
+
+        /** Ring with all potential targets. */
+        public final TargetRing all;
+
+        /** Rings with the targets from a single cluster, keyed by cluster id. */
+        public final ConcurrentMap<String, TargetRing> byCluster = new ConcurrentHashMap<String, TargetRing>();
+
+        /** Rings with the leader of a single cluster, keyed by cluster id. */
+        public final ConcurrentMap<String, TargetRing> leaderByCluster = new ConcurrentHashMap<String, TargetRing>();
+
+        public TopicTargets(final List<InstanceDescription> potentialTargets) {
+            this.all = new TargetRing(potentialTargets);
+        }
+    }
+
     public static Map<String, String> getAllInstancesMap(final TopologyView view) {
         final Map<String, String> allInstances = new TreeMap<String, String>();
 
         for(final InstanceDescription desc : view.getInstances() ) {
             final String topics = desc.getProperty(PROPERTY_TOPICS);
-            if ( topics != null && topics.length() > 0 ) {
-                allInstances.put(desc.getSlingId(), topics);
+            final String weight = desc.getProperty(PROPERTY_WEIGHT);
+            final String value = (topics != null && topics.length() > 0 ? topics : "");
+            if ( weight != null && weight.length() > 0 ) {
+                allInstances.put(desc.getSlingId(), value.concat(";").concat(weight));
             } else {
-                allInstances.put(desc.getSlingId(), "");
+                allInstances.put(desc.getSlingId(), value);
             }
         }
         return allInstances;
@@ -234,21 +265,63 @@ public class TopologyCapabilities {
         }
         // third: bridged consumers
         final List<InstanceDescription> bridgedTargets = (jobProperties != null && jobProperties.containsKey(JobImpl.PROPERTY_BRIDGED_EVENT) ? this.instanceCapabilities.get("/") : null);
-        if ( bridgedTargets != null ) {
-            potentialTargets.addAll(bridgedTargets);
-        }
+        addAll(potentialTargets, bridgedTargets);
         Collections.sort(potentialTargets, this.instanceComparator);
 
         return potentialTargets;
     }
 
+    /**
+     * Get the (cached) target rings for a topic.
+     */
+    private TopicTargets getTopicTargets(final String jobTopic, final Map<String, Object> jobProperties) {
+        final boolean bridged = jobProperties != null && jobProperties.containsKey(JobImpl.PROPERTY_BRIDGED_EVENT);
+        final ConcurrentMap<String, TopicTargets> cache = (bridged ? this.bridgedTopicTargets : this.topicTargets);
+        TopicTargets targets = cache.get(jobTopic);
+        if ( targets == null ) {
+            cache.putIfAbsent(jobTopic, new TopicTargets(this.getPotentialTargets(jobTopic, jobProperties)));
+            targets = cache.get(jobTopic);
+        }
+        return targets;
+    }
+
+    /**
+     * Get the (cached) ring of targets within a cluster.
+     * If distribution is disabled, only the leader of the cluster is used.
+     * @return The ring, which might be empty
+     */
+    private TargetRing getClusterTargets(final TopicTargets targets, final String clusterId) {
+        final boolean leaderOnly = this.jobManagerConfiguration.disableDistribution();
+        final ConcurrentMap<String, TargetRing> cache = (leaderOnly ? targets.leaderByCluster : targets.byCluster);
+        TargetRing ring = cache.get(clusterId);
+        if ( ring == null ) {
+            final List<InstanceDescription> localTargets = new ArrayList<InstanceDescription>();
+            for(final InstanceDescription desc : targets.all.getTargets()) {
+                if ( desc.getClusterView().getId().equals(clusterId) ) {
+                    if ( !leaderOnly || desc.isLeader() ) {
+                        localTargets.add(desc);
+                    }
+                }
+            }
+            cache.putIfAbsent(clusterId, new TargetRing(localTargets));
+            ring = cache.get(clusterId);
+        }
+        return ring;
+    }
+
     /**
      * Detect the target instance.
+     *
+     * Jobs of an ordered queue are assigned to the instance the queue name is
+     * mapped to on the consistent hash ring. This spreads ordered queues across
+     * instances while every instance of the topology calculates the same target.
+     * Other jobs are assigned by their job id if available (which is the case
+     * for reassignments) or in a weighted round robin fashion for new jobs.
      */
     public String detectTarget(final String jobTopic, final Map<String, Object> jobProperties,
             final QueueInfo queueInfo) {
-        final List<InstanceDescription> potentialTargets = this.getPotentialTargets(jobTopic, jobProperties);
-        logger.debug("Potential targets for {} : {}", jobTopic, potentialTargets);
+        final TopicTargets targets = this.getTopicTargets(jobTopic, jobProperties);
+        logger.debug("Potential targets for {} : {}", jobTopic, targets.all);
         String createdOn = null;
         if ( jobProperties != null ) {
             createdOn = (String) jobProperties.get(org.apache.sling.event.jobs.Job.PROPERTY_JOB_CREATED_INSTANCE);
@@ -258,57 +331,40 @@ public class TopologyCapabilities {
         }
         final InstanceDescription createdOnInstance = this.instanceMap.get(createdOn);
 
-        if ( potentialTargets != null && potentialTargets.size() > 0 ) {
+        if ( !targets.all.isEmpty() ) {
+            TargetRing ring = targets.all;
             if ( createdOnInstance != null ) {
-                // create a list with local targets first.
-                final List<InstanceDescription> localTargets = new ArrayList<InstanceDescription>();
-                for(final InstanceDescription desc : potentialTargets) {
-                    if ( desc.getClusterView().getId().equals(createdOnInstance.getClusterView().getId()) ) {
-                        if ( !this.jobManagerConfiguration.disableDistribution() || desc.isLeader() ) {
-                            localTargets.add(desc);
-                        }
-                    }
-                }
-                if ( localTargets.size() > 0 ) {
-                    potentialTargets.clear();
-                    potentialTargets.addAll(localTargets);
-                    logger.debug("Potential targets filtered for {} : {}", jobTopic, potentialTargets);
+                // prefer targets from the cluster of the creation instance
+                final TargetRing localTargets = this.getClusterTargets(targets, createdOnInstance.getClusterView().getId());
+                if ( !localTargets.isEmpty() ) {
+                    ring = localTargets;
+                    logger.debug("Potential targets filtered for {} : {}", jobTopic, ring);
                 }
             }
             // check prefer run on creation instance
             if ( queueInfo.queueConfiguration.isPreferRunOnCreationInstance() ) {
-                InstanceDescription creationDesc = null;
-                for(final InstanceDescription desc : potentialTargets) {
-                    if ( desc.getSlingId().equals(createdOn) ) {
-                        creationDesc = desc;
-                        break;
-                    }
-                }
+                final InstanceDescription creationDesc = ring.find(createdOn);
                 if ( creationDesc != null ) {
-                    potentialTargets.clear();
-                    potentialTargets.add(creationDesc);
-                    logger.debug("Potential targets reduced to creation instance for {} : {}", jobTopic, potentialTargets);
+                    logger.debug("Potential targets reduced to creation instance for {} : {}", jobTopic, creationDesc);
+                    return creationDesc.getSlingId();
                 }
             }
+            final InstanceDescription target;
             if ( queueInfo.queueConfiguration.getType() == QueueConfiguration.Type.ORDERED ) {
-                // for ordered queues we always pick the first as we have to pick the same target on each cluster view
-                // on all instances (TODO - we could try to do some round robin of the whole queue)
-                final String result = potentialTargets.get(0).getSlingId();
-                logger.debug("Target for {} : {}", jobTopic, result);
-
-                return result;
-            }
-            // TODO - this is a simple round robin which is not based on the actual load
-            //        of the instances
-            Integer index = this.roundRobinMap.get(jobTopic);
-            if ( index == null ) {
-                index = 0;
-            }
-            if ( index >= potentialTargets.size() ) {
-                index = 0;
+                // for ordered queues we have to pick the same target for the whole queue
+                // on all instances
+                target = ring.get(queueInfo.queueName);
+            } else {
+                final Object jobId = (jobProperties != null ? jobProperties.get(ResourceHelper.PROPERTY_JOB_ID) : null);
+                if ( jobId instanceof String ) {
+                    target = ring.get((String)jobId);
+                } else {
+                    // TODO - this is a simple round robin which is not based on the actual load
+                    //        of the instances
+                    target = ring.next();
+                }
             }
-            this.roundRobinMap.put(jobTopic, index + 1);
-            final String result = potentialTargets.get(index).getSlingId();
+            final String result = target.getSlingId();
             logger.debug("Target for {} : {}", jobTopic, result);
             return result;
         }
@@ -41,6 +41,8 @@ import org.apache.sling.event.impl.jobs.JobConsumerManager;
 import org.apache.sling.event.impl.jobs.config.InternalQueueConfiguration;
 import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
 import org.apache.sling.event.impl.jobs.config.TopologyCapabilities;
+import org.apache.sling.event.impl.jobs.stats.LatencyHistogram;
+import org.apache.sling.event.impl.jobs.stats.LatencyStatistics;
 import org.apache.sling.event.jobs.JobManager;
 import org.apache.sling.event.jobs.Queue;
 import org.apache.sling.event.jobs.QueueConfiguration;
@@ -161,6 +163,7 @@ public class InventoryPlugin implements InventoryPrinter {
         pw.printf("Processed Jobs : %s%n", s.getNumberOfProcessedJobs());
         pw.printf("Average Processing Time : %s%n", formatTime(s.getAverageProcessingTime()));
         pw.printf("Average Waiting Time : %s%n", formatTime(s.getAverageWaitingTime()));
+        printLatencyText(pw, s);
         pw.println();
 
         pw.println("Topology Capabilities");
@@ -244,6 +247,7 @@ public class InventoryPlugin implements InventoryPrinter {
             pw.printf("Processed Jobs : %s%n", s.getNumberOfProcessedJobs());
             pw.printf("Average Processing Time : %s%n", formatTime(s.getAverageProcessingTime()));
             pw.printf("Average Waiting Time : %s%n", formatTime(s.getAverageWaitingTime()));
+            printLatencyText(pw, s);
             pw.printf("Status Info : %s%n", q.getStateInfo());
             pw.println("Configuration");
             pw.printf("Type : %s%n", formatType(c.getType()));
@@ -269,6 +273,7 @@ public class InventoryPlugin implements InventoryPrinter {
             pw.printf("Processed Jobs : %s%n", ts.getNumberOfProcessedJobs());
             pw.printf("Average Processing Time : %s%n", formatTime(ts.getAverageProcessingTime()));
             pw.printf("Average Waiting Time : %s%n", formatTime(ts.getAverageWaitingTime()));
+            printLatencyText(pw, ts);
             pw.println();
         }
 
@@ -316,7 +321,8 @@ public class InventoryPlugin implements InventoryPrinter {
         pw.printf("    \"averageProcessingTime\" : %s,%n", s.getAverageProcessingTime());
         pw.printf("    \"averageProcessingTimeText\" : \"%s\",%n", formatTime(s.getAverageProcessingTime()));
         pw.printf("    \"averageWaitingTime\" : %s,%n", s.getAverageWaitingTime());
-        pw.printf("    \"averageWaitingTimeText\" : \"%s\"%n", formatTime(s.getAverageWaitingTime()));
+        pw.printf("    \"averageWaitingTimeText\" : \"%s\"", formatTime(s.getAverageWaitingTime()));
+        printLatencyJson(pw, s, "    ");
         pw.print("  }");
 
         final TopologyCapabilities cap = this.configuration.getTopologyCapabilities();
@@ -376,7 +382,8 @@ public class InventoryPlugin implements InventoryPrinter {
             pw.printf("        \"averageProcessingTime\" : %s,%n", s.getAverageProcessingTime());
             pw.printf("        \"averageProcessingTimeText\" : \"%s\",%n", formatTime(s.getAverageProcessingTime()));
             pw.printf("        \"averageWaitingTime\" : %s,%n", s.getAverageWaitingTime());
-            pw.printf("        \"averageWaitingTimeText\" : \"%s\"%n", formatTime(s.getAverageWaitingTime()));
+            pw.printf("        \"averageWaitingTimeText\" : \"%s\"", formatTime(s.getAverageWaitingTime()));
+            printLatencyJson(pw, s, "        ");
             pw.print("      },");
 
             final QueueConfiguration c = q.getConfiguration();
@@ -415,7 +422,8 @@ public class InventoryPlugin implements InventoryPrinter {
             pw.printf("      \"averageProcessingTime\" : %s,%n", ts.getAverageProcessingTime());
             pw.printf("      \"averageProcessingTimeText\" : \"%s\",%n", formatTime(ts.getAverageProcessingTime()));
             pw.printf("      \"averageWaitingTime\" : %s,%n", ts.getAverageWaitingTime());
-            pw.printf("      \"averageWaitingTimeText\" : \"%s\"%n", formatTime(ts.getAverageWaitingTime()));
+            pw.printf("      \"averageWaitingTimeText\" : \"%s\"", formatTime(ts.getAverageWaitingTime()));
+            printLatencyJson(pw, ts, "      ");
             pw.print("    }");
         }
         if ( !first ) {
@@ -435,6 +443,39 @@ public class InventoryPlugin implements InventoryPrinter {
         pw.println("}");
     }
 
+    private void printLatencyText(final PrintWriter pw, final Object s) {
+        if ( s instanceof LatencyStatistics ) {
+            final LatencyHistogram p = ((LatencyStatistics)s).getProcessingTimeHistogram();
+            final LatencyHistogram w = ((LatencyStatistics)s).getWaitingTimeHistogram();
+            pw.printf("Processing Time (p50/p95/p99/max) : %s / %s / %s / %s%n",
+                    formatTime(p.getValueAtPercentile(50)), formatTime(p.getValueAtPercentile(95)),
+                    formatTime(p.getValueAtPercentile(99)), formatTime(p.getMax()));
+            pw.printf("Waiting Time (p50/p95/p99/max) : %s / %s / %s / %s%n",
+                    formatTime(w.getValueAtPercentile(50)), formatTime(w.getValueAtPercentile(95)),
+                    formatTime(w.getValueAtPercentile(99)), formatTime(w.getMax()));
+        }
+    }
+
+    private void printLatencyJson(final PrintWriter pw, final Object s, final String indent) {
+        if ( s instanceof LatencyStatistics ) {
+            pw.println(",");
+            printHistogramJson(pw, "processingTime", ((LatencyStatistics)s).getProcessingTimeHistogram(), indent);
+            pw.println(",");
+            printHistogramJson(pw, "waitingTime", ((LatencyStatistics)s).getWaitingTimeHistogram(), indent);
+        }
+        pw.println();
+    }
+
+    private void printHistogramJson(final PrintWriter pw, final String name, final LatencyHistogram h, final String indent) {
+        pw.printf("%s\"%sPercentiles\" : {%n", indent, name);
+        pw.printf("%s  \"count\" : %s,%n", indent, h.getCount());
+        pw.printf("%s  \"p50\" : %s,%n", indent, h.getValueAtPercentile(50));
+        pw.printf("%s  \"p95\" : %s,%n", indent, h.getValueAtPercentile(95));
+        pw.printf("%s  \"p99\" : %s,%n", indent, h.getValueAtPercentile(99));
+        pw.printf("%s  \"max\" : %s%n", indent, h.getMax());
+        pw.printf("%s}", indent);
+    }
+
     private void printQueueConfigurationJson(final PrintWriter pw, final InternalQueueConfiguration c) {
         pw.println("    {");
         pw.printf("      \"name\" : \"%s\",%n", c.getName());
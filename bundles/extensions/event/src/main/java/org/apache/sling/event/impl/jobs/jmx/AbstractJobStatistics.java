@@ -21,6 +21,8 @@ import java.util.Date;
 
 import javax.management.StandardMBean;
 
+import org.apache.sling.event.impl.jobs.stats.LatencyHistogram;
+import org.apache.sling.event.impl.jobs.stats.LatencyStatistics;
 import org.apache.sling.event.jobs.Statistics;
 import org.apache.sling.event.jobs.jmx.StatisticsMBean;
 
@@ -97,4 +99,64 @@ public abstract class AbstractJobStatistics extends StandardMBean implements
         return new Date(getStatistics().getLastFinishedJobTime());
     }
 
+    public long getWaitingTimePercentile50() {
+        return getWaitingTimePercentile(50);
+    }
+
+    public long getWaitingTimePercentile95() {
+        return getWaitingTimePercentile(95);
+    }
+
+    public long getWaitingTimePercentile99() {
+        return getWaitingTimePercentile(99);
+    }
+
+    public long getMaxWaitingTime() {
+        final LatencyHistogram h = getWaitingTimeHistogram();
+        return h == null ? -1 : h.getMax();
+    }
+
+    public long getProcessingTimePercentile50() {
+        return getProcessingTimePercentile(50);
+    }
+
+    public long getProcessingTimePercentile95() {
+        return getProcessingTimePercentile(95);
+    }
+
+    public long getProcessingTimePercentile99() {
+        return getProcessingTimePercentile(99);
+    }
+
+    public long getMaxProcessingTime() {
+        final LatencyHistogram h = getProcessingTimeHistogram();
+        return h == null ? -1 : h.getMax();
+    }
+
+    private long getWaitingTimePercentile(final double percentile) {
+        final LatencyHistogram h = getWaitingTimeHistogram();
+        return h == null ? -1 : h.getValueAtPercentile(percentile);
+    }
+
+    private long getProcessingTimePercentile(final double percentile) {
+        final LatencyHistogram h = getProcessingTimeHistogram();
+        return h == null ? -1 : h.getValueAtPercentile(percentile);
+    }
+
+    private LatencyHistogram getWaitingTimeHistogram() {
+        final Statistics s = getStatistics();
+        if ( s instanceof LatencyStatistics ) {
+            return ((LatencyStatistics)s).getWaitingTimeHistogram();
+        }
+        return null;
+    }
+
+    private LatencyHistogram getProcessingTimeHistogram() {
+        final Statistics s = getStatistics();
+        if ( s instanceof LatencyStatistics ) {
+            return ((LatencyStatistics)s).getProcessingTimeHistogram();
+        }
+        return null;
+    }
+
 }
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free latency histogram.
+ *
+ * Values are recorded into log-linear buckets: every power of two
+ * is split into {@link #SUB_BUCKETS} linear sub buckets which gives
+ * a relative error of less than 7% for all reported percentiles.
+ * Recording a value is a single atomic increment and never blocks.
+ */
+public class LatencyHistogram {
+
+    /** Number of bits used for the linear sub buckets. */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** Number of linear sub buckets per power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Total number of buckets, enough for all positive long values. */
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value.
+     * @param value The value, negative values are ignored.
+     */
+    public void record(final long value) {
+        if ( value < 0 ) {
+            return;
+        }
+        this.buckets.incrementAndGet(indexOf(value));
+        this.count.incrementAndGet();
+        long current = this.max.get();
+        while ( value > current ) {
+            if ( this.max.compareAndSet(current, value) ) {
+                break;
+            }
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * The number of recorded values.
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * The highest recorded value or {@code 0} if nothing has been recorded.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Get the value at the given percentile.
+     * The returned value is the upper bound of the bucket containing
+     * the percentile, but never higher than the maximum recorded value.
+     * @param percentile The percentile between 0 and 100
+     * @return The value or {@code 0} if nothing has been recorded.
+     */
+    public long getValueAtPercentile(final double percentile) {
+        final long total = this.count.get();
+        if ( total == 0 ) {
+            return 0;
+        }
+        final double p = Math.min(100.0, Math.max(0.0, percentile));
+        final long target = Math.max(1, (long)Math.ceil(p / 100.0 * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets.get(i);
+            if ( seen >= target ) {
+                return Math.min(upperBoundOf(i), this.max.get());
+            }
+        }
+        // concurrent updates might have increased count after we read it
+        return this.max.get();
+    }
+
+    /**
+     * Add all values from another histogram.
+     */
+    public void add(final LatencyHistogram other) {
+        for(int i = 0; i < BUCKETS; i++) {
+            final long value = other.buckets.get(i);
+            if ( value != 0 ) {
+                this.buckets.addAndGet(i, value);
+            }
+        }
+        this.count.addAndGet(other.count.get());
+        final long otherMax = other.max.get();
+        long current = this.max.get();
+        while ( otherMax > current ) {
+            if ( this.max.compareAndSet(current, otherMax) ) {
+                break;
+            }
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * Replace all values with the ones from another histogram.
+     */
+    public void copyFrom(final LatencyHistogram other) {
+        for(int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, other.buckets.get(i));
+        }
+        this.count.set(other.count.get());
+        this.max.set(other.max.get());
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.set(0);
+        this.max.set(0);
+    }
+
+    static int indexOf(final long value) {
+        if ( value < SUB_BUCKETS ) {
+            return (int)value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int sub = (int)((value >>> shift) & (SUB_BUCKETS - 1));
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(final int index) {
+        if ( index < SUB_BUCKETS ) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        final int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        final long lower = ((long)(SUB_BUCKETS + sub)) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -18,62 +18,67 @@
  */
 package org.apache.sling.event.impl.jobs.stats;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.sling.event.jobs.Statistics;
 
 /**
  * Implementation of the statistics.
+ *
+ * All counters are updated lock free, the average values are
+ * calculated on demand.
  */
-public class StatisticsImpl implements Statistics {
+public class StatisticsImpl implements Statistics, LatencyStatistics {
 
-    private long startTime;
+    private final AtomicLong startTime = new AtomicLong();
 
-    private long activeJobs;
+    private final AtomicLong activeJobs = new AtomicLong();
 
-    private long queuedJobs;
+    private final AtomicLong queuedJobs = new AtomicLong();
 
-    private long lastActivated = -1;
+    private final AtomicLong lastActivated = new AtomicLong(-1);
 
-    private long lastFinished = -1;
+    private final AtomicLong lastFinished = new AtomicLong(-1);
 
-    private long averageWaitingTime;
+    private final AtomicLong waitingTime = new AtomicLong();
 
-    private long averageProcessingTime;
+    private final AtomicLong processingTime = new AtomicLong();
 
-    private long waitingTime;
+    private final AtomicLong waitingCount = new AtomicLong();
 
-    private long processingTime;
+    private final AtomicLong processingCount = new AtomicLong();
 
-    private long waitingCount;
+    private final AtomicLong finishedJobs = new AtomicLong();
 
-    private long processingCount;
+    private final AtomicLong failedJobs = new AtomicLong();
 
-    private long finishedJobs;
+    private final AtomicLong cancelledJobs = new AtomicLong();
 
-    private long failedJobs;
+    private final LatencyHistogram waitingTimeHistogram = new LatencyHistogram();
 
-    private long cancelledJobs;
+    private final LatencyHistogram processingTimeHistogram = new LatencyHistogram();
 
     public StatisticsImpl() {
         this(System.currentTimeMillis());
     }
 
     public StatisticsImpl(final long startTime) {
-        this.startTime = startTime;
+        this.startTime.set(startTime);
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#getStartTime()
      */
     @Override
-    public synchronized long getStartTime() {
-        return startTime;
+    public long getStartTime() {
+        return startTime.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#getNumberOfProcessedJobs()
      */
     @Override
-    public synchronized long getNumberOfProcessedJobs() {
+    public long getNumberOfProcessedJobs() {
         return getNumberOfCancelledJobs() + getNumberOfFailedJobs() + getNumberOfFinishedJobs();
     }
 
@@ -81,240 +86,233 @@ public class StatisticsImpl implements Statistics {
      * @see org.apache.sling.event.jobs.Statistics#getNumberOfActiveJobs()
      */
     @Override
-    public synchronized long getNumberOfActiveJobs() {
-        return activeJobs;
+    public long getNumberOfActiveJobs() {
+        return activeJobs.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#getNumberOfQueuedJobs()
      */
     @Override
-    public synchronized long getNumberOfQueuedJobs() {
-        return queuedJobs;
+    public long getNumberOfQueuedJobs() {
+        return queuedJobs.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#getNumberOfJobs()
      */
     @Override
-    public synchronized long getNumberOfJobs() {
-        return activeJobs + queuedJobs;
+    public long getNumberOfJobs() {
+        return activeJobs.get() + queuedJobs.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#getAverageWaitingTime()
      */
     @Override
-    public synchronized long getAverageWaitingTime() {
-        return averageWaitingTime;
+    public long getAverageWaitingTime() {
+        return average(waitingTime.get(), waitingCount.get());
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#getAverageProcessingTime()
      */
     @Override
-    public synchronized long getAverageProcessingTime() {
-        return averageProcessingTime;
+    public long getAverageProcessingTime() {
+        return average(processingTime.get(), processingCount.get());
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#getNumberOfFinishedJobs()
      */
     @Override
-    public synchronized long getNumberOfFinishedJobs() {
-        return finishedJobs;
+    public long getNumberOfFinishedJobs() {
+        return finishedJobs.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#getNumberOfCancelledJobs()
      */
     @Override
-    public synchronized long getNumberOfCancelledJobs() {
-        return cancelledJobs;
+    public long getNumberOfCancelledJobs() {
+        return cancelledJobs.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#getNumberOfFailedJobs()
      */
     @Override
-    public synchronized long getNumberOfFailedJobs() {
-        return failedJobs;
+    public long getNumberOfFailedJobs() {
+        return failedJobs.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#getLastActivatedJobTime()
      */
     @Override
-    public synchronized long getLastActivatedJobTime() {
-        return this.lastActivated;
+    public long getLastActivatedJobTime() {
+        return this.lastActivated.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#getLastFinishedJobTime()
      */
     @Override
-    public synchronized long getLastFinishedJobTime() {
-        return this.lastFinished;
+    public long getLastFinishedJobTime() {
+        return this.lastFinished.get();
+    }
+
+    /**
+     * @see org.apache.sling.event.impl.jobs.stats.LatencyStatistics#getWaitingTimeHistogram()
+     */
+    @Override
+    public LatencyHistogram getWaitingTimeHistogram() {
+        return this.waitingTimeHistogram;
+    }
+
+    /**
+     * @see org.apache.sling.event.impl.jobs.stats.LatencyStatistics#getProcessingTimeHistogram()
+     */
+    @Override
+    public LatencyHistogram getProcessingTimeHistogram() {
+        return this.processingTimeHistogram;
     }
 
     /**
      * Add a finished job
      * @param jobTime The processing time for this job.
      */
-    public synchronized void finishedJob(final long jobTime) {
-        this.lastFinished = System.currentTimeMillis();
-        this.processingTime += jobTime;
-        this.processingCount++;
-        this.averageProcessingTime = this.processingTime / this.processingCount;
-        this.finishedJobs++;
-        this.activeJobs--;
+    public void finishedJob(final long jobTime) {
+        this.lastFinished.set(System.currentTimeMillis());
+        this.processingTime.addAndGet(jobTime);
+        this.processingCount.incrementAndGet();
+        this.processingTimeHistogram.record(jobTime);
+        this.finishedJobs.incrementAndGet();
+        this.activeJobs.decrementAndGet();
     }
 
     /**
      * Add a failed job.
      */
-    public synchronized void failedJob() {
-        this.failedJobs++;
-        this.activeJobs--;
-        this.queuedJobs++;
+    public void failedJob() {
+        this.failedJobs.incrementAndGet();
+        this.activeJobs.decrementAndGet();
+        this.queuedJobs.incrementAndGet();
     }
 
     /**
      * Add a cancelled job.
      */
-    public synchronized void cancelledJob() {
-        this.cancelledJobs++;
-        this.activeJobs--;
+    public void cancelledJob() {
+        this.cancelledJobs.incrementAndGet();
+        this.activeJobs.decrementAndGet();
     }
 
     /**
      * New job in the queue
      */
-    public synchronized void incQueued() {
-        this.queuedJobs++;
+    public void incQueued() {
+        this.queuedJobs.incrementAndGet();
     }
 
     /**
      * Job not processed by us
      */
-    public synchronized void decQueued() {
-        this.queuedJobs--;
+    public void decQueued() {
+        this.queuedJobs.decrementAndGet();
     }
 
     /**
      * Clear all queued
      */
-    public synchronized void clearQueued() {
-        this.queuedJobs = 0;
+    public void clearQueued() {
+        this.queuedJobs.set(0);
     }
 
     /**
      * Add a job from the queue to status active
      * @param queueTime The time the job stayed in the queue.
      */
-    public synchronized void addActive(final long queueTime) {
-        this.queuedJobs--;
-        this.activeJobs++;
-        this.waitingCount++;
-        this.waitingTime += queueTime;
-        this.averageWaitingTime = this.waitingTime / this.waitingCount;
-        this.lastActivated = System.currentTimeMillis();
+    public void addActive(final long queueTime) {
+        this.queuedJobs.decrementAndGet();
+        this.activeJobs.incrementAndGet();
+        this.waitingCount.incrementAndGet();
+        this.waitingTime.addAndGet(queueTime);
+        this.waitingTimeHistogram.record(queueTime);
+        this.lastActivated.set(System.currentTimeMillis());
     }
 
     /**
      * Add another statistics information.
      */
-    public synchronized void add(final StatisticsImpl other) {
-        synchronized ( other ) {
-            if ( other.lastActivated > this.lastActivated ) {
-                this.lastActivated = other.lastActivated;
-            }
-            if ( other.lastFinished > this.lastFinished ) {
-                this.lastFinished = other.lastFinished;
-            }
-            this.queuedJobs += other.queuedJobs;
-            this.waitingTime += other.waitingTime;
-            this.waitingCount += other.waitingCount;
-            if ( this.waitingCount > 0 ) {
-                this.averageWaitingTime = this.waitingTime / this.waitingCount;
-            }
-            this.processingTime += other.processingTime;
-            this.processingCount += other.processingCount;
-            if ( this.processingCount > 0 ) {
-                this.averageProcessingTime = this.processingTime / this.processingCount;
-            }
-            this.finishedJobs += other.finishedJobs;
-            this.failedJobs += other.failedJobs;
-            this.cancelledJobs += other.cancelledJobs;
-            this.activeJobs += other.activeJobs;
-        }
+    public void add(final StatisticsImpl other) {
+        setIfHigher(this.lastActivated, other.lastActivated.get());
+        setIfHigher(this.lastFinished, other.lastFinished.get());
+        this.queuedJobs.addAndGet(other.queuedJobs.get());
+        this.waitingTime.addAndGet(other.waitingTime.get());
+        this.waitingCount.addAndGet(other.waitingCount.get());
+        this.processingTime.addAndGet(other.processingTime.get());
+        this.processingCount.addAndGet(other.processingCount.get());
+        this.finishedJobs.addAndGet(other.finishedJobs.get());
+        this.failedJobs.addAndGet(other.failedJobs.get());
+        this.cancelledJobs.addAndGet(other.cancelledJobs.get());
+        this.activeJobs.addAndGet(other.activeJobs.get());
+        this.waitingTimeHistogram.add(other.waitingTimeHistogram);
+        this.processingTimeHistogram.add(other.processingTimeHistogram);
     }
 
     /**
      * Create a new statistics object with exactly the same values.
      */
     public void copyFrom(final StatisticsImpl other) {
-        final long localQueuedJobs;
-        final long localLastActivated;
-        final long localLastFinished;
-        final long localAverageWaitingTime;
-        final long localAverageProcessingTime;
-        final long localWaitingTime;
-        final long localProcessingTime;
-        final long localWaitingCount;
-        final long localProcessingCount;
-        final long localFinishedJobs;
-        final long localFailedJobs;
-        final long localCancelledJobs;
-        final long localActiveJobs;
-        synchronized ( other ) {
-            localQueuedJobs = other.queuedJobs;
-            localLastActivated = other.lastActivated;
-            localLastFinished = other.lastFinished;
-            localAverageWaitingTime = other.averageWaitingTime;
-            localAverageProcessingTime = other.averageProcessingTime;
-            localWaitingTime = other.waitingTime;
-            localProcessingTime = other.processingTime;
-            localWaitingCount = other.waitingCount;
-            localProcessingCount = other.processingCount;
-            localFinishedJobs = other.finishedJobs;
-            localFailedJobs = other.failedJobs;
-            localCancelledJobs = other.cancelledJobs;
-            localActiveJobs = other.activeJobs;
-        }
-        synchronized ( this ) {
-            this.queuedJobs = localQueuedJobs;
-            this.lastActivated = localLastActivated;
-            this.lastFinished = localLastFinished;
-            this.averageWaitingTime = localAverageWaitingTime;
-            this.averageProcessingTime = localAverageProcessingTime;
-            this.waitingTime = localWaitingTime;
-            this.processingTime = localProcessingTime;
-            this.waitingCount = localWaitingCount;
-            this.processingCount = localProcessingCount;
-            this.finishedJobs = localFinishedJobs;
-            this.failedJobs = localFailedJobs;
-            this.cancelledJobs = localCancelledJobs;
-            this.activeJobs = localActiveJobs;
-        }
+        this.queuedJobs.set(other.queuedJobs.get());
+        this.lastActivated.set(other.lastActivated.get());
+        this.lastFinished.set(other.lastFinished.get());
+        this.waitingTime.set(other.waitingTime.get());
+        this.processingTime.set(other.processingTime.get());
+        this.waitingCount.set(other.waitingCount.get());
+        this.processingCount.set(other.processingCount.get());
+        this.finishedJobs.set(other.finishedJobs.get());
+        this.failedJobs.set(other.failedJobs.get());
+        this.cancelledJobs.set(other.cancelledJobs.get());
+        this.activeJobs.set(other.activeJobs.get());
+        this.waitingTimeHistogram.copyFrom(other.waitingTimeHistogram);
+        this.processingTimeHistogram.copyFrom(other.processingTimeHistogram);
     }
 
     /**
      * @see org.apache.sling.event.jobs.Statistics#reset()
      */
     @Override
-    public synchronized void reset() {
-        this.startTime = System.currentTimeMillis();
-        this.lastActivated = -1;
-        this.lastFinished = -1;
-        this.averageWaitingTime = 0;
-        this.averageProcessingTime = 0;
-        this.waitingTime = 0;
-        this.processingTime = 0;
-        this.waitingCount = 0;
-        this.processingCount = 0;
-        this.finishedJobs = 0;
-        this.failedJobs = 0;
-        this.cancelledJobs = 0;
+    public void reset() {
+        this.startTime.set(System.currentTimeMillis());
+        this.lastActivated.set(-1);
+        this.lastFinished.set(-1);
+        this.waitingTime.set(0);
+        this.processingTime.set(0);
+        this.waitingCount.set(0);
+        this.processingCount.set(0);
+        this.finishedJobs.set(0);
+        this.failedJobs.set(0);
+        this.cancelledJobs.set(0);
+        this.waitingTimeHistogram.reset();
+        this.processingTimeHistogram.reset();
+    }
+
+    private static long average(final long time, final long count) {
+        if ( count > 0 ) {
+            return time / count;
+        }
+        return 0;
+    }
+
+    private static void setIfHigher(final AtomicLong value, final long other) {
+        long current = value.get();
+        while ( other > current ) {
+            if ( value.compareAndSet(current, other) ) {
+                break;
+            }
+            current = value.get();
+        }
     }
 }
@@ -18,36 +18,41 @@
  */
 package org.apache.sling.event.impl.jobs.stats;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.sling.event.jobs.TopicStatistics;
 
 /**
  * Implementation of the statistics.
+ *
+ * All counters are updated lock free, the average values are
+ * calculated on demand.
  */
-public class TopicStatisticsImpl implements TopicStatistics {
+public class TopicStatisticsImpl implements TopicStatistics, LatencyStatistics {
 
     private final String topic;
 
-    private long lastActivated = -1;
+    private final AtomicLong lastActivated = new AtomicLong(-1);
 
-    private long lastFinished = -1;
+    private final AtomicLong lastFinished = new AtomicLong(-1);
 
-    private long averageWaitingTime;
+    private final AtomicLong waitingTime = new AtomicLong();
 
-    private long averageProcessingTime;
+    private final AtomicLong processingTime = new AtomicLong();
 
-    private long waitingTime;
+    private final AtomicLong waitingCount = new AtomicLong();
 
-    private long processingTime;
+    private final AtomicLong processingCount = new AtomicLong();
 
-    private long waitingCount;
+    private final AtomicLong finishedJobs = new AtomicLong();
 
-    private long processingCount;
+    private final AtomicLong failedJobs = new AtomicLong();
 
-    private long finishedJobs;
+    private final AtomicLong cancelledJobs = new AtomicLong();
 
-    private long failedJobs;
+    private final LatencyHistogram waitingTimeHistogram = new LatencyHistogram();
 
-    private long cancelledJobs;
+    private final LatencyHistogram processingTimeHistogram = new LatencyHistogram();
 
     /** Constructor. */
     public TopicStatisticsImpl(final String topic) {
@@ -64,70 +69,86 @@ public class TopicStatisticsImpl implements TopicStatistics {
     /**
      * @see org.apache.sling.event.jobs.TopicStatistics#getNumberOfProcessedJobs()
      */
-    public synchronized long getNumberOfProcessedJobs() {
+    public long getNumberOfProcessedJobs() {
         return getNumberOfCancelledJobs() + getNumberOfFailedJobs() + getNumberOfFinishedJobs();
     }
 
     /**
      * @see org.apache.sling.event.jobs.TopicStatistics#getAverageWaitingTime()
      */
-    public synchronized long getAverageWaitingTime() {
-        return averageWaitingTime;
+    public long getAverageWaitingTime() {
+        final long count = waitingCount.get();
+        return count > 0 ? waitingTime.get() / count : 0;
     }
 
     /**
      * @see org.apache.sling.event.jobs.TopicStatistics#getAverageProcessingTime()
      */
-    public synchronized long getAverageProcessingTime() {
-        return averageProcessingTime;
+    public long getAverageProcessingTime() {
+        final long count = processingCount.get();
+        return count > 0 ? processingTime.get() / count : 0;
     }
 
     /**
      * @see org.apache.sling.event.jobs.TopicStatistics#getNumberOfFinishedJobs()
      */
-    public synchronized long getNumberOfFinishedJobs() {
-        return finishedJobs;
+    public long getNumberOfFinishedJobs() {
+        return finishedJobs.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.TopicStatistics#getNumberOfCancelledJobs()
      */
-    public synchronized long getNumberOfCancelledJobs() {
-        return cancelledJobs;
+    public long getNumberOfCancelledJobs() {
+        return cancelledJobs.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.TopicStatistics#getNumberOfFailedJobs()
      */
-    public synchronized long getNumberOfFailedJobs() {
-        return failedJobs;
+    public long getNumberOfFailedJobs() {
+        return failedJobs.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.TopicStatistics#getLastActivatedJobTime()
      */
-    public synchronized long getLastActivatedJobTime() {
-        return this.lastActivated;
+    public long getLastActivatedJobTime() {
+        return this.lastActivated.get();
     }
 
     /**
      * @see org.apache.sling.event.jobs.TopicStatistics#getLastFinishedJobTime()
      */
-    public synchronized long getLastFinishedJobTime() {
-        return this.lastFinished;
+    public long getLastFinishedJobTime() {
+        return this.lastFinished.get();
+    }
+
+    /**
+     * @see org.apache.sling.event.impl.jobs.stats.LatencyStatistics#getWaitingTimeHistogram()
+     */
+    public LatencyHistogram getWaitingTimeHistogram() {
+        return this.waitingTimeHistogram;
+    }
+
+    /**
+     * @see org.apache.sling.event.impl.jobs.stats.LatencyStatistics#getProcessingTimeHistogram()
+     */
+    public LatencyHistogram getProcessingTimeHistogram() {
+        return this.processingTimeHistogram;
     }
 
     /**
      * Add a finished job.
      * @param jobTime The time of the job processing.
      */
-    public synchronized void addFinished(final long jobTime) {
-        this.finishedJobs++;
-        this.lastFinished = System.currentTimeMillis();
+    public void addFinished(final long jobTime) {
+        this.finishedJobs.incrementAndGet();
+        this.lastFinished.set(System.currentTimeMillis());
         if ( jobTime != -1 ) {
-            this.processingTime += jobTime;
-            this.processingCount++;
-            this.averageProcessingTime = this.processingTime / this.processingCount;
+            this.processingTime.addAndGet(jobTime);
+            this.processingCount.incrementAndGet();
+            this.processingTimeHistogram.record(jobTime);
         }
     }
 
@@ -135,26 +156,26 @@ public class TopicStatisticsImpl implements TopicStatistics {
      * Add a started job.
      * @param queueTime The time of the job in the queue.
      */
-    public synchronized void addActivated(final long queueTime) {
-        this.lastActivated = System.currentTimeMillis();
+    public void addActivated(final long queueTime) {
+        this.lastActivated.set(System.currentTimeMillis());
         if ( queueTime != -1 ) {
-            this.waitingTime += queueTime;
-            this.waitingCount++;
-            this.averageWaitingTime = this.waitingTime / this.waitingCount;
+            this.waitingTime.addAndGet(queueTime);
+            this.waitingCount.incrementAndGet();
+            this.waitingTimeHistogram.record(queueTime);
         }
     }
 
     /**
      * Add a failed job.
      */
-    public synchronized void addFailed() {
-        this.failedJobs++;
+    public void addFailed() {
+        this.failedJobs.incrementAndGet();
     }
 
     /**
      * Add a cancelled job.
      */
-    public synchronized void addCancelled() {
-        this.cancelledJobs++;
+    public void addCancelled() {
+        this.cancelledJobs.incrementAndGet();
     }
 }
@@ -51,6 +51,13 @@ import org.slf4j.LoggerFactory;
  * - state : only jobs in this state are removed (default is no state, meaning all jobs are removed)
  *           The value should either be a string or an array of string. Allowed values are:
  *           SUCCEEDED, STOPPED, GIVEN_UP, ERROR, DROPPED
+ * - batchSize : the maximum number of removals per commit (default is 50)
+ * - pause : the time in milliseconds to pause after each commit (default is 10)
+ *
+ * As the history is stored in time partitions (year/month/day/hour/minute), old
+ * minute partitions are removed as a whole if no state is specified and if they
+ * contain less jobs than the batch size. No commit removes more than the batch
+ * size of resources.
  */
 @Component
 @Service(value = JobExecutor.class)
@@ -63,8 +70,22 @@ public class HistoryCleanUpTask implements JobExecutor {
 
     private static final String PROPERTY_STATE = "state";
 
+    private static final String PROPERTY_BATCH_SIZE = "batchSize";
+
+    private static final String PROPERTY_PAUSE = "pause";
+
     private static final int DEFAULT_AGE = 60 * 24 * 2; // older than two days
 
+    private static final int DEFAULT_BATCH_SIZE = 50;
+
+    private static final long DEFAULT_PAUSE = 10;
+
+    /** The calendar fields of the time partitions. */
+    private static final int[] PARTITION_FIELDS = new int[] {Calendar.YEAR, Calendar.MONTH,
+        Calendar.DAY_OF_MONTH, Calendar.HOUR_OF_DAY, Calendar.MINUTE};
+
+    private static final int MINUTE_LEVEL = 4;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     @Reference
@@ -78,6 +99,14 @@ public class HistoryCleanUpTask implements JobExecutor {
         }
         final Calendar removeDate = Calendar.getInstance();
         removeDate.add(Calendar.MINUTE, -age);
+        int batchSize = job.getProperty(PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        if ( batchSize < 1 ) {
+            batchSize = DEFAULT_BATCH_SIZE;
+        }
+        long pause = job.getProperty(PROPERTY_PAUSE, DEFAULT_PAUSE);
+        if ( pause < 0 ) {
+            pause = DEFAULT_PAUSE;
+        }
 
         final String[] topics = job.getProperty(PROPERTY_TOPIC, String[].class);
         final String[] states = job.getProperty(PROPERTY_STATE, String[].class);
@@ -98,13 +127,15 @@ public class HistoryCleanUpTask implements JobExecutor {
         final ResourceResolver resolver = this.configuration.createResourceResolver();
         try {
             if ( stateList == null || stateList.contains(Job.JobState.SUCCEEDED.name()) ) {
-                this.cleanup(removeDate, resolver, context, configuration.getStoredSuccessfulJobsPath(), topics, null);
+                this.cleanup(removeDate, resolver, context, configuration.getStoredSuccessfulJobsPath(), topics, null,
+                        batchSize, pause);
             }
             if ( stateList == null || stateList.contains(Job.JobState.DROPPED.name())
                  || stateList.contains(Job.JobState.ERROR.name())
                  || stateList.contains(Job.JobState.GIVEN_UP.name())
                  || stateList.contains(Job.JobState.STOPPED.name())) {
-                this.cleanup(removeDate, resolver, context, configuration.getStoredCancelledJobsPath(), topics, stateList);
+                this.cleanup(removeDate, resolver, context, configuration.getStoredCancelledJobsPath(), topics, stateList,
+                        batchSize, pause);
             }
 
         } catch (final PersistenceException pe) {
@@ -121,11 +152,14 @@ public class HistoryCleanUpTask implements JobExecutor {
             final JobExecutionContext context,
             final String basePath,
             final String[] topics,
-            final List<String> stateList)
+            final List<String> stateList,
+            final int batchSize,
+            final long pause)
     throws PersistenceException {
         final Resource baseResource = resolver.getResource(basePath);
         // sanity check - should never be null
         if ( baseResource != null ) {
+            final Progress progress = new Progress(resolver, context, batchSize, pause);
             final Iterator<Resource> topicIter = baseResource.listChildren();
             while ( !context.isStopped() && topicIter.hasNext() ) {
                 final Resource topicResource = topicIter.next();
@@ -147,87 +181,193 @@ public class HistoryCleanUpTask implements JobExecutor {
                 final Iterator<Resource> yearIter = topicResource.listChildren();
                 while ( !context.isStopped() && yearIter.hasNext() ) {
                     final Resource yearResource = yearIter.next();
-                    final int year = Integer.valueOf(yearResource.getName());
-                    final boolean oldYear = year < removeDate.get(Calendar.YEAR);
-
-                    // months
-                    final Iterator<Resource> monthIter = yearResource.listChildren();
-                    while ( !context.isStopped() && monthIter.hasNext() ) {
-                        final Resource monthResource = monthIter.next();
-                        final int month = Integer.valueOf(monthResource.getName());
-                        final boolean oldMonth = oldYear || month < (removeDate.get(Calendar.MONTH) + 1);
-
-                        // days
-                        final Iterator<Resource> dayIter = monthResource.listChildren();
-                        while ( !context.isStopped() && dayIter.hasNext() ) {
-                            final Resource dayResource = dayIter.next();
-                            final int day = Integer.valueOf(dayResource.getName());
-                            final boolean oldDay = oldMonth || day < removeDate.get(Calendar.DAY_OF_MONTH);
-
-                            // hours
-                            final Iterator<Resource> hourIter = dayResource.listChildren();
-                            while ( !context.isStopped() && hourIter.hasNext() ) {
-                                final Resource hourResource = hourIter.next();
-                                final int hour = Integer.valueOf(hourResource.getName());
-                                final boolean oldHour = oldDay || hour < removeDate.get(Calendar.HOUR_OF_DAY);
-
-                                // minutes
-                                final Iterator<Resource> minuteIter = hourResource.listChildren();
-                                while ( !context.isStopped() && minuteIter.hasNext() ) {
-                                    final Resource minuteResource = minuteIter.next();
-
-                                    // check if we can delete the minute
-                                    final int minute = Integer.valueOf(minuteResource.getName());
-                                    final boolean oldMinute = oldHour || minute <= removeDate.get(Calendar.MINUTE);
-                                    if ( oldMinute ) {
-                                        final Iterator<Resource> jobIter = minuteResource.listChildren();
-                                        while ( !context.isStopped() && jobIter.hasNext() ) {
-                                            final Resource jobResource = jobIter.next();
-                                            boolean remove = stateList == null;
-                                            if ( !remove ) {
-                                                final ValueMap vm = ResourceUtil.getValueMap(jobResource);
-                                                final String state = vm.get(JobImpl.PROPERTY_FINISHED_STATE, String.class);
-                                                if ( state != null && stateList.contains(state) ) {
-                                                    remove = true;
-                                                }
-                                            }
-                                            if ( remove ) {
-                                                resolver.delete(jobResource);
-                                                resolver.commit();
-                                            }
-                                        }
-                                    }
-                                    // check if we can delete the minute
-                                    if ( !context.isStopped() && oldMinute && !minuteResource.listChildren().hasNext()) {
-                                        resolver.delete(minuteResource);
-                                        resolver.commit();
-                                    }
-                                }
-
-                                // check if we can delete the hour
-                                if ( !context.isStopped() && oldHour && !hourResource.listChildren().hasNext()) {
-                                    resolver.delete(hourResource);
-                                    resolver.commit();
-                                }
-                            }
-                            // check if we can delete the day
-                            if ( !context.isStopped() && oldDay && !dayResource.listChildren().hasNext()) {
-                                resolver.delete(dayResource);
-                                resolver.commit();
-                            }
-                        }
-
-                        // check if we can delete the month
-                        if ( !context.isStopped() && oldMonth && !monthResource.listChildren().hasNext() ) {
-                            resolver.delete(monthResource);
-                            resolver.commit();
-                        }
+                    this.cleanupPartition(yearResource, 0, false, removeDate, stateList, progress);
+                }
+                progress.commit();
+                context.log("Cleaned up topic {0}: removed {1} jobs and {2} time partitions so far",
+                        topicResource.getName(), progress.jobs, progress.partitions);
+            }
+            progress.commit();
+
+            final long time = System.currentTimeMillis() - progress.startTime;
+            context.log("Cleaned up {0}: removed {1} jobs and {2} time partitions in {3} ms ({4} jobs/sec) with {5} commits",
+                    basePath, progress.jobs, progress.partitions, time,
+                    time > 0 ? progress.jobs * 1000 / time : progress.jobs, progress.commits);
+            logger.debug("Cleaned up {} : removed {} jobs and {} time partitions in {} ms",
+                    new Object[] {basePath, progress.jobs, progress.partitions, time});
+        }
+    }
+
+    /**
+     * Clean up a single time partition (year, month, day, hour or minute).
+     *
+     * A minute partition which is older than the remove date is dropped in
+     * one operation if no state filter is used and if it has less children
+     * than the batch size, otherwise its jobs are removed in batches. This
+     * keeps the size of a single commit bounded. Partitions which are newer
+     * than the remove date are skipped without traversing them.
+     *
+     * @param partition The partition resource
+     * @param level The level of the partition, 0 for years, 4 for minutes
+     * @param parentIsOld Whether the parent partition is older than the remove date
+     */
+    private void cleanupPartition(final Resource partition,
+            final int level,
+            final boolean parentIsOld,
+            final Calendar removeDate,
+            final List<String> stateList,
+            final Progress progress)
+    throws PersistenceException {
+        final int value;
+        try {
+            value = Integer.valueOf(partition.getName());
+        } catch ( final NumberFormatException nfe) {
+            // not a time partition, ignore
+            return;
+        }
+        final int limit = removeDate.get(PARTITION_FIELDS[level]) + (PARTITION_FIELDS[level] == Calendar.MONTH ? 1 : 0);
+        if ( !parentIsOld && value > limit ) {
+            // partition is newer than the remove date
+            return;
+        }
+        final boolean isOld = parentIsOld || value < limit || (level == MINUTE_LEVEL && value == limit);
+
+        if ( level == MINUTE_LEVEL ) {
+            if ( stateList == null ) {
+                final int size = progress.countChildren(partition);
+                if ( size >= 0 ) {
+                    // drop the whole partition
+                    progress.removePartition(partition, size);
+                    return;
+                }
+            }
+            final Iterator<Resource> jobIter = partition.listChildren();
+            while ( !progress.context.isStopped() && jobIter.hasNext() ) {
+                final Resource jobResource = jobIter.next();
+                boolean remove = stateList == null;
+                if ( !remove ) {
+                    final ValueMap vm = ResourceUtil.getValueMap(jobResource);
+                    final String state = vm.get(JobImpl.PROPERTY_FINISHED_STATE, String.class);
+                    if ( state != null && stateList.contains(state) ) {
+                        remove = true;
                     }
+                }
+                if ( remove ) {
+                    progress.removeJob(jobResource);
+                }
+            }
+            if ( !progress.context.isStopped() && !partition.listChildren().hasNext() ) {
+                progress.removeEmptyFolder(partition);
+            }
+
+        } else {
+            final Iterator<Resource> childIter = partition.listChildren();
+            while ( !progress.context.isStopped() && childIter.hasNext() ) {
+                this.cleanupPartition(childIter.next(), level + 1, isOld, removeDate, stateList, progress);
+            }
+            // check if we can delete the partition
+            if ( !progress.context.isStopped() && isOld && !partition.listChildren().hasNext() ) {
+                progress.removeEmptyFolder(partition);
+            }
+        }
+    }
+
+    /**
+     * Keeps track of the clean up progress and commits the changes
+     * in bounded batches. After each commit, the clean up pauses for
+     * the configured time to limit the load on the repository.
+     */
+    private static final class Progress {
+
+        public final ResourceResolver resolver;
+
+        public final JobExecutionContext context;
+
+        private final int batchSize;
+
+        private final long pause;
+
+        public final long startTime = System.currentTimeMillis();
+
+        public long jobs;
+
+        public long partitions;
+
+        public long commits;
+
+        private int pending;
+
+        public Progress(final ResourceResolver resolver,
+                final JobExecutionContext context,
+                final int batchSize,
+                final long pause) {
+            this.resolver = resolver;
+            this.context = context;
+            this.batchSize = batchSize;
+            this.pause = pause;
+        }
+
+        public void removeJob(final Resource rsrc) throws PersistenceException {
+            this.resolver.delete(rsrc);
+            this.jobs++;
+            this.pending++;
+            if ( this.pending >= this.batchSize ) {
+                this.commit();
+            }
+        }
+
+        /**
+         * Count the children of a partition.
+         * @return The number of children or {@code -1} if the partition together
+         *         with its children exceeds the batch size.
+         */
+        public int countChildren(final Resource rsrc) {
+            int count = 0;
+            final Iterator<Resource> iter = rsrc.listChildren();
+            while ( iter.hasNext() ) {
+                iter.next();
+                count++;
+                if ( count >= this.batchSize ) {
+                    return -1;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Remove a partition with the given number of jobs in one operation.
+         */
+        public void removePartition(final Resource rsrc, final int size) throws PersistenceException {
+            if ( this.pending + size + 1 > this.batchSize ) {
+                this.commit();
+            }
+            this.resolver.delete(rsrc);
+            this.jobs += size;
+            this.partitions++;
+            this.pending += size + 1;
+            if ( this.pending >= this.batchSize ) {
+                this.commit();
+            }
+        }
+
+        public void removeEmptyFolder(final Resource rsrc) throws PersistenceException {
+            this.resolver.delete(rsrc);
+            this.pending++;
+            if ( this.pending >= this.batchSize ) {
+                this.commit();
+            }
+        }
 
-                    // check if we can delete the year
-                    if ( !context.isStopped() && oldYear && !yearResource.listChildren().hasNext() ) {
-                        resolver.delete(yearResource);
-                        resolver.commit();
+        public void commit() throws PersistenceException {
+            if ( this.pending > 0 ) {
+                this.resolver.commit();
+                this.pending = 0;
+                this.commits++;
+                if ( this.pause > 0 && !this.context.isStopped() ) {
+                    try {
+                        Thread.sleep(this.pause);
+                    } catch ( final InterruptedException ie ) {
+                        Thread.currentThread().interrupt();
                     }
                 }
             }
@@ -21,6 +21,14 @@ import java.util.Date;
 
 import org.apache.sling.event.jobs.Statistics;
 
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * The statistics of a queue or of all queues as exposed through JMX.
+ * This interface is implemented by the job handling and not intended
+ * to be implemented by clients.
+ */
+@ProviderType
 public interface StatisticsMBean extends Statistics {
 
     Date getLastActivatedJobDate();
@@ -31,4 +39,52 @@ public interface StatisticsMBean extends Statistics {
 
     String getName();
 
+    /**
+     * The median waiting time of jobs in ms.
+     * @since 1.1.0
+     */
+    long getWaitingTimePercentile50();
+
+    /**
+     * The 95th percentile of the waiting time of jobs in ms.
+     * @since 1.1.0
+     */
+    long getWaitingTimePercentile95();
+
+    /**
+     * The 99th percentile of the waiting time of jobs in ms.
+     * @since 1.1.0
+     */
+    long getWaitingTimePercentile99();
+
+    /**
+     * The maximum waiting time of jobs in ms.
+     * @since 1.1.0
+     */
+    long getMaxWaitingTime();
+
+    /**
+     * The median processing time of jobs in ms.
+     * @since 1.1.0
+     */
+    long getProcessingTimePercentile50();
+
+    /**
+     * The 95th percentile of the processing time of jobs in ms.
+     * @since 1.1.0
+     */
+    long getProcessingTimePercentile95();
+
+    /**
+     * The 99th percentile of the processing time of jobs in ms.
+     * @since 1.1.0
+     */
+    long getProcessingTimePercentile99();
+
+    /**
+     * The maximum processing time of jobs in ms.
+     * @since 1.1.0
+     */
+    long getMaxProcessingTime();
+
 }
@@ -17,7 +17,7 @@
  * under the License.
  */
 
-@Version("1.0.0")
+@Version("1.1.0")
 package org.apache.sling.event.jobs.jmx;
 
 import aQute.bnd.annotation.Version;
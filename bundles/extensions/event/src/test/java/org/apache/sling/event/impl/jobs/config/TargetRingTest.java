@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.discovery.InstanceDescription;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TargetRingTest {
+
+    private InstanceDescription createInstance(final String slingId, final String weight) {
+        final InstanceDescription desc = Mockito.mock(InstanceDescription.class);
+        Mockito.when(desc.getSlingId()).thenReturn(slingId);
+        Mockito.when(desc.getProperty(TopologyCapabilities.PROPERTY_WEIGHT)).thenReturn(weight);
+        return desc;
+    }
+
+    private List<InstanceDescription> createInstances(final int count) {
+        final List<InstanceDescription> list = new ArrayList<InstanceDescription>();
+        for(int i = 0; i < count; i++) {
+            list.add(createInstance("instance-" + i, null));
+        }
+        return list;
+    }
+
+    private Map<String, Integer> distribution(final TargetRing ring, final int keys) {
+        final Map<String, Integer> result = new HashMap<String, Integer>();
+        for(int i = 0; i < keys; i++) {
+            final String id = ring.get("job-" + i).getSlingId();
+            final Integer count = result.get(id);
+            result.put(id, count == null ? 1 : count + 1);
+        }
+        return result;
+    }
+
+    @Test public void testEmptyRing() {
+        final TargetRing ring = new TargetRing(Collections.<InstanceDescription>emptyList());
+        assertTrue(ring.isEmpty());
+        assertNull(ring.get("foo"));
+        assertNull(ring.next());
+        assertNull(ring.find("foo"));
+    }
+
+    @Test public void testStableAssignment() {
+        final List<InstanceDescription> instances = createInstances(4);
+        final TargetRing ring1 = new TargetRing(instances);
+        final List<InstanceDescription> reversed = new ArrayList<InstanceDescription>(instances);
+        Collections.reverse(reversed);
+        final TargetRing ring2 = new TargetRing(reversed);
+        for(int i = 0; i < 1000; i++) {
+            assertEquals(ring1.get("queue-" + i).getSlingId(), ring2.get("queue-" + i).getSlingId());
+        }
+    }
+
+    @Test public void testSpreadAcrossInstances() {
+        final TargetRing ring = new TargetRing(createInstances(4));
+        final Map<String, Integer> dist = distribution(ring, 10000);
+        assertEquals(4, dist.size());
+        for(final Integer count : dist.values()) {
+            assertTrue("Unbalanced distribution " + dist, count > 1500 && count < 3500);
+        }
+    }
+
+    @Test public void testMinimalMovementOnRemoval() {
+        final List<InstanceDescription> instances = createInstances(5);
+        final TargetRing before = new TargetRing(instances);
+        final List<InstanceDescription> remaining = new ArrayList<InstanceDescription>(instances);
+        final InstanceDescription removed = remaining.remove(2);
+        final TargetRing after = new TargetRing(remaining);
+        for(int i = 0; i < 5000; i++) {
+            final String key = "job-" + i;
+            final String oldTarget = before.get(key).getSlingId();
+            if ( !oldTarget.equals(removed.getSlingId()) ) {
+                assertEquals(oldTarget, after.get(key).getSlingId());
+            }
+        }
+    }
+
+    @Test public void testWeights() {
+        final List<InstanceDescription> instances = new ArrayList<InstanceDescription>();
+        instances.add(createInstance("a", "3"));
+        instances.add(createInstance("b", "1"));
+        final TargetRing ring = new TargetRing(instances);
+        final Map<String, Integer> dist = distribution(ring, 10000);
+        assertTrue("Weights not respected " + dist, dist.get("a") > 2 * dist.get("b"));
+
+        // one full round over all virtual nodes
+        final int nodes = 4 * TargetRing.VIRTUAL_NODES;
+        int a = 0;
+        for(int i = 0; i < nodes; i++) {
+            if ( "a".equals(ring.next().getSlingId()) ) {
+                a++;
+            }
+        }
+        assertEquals(3 * TargetRing.VIRTUAL_NODES, a);
+    }
+
+    @Test public void testFind() {
+        final List<InstanceDescription> instances = createInstances(3);
+        final TargetRing ring = new TargetRing(instances);
+        assertSame(instances.get(1), ring.find("instance-1"));
+        assertNull(ring.find("instance-5"));
+        assertEquals(instances, ring.getTargets());
+    }
+}
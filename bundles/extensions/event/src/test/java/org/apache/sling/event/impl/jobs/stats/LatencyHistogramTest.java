@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test public void testEmpty() {
+        final LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getValueAtPercentile(50));
+        assertEquals(0, h.getValueAtPercentile(99));
+    }
+
+    @Test public void testNegativeValuesAreIgnored() {
+        final LatencyHistogram h = new LatencyHistogram();
+        h.record(-1);
+        assertEquals(0, h.getCount());
+    }
+
+    @Test public void testSmallValuesAreExact() {
+        final LatencyHistogram h = new LatencyHistogram();
+        for(int i = 1; i <= 10; i++) {
+            h.record(i);
+        }
+        assertEquals(10, h.getCount());
+        assertEquals(10, h.getMax());
+        assertEquals(5, h.getValueAtPercentile(50));
+        assertEquals(10, h.getValueAtPercentile(100));
+    }
+
+    @Test public void testPercentiles() {
+        final LatencyHistogram h = new LatencyHistogram();
+        for(int i = 1; i <= 1000; i++) {
+            h.record(i);
+        }
+        assertEquals(1000, h.getMax());
+        assertWithinError(500, h.getValueAtPercentile(50));
+        assertWithinError(950, h.getValueAtPercentile(95));
+        assertWithinError(990, h.getValueAtPercentile(99));
+        assertEquals(1000, h.getValueAtPercentile(100));
+    }
+
+    @Test public void testLargeValues() {
+        final LatencyHistogram h = new LatencyHistogram();
+        h.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, h.getValueAtPercentile(50));
+    }
+
+    @Test public void testAddCopyAndReset() {
+        final LatencyHistogram h1 = new LatencyHistogram();
+        final LatencyHistogram h2 = new LatencyHistogram();
+        h1.record(10);
+        h2.record(5000);
+        h1.add(h2);
+        assertEquals(2, h1.getCount());
+        assertEquals(5000, h1.getMax());
+
+        final LatencyHistogram copy = new LatencyHistogram();
+        copy.copyFrom(h1);
+        assertEquals(2, copy.getCount());
+        assertEquals(10, copy.getValueAtPercentile(50));
+
+        h1.reset();
+        assertEquals(0, h1.getCount());
+        assertEquals(0, h1.getMax());
+        assertEquals(2, copy.getCount());
+    }
+
+    private void assertWithinError(final long expected, final long actual) {
+        assertTrue("Expected " + expected + " but was " + actual,
+                Math.abs(expected - actual) <= expected / 15 + 1);
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.impl.jobs.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junitx.util.PrivateAccessor;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.event.impl.jobs.JobImpl;
+import org.apache.sling.event.impl.jobs.config.JobManagerConfiguration;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.consumer.JobExecutionContext;
+import org.apache.sling.testing.resourceresolver.MockResourceResolverFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class HistoryCleanUpTaskTest {
+
+    private static final String SUCCEEDED_PATH = "/var/eventing/jobs/finished";
+
+    private static final String CANCELLED_PATH = "/var/eventing/jobs/cancelled";
+
+    private static final String TOPIC = "org:apache:sling:test";
+
+    private static final int AGE = 60 * 24 * 2;
+
+    private ResourceResolver resolver;
+
+    private HistoryCleanUpTask task;
+
+    /** The number of removed resources per commit. */
+    private final List<Integer> commits = new ArrayList<Integer>();
+
+    private int pending;
+
+    @Before
+    public void setup() throws Exception {
+        final ResourceResolver mockResolver = new MockResourceResolverFactory().getResourceResolver(null);
+        this.resolver = Mockito.spy(mockResolver);
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                pending += count((Resource)invocation.getArguments()[0]);
+                invocation.callRealMethod();
+                return null;
+            }
+        }).when(this.resolver).delete(Mockito.any(Resource.class));
+        Mockito.doAnswer(new Answer<Void>() {
+
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable {
+                commits.add(pending);
+                pending = 0;
+                invocation.callRealMethod();
+                return null;
+            }
+        }).when(this.resolver).commit();
+        Mockito.doNothing().when(this.resolver).close();
+
+        final JobManagerConfiguration configuration = Mockito.mock(JobManagerConfiguration.class);
+        Mockito.when(configuration.createResourceResolver()).thenReturn(this.resolver);
+        Mockito.when(configuration.getStoredSuccessfulJobsPath()).thenReturn(SUCCEEDED_PATH);
+        Mockito.when(configuration.getStoredCancelledJobsPath()).thenReturn(CANCELLED_PATH);
+
+        this.task = new HistoryCleanUpTask();
+        PrivateAccessor.setField(this.task, "configuration", configuration);
+        this.getOrCreate(SUCCEEDED_PATH);
+        this.getOrCreate(CANCELLED_PATH);
+    }
+
+    private static int count(final Resource rsrc) {
+        int result = 1;
+        final Iterator<Resource> iter = rsrc.listChildren();
+        while ( iter.hasNext() ) {
+            result += count(iter.next());
+        }
+        return result;
+    }
+
+    private Resource getOrCreate(final String path) throws Exception {
+        Resource rsrc = this.resolver.getResource(path);
+        if ( rsrc == null ) {
+            final int pos = path.lastIndexOf('/');
+            final Resource parent = this.getOrCreate(pos == 0 ? "/" : path.substring(0, pos));
+            rsrc = this.resolver.create(parent, path.substring(pos + 1), null);
+        }
+        return rsrc;
+    }
+
+    private static String getPartitionPath(final String basePath, final Calendar date) {
+        return basePath + '/' + TOPIC + '/'
+                + date.get(Calendar.YEAR) + '/'
+                + (date.get(Calendar.MONTH) + 1) + '/'
+                + date.get(Calendar.DAY_OF_MONTH) + '/'
+                + date.get(Calendar.HOUR_OF_DAY) + '/'
+                + date.get(Calendar.MINUTE);
+    }
+
+    private String createJobs(final String basePath, final Calendar date, final int count, final String state)
+    throws Exception {
+        final String path = getPartitionPath(basePath, date);
+        final Resource partition = this.getOrCreate(path);
+        for(int i = 0; i < count; i++) {
+            final Map<String, Object> props = state == null ? null
+                    : Collections.<String, Object>singletonMap(JobImpl.PROPERTY_FINISHED_STATE, state);
+            this.resolver.create(partition, "job_" + i, props);
+        }
+        this.resolver.commit();
+        this.commits.clear();
+        return path;
+    }
+
+    private static Calendar removeDate() {
+        final Calendar date = Calendar.getInstance();
+        date.add(Calendar.MINUTE, -AGE);
+        return date;
+    }
+
+    private static Calendar offset(final int field, final int amount) {
+        final Calendar date = removeDate();
+        date.add(field, amount);
+        return date;
+    }
+
+    private void run(final int batchSize, final String... states) {
+        final Job job = Mockito.mock(Job.class);
+        Mockito.when(job.getProperty(Mockito.anyString(), Mockito.any())).thenAnswer(new Answer<Object>() {
+
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws Throwable {
+                final String name = (String)invocation.getArguments()[0];
+                if ( "batchSize".equals(name) ) {
+                    return batchSize;
+                }
+                if ( "pause".equals(name) ) {
+                    return 0L;
+                }
+                return invocation.getArguments()[1];
+            }
+        });
+        if ( states.length > 0 ) {
+            Mockito.when(job.getProperty("state", String[].class)).thenReturn(states);
+        }
+        final JobExecutionContext context = Mockito.mock(JobExecutionContext.class);
+        Mockito.when(context.result()).thenReturn(Mockito.mock(JobExecutionContext.ResultBuilder.class));
+        this.task.process(job, context);
+    }
+
+    @Test
+    public void testOldPartitionsAreRemoved() throws Exception {
+        final String lastYear = this.createJobs(SUCCEEDED_PATH, offset(Calendar.YEAR, -1), 3, null);
+        final String lastMinute = this.createJobs(SUCCEEDED_PATH, offset(Calendar.MINUTE, -5), 3, null);
+        final String recent = this.createJobs(SUCCEEDED_PATH, offset(Calendar.MINUTE, 5), 3, null);
+
+        this.run(50);
+
+        assertNull(this.resolver.getResource(lastYear));
+        assertNull(this.resolver.getResource(lastMinute));
+        assertNotNull(this.resolver.getResource(recent));
+        assertEquals(3, count(this.resolver.getResource(recent)) - 1);
+    }
+
+    @Test
+    public void testNewerMonthWithLowerDayIsKept() throws Exception {
+        final Calendar nextMonth = offset(Calendar.MONTH, 1);
+        nextMonth.set(Calendar.DAY_OF_MONTH, 1);
+        nextMonth.set(Calendar.HOUR_OF_DAY, 0);
+        nextMonth.set(Calendar.MINUTE, 0);
+        final String nextMonthPath = this.createJobs(SUCCEEDED_PATH, nextMonth, 2, null);
+
+        final Calendar nextDay = offset(Calendar.DAY_OF_MONTH, 1);
+        nextDay.set(Calendar.HOUR_OF_DAY, 0);
+        nextDay.set(Calendar.MINUTE, 0);
+        final String nextDayPath = this.createJobs(SUCCEEDED_PATH, nextDay, 2, null);
+
+        final String old = this.createJobs(SUCCEEDED_PATH, offset(Calendar.DAY_OF_MONTH, -1), 2, null);
+
+        this.run(50);
+
+        assertNotNull(this.resolver.getResource(nextMonthPath));
+        assertNotNull(this.resolver.getResource(nextDayPath));
+        assertNull(this.resolver.getResource(old));
+    }
+
+    @Test
+    public void testCommitsAreBounded() throws Exception {
+        // a partition larger than the batch size
+        final String large = this.createJobs(SUCCEEDED_PATH, offset(Calendar.HOUR_OF_DAY, -3), 25, null);
+        // several small partitions
+        final List<String> small = new ArrayList<String>();
+        for(int i = 1; i <= 6; i++) {
+            small.add(this.createJobs(SUCCEEDED_PATH, offset(Calendar.MINUTE, -i * 61), 3, null));
+        }
+
+        this.run(10);
+
+        assertNull(this.resolver.getResource(large));
+        for(final String path : small) {
+            assertNull(this.resolver.getResource(path));
+        }
+        assertTrue(this.commits.size() > 1);
+        for(final int size : this.commits) {
+            assertTrue("Commit removed " + size + " resources", size <= 10);
+        }
+    }
+
+    @Test
+    public void testStateFilter() throws Exception {
+        final Calendar date = offset(Calendar.HOUR_OF_DAY, -1);
+        final String path = getPartitionPath(CANCELLED_PATH, date);
+        final Resource partition = this.getOrCreate(path);
+        this.resolver.create(partition, "error",
+                Collections.<String, Object>singletonMap(JobImpl.PROPERTY_FINISHED_STATE, "ERROR"));
+        this.resolver.create(partition, "stopped",
+                Collections.<String, Object>singletonMap(JobImpl.PROPERTY_FINISHED_STATE, "STOPPED"));
+        this.resolver.commit();
+
+        this.run(50, "ERROR");
+
+        assertNull(this.resolver.getResource(path + "/error"));
+        assertNotNull(this.resolver.getResource(path + "/stopped"));
+    }
+}
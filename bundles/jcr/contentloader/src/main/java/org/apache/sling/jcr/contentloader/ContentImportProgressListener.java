@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.contentloader;
+
+/**
+ * A {@link ContentImportListener} which is additionally informed about
+ * the progress of an import which saves its changes in batches.
+ *
+ * @see ImportOptions#getAutoSaveThreshold()
+ * @see ImportOptions#getAutoSaveBytesThreshold()
+ * @since 2.1.11
+ */
+public interface ContentImportProgressListener extends ContentImportListener {
+
+    /**
+     * A batch of changes has been saved. The node count and the byte count
+     * provide the total number of nodes created and bytes read so far.
+     */
+    void onSave(long nodeCount, long byteCount);
+}
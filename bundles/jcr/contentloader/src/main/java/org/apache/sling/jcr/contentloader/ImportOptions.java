@@ -55,6 +55,35 @@ public abstract class ImportOptions {
 		return true;
 	}
 
+	/**
+	 * Specifies the number of created or updated nodes after which the
+	 * changes of the import are saved. This allows to import large content
+	 * without keeping the whole tree in the transient space of the session.
+	 * A batch is only saved once a node is finished and no new node which
+	 * is still being imported misses a mandatory property or child node.
+	 * If auto save is enabled and the import fails, the batches saved so
+	 * far remain in the repository.
+	 * @return the number of nodes per batch or <code>0</code> (the default)
+	 *         to save the changes only at the end of the import.
+	 * @since 2.1.11
+	 */
+	public long getAutoSaveThreshold() {
+		return 0;
+	}
+
+	/**
+	 * Specifies the number of bytes read from the content after which the
+	 * changes of the import are saved. This is useful for content with few
+	 * but large nodes like files or binary properties.
+	 * @return the number of bytes per batch or <code>0</code> (the default)
+	 *         to not save based on the size of the content.
+	 * @see #getAutoSaveThreshold()
+	 * @since 2.1.11
+	 */
+	public long getAutoSaveBytesThreshold() {
+		return 0;
+	}
+
 	/**
 	 * Check if the import provider for the given file extension should
 	 * be ignored.
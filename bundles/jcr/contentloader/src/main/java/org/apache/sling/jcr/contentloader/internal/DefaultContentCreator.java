@@ -46,7 +46,11 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Value;
 import javax.jcr.ValueFactory;
+import javax.jcr.nodetype.NodeDefinition;
+import javax.jcr.nodetype.NodeType;
+import javax.jcr.nodetype.PropertyDefinition;
 
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.jackrabbit.api.security.principal.PrincipalManager;
 import org.apache.jackrabbit.api.security.user.Authorizable;
 import org.apache.jackrabbit.api.security.user.Group;
@@ -54,6 +58,7 @@ import org.apache.jackrabbit.api.security.user.User;
 import org.apache.jackrabbit.api.security.user.UserManager;
 import org.apache.sling.jcr.base.util.AccessControlUtil;
 import org.apache.sling.jcr.contentloader.ContentImportListener;
+import org.apache.sling.jcr.contentloader.ContentImportProgressListener;
 import org.apache.sling.jcr.contentloader.ImportOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -118,6 +123,36 @@ public class DefaultContentCreator implements ContentCreator {
      */
     private ContentImportListener importListener;
 
+    /**
+     * Number of created nodes after which the changes are saved, 0 to disable.
+     */
+    private long autoSaveThreshold;
+
+    /**
+     * Number of read bytes after which the changes are saved, 0 to disable.
+     */
+    private long autoSaveBytesThreshold;
+
+    /**
+     * Optional stream counting the bytes read from the imported content.
+     */
+    private CountingInputStream contentStream;
+
+    /**
+     * Total number of nodes created or updated by this import.
+     */
+    private long nodeCount;
+
+    /**
+     * Number of nodes created or updated since the last save.
+     */
+    private long unsavedNodeCount;
+
+    /**
+     * Number of bytes read at the last save.
+     */
+    private long savedByteCount;
+
     /**
      * A one time use seed to randomize the user location.
      */
@@ -157,6 +192,32 @@ public class DefaultContentCreator implements ContentCreator {
         }
         this.createdNodes = createdNodes;
         this.importListener = importListener;
+        this.autoSaveThreshold = Math.max(0, configuration.getAutoSaveThreshold());
+        this.autoSaveBytesThreshold = Math.max(0, configuration.getAutoSaveBytesThreshold());
+    }
+
+    /**
+     * Set the stream the content is read from. If set, the number of read
+     * bytes is used for the auto save byte threshold and progress reporting.
+     *
+     * @param contentStream The counting stream wrapping the imported content.
+     */
+    public void setContentStream(final CountingInputStream contentStream) {
+        this.contentStream = contentStream;
+    }
+
+    /**
+     * Is auto save enabled for this import?
+     */
+    public boolean isAutoSave() {
+        return this.autoSaveThreshold > 0 || this.autoSaveBytesThreshold > 0;
+    }
+
+    /**
+     * Get the number of nodes created or updated so far.
+     */
+    public long getNodeCount() {
+        return this.nodeCount;
     }
 
     /**
@@ -171,6 +232,9 @@ public class DefaultContentCreator implements ContentCreator {
         this.defaultName = defaultName;
         isParentNodeImport = defaultName == null;
         this.createdRootNode = null;
+        this.nodeCount = 0;
+        this.unsavedNodeCount = 0;
+        this.savedByteCount = 0;
     }
 
     /**
@@ -274,6 +338,7 @@ public class DefaultContentCreator implements ContentCreator {
             if (parentNode.hasNode(name)) {
                 // use existing node
                 node = parentNode.getNode(name);
+                countImportedNode();
             } else if (primaryNodeType == null) {
                 // no explicit node type, use repository default
                 checkoutIfNecessary(parentNode);
@@ -472,9 +537,86 @@ public class DefaultContentCreator implements ContentCreator {
         final Node node = this.parentNodeStack.pop();
         // resolve REFERENCE property values pointing to this node
         resolveReferences(node);
+        // save a batch once the node is complete and all open
+        // ancestors can be saved, otherwise save later
+        if (this.isAutoSaveDue() && this.isOpenNodesComplete()) {
+            this.save(node.getSession());
+        }
+    }
+
+    /**
+     * Check whether all nodes still being imported can be saved. As properties
+     * might follow the child nodes, a new node might miss a mandatory property
+     * or child node until it is finished. Nodes which have been saved before
+     * already had all mandatory items.
+     */
+    private boolean isOpenNodesComplete() throws RepositoryException {
+        for (final Node node : this.parentNodeStack) {
+            if (node.isNew()) {
+                if (!hasMandatoryItems(node, node.getPrimaryNodeType())) {
+                    return false;
+                }
+                for (final NodeType mixin : node.getMixinNodeTypes()) {
+                    if (!hasMandatoryItems(node, mixin)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean hasMandatoryItems(final Node node, final NodeType type) throws RepositoryException {
+        for (final PropertyDefinition def : type.getPropertyDefinitions()) {
+            if (def.isMandatory() && !"*".equals(def.getName()) && !node.hasProperty(def.getName())) {
+                return false;
+            }
+        }
+        for (final NodeDefinition def : type.getChildNodeDefinitions()) {
+            if (def.isMandatory() && !"*".equals(def.getName()) && !node.hasNode(def.getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether one of the auto save thresholds has been reached.
+     */
+    private boolean isAutoSaveDue() {
+        if (this.autoSaveThreshold > 0 && this.unsavedNodeCount >= this.autoSaveThreshold) {
+            return true;
+        }
+        return this.autoSaveBytesThreshold > 0 && this.unsavedNodeCount > 0
+            && this.getByteCount() - this.savedByteCount >= this.autoSaveBytesThreshold;
+    }
+
+    /**
+     * Save the current batch of changes and report the progress.
+     *
+     * @param session The session to save
+     */
+    private void save(final Session session) throws RepositoryException {
+        session.save();
+        this.unsavedNodeCount = 0;
+        this.savedByteCount = this.getByteCount();
+        log.info("Saved {} nodes, {} bytes read so far", this.nodeCount, this.savedByteCount);
+        if (this.importListener instanceof ContentImportProgressListener) {
+            ((ContentImportProgressListener) this.importListener).onSave(this.nodeCount, this.savedByteCount);
+        }
+    }
+
+    private long getByteCount() {
+        return this.contentStream == null ? 0 : this.contentStream.getByteCount();
+    }
+
+    private void countImportedNode() {
+        this.nodeCount++;
+        this.unsavedNodeCount++;
     }
 
     private void addNodeToCreatedList(Node node) throws RepositoryException {
+        countImportedNode();
         if (this.createdNodes != null) {
             this.createdNodes.add(node.getSession().getWorkspace().getName() + ":" + node.getPath());
         }
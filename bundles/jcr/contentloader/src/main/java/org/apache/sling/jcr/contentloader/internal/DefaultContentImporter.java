@@ -20,14 +20,13 @@ package org.apache.sling.jcr.contentloader.internal;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
 
 import javax.jcr.InvalidSerializedDataException;
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
@@ -83,18 +82,29 @@ public class DefaultContentImporter extends BaseImportLoader implements JcrConte
         }
 
         DefaultContentCreator contentCreator = new DefaultContentCreator(this);
-        List<String> createdPaths = new ArrayList<String>();
-        contentCreator.init(importOptions, this.defaultImportProviders, createdPaths, importListener);
+        // the created paths are only needed for uninstalling bundle content,
+        // so do not collect them for imports which might create many nodes
+        contentCreator.init(importOptions, this.defaultImportProviders, null, importListener);
 
         contentCreator.prepareParsing(parent, toPlainName(contentCreator, name));
 
+        InputStream ins = contentStream;
+        if (contentCreator.isAutoSave()) {
+            final CountingInputStream countingStream = new CountingInputStream(contentStream);
+            contentCreator.setContentStream(countingStream);
+            ins = countingStream;
+        }
+
         final ImportProvider ip = contentCreator.getImportProvider(name);
         ContentReader reader = ip.getReader();
-        reader.parse(contentStream, contentCreator);
+        reader.parse(ins, contentCreator);
 
         // save changes
         Session session = parent.getSession();
         session.save();
+        if (contentCreator.isAutoSave()) {
+            log.info("Imported {} nodes below {}", contentCreator.getNodeCount(), parent.getPath());
+        }
 
         // finally checkin versionable nodes
         for (final Node versionable : contentCreator.getVersionables()) {
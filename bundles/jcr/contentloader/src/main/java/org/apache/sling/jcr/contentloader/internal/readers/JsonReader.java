@@ -19,11 +19,15 @@
 package org.apache.sling.jcr.contentloader.internal.readers;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -34,6 +38,7 @@ import javax.jcr.RepositoryException;
 import org.apache.sling.commons.json.JSONArray;
 import org.apache.sling.commons.json.JSONException;
 import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.commons.json.JSONParser;
 import org.apache.sling.jcr.contentloader.internal.ContentCreator;
 import org.apache.sling.jcr.contentloader.internal.ContentReader;
 import org.apache.sling.jcr.contentloader.internal.ImportProvider;
@@ -86,6 +91,11 @@ import org.apache.sling.jcr.contentloader.internal.ImportProvider;
  *   }
  *
  * </pre>
+ *
+ * The document is parsed as a stream, so only the properties of the
+ * current node are kept in memory. A node is created as soon as its first
+ * child node is found, therefore <code>jcr:primaryType</code> and
+ * <code>jcr:mixinTypes</code> must be specified before any child node.
  */
 public class JsonReader implements ContentReader {
 
@@ -150,18 +160,82 @@ public class JsonReader implements ContentReader {
 
     public void parse(InputStream ins, ContentCreator contentCreator) throws IOException, RepositoryException {
         try {
-            String jsonString = toString(ins).trim();
-            if (!jsonString.startsWith("{")) {
-                jsonString = "{" + jsonString + "}";
+            final JSONParser parser = new JSONParser(getReader(ins));
+            if (parser.next() != JSONParser.Event.START_OBJECT) {
+                throw new JSONException("A JSON content text must be an object");
             }
-
-            JSONObject json = new JSONObject(jsonString);
-            this.createNode(null, json, contentCreator);
+            this.createNode(null, parser, contentCreator);
         } catch (JSONException je) {
             throw (IOException) new IOException(je.getMessage()).initCause(je);
         }
     }
 
+    /**
+     * Create a node from the parser. The start of the object has
+     * already been consumed, the end of the object is consumed.
+     */
+    protected void createNode(String name, JSONParser parser, ContentCreator contentCreator)
+    throws JSONException, RepositoryException {
+        String primaryType = null;
+        String[] mixinTypes = null;
+        boolean created = false;
+        // names and values read before the node could be created
+        final List<String> pendingNames = new ArrayList<String>();
+        final List<Object> pendingValues = new ArrayList<Object>();
+
+        while (parser.next() != JSONParser.Event.END_OBJECT) {
+            final String n = parser.getKey();
+            final JSONParser.Event event = parser.next();
+            if ("jcr:primaryType".equals(n) || "jcr:mixinTypes".equals(n)) {
+                if (created) {
+                    throw new JSONException(n + " must be specified before any child node of "
+                        + (name == null ? "the root node" : name));
+                }
+                final Object value = parser.readValue();
+                if ("jcr:primaryType".equals(n)) {
+                    primaryType = String.valueOf(value);
+                } else if (value instanceof JSONArray) {
+                    mixinTypes = toStringArray((JSONArray) value);
+                }
+            } else if (ignoredNames.contains(n)) {
+                // skip well known objects
+                parser.readValue();
+            } else if (event == JSONParser.Event.START_OBJECT
+                    && !SECURITY_PRINCIPLES.equals(n) && !SECURITY_ACL.equals(n)) {
+                if (!created) {
+                    contentCreator.createNode(name, primaryType, mixinTypes);
+                    created = true;
+                    for (int i = 0; i < pendingNames.size(); i++) {
+                        this.createItem(pendingNames.get(i), pendingValues.get(i), contentCreator);
+                    }
+                    pendingNames.clear();
+                    pendingValues.clear();
+                }
+                this.createNode(n, parser, contentCreator);
+            } else if (created) {
+                this.createItem(n, parser.readValue(), contentCreator);
+            } else {
+                pendingNames.add(n);
+                pendingValues.add(parser.readValue());
+            }
+        }
+        if (!created) {
+            contentCreator.createNode(name, primaryType, mixinTypes);
+            for (int i = 0; i < pendingNames.size(); i++) {
+                this.createItem(pendingNames.get(i), pendingValues.get(i), contentCreator);
+            }
+        }
+        contentCreator.finishNode();
+    }
+
+    private String[] toStringArray(final JSONArray array) throws JSONException {
+        final String[] result = new String[array.length()];
+        for (int i = 0; i < array.length(); i++) {
+            result[i] = array.getString(i);
+        }
+        return result;
+    }
+
     protected void createNode(String name, JSONObject obj, ContentCreator contentCreator)
     throws JSONException, RepositoryException {
         Object primaryTypeObj = obj.opt("jcr:primaryType");
@@ -173,11 +247,7 @@ public class JsonReader implements ContentReader {
         String[] mixinTypes = null;
         Object mixinsObject = obj.opt("jcr:mixinTypes");
         if (mixinsObject instanceof JSONArray) {
-            JSONArray mixins = (JSONArray) mixinsObject;
-            mixinTypes = new String[mixins.length()];
-            for (int i = 0; i < mixins.length(); i++) {
-                mixinTypes[i] = mixins.getString(i);
-            }
+            mixinTypes = toStringArray((JSONArray) mixinsObject);
         }
 
         contentCreator.createNode(name, primaryType, mixinTypes);
@@ -188,21 +258,28 @@ public class JsonReader implements ContentReader {
             final String n = names.getString(i);
             // skip well known objects
             if (!ignoredNames.contains(n)) {
-                Object o = obj.get(n);
-                if (SECURITY_PRINCIPLES.equals(n)) {
-                	this.createPrincipals(o, contentCreator);
-                } else if (SECURITY_ACL.equals(n)) {
-                	this.createAcl(o, contentCreator);
-                } else if (o instanceof JSONObject) {
-                    this.createNode(n, (JSONObject) o, contentCreator);
-                } else {
-                    this.createProperty(n, o, contentCreator);
-                }
+                this.createItem(n, obj.get(n), contentCreator);
             }
         }
         contentCreator.finishNode();
     }
 
+    /**
+     * Create a child node, a property or security information.
+     */
+    private void createItem(String n, Object o, ContentCreator contentCreator)
+    throws JSONException, RepositoryException {
+        if (SECURITY_PRINCIPLES.equals(n)) {
+            this.createPrincipals(o, contentCreator);
+        } else if (SECURITY_ACL.equals(n)) {
+            this.createAcl(o, contentCreator);
+        } else if (o instanceof JSONObject) {
+            this.createNode(n, (JSONObject) o, contentCreator);
+        } else {
+            this.createProperty(n, o, contentCreator);
+        }
+    }
+
     protected void createProperty(String name, Object value, ContentCreator contentCreator)
     throws JSONException, RepositoryException {
         // assume simple value
@@ -254,7 +331,13 @@ public class JsonReader implements ContentReader {
         return name;
     }
 
-    private String toString(InputStream ins) throws IOException {
+    /**
+     * Get a reader for the document. The character encoding can be
+     * specified in a first line starting with <code>#</code>, the
+     * default is UTF-8. If the document does not start with an
+     * opening brace, it is wrapped in braces.
+     */
+    private Reader getReader(InputStream ins) throws IOException {
         if (!ins.markSupported()) {
             ins = new BufferedInputStream(ins);
         }
@@ -274,17 +357,65 @@ public class JsonReader implements ContentReader {
             encoding = "UTF-8";
         }
 
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        byte[] buf = new byte[1024];
-        int rd;
-        while ( (rd = ins.read(buf)) >= 0) {
-            bos.write(buf, 0, rd);
+        final PushbackReader reader = new PushbackReader(new InputStreamReader(ins, encoding));
+        int first;
+        do {
+            first = reader.read();
+        } while (first != -1 && Character.isWhitespace((char) first));
+        if (first != -1) {
+            reader.unread(first);
         }
-        bos.close(); // just to comply with the contract
-
-        return new String(bos.toByteArray(), encoding);
+        if (first == '{') {
+            return reader;
+        }
+        return new BracedReader(reader);
     }
 
+    /**
+     * Reader wrapping the content of another reader in braces.
+     */
+    private static final class BracedReader extends Reader {
+
+        private final Reader delegate;
+
+        /** 0 : opening brace, 1 : content, 2 : closing brace, 3 : end */
+        private int state;
+
+        BracedReader(final Reader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            switch (state) {
+                case 0:
+                    state = 1;
+                    cbuf[off] = '{';
+                    return 1;
+                case 1:
+                    final int n = delegate.read(cbuf, off, len);
+                    if (n != -1) {
+                        return n;
+                    }
+                    state = 2;
+                    // fall through
+                case 2:
+                    state = 3;
+                    cbuf[off] = '}';
+                    return 1;
+                default:
+                    return -1;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
 
     /**
      * Create or update one or more user and/or groups
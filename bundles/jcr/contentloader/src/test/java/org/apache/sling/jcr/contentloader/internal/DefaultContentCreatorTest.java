@@ -6,6 +6,10 @@ import javax.jcr.Node;
 import javax.jcr.Property;
 import javax.jcr.PropertyType;
 import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.nodetype.NodeDefinition;
+import javax.jcr.nodetype.NodeType;
+import javax.jcr.nodetype.PropertyDefinition;
 
 import org.apache.sling.jcr.contentloader.ImportOptions;
 import org.jmock.Expectations;
@@ -106,4 +110,133 @@ public class DefaultContentCreatorTest {
         contentCreator.createProperty("foo", PropertyType.UNDEFINED, "bar");
     }
 
+    private void initAutoSave(final long threshold) throws RepositoryException {
+        contentCreator = new DefaultContentCreator(null);
+        parentNode = mockery.mock(Node.class);
+        contentCreator.init(new ImportOptions(){
+
+            @Override
+            public boolean isCheckin() {
+                return false;
+            }
+
+            @Override
+            public boolean isAutoCheckout() {
+                return false;
+            }
+
+            @Override
+            public boolean isIgnoredImportProvider(String extension) {
+                return false;
+            }
+
+            @Override
+            public boolean isOverwrite() {
+                return false;
+            }
+
+            @Override
+            public boolean isPropertyOverwrite() {
+                return false;
+            }
+
+            @Override
+            public long getAutoSaveThreshold() {
+                return threshold;
+            } }, new HashMap<String, ImportProvider>(), null, null);
+        this.mockery.checking(new Expectations() {{
+            allowing(parentNode).isNew(); will(returnValue(Boolean.FALSE));
+        }});
+        contentCreator.prepareParsing(parentNode, null);
+    }
+
+    @org.junit.Test public void willSaveInBatches() throws RepositoryException {
+        initAutoSave(2);
+        final Session session = mockery.mock(Session.class);
+        for (int i = 0; i < 5; i++) {
+            final String name = "node" + i;
+            final Node child = mockery.mock(Node.class, name);
+            this.mockery.checking(new Expectations() {{
+                oneOf (parentNode).hasNode(name); will(returnValue(Boolean.FALSE));
+                oneOf (parentNode).addNode(name); will(returnValue(child));
+                allowing(child).getPath(); will(returnValue("/" + name));
+                allowing(child).getSession(); will(returnValue(session));
+            }});
+        }
+        this.mockery.checking(new Expectations() {{
+            exactly(2).of (session).save();
+        }});
+        for (int i = 0; i < 5; i++) {
+            contentCreator.createNode("node" + i, null, null);
+            contentCreator.finishNode();
+        }
+        org.junit.Assert.assertEquals(5, contentCreator.getNodeCount());
+    }
+
+    @org.junit.Test public void willCountExistingNodes() throws RepositoryException {
+        initAutoSave(2);
+        final Session session = mockery.mock(Session.class);
+        for (int i = 0; i < 4; i++) {
+            final String name = "node" + i;
+            final Node child = mockery.mock(Node.class, name);
+            this.mockery.checking(new Expectations() {{
+                allowing (parentNode).hasNode(name); will(returnValue(Boolean.TRUE));
+                oneOf (parentNode).getNode(name); will(returnValue(child));
+                allowing(child).getPath(); will(returnValue("/" + name));
+                allowing(child).getSession(); will(returnValue(session));
+            }});
+        }
+        this.mockery.checking(new Expectations() {{
+            exactly(2).of (session).save();
+        }});
+        for (int i = 0; i < 4; i++) {
+            contentCreator.createNode("node" + i, null, null);
+            contentCreator.finishNode();
+        }
+        org.junit.Assert.assertEquals(4, contentCreator.getNodeCount());
+    }
+
+    @org.junit.Test public void willNotSaveIncompleteAncestors() throws RepositoryException {
+        initAutoSave(1);
+        final Session session = mockery.mock(Session.class);
+        final Node folder = mockery.mock(Node.class, "folder");
+        final NodeType folderType = mockery.mock(NodeType.class);
+        final PropertyDefinition titleDef = mockery.mock(PropertyDefinition.class);
+        this.mockery.checking(new Expectations() {{
+            oneOf (parentNode).hasNode("folder"); will(returnValue(Boolean.FALSE));
+            oneOf (parentNode).addNode("folder"); will(returnValue(folder));
+            allowing(folder).getPath(); will(returnValue("/folder"));
+            allowing(folder).getSession(); will(returnValue(session));
+            allowing(folder).isNew(); will(returnValue(Boolean.TRUE));
+            allowing(folder).getPrimaryNodeType(); will(returnValue(folderType));
+            allowing(folder).getMixinNodeTypes(); will(returnValue(new NodeType[0]));
+            allowing(folderType).getPropertyDefinitions(); will(returnValue(new PropertyDefinition[] {titleDef}));
+            allowing(folderType).getChildNodeDefinitions(); will(returnValue(new NodeDefinition[0]));
+            allowing(titleDef).isMandatory(); will(returnValue(Boolean.TRUE));
+            allowing(titleDef).getName(); will(returnValue("title"));
+            // the mandatory property is set after the first child
+            exactly(2).of(folder).hasProperty("title"); will(onConsecutiveCalls(returnValue(Boolean.FALSE), returnValue(Boolean.TRUE)));
+        }});
+        for (final String name : new String[] {"first", "second"}) {
+            final Node child = mockery.mock(Node.class, name);
+            this.mockery.checking(new Expectations() {{
+                oneOf (folder).hasNode(name); will(returnValue(Boolean.FALSE));
+                oneOf (folder).addNode(name); will(returnValue(child));
+                allowing(child).getPath(); will(returnValue("/folder/" + name));
+                allowing(child).getSession(); will(returnValue(session));
+            }});
+        }
+        this.mockery.checking(new Expectations() {{
+            exactly(1).of (session).save();
+        }});
+        contentCreator.createNode("folder", null, null);
+        contentCreator.createNode("first", null, null);
+        // the folder is still missing its mandatory property
+        contentCreator.finishNode();
+        contentCreator.createNode("second", null, null);
+        contentCreator.finishNode();
+        contentCreator.finishNode();
+        org.junit.Assert.assertEquals(3, contentCreator.getNodeCount());
+    }
+
 }
@@ -228,6 +228,36 @@ public class JsonReaderTest {
         this.parse(json);
     }
 
+    @org.junit.Test public void testPropertiesBeforeAndAfterChild() throws Exception {
+        String json = "{ " +
+        " p1 : \"v1\"," +
+        " c1 : {}," +
+        " p2 : \"v2\"" +
+        "}";
+        this.mockery.checking(new Expectations() {{
+            allowing(creator).createNode(null, null, null); inSequence(mySequence);
+            allowing(creator).createProperty("p1", PropertyType.UNDEFINED, "v1"); inSequence(mySequence);
+            allowing(creator).createNode("c1", null, null); inSequence(mySequence);
+            allowing(creator).finishNode(); inSequence(mySequence);
+            allowing(creator).createProperty("p2", PropertyType.UNDEFINED, "v2"); inSequence(mySequence);
+            allowing(creator).finishNode(); inSequence(mySequence);
+        }});
+        this.parse(json);
+    }
+
+    @org.junit.Test(expected = IOException.class) public void testPrimaryTypeAfterChild() throws Exception {
+        String json = "{ " +
+        " c1 : {}," +
+        " \"jcr:primaryType\" : \"xyz:MyType\"" +
+        "}";
+        this.mockery.checking(new Expectations() {{
+            allowing(creator).createNode(null, null, null); inSequence(mySequence);
+            allowing(creator).createNode("c1", null, null); inSequence(mySequence);
+            allowing(creator).finishNode(); inSequence(mySequence);
+        }});
+        this.parse(json);
+    }
+
     @org.junit.Test public void testTwoChildren() throws Exception {
         String json = "{ " +
         " c1 : {}," +
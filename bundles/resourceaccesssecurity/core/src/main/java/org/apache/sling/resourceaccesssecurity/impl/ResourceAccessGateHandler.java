@@ -34,6 +34,15 @@ public class ResourceAccessGateHandler implements Comparable<ResourceAccessGateH
     private final ServiceReference reference;
 
     private final Pattern pathPattern;
+
+    /** The literal prefix of all paths matching the path pattern */
+    private final String literalPrefix;
+
+    /** Whether the pattern is the literal prefix followed by <code>.*</code> */
+    private final boolean prefixOnly;
+
+    /** Whether the pattern is the literal prefix only */
+    private final boolean literal;
     private final Set<ResourceAccessGate.Operation> operations = new HashSet<ResourceAccessGate.Operation>();
     private final Set<ResourceAccessGate.Operation> finalOperations = new HashSet<ResourceAccessGate.Operation>();
 
@@ -47,11 +56,12 @@ public class ResourceAccessGateHandler implements Comparable<ResourceAccessGateH
                 getBundleContext().getService(resourceAccessGateRef);
         // extract the service property "path"
         final String path = (String) resourceAccessGateRef.getProperty(ResourceAccessGate.PATH);
-        if ( path != null ) {
-            pathPattern = Pattern.compile(path);
-        } else {
-            pathPattern = Pattern.compile(".*");
-        }
+        final String pattern = (path != null ? path : ".*");
+        pathPattern = Pattern.compile(pattern);
+        literalPrefix = getLiteralPrefix(pattern);
+        prefixOnly = pattern.endsWith(".*")
+                && pattern.length() - 2 == literalPrefix.length() + (pattern.startsWith("^") ? 1 : 0);
+        literal = pattern.length() == literalPrefix.length() + (pattern.startsWith("^") ? 1 : 0);
 
         // extract the service property "operations"
         final String ops = PropertiesUtil.toString( resourceAccessGateRef.getProperty(ResourceAccessGate.OPERATIONS), null );
@@ -88,8 +98,7 @@ public class ResourceAccessGateHandler implements Comparable<ResourceAccessGateH
 
         if ( operations.contains( operation ) ) {
             if (path != null) {
-                final Matcher match = pathPattern.matcher(path);
-                returnValue = match.matches();
+                returnValue = matches(path);
             } else {
                 // if no path is given just add every ResourceAccessGate for
                 // security reason
@@ -100,6 +109,63 @@ public class ResourceAccessGateHandler implements Comparable<ResourceAccessGateH
         return returnValue;
     }
 
+    /**
+     * Returns <code>true</code> if the path matches the path pattern.
+     */
+    boolean matches ( final String path ) {
+        if ( prefixOnly ) {
+            return path.startsWith(literalPrefix);
+        } else if ( literal ) {
+            return path.equals(literalPrefix);
+        }
+        final Matcher match = pathPattern.matcher(path);
+        return match.matches();
+    }
+
+    /**
+     * Returns <code>true</code> if the gate is responsible for the operation.
+     */
+    boolean hasOperation ( final ResourceAccessGate.Operation operation ) {
+        return operations.contains(operation);
+    }
+
+    /**
+     * Returns the literal prefix of the path pattern, which is a prefix of all
+     * paths matching the pattern, or an empty string if there is none.
+     */
+    String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
+    /**
+     * Returns <code>true</code> if all paths starting with the literal prefix
+     * match the path pattern.
+     */
+    boolean isPrefixOnly() {
+        return prefixOnly;
+    }
+
+    /**
+     * Returns the literal characters at the start of the pattern which must
+     * be present in any matching path. The prefix is empty if the pattern
+     * contains an alternation.
+     */
+    static String getLiteralPrefix(final String pattern) {
+        if (pattern.indexOf('|') >= 0) {
+            return "";
+        }
+        final int start = pattern.startsWith("^") ? 1 : 0;
+        int end = start;
+        while (end < pattern.length() && "\\.[]{}()*+?^$|".indexOf(pattern.charAt(end)) < 0) {
+            end++;
+        }
+        // a quantifier allowing zero occurrences makes the last character optional
+        if (end < pattern.length() && end > start && "*?{".indexOf(pattern.charAt(end)) >= 0) {
+            end--;
+        }
+        return pattern.substring(start, end);
+    }
+
     public boolean isFinalOperation( final ResourceAccessGate.Operation operation ) {
         return finalOperations.contains(operation);
     }
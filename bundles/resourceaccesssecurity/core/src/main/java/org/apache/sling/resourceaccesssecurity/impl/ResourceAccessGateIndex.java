@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceaccesssecurity.impl;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.sling.resourceaccesssecurity.ResourceAccessGate;
+
+/**
+ * The <code>ResourceAccessGateIndex</code> selects the resource access gates
+ * responsible for a path and an operation without evaluating the path
+ * pattern of each gate.
+ * <p>
+ * For each operation the gates are separated: gates matching every path
+ * always apply, the patterns of the other gates are indexed by their literal
+ * prefix in a trie, such that only the gates whose prefix is a prefix of the
+ * path are considered. Patterns without a literal prefix are matched for each
+ * path. The selected gates of recently used paths are remembered.
+ * <p>
+ * An index is immutable apart from the selection cache and built whenever a
+ * gate is added or removed.
+ */
+class ResourceAccessGateIndex {
+
+    /** The maximum number of cached selections per operation. */
+    static final int MAX_CACHED_PATHS = 1000;
+
+    private static final ResourceAccessGateHandler[] EMPTY = new ResourceAccessGateHandler[0];
+
+    private final Map<ResourceAccessGate.Operation, OperationIndex> operations =
+            new EnumMap<ResourceAccessGate.Operation, OperationIndex>(ResourceAccessGate.Operation.class);
+
+    /**
+     * @param handlers The gate handlers ordered by service ranking
+     */
+    ResourceAccessGateIndex(final List<ResourceAccessGateHandler> handlers) {
+        for (final ResourceAccessGate.Operation operation : ResourceAccessGate.Operation.values()) {
+            final List<ResourceAccessGateHandler> list = new ArrayList<ResourceAccessGateHandler>();
+            for (final ResourceAccessGateHandler handler : handlers) {
+                if (handler.hasOperation(operation)) {
+                    list.add(handler);
+                }
+            }
+            this.operations.put(operation, new OperationIndex(list.toArray(new ResourceAccessGateHandler[list.size()])));
+        }
+    }
+
+    /**
+     * Returns the gate handlers responsible for the operation on the path,
+     * ordered by service ranking.
+     *
+     * @param path The path or <code>null</code> to return all handlers of the
+     *            operation
+     */
+    ResourceAccessGateHandler[] select(final String path, final ResourceAccessGate.Operation operation) {
+        return this.operations.get(operation).select(path);
+    }
+
+    /**
+     * The index of the gates for a single operation.
+     */
+    private static final class OperationIndex {
+
+        /** All handlers of the operation */
+        private final ResourceAccessGateHandler[] handlers;
+
+        /** Whether all handlers match all paths */
+        private final boolean unconditional;
+
+        /** Indexes of the handlers matching all paths */
+        private final int[] always;
+
+        /** Indexes of the handlers with a pattern without literal prefix */
+        private final int[] fallback;
+
+        /** Root of the trie of literal pattern prefixes */
+        private final Node root = new Node();
+
+        /** The selections of recently used paths */
+        private final Map<String, ResourceAccessGateHandler[]> cache =
+                new ConcurrentHashMap<String, ResourceAccessGateHandler[]>();
+
+        OperationIndex(final ResourceAccessGateHandler[] handlers) {
+            this.handlers = handlers;
+
+            final List<Integer> always = new ArrayList<Integer>();
+            final List<Integer> fallback = new ArrayList<Integer>();
+            for (int i = 0; i < handlers.length; i++) {
+                final ResourceAccessGateHandler handler = handlers[i];
+                final String prefix = handler.getLiteralPrefix();
+                if (prefix.length() == 0) {
+                    if (handler.isPrefixOnly()) {
+                        always.add(i);
+                    } else {
+                        fallback.add(i);
+                    }
+                } else {
+                    Node node = this.root;
+                    for (int c = 0; c < prefix.length(); c++) {
+                        node = node.child(prefix.charAt(c));
+                    }
+                    node.add(i);
+                }
+            }
+            this.unconditional = always.size() == handlers.length;
+            this.always = toArray(always);
+            this.fallback = toArray(fallback);
+        }
+
+        ResourceAccessGateHandler[] select(final String path) {
+            if (this.unconditional || path == null) {
+                return this.handlers;
+            }
+            ResourceAccessGateHandler[] result = this.cache.get(path);
+            if (result == null) {
+                result = this.match(path);
+                if (this.cache.size() >= MAX_CACHED_PATHS) {
+                    this.cache.clear();
+                }
+                this.cache.put(path, result);
+            }
+            return result;
+        }
+
+        private ResourceAccessGateHandler[] match(final String path) {
+            final boolean[] selected = new boolean[this.handlers.length];
+            int count = 0;
+            for (final int i : this.always) {
+                selected[i] = true;
+                count++;
+            }
+            for (final int i : this.fallback) {
+                if (this.handlers[i].matches(path)) {
+                    selected[i] = true;
+                    count++;
+                }
+            }
+            Node node = this.root;
+            for (int c = 0; c < path.length() && node != null; c++) {
+                node = node.children == null ? null : node.children.get(path.charAt(c));
+                if (node != null && node.handlers != null) {
+                    for (final int i : node.handlers) {
+                        if (this.handlers[i].matches(path)) {
+                            selected[i] = true;
+                            count++;
+                        }
+                    }
+                }
+            }
+
+            if (count == this.handlers.length) {
+                return this.handlers;
+            } else if (count == 0) {
+                return EMPTY;
+            }
+            final ResourceAccessGateHandler[] result = new ResourceAccessGateHandler[count];
+            for (int i = 0, r = 0; r < count; i++) {
+                if (selected[i]) {
+                    result[r++] = this.handlers[i];
+                }
+            }
+            return result;
+        }
+    }
+
+    private static int[] toArray(final List<Integer> list) {
+        final int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * A node of the prefix trie with the handlers whose literal prefix ends
+     * at this node.
+     */
+    private static final class Node {
+
+        Map<Character, Node> children;
+
+        int[] handlers;
+
+        Node child(final char c) {
+            if (this.children == null) {
+                this.children = new HashMap<Character, Node>();
+            }
+            Node child = this.children.get(c);
+            if (child == null) {
+                child = new Node();
+                this.children.put(c, child);
+            }
+            return child;
+        }
+
+        void add(final int handler) {
+            if (this.handlers == null) {
+                this.handlers = new int[] { handler };
+            } else {
+                final int[] newHandlers = new int[this.handlers.length + 1];
+                System.arraycopy(this.handlers, 0, newHandlers, 0, this.handlers.length);
+                newHandlers[this.handlers.length] = handler;
+                this.handlers = newHandlers;
+            }
+        }
+    }
+}
@@ -19,10 +19,10 @@
 package org.apache.sling.resourceaccesssecurity.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -34,7 +34,10 @@ import org.osgi.framework.ServiceReference;
 
 public abstract class ResourceAccessSecurityImpl implements ResourceAccessSecurity {
 
-    private List<ResourceAccessGateHandler> allHandlers = Collections.emptyList();
+    private volatile List<ResourceAccessGateHandler> allHandlers = Collections.emptyList();
+
+    /** The index of the handlers, replaced together with {@link #allHandlers} */
+    private volatile ResourceAccessGateIndex index = new ResourceAccessGateIndex(this.allHandlers);
 
     private final boolean defaultAllowIfNoGateMatches;
 
@@ -48,52 +51,9 @@ public abstract class ResourceAccessSecurityImpl implements ResourceAccessSecuri
      */
     private Iterator<ResourceAccessGateHandler> getMatchingResourceAccessGateHandlerIterator(
             final String path, final ResourceAccessGate.Operation operation) {
-        //
-        // TODO: maybe caching some frequent paths with read operation would be
-        // a good idea
-        //
         final List<ResourceAccessGateHandler> handlers = allHandlers;
         if (handlers.size() > 0) {
-
-            final Iterator<ResourceAccessGateHandler> iter = handlers.iterator();
-            return new Iterator<ResourceAccessGateHandler>() {
-
-                private ResourceAccessGateHandler next;
-
-                {
-                    peek();
-                }
-
-                private void peek() {
-                    this.next = null;
-                    while ( iter.hasNext() && next == null ) {
-                        final ResourceAccessGateHandler handler = iter.next();
-                        if (handler.matches(path, operation)) {
-                            next = handler;
-                        }
-                    }
-                }
-
-                @Override
-                public boolean hasNext() {
-                    return next != null;
-                }
-
-                @Override
-                public ResourceAccessGateHandler next() {
-                    if ( next == null ) {
-                        throw new NoSuchElementException();
-                    }
-                    final ResourceAccessGateHandler handler = this.next;
-                    peek();
-                    return handler;
-                }
-
-                @Override
-                public void remove() {
-                    throw new UnsupportedOperationException();
-                }
-            };
+            return Arrays.asList(this.index.select(path, operation)).iterator();
         }
 
         return null;
@@ -380,6 +340,7 @@ public abstract class ResourceAccessSecurityImpl implements ResourceAccessSecuri
             final ResourceAccessGateHandler h = new ResourceAccessGateHandler(ref);
             newList.add(h);
             Collections.sort(newList);
+            this.index = new ResourceAccessGateIndex(newList);
             this.allHandlers = newList;
         }
     }
@@ -393,6 +354,7 @@ public abstract class ResourceAccessSecurityImpl implements ResourceAccessSecuri
 
             final ResourceAccessGateHandler h = new ResourceAccessGateHandler(ref);
             newList.remove(h);
+            this.index = new ResourceAccessGateIndex(newList);
             this.allHandlers = newList;
         }
     }
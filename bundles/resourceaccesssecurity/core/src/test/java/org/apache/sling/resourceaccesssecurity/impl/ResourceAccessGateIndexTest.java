@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceaccesssecurity.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.sling.resourceaccesssecurity.ResourceAccessGate;
+import org.apache.sling.resourceaccesssecurity.ResourceAccessGate.Operation;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceReference;
+
+public class ResourceAccessGateIndexTest {
+
+    private final List<ResourceAccessGateHandler> handlers = new ArrayList<ResourceAccessGateHandler>();
+
+    private ResourceAccessGateHandler addHandler(final String path, final String operations) {
+        final ServiceReference reference = mock(ServiceReference.class);
+        final Bundle bundle = mock(Bundle.class);
+        final BundleContext bundleContext = mock(BundleContext.class);
+        when(reference.getBundle()).thenReturn(bundle);
+        when(bundle.getBundleContext()).thenReturn(bundleContext);
+        when(bundleContext.getService(reference)).thenReturn(mock(ResourceAccessGate.class));
+        when(reference.getProperty(ResourceAccessGate.PATH)).thenReturn(path);
+        when(reference.getProperty(ResourceAccessGate.OPERATIONS)).thenReturn(operations);
+
+        final ResourceAccessGateHandler handler = new ResourceAccessGateHandler(reference);
+        handlers.add(handler);
+        return handler;
+    }
+
+    private void assertSelection(final ResourceAccessGateIndex index, final String path, final Operation operation) {
+        final List<ResourceAccessGateHandler> expected = new ArrayList<ResourceAccessGateHandler>();
+        for (final ResourceAccessGateHandler handler : handlers) {
+            if (handler.matches(path, operation)) {
+                expected.add(handler);
+            }
+        }
+        assertArrayEquals(path, expected.toArray(), index.select(path, operation));
+    }
+
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("/content/", ResourceAccessGateHandler.getLiteralPrefix("/content/.*"));
+        assertEquals("/content/", ResourceAccessGateHandler.getLiteralPrefix("^/content/.*"));
+        assertEquals("/content/pag", ResourceAccessGateHandler.getLiteralPrefix("/content/page?.*"));
+        assertEquals("/content/page", ResourceAccessGateHandler.getLiteralPrefix("/content/page+.*"));
+        assertEquals("/content", ResourceAccessGateHandler.getLiteralPrefix("/contents?"));
+        assertEquals("/conten", ResourceAccessGateHandler.getLiteralPrefix("/content{0,1}"));
+        assertEquals("/apps", ResourceAccessGateHandler.getLiteralPrefix("/apps"));
+        assertEquals("/apps", ResourceAccessGateHandler.getLiteralPrefix("/apps(/.*)?"));
+        assertEquals("/apps", ResourceAccessGateHandler.getLiteralPrefix("/apps[/.]"));
+        assertEquals("/a", ResourceAccessGateHandler.getLiteralPrefix("/a\\.json"));
+        assertEquals("", ResourceAccessGateHandler.getLiteralPrefix(".*"));
+        assertEquals("", ResourceAccessGateHandler.getLiteralPrefix(".*\\.json"));
+        assertEquals("", ResourceAccessGateHandler.getLiteralPrefix("/content/.*|/apps/.*"));
+        assertEquals("", ResourceAccessGateHandler.getLiteralPrefix("/apps|/libs"));
+        assertEquals("", ResourceAccessGateHandler.getLiteralPrefix("(?i)/content/.*"));
+    }
+
+    @Test
+    public void testSelectionMatchesPatterns() {
+        addHandler(null, null);
+        addHandler("/content/.*", "read");
+        addHandler("/content/site(/.*)?", "read,update");
+        addHandler("/content", "delete");
+        addHandler(".*/jcr:content", "read");
+        addHandler("/apps|/libs", null);
+        final ResourceAccessGateIndex index = new ResourceAccessGateIndex(handlers);
+
+        final String[] paths = new String[] {"/", "/content", "/content/", "/content/site", "/content/sitemap",
+                "/content/site/jcr:content", "/apps", "/libs/x", "/other/jcr:content"};
+        for (final String path : paths) {
+            for (final Operation operation : Operation.values()) {
+                assertSelection(index, path, operation);
+                // second call is answered from the cache
+                assertSelection(index, path, operation);
+            }
+        }
+    }
+
+    @Test
+    public void testNullPathSelectsAllHandlersOfOperation() {
+        addHandler(null, null);
+        addHandler("/content/.*", "read");
+        addHandler("/content", "delete");
+        addHandler("/apps|/libs", "read,update");
+        final ResourceAccessGateIndex index = new ResourceAccessGateIndex(handlers);
+
+        assertArrayEquals(new Object[] {handlers.get(0), handlers.get(1), handlers.get(3)},
+                index.select(null, Operation.READ));
+        assertArrayEquals(new Object[] {handlers.get(0), handlers.get(2)},
+                index.select(null, Operation.DELETE));
+    }
+
+    @Test
+    public void testEmptyIndex() {
+        final ResourceAccessGateIndex index = new ResourceAccessGateIndex(handlers);
+        assertEquals(0, index.select("/content", Operation.READ).length);
+    }
+}
@@ -36,6 +36,14 @@ public interface BindingsValuesProvider {
      *  previous versions of this bundle that didn't require it. 
      */
     String DEFAULT_CONTEXT = "request";
+
+    /** The name of the optional multi-value service property that declares the
+     *  names of the bindings added by a BindingsValuesProvider. If this property is
+     *  set, the provider is only called once a script accesses one of these names,
+     *  and it should not add any other bindings.
+     *  @since 2.3
+     */
+    String NAMES = "bindings.names";
     
     /**
      * Add objects to the Bindings object. The Bindings
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.api;
+
+import java.util.Map;
+import java.util.Set;
+
+import javax.script.Bindings;
+
+/** Bindings which compute some of their values only when these are first
+ *  accessed by {@link #get(Object)} or {@link #containsKey(Object)}, for example
+ *  by calling a {@link BindingsValuesProvider} declaring its
+ *  {@link BindingsValuesProvider#NAMES}. Methods working on all bindings, like
+ *  {@link #entrySet()} or {@link #putAll(Map)} with these bindings as argument,
+ *  compute all outstanding values.
+ *  <p>
+ *  Script engines copying the bindings into their own structures should use
+ *  {@link #getResolved()} and {@link #getPendingNames()} instead and look up
+ *  pending names only when the script accesses them.
+ *  <p>
+ *  This interface is implemented by the scripting core and not intended to
+ *  be implemented by script engines.
+ *
+ *  @since 2.3
+ */
+public interface LazyBindings extends Bindings {
+
+    /** The names of the values which have not been computed yet.
+     *  @return A copy of the pending names, which might be empty.
+     */
+    Set<String> getPendingNames();
+
+    /** The values which have been computed or set so far. No outstanding
+     *  value is computed by this method.
+     *  @return An unmodifiable view of the resolved values.
+     */
+    Map<String, Object> getResolved();
+}
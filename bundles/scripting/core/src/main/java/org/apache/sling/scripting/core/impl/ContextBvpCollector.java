@@ -63,6 +63,11 @@ class ContextBvpCollector {
             if (service instanceof Map) {
                 service = new MapWrappingBindingsValuesProvider((Map<String, Object>) service);
             }
+            final String[] names = PropertiesUtil
+                    .toStringArray(ref.getProperty(BindingsValuesProvider.NAMES), new String[0]);
+            if (names.length > 0) {
+                service = new NamedBindingsValuesProvider((BindingsValuesProvider) service, names);
+            }
             if (engineNames.length == 0) {
                 genericBindingsValuesProviders.put(ref, (BindingsValuesProvider) service);
             } else if (engineNames.length == 1 && ANY_ENGINE.contains(engineNames[0].toUpperCase())) {
@@ -109,6 +114,35 @@ class ContextBvpCollector {
         return langBindingsValuesProviders;
     }
 
+    /**
+     * Wraps a provider declaring the names of its bindings by the
+     * {@link BindingsValuesProvider#NAMES} service property.
+     */
+    static class NamedBindingsValuesProvider implements BindingsValuesProvider {
+
+        private final BindingsValuesProvider delegate;
+
+        private final String[] names;
+
+        NamedBindingsValuesProvider(BindingsValuesProvider delegate, String[] names) {
+            this.delegate = delegate;
+            this.names = names;
+        }
+
+        String[] getNames() {
+            return names;
+        }
+
+        public void addBindings(Bindings bindings) {
+            delegate.addBindings(bindings);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
     private class MapWrappingBindingsValuesProvider implements BindingsValuesProvider {
 
         private Map<String,Object> map;
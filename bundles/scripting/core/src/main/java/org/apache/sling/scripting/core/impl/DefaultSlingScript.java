@@ -72,7 +72,7 @@ import org.apache.sling.api.scripting.SlingScript;
 import org.apache.sling.api.scripting.SlingScriptConstants;
 import org.apache.sling.api.scripting.SlingScriptHelper;
 import org.apache.sling.scripting.api.BindingsValuesProvider;
-import org.apache.sling.scripting.core.impl.helper.ProtectedBindings;
+import org.apache.sling.scripting.core.impl.helper.LazyBindingsImpl;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -691,10 +691,17 @@ class DefaultSlingScript implements SlingScript, Servlet, ServletConfig {
             Set<String> protectedKeys = new HashSet<String>();
             protectedKeys.addAll(PROTECTED_KEYS);
 
-            ProtectedBindings protectedBindings = new ProtectedBindings(bindings, protectedKeys);
+            // providers declaring their names are only called on first access
+            final LazyBindingsImpl lazyBindings = new LazyBindingsImpl(bindings, protectedKeys,
+                (request != null) ? request.getRequestProgressTracker() : null);
             for (BindingsValuesProvider provider : bindingsValuesProviders) {
-                provider.addBindings(protectedBindings);
+                if (provider instanceof ContextBvpCollector.NamedBindingsValuesProvider) {
+                    lazyBindings.addProvider(provider, ((ContextBvpCollector.NamedBindingsValuesProvider) provider).getNames());
+                } else {
+                    lazyBindings.addProvider(provider, null);
+                }
             }
+            return lazyBindings;
         }
 
         return bindings;
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.core.impl.helper;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.script.Bindings;
+
+import org.apache.sling.api.request.RequestProgressTracker;
+import org.apache.sling.scripting.api.BindingsValuesProvider;
+import org.apache.sling.scripting.api.LazyBindings;
+
+/**
+ * Bindings which call {@link BindingsValuesProvider}s declaring the names of
+ * their bindings only once one of these names is accessed. Providers which
+ * do not declare names are called right away.
+ * <p>
+ * A value put for a declared name before the provider has been called wins
+ * over the value of the provider, just as if the provider had been called
+ * earlier. Operations working on all bindings, like {@link #entrySet()},
+ * call all outstanding providers first.
+ * <p>
+ * If a {@link RequestProgressTracker} is given, each provider call is timed.
+ */
+public class LazyBindingsImpl implements LazyBindings {
+
+    private final Bindings wrapped;
+
+    private final Set<String> protectedKeys;
+
+    private final RequestProgressTracker tracker;
+
+    /** The providers not called yet by the names they declared. */
+    private final Map<String, Pending> pending = new HashMap<String, Pending>();
+
+    public LazyBindingsImpl(Bindings wrapped, Set<String> protectedKeys, RequestProgressTracker tracker) {
+        this.wrapped = wrapped;
+        this.protectedKeys = protectedKeys;
+        this.tracker = tracker;
+    }
+
+    /**
+     * Add a provider. If names are declared, the provider is called once one
+     * of the names is accessed, otherwise it is called immediately.
+     *
+     * @param provider the provider
+     * @param names the names of the bindings added by the provider or
+     *            <code>null</code>
+     */
+    public void addProvider(BindingsValuesProvider provider, String[] names) {
+        if (names == null || names.length == 0) {
+            invoke(provider, new ProtectedBindings(this, protectedKeys), null);
+        } else {
+            final Pending p = new Pending(provider);
+            for (final String name : names) {
+                p.names.add(name);
+                final Pending previous = pending.put(name, p);
+                if (previous != null) {
+                    // the later provider wins
+                    previous.names.remove(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Call the provider for the name, if it has not been called yet.
+     */
+    private void materialize(Object name) {
+        final Pending p = pending.get(name);
+        if (p != null) {
+            call(p, String.valueOf(name));
+        }
+    }
+
+    /**
+     * Call all outstanding providers.
+     */
+    private void materializeAll() {
+        while (!pending.isEmpty()) {
+            final Map.Entry<String, Pending> entry = pending.entrySet().iterator().next();
+            call(entry.getValue(), entry.getKey());
+        }
+    }
+
+    private void call(final Pending p, final String trigger) {
+        // remove first, so a provider accessing its own names does not recurse
+        for (final String name : p.names) {
+            pending.remove(name);
+        }
+        invoke(p.provider, new ProtectedBindings(new ProviderBindings(p.names), protectedKeys), trigger);
+    }
+
+    private void invoke(BindingsValuesProvider provider, Bindings bindings, String trigger) {
+        if (tracker == null) {
+            provider.addBindings(bindings);
+        } else {
+            final String timerName = (trigger == null)
+                    ? "BindingsValuesProvider " + provider.getClass().getName()
+                    : "BindingsValuesProvider " + provider.getClass().getName() + " for " + trigger;
+            tracker.startTimer(timerName);
+            provider.addBindings(bindings);
+            tracker.logTimer(timerName);
+        }
+    }
+
+    /**
+     * @see org.apache.sling.scripting.api.LazyBindings#getPendingNames()
+     */
+    public Set<String> getPendingNames() {
+        return new HashSet<String>(pending.keySet());
+    }
+
+    /**
+     * @see org.apache.sling.scripting.api.LazyBindings#getResolved()
+     */
+    public Map<String, Object> getResolved() {
+        return Collections.unmodifiableMap(wrapped);
+    }
+
+    public Object put(String key, Object value) {
+        final Pending p = pending.remove(key);
+        if (p != null) {
+            p.names.remove(key);
+        }
+        return wrapped.put(key, value);
+    }
+
+    public void putAll(Map<? extends String, ? extends Object> toMerge) {
+        for (Map.Entry<? extends String, ? extends Object> entry : toMerge.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public Object get(Object key) {
+        materialize(key);
+        return wrapped.get(key);
+    }
+
+    public boolean containsKey(Object key) {
+        materialize(key);
+        return wrapped.containsKey(key);
+    }
+
+    public Object remove(Object key) {
+        final Pending p = pending.remove(key);
+        if (p != null) {
+            p.names.remove(key);
+        }
+        return wrapped.remove(key);
+    }
+
+    public void clear() {
+        pending.clear();
+        wrapped.clear();
+    }
+
+    public boolean containsValue(Object value) {
+        materializeAll();
+        return wrapped.containsValue(value);
+    }
+
+    public Set<Entry<String, Object>> entrySet() {
+        materializeAll();
+        return wrapped.entrySet();
+    }
+
+    public boolean isEmpty() {
+        return wrapped.isEmpty() && pending.isEmpty();
+    }
+
+    public Set<String> keySet() {
+        materializeAll();
+        return wrapped.keySet();
+    }
+
+    public int size() {
+        materializeAll();
+        return wrapped.size();
+    }
+
+    public Collection<Object> values() {
+        materializeAll();
+        return wrapped.values();
+    }
+
+    private static final class Pending {
+
+        final BindingsValuesProvider provider;
+
+        final Set<String> names = new HashSet<String>();
+
+        Pending(BindingsValuesProvider provider) {
+            this.provider = provider;
+        }
+    }
+
+    /**
+     * The bindings passed to a lazily called provider. The provider may set
+     * the names it declared, unless they have been set in the meantime, and
+     * names not set yet. Other values are neither overwritten nor removed,
+     * so {@link #clear()} only removes the declared names.
+     */
+    private final class ProviderBindings implements Bindings {
+
+        private final Set<String> owned;
+
+        ProviderBindings(Set<String> owned) {
+            this.owned = owned;
+        }
+
+        public Object put(String key, Object value) {
+            if (owned.contains(key) || !LazyBindingsImpl.this.containsKey(key)) {
+                return LazyBindingsImpl.this.put(key, value);
+            }
+            return wrapped.get(key);
+        }
+
+        public void putAll(Map<? extends String, ? extends Object> toMerge) {
+            for (Map.Entry<? extends String, ? extends Object> entry : toMerge.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        public Object get(Object key) {
+            return LazyBindingsImpl.this.get(key);
+        }
+
+        public boolean containsKey(Object key) {
+            return LazyBindingsImpl.this.containsKey(key);
+        }
+
+        public Object remove(Object key) {
+            if (owned.contains(key)) {
+                return LazyBindingsImpl.this.remove(key);
+            }
+            return null;
+        }
+
+        public void clear() {
+            for (final String key : owned) {
+                LazyBindingsImpl.this.remove(key);
+            }
+        }
+
+        public boolean containsValue(Object value) {
+            return LazyBindingsImpl.this.containsValue(value);
+        }
+
+        public Set<Entry<String, Object>> entrySet() {
+            return LazyBindingsImpl.this.entrySet();
+        }
+
+        public boolean isEmpty() {
+            return LazyBindingsImpl.this.isEmpty();
+        }
+
+        public Set<String> keySet() {
+            return LazyBindingsImpl.this.keySet();
+        }
+
+        public int size() {
+            return LazyBindingsImpl.this.size();
+        }
+
+        public Collection<Object> values() {
+            return LazyBindingsImpl.this.values();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.sling.scripting.core.impl.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import javax.script.Bindings;
+import javax.script.SimpleBindings;
+
+import org.apache.sling.scripting.api.BindingsValuesProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test of LazyBindingsImpl.
+ */
+public class LazyBindingsImplTest {
+
+    private LazyBindingsImpl bindings;
+
+    @Before
+    public void setup() {
+        SimpleBindings inner = new SimpleBindings();
+        inner.put("sling", "helper");
+        this.bindings = new LazyBindingsImpl(inner, Collections.singleton("sling"), null);
+    }
+
+    @Test
+    public void testProviderWithoutNamesIsCalledImmediately() {
+        CountingProvider provider = new CountingProvider("eager", "value");
+        bindings.addProvider(provider, null);
+        assertEquals(1, provider.calls);
+    }
+
+    @Test
+    public void testProviderIsCalledOnFirstAccess() {
+        CountingProvider provider = new CountingProvider("lazy", "value");
+        bindings.addProvider(provider, new String[] {"lazy"});
+        assertEquals(0, provider.calls);
+
+        assertEquals("value", bindings.get("lazy"));
+        assertEquals("value", bindings.get("lazy"));
+        assertEquals(1, provider.calls);
+    }
+
+    @Test
+    public void testUnrelatedAccessDoesNotCallProvider() {
+        CountingProvider provider = new CountingProvider("lazy", "value");
+        bindings.addProvider(provider, new String[] {"lazy"});
+        assertEquals("helper", bindings.get("sling"));
+        assertFalse(bindings.containsKey("other"));
+        assertEquals(0, provider.calls);
+    }
+
+    @Test
+    public void testEntrySetCallsAllProviders() {
+        CountingProvider provider = new CountingProvider("lazy", "value");
+        bindings.addProvider(provider, new String[] {"lazy"});
+        assertEquals(2, bindings.entrySet().size());
+        assertEquals(1, provider.calls);
+    }
+
+    @Test
+    public void testPutBeforeAccessWins() {
+        CountingProvider provider = new CountingProvider("lazy", "value");
+        bindings.addProvider(provider, new String[] {"lazy"});
+        bindings.put("lazy", "explicit");
+        assertEquals("explicit", bindings.get("lazy"));
+        assertEquals(0, provider.calls);
+    }
+
+    @Test
+    public void testLaterProviderWins() {
+        CountingProvider first = new CountingProvider("lazy", "first");
+        CountingProvider second = new CountingProvider("lazy", "second");
+        bindings.addProvider(first, new String[] {"lazy"});
+        bindings.addProvider(second, new String[] {"lazy"});
+        assertEquals("second", bindings.get("lazy"));
+        assertEquals(0, first.calls);
+    }
+
+    @Test
+    public void testProviderCanReadOtherLazyBindings() {
+        bindings.addProvider(new CountingProvider("base", "b"), new String[] {"base"});
+        bindings.addProvider(new BindingsValuesProvider() {
+            public void addBindings(Bindings b) {
+                b.put("derived", b.get("base") + "-derived");
+            }
+        }, new String[] {"derived"});
+        assertEquals("b-derived", bindings.get("derived"));
+        assertTrue(bindings.containsKey("base"));
+    }
+
+    @Test
+    public void testPendingAndResolvedDoNotCallProviders() {
+        CountingProvider provider = new CountingProvider("lazy", "value");
+        bindings.addProvider(provider, new String[] {"lazy"});
+        assertEquals(Collections.singleton("lazy"), bindings.getPendingNames());
+        assertEquals(Collections.singletonMap("sling", "helper"), bindings.getResolved());
+        assertEquals(0, provider.calls);
+
+        bindings.get("lazy");
+        assertTrue(bindings.getPendingNames().isEmpty());
+        assertEquals("value", bindings.getResolved().get("lazy"));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testProtectedKeysStayProtected() {
+        bindings.addProvider(new CountingProvider("sling", "other"), new String[] {"sling2"});
+        bindings.get("sling2");
+    }
+
+    private static class CountingProvider implements BindingsValuesProvider {
+
+        private final String name;
+
+        private final Object value;
+
+        int calls;
+
+        CountingProvider(String name, Object value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        public void addBindings(Bindings b) {
+            calls++;
+            b.put(name, value);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.javascript.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.script.Bindings;
+
+import org.mozilla.javascript.ImporterTopLevel;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * The request top level scope. Besides the properties set on the scope,
+ * it knows about pending names of lazy bindings: such a name is looked up
+ * in its bindings when a script first accesses it and is then set as a
+ * property of the scope.
+ */
+class LazyImporterTopLevel extends ImporterTopLevel {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The bindings by the pending names. */
+    private final transient Map<String, Bindings> pending = new HashMap<String, Bindings>();
+
+    /**
+     * Whether the name is pending.
+     */
+    boolean isPending(String name) {
+        return pending.containsKey(name);
+    }
+
+    /**
+     * Set the bindings for a pending name.
+     * @return The previous bindings for the name or <code>null</code>
+     */
+    Bindings setPending(String name, Bindings bindings) {
+        return pending.put(name, bindings);
+    }
+
+    /**
+     * Remove a pending name.
+     * @return The bindings for the name or <code>null</code>
+     */
+    Bindings removePending(String name) {
+        return pending.remove(name);
+    }
+
+    private void resolve(String name) {
+        final Bindings bindings = pending.remove(name);
+        if (bindings != null) {
+            final Object value = bindings.get(name);
+            if (value != null) {
+                super.put(name, this, ScriptRuntime.toObject(this, value));
+            }
+        }
+    }
+
+    /**
+     * A pending name is reported without looking it up, so assigning
+     * a value to it does not compute the value of the bindings.
+     */
+    @Override
+    public boolean has(String name, Scriptable start) {
+        return (start == this && pending.containsKey(name)) || super.has(name, start);
+    }
+
+    @Override
+    public Object get(String name, Scriptable start) {
+        if (start == this && !pending.isEmpty()) {
+            resolve(name);
+        }
+        return super.get(name, start);
+    }
+
+    @Override
+    public void put(String name, Scriptable start, Object value) {
+        if (start == this) {
+            // a value set by the script wins over a pending one
+            pending.remove(name);
+        }
+        super.put(name, start, value);
+    }
+
+    @Override
+    public void delete(String name) {
+        pending.remove(name);
+        super.delete(name);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.javascript.internal;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.mozilla.javascript.Script;
+
+/**
+ * A <code>RhinoCompiledScript</code> is a Rhino script compiled by the
+ * {@link RhinoJavaScriptEngine}. The compiled script does not hold on to
+ * any scope, so it may be evaluated concurrently.
+ */
+class RhinoCompiledScript extends CompiledScript {
+
+    private final RhinoJavaScriptEngine engine;
+
+    private final Script script;
+
+    private final String scriptName;
+
+    RhinoCompiledScript(RhinoJavaScriptEngine engine, Script script, String scriptName) {
+        this.engine = engine;
+        this.script = script;
+        this.scriptName = scriptName;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        return engine.execute(script, scriptName, context);
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+}
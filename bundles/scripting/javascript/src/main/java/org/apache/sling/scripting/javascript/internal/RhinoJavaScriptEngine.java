@@ -16,23 +16,33 @@
  */
 package org.apache.sling.scripting.javascript.internal;
 
+import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.Map.Entry;
 
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 import javax.script.ScriptException;
 
+import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.scripting.SlingBindings;
 import org.apache.sling.api.scripting.SlingScriptHelper;
 import org.apache.sling.scripting.api.AbstractSlingScriptEngine;
+import org.apache.sling.scripting.api.LazyBindings;
 import org.apache.sling.scripting.javascript.io.EspReader;
 import org.mozilla.javascript.Context;
-import org.mozilla.javascript.ImporterTopLevel;
 import org.mozilla.javascript.JavaScriptException;
+import org.mozilla.javascript.RhinoException;
+import org.mozilla.javascript.Script;
 import org.mozilla.javascript.ScriptRuntime;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
@@ -45,7 +55,8 @@ import org.slf4j.Logger;
  * A ScriptEngine that uses the Rhino interpreter to process Sling requests with
  * server-side javascript.
  */
-public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine {
+public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine
+        implements Compilable {
 
     private Scriptable rootScope;
 
@@ -55,24 +66,117 @@ public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine {
         this.rootScope = rootScope;
     }
 
+    public CompiledScript compile(String script) throws ScriptException {
+        return compile(new StringReader(script));
+    }
+
+    public CompiledScript compile(Reader scriptReader) throws ScriptException {
+        Object fileName = get(ScriptEngine.FILENAME);
+        final String scriptName = (fileName == null) ? "NO_SCRIPT_NAME" : fileName.toString();
+        return new RhinoCompiledScript(this, compileScript(scriptReader, scriptName), scriptName);
+    }
+
     public Object eval(Reader scriptReader, ScriptContext scriptContext)
             throws ScriptException {
         Bindings bindings = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
         String scriptName = "NO_SCRIPT_NAME";
+        boolean cacheable = false;
         {
             SlingScriptHelper helper = (SlingScriptHelper) bindings.get(SlingBindings.SLING);
             if (helper != null) {
-                scriptName = helper.getScript().getScriptResource().getPath();
+                final Resource scriptResource = helper.getScript().getScriptResource();
+                scriptName = scriptResource.getPath();
+                cacheable = true;
+            }
+        }
+
+        if (!cacheable) {
+            return execute(compileScript(scriptReader, scriptName), scriptName, scriptContext);
+        }
+
+        // the reader is not necessarily the one of the script resource,
+        // the source might have been wrapped or changed: therefore the
+        // cached script is only used for exactly the same source
+        final String source = readSource(scriptReader, scriptName);
+        final RhinoJavaScriptEngineFactory factory = (RhinoJavaScriptEngineFactory) getFactory();
+        Script script = factory.getCachedScript(scriptName, source);
+        if (script == null) {
+            script = compileScript(new StringReader(source), scriptName);
+            factory.putCachedScript(scriptName, source, script);
+        }
+        return execute(script, scriptName, scriptContext);
+    }
+
+    /**
+     * Read the complete source of a script.
+     */
+    private String readSource(Reader scriptReader, String scriptName)
+            throws ScriptException {
+        final StringBuilder source = new StringBuilder();
+        final char[] buffer = new char[4096];
+        try {
+            int len;
+            while ((len = scriptReader.read(buffer)) != -1) {
+                source.append(buffer, 0, len);
             }
+        } catch (IOException ioe) {
+            final ScriptException se = new ScriptException(
+                "Failure reading script " + scriptName + ": " + ioe.getMessage());
+            se.initCause(ioe);
+            throw se;
         }
+        return source.toString();
+    }
 
+    /**
+     * Compile the script read from the reader. ESP scripts are first
+     * transformed into javascript.
+     */
+    private Script compileScript(Reader scriptReader, String scriptName)
+            throws ScriptException {
         // wrap the reader in an EspReader for ESP scripts
         if (scriptName.endsWith(RhinoJavaScriptEngineFactory.ESP_SCRIPT_EXTENSION)) {
             scriptReader = new EspReader(scriptReader);
         }
 
+        final Context rhinoContext = Context.enter();
+        try {
+            rhinoContext.setOptimizationLevel(optimizationLevel());
+
+            final int lineNumber = 1;
+            final Object securityDomain = null;
+
+            return rhinoContext.compileReader(scriptReader, scriptName,
+                lineNumber, securityDomain);
+
+        } catch (RhinoException re) {
+            final ScriptException se = new ScriptException(re.details(),
+                re.sourceName(), re.lineNumber());
+            se.initCause(re);
+            throw se;
+
+        } catch (Throwable t) {
+            final ScriptException se = new ScriptException(
+                "Failure compiling script " + scriptName + ": " + t.getMessage());
+            se.initCause(t);
+            throw se;
+
+        } finally {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Execute a compiled script in a request scope.
+     */
+    Object execute(Script script, String scriptName, ScriptContext scriptContext)
+            throws ScriptException {
+        Bindings bindings = scriptContext.getBindings(ScriptContext.ENGINE_SCOPE);
+
         // container for replaced properties
         Map<String, Object> replacedProperties = null;
+        // container for replaced pending names of lazy bindings
+        Map<String, Bindings> replacedPending = new HashMap<String, Bindings>();
         Scriptable scope = null;
         boolean isTopLevelCall = false;
 
@@ -89,7 +193,7 @@ public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine {
             } else {
                 // create the request top scope, use the ImporterToplevel here
                 // to support the importPackage and importClasses functions
-                scope = new ImporterTopLevel();
+                scope = new LazyImporterTopLevel();
 
                 // Set the global scope to be our prototype
                 scope.setPrototype(rootScope);
@@ -108,13 +212,9 @@ public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine {
             }
 
             // add initial properties to the scope
-            replacedProperties = setBoundProperties(scope, bindings);
+            replacedProperties = setBoundProperties(scope, bindings, replacedPending);
 
-            final int lineNumber = 1;
-            final Object securityDomain = null;
-
-            Object result = rhinoContext.evaluateReader(scope, scriptReader, scriptName,
-                    lineNumber, securityDomain);
+            Object result = script.exec(rhinoContext, scope);
 
             if (result instanceof Wrapper) {
                 result = ((Wrapper) result).unwrap();
@@ -171,23 +271,37 @@ public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine {
 
             // if properties have been replaced, reset them
             resetBoundProperties(scope, replacedProperties);
+            resetPendingNames(scope, replacedPending);
 
             Context.exit();
         }
     }
 
     private Map<String, Object> setBoundProperties(Scriptable scope,
-            Bindings bindings) {
+            Bindings bindings, Map<String, Bindings> replacedPending) {
         Map<String, Object> replacedProperties = new HashMap<String, Object>();
 
-        for (Object entryObject : bindings.entrySet()) {
+        // values of lazy bindings which have not been computed yet
+        // are only looked up if the script accesses them
+        LazyImporterTopLevel lazyScope = null;
+        Map<String, Object> values = bindings;
+        Set<String> pendingNames = Collections.emptySet();
+        if (bindings instanceof LazyBindings && scope instanceof LazyImporterTopLevel) {
+            lazyScope = (LazyImporterTopLevel) scope;
+            values = ((LazyBindings) bindings).getResolved();
+            pendingNames = ((LazyBindings) bindings).getPendingNames();
+        }
+
+        for (Object entryObject : values.entrySet()) {
             Entry<?, ?> entry = (Entry<?, ?>) entryObject;
             String name = (String) entry.getKey();
             Object value = entry.getValue();
 
             if (value != null) {
                 // get the current property value, if set
-                if (ScriptableObject.hasProperty(scope, name)) {
+                if (lazyScope != null && lazyScope.isPending(name)) {
+                    replacedPending.put(name, lazyScope.removePending(name));
+                } else if (ScriptableObject.hasProperty(scope, name)) {
                     replacedProperties.put(name, ScriptableObject.getProperty(
                         scope, name));
                 }
@@ -198,9 +312,40 @@ public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine {
             }
         }
 
+        for (String name : pendingNames) {
+            if (lazyScope.isPending(name) || !ScriptableObject.hasProperty(scope, name)) {
+                // not set yet or only pending for an including script
+                replacedPending.put(name, lazyScope.setPending(name, bindings));
+            } else {
+                Object value = bindings.get(name);
+                if (value != null) {
+                    replacedProperties.put(name, ScriptableObject.getProperty(scope, name));
+                    ScriptableObject.putProperty(scope, name, ScriptRuntime.toObject(scope, value));
+                }
+            }
+        }
+
         return replacedProperties;
     }
 
+    /**
+     * Restore the pending names of an including script and drop the
+     * ones which are still pending.
+     */
+    private void resetPendingNames(Scriptable scope, Map<String, Bindings> replacedPending) {
+        if (scope instanceof LazyImporterTopLevel) {
+            final LazyImporterTopLevel lazyScope = (LazyImporterTopLevel) scope;
+            for (Entry<String, Bindings> entry : replacedPending.entrySet()) {
+                if (entry.getValue() != null) {
+                    lazyScope.delete(entry.getKey());
+                    lazyScope.setPending(entry.getKey(), entry.getValue());
+                } else {
+                    lazyScope.removePending(entry.getKey());
+                }
+            }
+        }
+    }
+
     private void getBoundProperties(Scriptable scope, Bindings bindings) {
         Object[] ids = scope.getIds();
         for (Object id : ids) {
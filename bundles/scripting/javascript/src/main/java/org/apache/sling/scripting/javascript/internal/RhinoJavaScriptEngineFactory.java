@@ -25,6 +25,7 @@ import java.util.Set;
 import javax.script.ScriptEngine;
 
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
@@ -50,6 +51,7 @@ import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.ImporterTopLevel;
 import org.mozilla.javascript.NativeJavaClass;
 import org.mozilla.javascript.NativeJavaPackage;
+import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.tools.debugger.ScopeProvider;
@@ -70,11 +72,18 @@ import org.slf4j.LoggerFactory;
 @Reference(name="HostObjectProvider", referenceInterface=RhinoHostObjectProvider.class,
            cardinality=ReferenceCardinality.OPTIONAL_MULTIPLE, policy=ReferencePolicy.DYNAMIC,
            bind="addHostObjectProvider", unbind="removeHostObjectProvider")
-@Property(
-        name = RhinoJavaScriptEngineFactory.OPTIMIZATION_CONFIG,
-        label = "Rhino optimization level",
-        intValue = RhinoJavaScriptEngineFactory.DEFAULT_OPTIMIZATION_LEVEL,
-        description = "The level of optimization for the bytecode generated by Rhino. Provide values between 0-9, 9 being the most aggressive level of optimization. A value of -1 will run scripts in interpreted mode")
+@Properties({
+    @Property(
+            name = RhinoJavaScriptEngineFactory.OPTIMIZATION_CONFIG,
+            label = "Rhino optimization level",
+            intValue = RhinoJavaScriptEngineFactory.DEFAULT_OPTIMIZATION_LEVEL,
+            description = "The level of optimization for the bytecode generated by Rhino. Provide values between 0-9, 9 being the most aggressive level of optimization. A value of -1 will run scripts in interpreted mode"),
+    @Property(
+            name = RhinoJavaScriptEngineFactory.CACHE_SIZE_CONFIG,
+            label = "Compiled script cache size",
+            intValue = RhinoJavaScriptEngineFactory.DEFAULT_CACHE_SIZE,
+            description = "The maximum number of compiled scripts kept in memory. Scripts are recompiled when they are modified. A value of 0 disables the cache")
+})
 public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory
         implements ScopeProvider {
 
@@ -82,6 +91,10 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory
 
     public final static int DEFAULT_OPTIMIZATION_LEVEL = - 1;
 
+    public final static String CACHE_SIZE_CONFIG = "org.apache.sling.scripting.javascript.rhino.cacheSize";
+
+    public final static int DEFAULT_CACHE_SIZE = 500;
+
     public final static String ECMA_SCRIPT_EXTENSION = "ecma";
 
     public final static String ESP_SCRIPT_EXTENSION = "esp";
@@ -97,11 +110,13 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory
 
     private int optimizationLevel;
 
+    private volatile ScriptCache scriptCache;
+
     private String languageVersion;
 
     private SlingWrapFactory wrapFactory;
 
-    private Scriptable rootScope;
+    private volatile Scriptable rootScope;
 
     private final Set<RhinoHostObjectProvider> hostObjectProvider = new HashSet<RhinoHostObjectProvider>();
 
@@ -130,6 +145,28 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory
         return optimizationLevel;
     }
 
+    /**
+     * Get a compiled script from the cache
+     * @param path the path of the script
+     * @param source the source of the script
+     * @return the compiled script or <code>null</code> if the script is not
+     * cached or has been compiled from a different source
+     */
+    Script getCachedScript(String path, String source) {
+        final ScriptCache cache = scriptCache;
+        return (cache == null) ? null : cache.get(path, source);
+    }
+
+    /**
+     * Put a compiled script into the cache
+     */
+    void putCachedScript(String path, String source, Script script) {
+        final ScriptCache cache = scriptCache;
+        if (cache != null) {
+            cache.put(path, source, script);
+        }
+    }
+
     public Object getParameter(String name) {
         if ("THREADING".equals(name)) {
             return "MULTITHREADED";
@@ -169,6 +206,10 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory
                         provider.getImportedPackages());
                 }
 
+                // the root scope is shared by all requests as the prototype
+                // of the request scopes, so it must not be modified anymore
+                ((ScriptableObject) tmpScope).sealObject();
+
                 // only assign the root scope when complete set up
                 rootScope = tmpScope;
 
@@ -206,6 +247,9 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory
 
         optimizationLevel = readOptimizationLevel(props);
 
+        final int cacheSize = PropertiesUtil.toInteger(props.get(CACHE_SIZE_CONFIG), DEFAULT_CACHE_SIZE);
+        scriptCache = (cacheSize > 0) ? new ScriptCache(cacheSize) : null;
+
         // setup the wrap factory
         wrapFactory = new SlingWrapFactory();
 
@@ -233,7 +277,7 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory
             contextFactory.initApplicationClassLoader(dynamicClassLoaderManager.getDynamicClassLoader());
         }
         
-        log.info("Activated with optimization level {}", optimizationLevel);
+        log.info("Activated with optimization level {} and script cache size {}", optimizationLevel, cacheSize);
     }
 
     protected void deactivate(ComponentContext context) {
@@ -241,6 +285,9 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory
         // remove the root scope
         dropRootScope();
 
+        // compiled scripts may reference classes of the dynamic class loader
+        scriptCache = null;
+
         // remove our context factory
         SlingContextFactory.teardown();
 
@@ -250,10 +297,10 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory
     }
 
     protected void addHostObjectProvider(RhinoHostObjectProvider provider) {
-        hostObjectProvider.add(provider);
-
-        if (rootScope != null) {
-            addHostObjects(rootScope, provider.getHostObjectClasses());
+        // the root scope is sealed, so it has to be recreated to
+        // include the new host object classes
+        if (hostObjectProvider.add(provider)) {
+            dropRootScope();
         }
     }
 
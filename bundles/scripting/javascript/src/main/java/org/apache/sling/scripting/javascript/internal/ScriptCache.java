@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.javascript.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mozilla.javascript.Script;
+
+/**
+ * The <code>ScriptCache</code> is a bounded cache of compiled Rhino scripts
+ * keyed by script path. An entry is only returned for the same source it has
+ * been compiled from. The least recently used entries are evicted once the
+ * cache is full.
+ */
+class ScriptCache {
+
+    private final Map<String, Entry> entries;
+
+    ScriptCache(final int maxSize) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    synchronized Script get(String path, String source) {
+        final Entry entry = entries.get(path);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.source.equals(source)) {
+            entries.remove(path);
+            return null;
+        }
+        return entry.script;
+    }
+
+    synchronized void put(String path, String source, Script script) {
+        entries.put(path, new Entry(source, script));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+
+        final String source;
+
+        final Script script;
+
+        Entry(String source, Script script) {
+            this.source = source;
+            this.script = script;
+        }
+    }
+}
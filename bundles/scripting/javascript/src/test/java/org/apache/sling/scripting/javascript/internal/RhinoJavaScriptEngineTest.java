@@ -18,16 +18,33 @@
  */
 package org.apache.sling.scripting.javascript.internal;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 import javax.script.SimpleBindings;
 
 import junit.framework.TestCase;
 
+import org.apache.sling.api.scripting.SlingBindings;
+import org.apache.sling.api.scripting.SlingScript;
+import org.apache.sling.api.scripting.SlingScriptHelper;
+import org.apache.sling.commons.testing.sling.MockResource;
+import org.apache.sling.scripting.api.LazyBindings;
 import org.apache.sling.scripting.javascript.helper.SlingWrapFactory;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ImporterTopLevel;
+import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
 
 public class RhinoJavaScriptEngineTest extends TestCase {
@@ -47,10 +64,197 @@ public class RhinoJavaScriptEngineTest extends TestCase {
         assertEquals(2.0, result);
     }
 
+    public void testCompiledScriptIsReusable() throws ScriptException {
+        MockRhinoJavaScriptEngineFactory factory = new MockRhinoJavaScriptEngineFactory();
+        ScriptEngine engine = factory.getScriptEngine();
+        assertTrue(engine instanceof Compilable);
+
+        CompiledScript script = ((Compilable) engine).compile("x * 2");
+        Bindings first = new SimpleBindings();
+        first.put("x", 2);
+        Bindings second = new SimpleBindings();
+        second.put("x", 5);
+        assertEquals(4.0, ((Number) script.eval(first)).doubleValue());
+        assertEquals(10.0, ((Number) script.eval(second)).doubleValue());
+    }
+
+    public void testCompileError() {
+        MockRhinoJavaScriptEngineFactory factory = new MockRhinoJavaScriptEngineFactory();
+        ScriptEngine engine = factory.getScriptEngine();
+        try {
+            ((Compilable) engine).compile("var = ;");
+            fail("Expected a ScriptException");
+        } catch (ScriptException e) {
+            assertEquals(1, e.getLineNumber());
+        }
+    }
+
+    public void testCachedScriptIsOnlyUsedForSameSource() throws ScriptException {
+        MockRhinoJavaScriptEngineFactory factory = new MockRhinoJavaScriptEngineFactory();
+        factory.scriptCache = new ScriptCache(10);
+        ScriptEngine engine = factory.getScriptEngine();
+        Bindings bindings = new SimpleBindings();
+        bindings.put(SlingBindings.SLING, createHelper("/apps/test/test.js"));
+
+        assertEquals(2.0, ((Number) engine.eval("1 + 1", bindings)).doubleValue());
+        assertEquals(0, factory.cacheHits);
+        assertEquals(2.0, ((Number) engine.eval("1 + 1", bindings)).doubleValue());
+        assertEquals(1, factory.cacheHits);
+
+        // a different source for the same script, e.g. a wrapped reader
+        assertEquals(4.0, ((Number) engine.eval("2 + 2", bindings)).doubleValue());
+        assertEquals(1, factory.cacheHits);
+        assertEquals(4.0, ((Number) engine.eval("2 + 2", bindings)).doubleValue());
+        assertEquals(2, factory.cacheHits);
+    }
+
+    public void testScriptsWithoutResourceAreNotCached() throws ScriptException {
+        MockRhinoJavaScriptEngineFactory factory = new MockRhinoJavaScriptEngineFactory();
+        factory.scriptCache = new ScriptCache(10);
+        ScriptEngine engine = factory.getScriptEngine();
+
+        assertEquals(2.0, ((Number) engine.eval("1 + 1", new SimpleBindings())).doubleValue());
+        assertEquals(2.0, ((Number) engine.eval("1 + 1", new SimpleBindings())).doubleValue());
+        assertEquals(0, factory.scriptCache.size());
+    }
+
+    private static SlingScriptHelper createHelper(String scriptPath) {
+        final MockResource resource = new MockResource(null, scriptPath, "nt:file");
+        final SlingScript script = (SlingScript) Proxy.newProxyInstance(
+            SlingScript.class.getClassLoader(), new Class<?>[] { SlingScript.class },
+            new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return "getScriptResource".equals(method.getName()) ? resource : null;
+                }
+            });
+        return (SlingScriptHelper) Proxy.newProxyInstance(
+            SlingScriptHelper.class.getClassLoader(), new Class<?>[] { SlingScriptHelper.class },
+            new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return "getScript".equals(method.getName()) ? script : null;
+                }
+            });
+    }
+
+    public void testLazyBindingsAreResolvedOnAccess() throws ScriptException {
+        MockRhinoJavaScriptEngineFactory factory = new MockRhinoJavaScriptEngineFactory();
+        ScriptEngine engine = factory.getScriptEngine();
+        MockLazyBindings bindings = new MockLazyBindings();
+        bindings.put("y", 1);
+        bindings.addPending("x", 3);
+        bindings.addPending("unused", "never");
+
+        assertEquals(7.0, ((Number) engine.eval("x * 2 + y", bindings)).doubleValue());
+        assertEquals(1, bindings.resolved("x"));
+        assertEquals(0, bindings.resolved("unused"));
+    }
+
+    public void testScriptAssignmentWinsOverLazyBinding() throws ScriptException {
+        MockRhinoJavaScriptEngineFactory factory = new MockRhinoJavaScriptEngineFactory();
+        ScriptEngine engine = factory.getScriptEngine();
+        MockLazyBindings bindings = new MockLazyBindings();
+        bindings.addPending("x", 3);
+
+        assertEquals(5.0, ((Number) engine.eval("x = 5; x", bindings)).doubleValue());
+        assertEquals(0, bindings.resolved("x"));
+    }
+
+    /**
+     * Lazy bindings counting the lookups of pending names.
+     */
+    private static class MockLazyBindings extends SimpleBindings implements LazyBindings {
+
+        private final Map<String, Object> values;
+
+        private final Map<String, Object> pending = new HashMap<String, Object>();
+
+        private final Map<String, Integer> lookups = new HashMap<String, Integer>();
+
+        MockLazyBindings() {
+            this(new HashMap<String, Object>());
+        }
+
+        private MockLazyBindings(Map<String, Object> values) {
+            super(values);
+            this.values = values;
+        }
+
+        void addPending(String name, Object value) {
+            pending.put(name, value);
+        }
+
+        int resolved(String name) {
+            final Integer count = lookups.get(name);
+            return count == null ? 0 : count;
+        }
+
+        private void resolve(Object name) {
+            if (pending.containsKey(name)) {
+                final Integer count = lookups.get(name);
+                lookups.put((String) name, count == null ? 1 : count + 1);
+                super.put((String) name, pending.remove(name));
+            }
+        }
+
+        public Set<String> getPendingNames() {
+            return new HashSet<String>(pending.keySet());
+        }
+
+        public Map<String, Object> getResolved() {
+            return Collections.unmodifiableMap(values);
+        }
+
+        @Override
+        public Object put(String name, Object value) {
+            pending.remove(name);
+            return super.put(name, value);
+        }
+
+        @Override
+        public Object get(Object key) {
+            resolve(key);
+            return super.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            resolve(key);
+            return super.containsKey(key);
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            for (String name : getPendingNames()) {
+                resolve(name);
+            }
+            return super.entrySet();
+        }
+    }
+
     private static class MockRhinoJavaScriptEngineFactory extends RhinoJavaScriptEngineFactory {
 
         protected SlingWrapFactory wrapFactory;
 
+        protected ScriptCache scriptCache;
+
+        protected int cacheHits;
+
+        @Override
+        Script getCachedScript(String path, String source) {
+            final Script script = (scriptCache == null) ? null : scriptCache.get(path, source);
+            if (script != null) {
+                cacheHits++;
+            }
+            return script;
+        }
+
+        @Override
+        void putCachedScript(String path, String source, Script script) {
+            if (scriptCache != null) {
+                scriptCache.put(path, source, script);
+            }
+        }
+
         @Override
         public ScriptEngine getScriptEngine() {
             final Context rhinoContext = Context.enter();
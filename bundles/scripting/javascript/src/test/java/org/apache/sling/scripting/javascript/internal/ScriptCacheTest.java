@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.javascript.internal;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+
+public class ScriptCacheTest extends TestCase {
+
+    private Script compile(String source) {
+        final Context cx = Context.enter();
+        try {
+            return cx.compileString(source, "test", 1, null);
+        } finally {
+            Context.exit();
+        }
+    }
+
+    public void testModifiedScriptIsNotReturned() {
+        ScriptCache cache = new ScriptCache(10);
+        Script script = compile("1");
+        cache.put("/apps/test.esp", "1", script);
+
+        assertSame(script, cache.get("/apps/test.esp", "1"));
+        assertNull(cache.get("/apps/test.esp", "2"));
+        // the stale entry has been removed
+        assertEquals(0, cache.size());
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        ScriptCache cache = new ScriptCache(2);
+        Script a = compile("'a'");
+        Script b = compile("'b'");
+        Script c = compile("'c'");
+        cache.put("/a", "'a'", a);
+        cache.put("/b", "'b'", b);
+
+        // access a so b becomes the eldest entry
+        assertSame(a, cache.get("/a", "'a'"));
+        cache.put("/c", "'c'", c);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("/b", "'b'"));
+        assertSame(a, cache.get("/a", "'a'"));
+        assertSame(c, cache.get("/c", "'c'"));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>JspPrecompiler</code> compiles a list of jsps with a number of
+ * workers running on an executor. Each worker takes the next jsp from a
+ * shared queue until the queue is empty or the worker is interrupted.
+ * The executor is shut down once all workers are finished.
+ */
+abstract class JspPrecompiler {
+
+    /** Default logger */
+    private final Logger logger = LoggerFactory.getLogger(JspPrecompiler.class);
+
+    private final ConcurrentLinkedQueue<String> paths;
+
+    private final int total;
+
+    private final AtomicInteger compiled = new AtomicInteger();
+
+    private final AtomicInteger failed = new AtomicInteger();
+
+    JspPrecompiler(final Collection<String> paths) {
+        this.paths = new ConcurrentLinkedQueue<String>(paths);
+        this.total = this.paths.size();
+    }
+
+    /**
+     * Start the workers on the executor.
+     * @param executor The executor
+     * @param threads The number of workers
+     */
+    void start(final ExecutorService executor, final int threads) {
+        final long start = System.currentTimeMillis();
+        logger.info("Precompiling {} jsps using {} threads", total, threads);
+
+        final AtomicInteger running = new AtomicInteger(threads);
+        try {
+            for(int i = 0; i < threads; i++) {
+                executor.execute(new Runnable() {
+
+                    public void run() {
+                        try {
+                            runWorker();
+                        } finally {
+                            if ( running.decrementAndGet() == 0 ) {
+                                logger.info("Precompiled {} of {} jsps in {}ms, {} failed",
+                                        new Object[] {compiled.get(), total, System.currentTimeMillis() - start, failed.get()});
+                                executor.shutdown();
+                            }
+                        }
+                    }
+                });
+            }
+        } catch ( final RejectedExecutionException ree ) {
+            // the precompilation has been stopped
+        }
+    }
+
+    /**
+     * Run a worker. Subclasses can override this method to set up
+     * and tear down the environment of a worker around {@link #compileAll()}.
+     */
+    protected void runWorker() {
+        this.compileAll();
+    }
+
+    /**
+     * Compile jsps from the queue until it is empty or the current
+     * thread is interrupted.
+     */
+    protected final void compileAll() {
+        String path;
+        while ( !Thread.currentThread().isInterrupted() && (path = paths.poll()) != null ) {
+            try {
+                if ( this.compile(path) ) {
+                    compiled.incrementAndGet();
+                }
+            } catch ( final Exception e ) {
+                failed.incrementAndGet();
+                logger.warn("Unable to precompile " + path + " : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Compile a jsp.
+     * @param path The path of the jsp
+     * @return <code>true</code> if the jsp has been compiled, <code>false</code>
+     *         if it is unchanged.
+     * @throws Exception If compilation fails.
+     */
+    protected abstract boolean compile(String path) throws Exception;
+
+    /** The number of compiled jsps. */
+    int getCompiled() {
+        return compiled.get();
+    }
+
+    /** The number of jsps which failed to compile. */
+    int getFailed() {
+        return failed.get();
+    }
+}
@@ -24,7 +24,17 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Dictionary;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.script.Bindings;
 import javax.script.ScriptContext;
@@ -43,13 +53,18 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.SlingException;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingIOException;
 import org.apache.sling.api.SlingServletException;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.scripting.SlingBindings;
 import org.apache.sling.api.scripting.SlingScript;
 import org.apache.sling.api.scripting.SlingScriptConstants;
@@ -64,6 +79,7 @@ import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext;
 import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext.JspFactoryHandler;
 import org.apache.sling.scripting.jsp.jasper.runtime.AnnotationProcessor;
 import org.apache.sling.scripting.jsp.jasper.runtime.JspApplicationContextImpl;
+import org.apache.sling.scripting.jsp.jasper.runtime.LockFreeTagHandlerPool;
 import org.apache.sling.scripting.jsp.jasper.servlet.JspServletWrapper;
 import org.apache.sling.scripting.jsp.util.TagUtil;
 import org.osgi.service.component.ComponentContext;
@@ -106,6 +122,19 @@ public class JspScriptEngineFactory
     @Property(boolValue = true)
     private static final String PROP_DEFAULT_IS_SESSION = "default.is.session";
 
+    @Property(boolValue = false)
+    private static final String PROP_PRECOMPILE = "precompile.on.activation";
+
+    @Property(intValue = 0)
+    private static final String PROP_PRECOMPILE_THREADS = "precompile.threads";
+
+    /** The service user used for precompilation. */
+    private static final Map<String, Object> PRECOMPILE_SERVICE_INFO =
+            Collections.<String, Object>singletonMap(ResourceResolverFactory.SUBSERVICE, "precompile");
+
+    /** The time in seconds to wait for the precompilation to stop on deactivation. */
+    private static final long PRECOMPILE_STOP_TIMEOUT = 30;
+
     /** Default logger */
     private final Logger logger = LoggerFactory.getLogger(JspScriptEngineFactory.class);
 
@@ -123,6 +152,9 @@ public class JspScriptEngineFactory
     @Reference
     private JavaCompiler javaCompiler;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC)
+    private volatile ResourceResolverFactory resourceResolverFactory;
+
     /** The io provider for reading and writing. */
     private SlingIOProvider ioProvider;
 
@@ -138,6 +170,11 @@ public class JspScriptEngineFactory
 
     private boolean defaultIsSession;
 
+    private int precompileThreads;
+
+    /** The executor of the running precompilation or <code>null</code>. */
+    private ExecutorService precompileExecutor;
+
     /** The handler for the jsp factories. */
     private JspFactoryHandler jspFactoryHandler;
 
@@ -198,8 +235,7 @@ public class JspScriptEngineFactory
                                   final SlingScriptHelper scriptHelper,
                                   final ScriptContext context,
                                   final String scriptName) {
-    	final SlingBindings slingBindings = new SlingBindings();
-        slingBindings.putAll(bindings);
+    	final SlingBindings slingBindings = LazySlingBindings.create(bindings);
 
         ResourceResolver resolver = (ResourceResolver) context.getAttribute(SlingScriptConstants.ATTR_SCRIPT_RESOURCE_RESOLVER,
                 SlingScriptConstants.SLING_SCOPE);
@@ -276,8 +312,8 @@ public class JspScriptEngineFactory
         final ResourceResolver oldResolver = io.setRequestResourceResolver(resolver);
         jspfh.incUsage();
         try {
-            final SlingBindings slingBindings = new SlingBindings();
-            slingBindings.putAll(bindings);
+            // pending lazy bindings are only computed if the script uses them
+            final SlingBindings slingBindings = LazySlingBindings.create(bindings);
 
             final JspServletWrapper jsp = getJspWrapper(scriptHelper, slingBindings);
             // create a SlingBindings object
@@ -332,6 +368,10 @@ public class JspScriptEngineFactory
     protected void activate(final ComponentContext componentContext) {
         final Dictionary<?, ?> properties = componentContext.getProperties();
         this.defaultIsSession = PropertiesUtil.toBoolean(properties.get(PROP_DEFAULT_IS_SESSION), true);
+        this.precompileThreads = PropertiesUtil.toInteger(properties.get(PROP_PRECOMPILE_THREADS), 0);
+        if ( this.precompileThreads <= 0 ) {
+            this.precompileThreads = Runtime.getRuntime().availableProcessors();
+        }
 
         // set the current class loader as the thread context loader for
         // the setup of the JspRuntimeContext
@@ -366,6 +406,10 @@ public class JspScriptEngineFactory
 
         logger.info("Activating Apache Sling Script Engine for JSP with options {}", options.getProperties());
         logger.debug("IMPORTANT: Do not modify the generated servlet classes directly");
+
+        if ( PropertiesUtil.toBoolean(properties.get(PROP_PRECOMPILE), false) ) {
+            this.startPrecompile();
+        }
     }
 
     /**
@@ -374,6 +418,8 @@ public class JspScriptEngineFactory
     protected void deactivate(final ComponentContext componentContext) {
         logger.info("Deactivating Apache Sling Script Engine for JSP");
 
+        this.stopPrecompile();
+
         if ( this.tldLocationsCache != null ) {
             this.tldLocationsCache.deactivate(componentContext.getBundleContext());
             this.tldLocationsCache = null;
@@ -512,6 +558,160 @@ public class JspScriptEngineFactory
         this.dynamicClassLoaderManager = null;
     }
 
+    // ---------- Precompilation ----------------------------------------------
+
+    /**
+     * Start the precompilation of all jsps in the search path in the background.
+     * @return <code>false</code> if a precompilation is already running.
+     */
+    private synchronized boolean startPrecompile() {
+        if ( this.isPrecompileRunning() ) {
+            return false;
+        }
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(this.precompileThreads, new ThreadFactory() {
+
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "Apache Sling JSP Precompilation #" + threadCounter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.precompileExecutor = executor;
+        executor.execute(new Runnable() {
+
+            public void run() {
+                precompile(executor);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Is a precompilation running?
+     */
+    private synchronized boolean isPrecompileRunning() {
+        return this.precompileExecutor != null && !this.precompileExecutor.isTerminated();
+    }
+
+    /**
+     * Stop a running precompilation and wait for the workers to finish
+     * the page they are currently compiling.
+     */
+    private void stopPrecompile() {
+        final ExecutorService executor;
+        synchronized ( this ) {
+            executor = this.precompileExecutor;
+            this.precompileExecutor = null;
+        }
+        if ( executor != null ) {
+            executor.shutdownNow();
+            try {
+                if ( !executor.awaitTermination(PRECOMPILE_STOP_TIMEOUT, TimeUnit.SECONDS) ) {
+                    logger.warn("Precompilation of jsps did not stop within {} seconds", PRECOMPILE_STOP_TIMEOUT);
+                }
+            } catch ( final InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Get the resource resolver for precompilation.
+     */
+    private ResourceResolver getPrecompileResourceResolver() throws LoginException {
+        final ResourceResolverFactory factory = this.resourceResolverFactory;
+        if ( factory == null ) {
+            throw new LoginException("ResourceResolverFactory is not available");
+        }
+        return factory.getServiceResourceResolver(PRECOMPILE_SERVICE_INFO);
+    }
+
+    /**
+     * Collect all jsps in the search path and compile the outdated ones using
+     * the workers of the executor. Unchanged jsps are not compiled again as
+     * the wrapper verifies the existing class against the persisted source hash.
+     * The executor is shut down once all workers are finished.
+     */
+    private void precompile(final ExecutorService executor) {
+        final List<String> paths = new ArrayList<String>();
+        ResourceResolver resolver = null;
+        try {
+            resolver = this.getPrecompileResourceResolver();
+            for(final String searchPath : resolver.getSearchPath()) {
+                final Resource root = resolver.getResource(searchPath);
+                if ( root != null ) {
+                    this.collectJsps(root, paths);
+                }
+            }
+        } catch ( final LoginException le ) {
+            logger.error("Unable to precompile jsps: " + le.getMessage(), le);
+            executor.shutdown();
+            return;
+        } finally {
+            if ( resolver != null ) {
+                resolver.close();
+            }
+        }
+
+        new JspPrecompiler(paths) {
+
+            @Override
+            protected void runWorker() {
+                final SlingIOProvider io = ioProvider;
+                final JspFactoryHandler jspfh = jspFactoryHandler;
+                if ( io == null || jspfh == null ) {
+                    return;
+                }
+                ResourceResolver resolver = null;
+                final ClassLoader old = Thread.currentThread().getContextClassLoader();
+                try {
+                    resolver = getPrecompileResourceResolver();
+                    final ResourceResolver oldResolver = io.setRequestResourceResolver(resolver);
+                    Thread.currentThread().setContextClassLoader(dynamicClassLoader);
+                    jspfh.incUsage();
+                    try {
+                        this.compileAll();
+                    } finally {
+                        jspfh.decUsage();
+                        io.resetRequestResourceResolver(oldResolver);
+                    }
+                } catch ( final LoginException le ) {
+                    logger.error("Unable to precompile jsps: " + le.getMessage(), le);
+                } finally {
+                    Thread.currentThread().setContextClassLoader(old);
+                    if ( resolver != null ) {
+                        resolver.close();
+                    }
+                }
+            }
+
+            @Override
+            protected boolean compile(final String path) throws Exception {
+                return getJspWrapper(path, null).precompile();
+            }
+        }.start(executor, this.precompileThreads);
+    }
+
+    /**
+     * Recursively collect all jsp pages below the resource.
+     * Fragments are not compiled on their own.
+     */
+    private void collectJsps(final Resource rsrc, final List<String> paths) {
+        final String path = rsrc.getPath();
+        if ( path.endsWith(".jsp") || path.endsWith(".jspx") ) {
+            paths.add(path);
+        }
+        final List<Resource> children = new ArrayList<Resource>();
+        final Iterator<Resource> i = rsrc.listChildren();
+        while ( i.hasNext() ) {
+            children.add(i.next());
+        }
+        for(final Resource child : children) {
+            this.collectJsps(child, paths);
+        }
+    }
+
     // ---------- Internal -----------------------------------------------------
 
     private class JspScriptEngine extends AbstractSlingScriptEngine {
@@ -701,7 +901,12 @@ public class JspScriptEngineFactory
 
             final String path = req.getContextPath() + req.getServletPath() + req.getPathInfo();
 
-            if ( req.getMethod().equals("POST") ) {
+            if ( req.getMethod().equals("POST") && req.getParameter("precompile") != null ) {
+                this.startPrecompile();
+
+                res.sendRedirect(path + "?precompile");
+                return;
+            } else if ( req.getMethod().equals("POST") ) {
                 final JspRuntimeContext rctxt = this.jspRuntimeContext;
                 this.classLoaderWriter.delete("/org/apache/jsp");
                 if ( rctxt != null ) {
@@ -718,11 +923,33 @@ public class JspScriptEngineFactory
                     pw.println("<p>All compiled jsp files removed.");
                     pw.println("<br/>");
                 }
+                if ( req.getParameter("precompile") != null || this.isPrecompileRunning() ) {
+                    pw.println("<p>Precompilation of all jsp files is running in the background.");
+                    pw.println("<br/>");
+                }
                 pw.print("<form action='");
                 pw.print(path);
                 pw.println("' method='POST'>");
                 pw.println("<input type='submit' value='Recompile all JSPs'>");
                 pw.println("</form>");
+                pw.print("<form action='");
+                pw.print(path);
+                pw.println("' method='POST'>");
+                pw.println("<input type='hidden' name='precompile' value='true'>");
+                pw.println("<input type='submit' value='Precompile all JSPs'>");
+                pw.println("</form>");
+                final LockFreeTagHandlerPool.Statistics stats = LockFreeTagHandlerPool.getStatistics();
+                if ( stats.getPoolCount() > 0 || stats.getMissCount() > 0 ) {
+                    pw.println("<h2>Tag Handler Pools</h2>");
+                    pw.println("<table>");
+                    pw.println("<tr><td>Active pools</td><td>" + stats.getPoolCount() + "</td></tr>");
+                    pw.println("<tr><td>Thread cache hits</td><td>" + stats.getLocalHitCount() + "</td></tr>");
+                    pw.println("<tr><td>Shared hits</td><td>" + stats.getSharedHitCount() + "</td></tr>");
+                    pw.println("<tr><td>Misses</td><td>" + stats.getMissCount() + "</td></tr>");
+                    pw.println("<tr><td>Discarded</td><td>" + stats.getDiscardCount() + "</td></tr>");
+                    pw.println("<tr><td>Hit rate</td><td>" + String.format("%.1f%%", stats.getHitRate() * 100) + "</td></tr>");
+                    pw.println("</table>");
+                }
                 return;
             }
         }
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import javax.script.Bindings;
+
+import org.apache.sling.api.scripting.SlingBindings;
+import org.apache.sling.scripting.api.LazyBindings;
+
+/**
+ * Sling bindings copied from {@link LazyBindings} without computing the
+ * pending values. A pending value is looked up in the lazy bindings when it
+ * is first accessed through {@link #get(Object)} or {@link #containsKey(Object)},
+ * methods working on all bindings look up all pending values.
+ */
+class LazySlingBindings extends SlingBindings {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient LazyBindings source;
+
+    private final Set<String> pending;
+
+    private LazySlingBindings(final LazyBindings source) {
+        this.source = source;
+        this.pending = source.getPendingNames();
+        super.putAll(source.getResolved());
+    }
+
+    /**
+     * Create sling bindings containing the script bindings.
+     * @param bindings The script bindings
+     * @return The sling bindings
+     */
+    static SlingBindings create(final Bindings bindings) {
+        if (bindings instanceof LazyBindings) {
+            return new LazySlingBindings((LazyBindings) bindings);
+        }
+        final SlingBindings slingBindings = new SlingBindings();
+        slingBindings.putAll(bindings);
+        return slingBindings;
+    }
+
+    private void resolve(final Object key) {
+        if (this.pending.remove(key)) {
+            final Object value = this.source.get(key);
+            if (value != null || this.source.containsKey(key)) {
+                super.put((String) key, value);
+            }
+        }
+    }
+
+    private void resolveAll() {
+        while (!this.pending.isEmpty()) {
+            this.resolve(this.pending.iterator().next());
+        }
+    }
+
+    @Override
+    public Object get(final Object key) {
+        this.resolve(key);
+        return super.get(key);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        this.resolve(key);
+        return super.containsKey(key);
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        this.pending.remove(key);
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(final Map<? extends String, ? extends Object> m) {
+        for (final Map.Entry<? extends String, ? extends Object> entry : m.entrySet()) {
+            this.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        this.pending.remove(key);
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        this.pending.clear();
+        super.clear();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return super.isEmpty() && this.pending.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        this.resolveAll();
+        return super.size();
+    }
+
+    @Override
+    public boolean containsValue(final Object value) {
+        this.resolveAll();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        this.resolveAll();
+        return super.keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        this.resolveAll();
+        return super.values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        this.resolveAll();
+        return super.entrySet();
+    }
+
+    @Override
+    public Object clone() {
+        this.resolveAll();
+        return super.clone();
+    }
+}
@@ -36,6 +36,7 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
 import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
 
 /**
@@ -106,8 +107,48 @@ public class SlingTldLocationsCache
         return null;
     }
 
+    /**
+     * Get the bundle providing the tag library at the location.
+     */
+    private Bundle getTldBundle(final String tldLocation) {
+        if (tldLocation.startsWith(TLD_SCHEME)) {
+            final TldLocationEntry tle;
+            synchronized (tldLocations) {
+                tle = tldLocations.get(tldLocation.substring(TLD_SCHEME.length()));
+            }
+            if (tle != null) {
+                return bundleContext.getBundle(tle.getBundleId());
+            }
+        }
+        return null;
+    }
+
     // ---------- TldLocationsCache support ------------------------------------
 
+    /**
+     * The last modification time of the bundle providing the tag library.
+     */
+    @Override
+    public long getLastModified(final String location) {
+        final Bundle bundle = this.getTldBundle(location);
+        return bundle == null ? -1 : bundle.getLastModified();
+    }
+
+    /**
+     * The version of the tag library is the symbolic name, version and
+     * last modification time of the bundle providing it. The latter
+     * changes if a bundle is updated without changing its version.
+     */
+    @Override
+    public String getVersion(final String location) {
+        final Bundle bundle = this.getTldBundle(location);
+        if (bundle == null) {
+            return null;
+        }
+        return bundle.getSymbolicName() + ':' + bundle.getHeaders().get(Constants.BUNDLE_VERSION)
+            + ':' + bundle.getLastModified();
+    }
+
     @Override
     public String[] getLocation(final String uri) throws JasperException {
         synchronized (tldLocations) {
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.List;
 
 import org.apache.sling.scripting.jsp.jasper.JasperException;
 import org.apache.sling.scripting.jsp.jasper.JspCompilationContext;
@@ -57,6 +58,9 @@ public abstract class Compiler {
 
     protected Node.Nodes pageNodes;
 
+    /** The dependants of the last generated page. */
+    private List dependants;
+
     private final boolean defaultIsSession;
 
     // ------------------------------------------------------------ Constructor
@@ -308,6 +312,7 @@ public abstract class Compiler {
 
         try {
             String[] smap = generateJava();
+            dependants = pageInfo.getDependants();
             if (compileClass) {
                 generateClass(smap);
             }
@@ -352,6 +357,14 @@ public abstract class Compiler {
         return pageInfo;
     }
 
+    /**
+     * Gets the dependants of the last generated page.
+     * @return The dependants or <code>null</code> if no page has been generated.
+     */
+    public List getDependants() {
+        return dependants;
+    }
+
     public JspCompilationContext getCompilationContext() {
         return ctxt;
     }
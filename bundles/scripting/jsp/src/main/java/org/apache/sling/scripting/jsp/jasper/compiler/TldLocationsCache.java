@@ -64,6 +64,27 @@ public abstract class TldLocationsCache {
 
     public abstract String[] getLocation(String uri) throws JasperException;
 
+    /**
+     * Returns the time the tag library at the given location has been
+     * modified last.
+     * @param location A location returned by {@link #getLocation(String)}
+     * @return The time or -1 if it is not known.
+     */
+    public long getLastModified(String location) {
+        return -1;
+    }
+
+    /**
+     * Returns a description of the version of the tag library at the
+     * given location. The description changes whenever the tag library
+     * is updated.
+     * @param location A location returned by {@link #getLocation(String)}
+     * @return The version or <code>null</code> if it is not known.
+     */
+    public String getVersion(String location) {
+        return null;
+    }
+
     /**
      * Returns the type of a URI:
      *     ABS_URI
@@ -0,0 +1,455 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sling.scripting.jsp.jasper.runtime;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.jsp.JspException;
+import javax.servlet.jsp.tagext.Tag;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+
+/**
+ * Pool of tag handlers that can be reused without synchronization.
+ *
+ * Each thread keeps its own small cache of handlers which is used
+ * first. If this cache is empty or full, a lock free stack shared by
+ * all threads is used. Each thread cache and the shared stack hold at
+ * most <code>tagpoolMaxSize</code> handlers, so a pool retains at most
+ * <code>tagpoolMaxSize * (threads + 1)</code> handlers.
+ *
+ * Handlers are taken from and put into a thread cache by its owning thread
+ * only, but each slot of the cache is updated atomically. This allows
+ * releasing the pool from any thread: all thread caches and the shared
+ * stack are emptied and each handler is released exactly once, either by
+ * the releasing thread or by the owning thread. The caches of threads which
+ * have terminated are emptied when a new thread starts using the pool, so
+ * the number of caches is bounded by the number of live threads.
+ *
+ * This pool can be enabled by setting the <code>tagpoolClassName</code>
+ * option to the name of this class. The pool keeps statistics about
+ * hits and misses which can be used to size <code>tagpoolMaxSize</code>,
+ * the sum over all pools is available through {@link #getStatistics()}.
+ */
+public class LockFreeTagHandlerPool extends TagHandlerPool {
+
+    /** All pools which have not been released yet. */
+    private static final ConcurrentLinkedQueue<LockFreeTagHandlerPool> POOLS = new ConcurrentLinkedQueue<LockFreeTagHandlerPool>();
+
+    /** Statistics of all released pools. */
+    private static final AtomicLong RELEASED_LOCAL_HITS = new AtomicLong();
+    private static final AtomicLong RELEASED_SHARED_HITS = new AtomicLong();
+    private static final AtomicLong RELEASED_MISSES = new AtomicLong();
+    private static final AtomicLong RELEASED_DISCARDED = new AtomicLong();
+
+    private final Log log = LogFactory.getLog(LockFreeTagHandlerPool.class);
+
+    /** The per thread cache. */
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>();
+
+    /** All per thread caches. */
+    private final ConcurrentLinkedQueue<ThreadCache> threadCaches = new ConcurrentLinkedQueue<ThreadCache>();
+
+    /** Statistics of all removed thread caches. */
+    private final AtomicLong retiredLocalHits = new AtomicLong();
+    private final AtomicLong retiredSharedHits = new AtomicLong();
+    private final AtomicLong retiredMisses = new AtomicLong();
+    private final AtomicLong retiredDiscarded = new AtomicLong();
+
+    /** Head of the shared overflow stack. */
+    private final AtomicReference<Node> sharedHead = new AtomicReference<Node>();
+
+    /** Number of handlers in the shared overflow stack. */
+    private final AtomicInteger sharedSize = new AtomicInteger();
+
+    private int maxSize;
+
+    private volatile boolean released;
+
+    @Override
+    protected void init(final ServletConfig config) {
+        this.maxSize = getMaxSize(config);
+        this.annotationProcessor =
+            (AnnotationProcessor) config.getServletContext().getAttribute(AnnotationProcessor.class.getName());
+        POOLS.add(this);
+    }
+
+    /**
+     * @see org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPool#get(java.lang.Class)
+     */
+    @Override
+    public Tag get(final Class handlerClass) throws JspException {
+        if ( this.released ) {
+            this.threadCache.remove();
+            this.retiredMisses.incrementAndGet();
+        } else {
+            final ThreadCache cache = this.getThreadCache();
+            if ( cache.current >= 0 ) {
+                // the slot is empty if the pool has been released meanwhile
+                final Tag handler = cache.handlers.getAndSet(cache.current--, null);
+                if ( handler != null ) {
+                    cache.localHits++;
+                    return handler;
+                }
+            }
+            final Tag shared = this.pop();
+            if ( shared != null ) {
+                cache.sharedHits++;
+                return shared;
+            }
+            cache.misses++;
+        }
+        try {
+            final Tag instance = (Tag) handlerClass.newInstance();
+            AnnotationHelper.postConstruct(annotationProcessor, instance);
+            return instance;
+        } catch (Exception e) {
+            throw new JspException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @see org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPool#reuse(javax.servlet.jsp.tagext.Tag)
+     */
+    @Override
+    public void reuse(final Tag handler) {
+        if ( this.released ) {
+            this.threadCache.remove();
+        } else {
+            final ThreadCache cache = this.getThreadCache();
+            if ( cache.current < cache.handlers.length() - 1 ) {
+                cache.handlers.set(++cache.current, handler);
+                // the pool might have been released while adding
+                if ( this.released ) {
+                    this.drain(cache);
+                }
+                return;
+            }
+            if ( this.push(handler) ) {
+                // the pool might have been released while pushing
+                if ( this.released ) {
+                    this.drainShared();
+                }
+                return;
+            }
+            cache.discarded++;
+        }
+        this.releaseHandler(handler);
+    }
+
+    /**
+     * @see org.apache.sling.scripting.jsp.jasper.runtime.TagHandlerPool#release()
+     */
+    @Override
+    public void release() {
+        this.released = true;
+        for(final ThreadCache cache : this.threadCaches) {
+            this.retire(cache);
+        }
+        this.threadCache.remove();
+        this.drainShared();
+        if ( POOLS.remove(this) ) {
+            RELEASED_LOCAL_HITS.addAndGet(this.retiredLocalHits.get());
+            RELEASED_SHARED_HITS.addAndGet(this.retiredSharedHits.get());
+            RELEASED_MISSES.addAndGet(this.retiredMisses.get());
+            RELEASED_DISCARDED.addAndGet(this.retiredDiscarded.get());
+        }
+        if ( log.isDebugEnabled() ) {
+            log.debug("Releasing tag handler pool: hits=" + this.getHitCount()
+                    + ", misses=" + this.getMissCount()
+                    + ", discarded=" + this.getDiscardCount()
+                    + ", hit rate=" + this.getHitRate());
+        }
+    }
+
+    /**
+     * Number of handlers served from the thread cache or the shared stack.
+     */
+    public long getHitCount() {
+        long count = this.retiredLocalHits.get() + this.retiredSharedHits.get();
+        for(final ThreadCache cache : this.threadCaches) {
+            count += cache.localHits + cache.sharedHits;
+        }
+        return count;
+    }
+
+    /**
+     * Number of handlers served from the shared stack.
+     */
+    public long getSharedHitCount() {
+        long count = this.retiredSharedHits.get();
+        for(final ThreadCache cache : this.threadCaches) {
+            count += cache.sharedHits;
+        }
+        return count;
+    }
+
+    /**
+     * Number of handlers which had to be created as the pool was empty.
+     */
+    public long getMissCount() {
+        long count = this.retiredMisses.get();
+        for(final ThreadCache cache : this.threadCaches) {
+            count += cache.misses;
+        }
+        return count;
+    }
+
+    /**
+     * Number of handlers which have been released as the pool was full.
+     */
+    public long getDiscardCount() {
+        long count = this.retiredDiscarded.get();
+        for(final ThreadCache cache : this.threadCaches) {
+            count += cache.discarded;
+        }
+        return count;
+    }
+
+    /**
+     * The ratio of hits to all requested handlers or <code>0</code>
+     * if no handler has been requested yet.
+     */
+    public double getHitRate() {
+        return Statistics.ratio(this.getHitCount(), this.getMissCount());
+    }
+
+    /**
+     * The statistics summed up over all pools, including the
+     * pools which have already been released.
+     */
+    public static Statistics getStatistics() {
+        long localHits = RELEASED_LOCAL_HITS.get();
+        long sharedHits = RELEASED_SHARED_HITS.get();
+        long misses = RELEASED_MISSES.get();
+        long discarded = RELEASED_DISCARDED.get();
+        int pools = 0;
+        for(final LockFreeTagHandlerPool pool : POOLS) {
+            pools++;
+            localHits += pool.retiredLocalHits.get();
+            sharedHits += pool.retiredSharedHits.get();
+            misses += pool.retiredMisses.get();
+            discarded += pool.retiredDiscarded.get();
+            for(final ThreadCache cache : pool.threadCaches) {
+                localHits += cache.localHits;
+                sharedHits += cache.sharedHits;
+                misses += cache.misses;
+                discarded += cache.discarded;
+            }
+        }
+        return new Statistics(pools, localHits, sharedHits, misses, discarded);
+    }
+
+    private ThreadCache getThreadCache() {
+        ThreadCache cache = this.threadCache.get();
+        if ( cache == null ) {
+            // remove the caches of terminated threads
+            for(final ThreadCache c : this.threadCaches) {
+                final Thread owner = c.owner.get();
+                if ( owner == null || !owner.isAlive() ) {
+                    this.retire(c);
+                }
+            }
+            cache = new ThreadCache(Thread.currentThread(), this.maxSize);
+            this.threadCache.set(cache);
+            this.threadCaches.add(cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Remove a cache which is no longer used, release all its handlers
+     * and add its counters to the statistics of the pool.
+     */
+    private void retire(final ThreadCache cache) {
+        // only one thread retires a cache
+        if ( !this.threadCaches.remove(cache) ) {
+            return;
+        }
+        this.drain(cache);
+        this.retiredLocalHits.addAndGet(cache.localHits);
+        this.retiredSharedHits.addAndGet(cache.sharedHits);
+        this.retiredMisses.addAndGet(cache.misses);
+        this.retiredDiscarded.addAndGet(cache.discarded);
+    }
+
+    /**
+     * Release all handlers of the cache. This can be called by any
+     * thread, each handler is taken out of its slot atomically.
+     */
+    private void drain(final ThreadCache cache) {
+        for(int i = 0; i < cache.handlers.length(); i++) {
+            final Tag handler = cache.handlers.getAndSet(i, null);
+            if ( handler != null ) {
+                this.releaseHandler(handler);
+            }
+        }
+    }
+
+    private void drainShared() {
+        Tag handler;
+        while ( (handler = this.pop()) != null ) {
+            this.releaseHandler(handler);
+        }
+    }
+
+    private boolean push(final Tag handler) {
+        if ( this.sharedSize.incrementAndGet() > this.maxSize ) {
+            this.sharedSize.decrementAndGet();
+            return false;
+        }
+        final Node node = new Node(handler);
+        do {
+            node.next = this.sharedHead.get();
+        } while ( !this.sharedHead.compareAndSet(node.next, node) );
+        return true;
+    }
+
+    private Tag pop() {
+        Node node;
+        do {
+            node = this.sharedHead.get();
+            if ( node == null ) {
+                return null;
+            }
+        } while ( !this.sharedHead.compareAndSet(node, node.next) );
+        this.sharedSize.decrementAndGet();
+        return node.handler;
+    }
+
+    private void releaseHandler(final Tag handler) {
+        handler.release();
+        if (annotationProcessor != null) {
+            try {
+                AnnotationHelper.preDestroy(annotationProcessor, handler);
+            } catch (Exception e) {
+                log.warn("Error processing preDestroy on tag instance of "
+                        + handler.getClass().getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the statistics of all pools.
+     */
+    public static final class Statistics {
+
+        private final int pools;
+
+        private final long localHits;
+
+        private final long sharedHits;
+
+        private final long misses;
+
+        private final long discarded;
+
+        Statistics(final int pools, final long localHits, final long sharedHits,
+                final long misses, final long discarded) {
+            this.pools = pools;
+            this.localHits = localHits;
+            this.sharedHits = sharedHits;
+            this.misses = misses;
+            this.discarded = discarded;
+        }
+
+        /** Number of pools which have not been released yet. */
+        public int getPoolCount() {
+            return this.pools;
+        }
+
+        /** Number of handlers served from a thread cache. */
+        public long getLocalHitCount() {
+            return this.localHits;
+        }
+
+        /** Number of handlers served from a shared stack. */
+        public long getSharedHitCount() {
+            return this.sharedHits;
+        }
+
+        /** Number of handlers which had to be created. */
+        public long getMissCount() {
+            return this.misses;
+        }
+
+        /** Number of handlers which have been released as the pool was full. */
+        public long getDiscardCount() {
+            return this.discarded;
+        }
+
+        /** The ratio of hits to all requested handlers. */
+        public double getHitRate() {
+            return ratio(this.localHits + this.sharedHits, this.misses);
+        }
+
+        static double ratio(final long hits, final long misses) {
+            final long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    /**
+     * The cache of a single thread. Only the owning thread adds handlers
+     * and updates the counters, other threads only empty the slots. The
+     * counters are read by other threads and therefore might be slightly
+     * out of date.
+     */
+    private static final class ThreadCache {
+
+        final WeakReference<Thread> owner;
+
+        final AtomicReferenceArray<Tag> handlers;
+
+        int current = -1;
+
+        long localHits;
+
+        long sharedHits;
+
+        long misses;
+
+        long discarded;
+
+        ThreadCache(final Thread owner, final int size) {
+            this.owner = new WeakReference<Thread>(owner);
+            this.handlers = new AtomicReferenceArray<Tag>(size);
+        }
+    }
+
+    /**
+     * Entry of the shared stack.
+     */
+    private static final class Node {
+
+        final Tag handler;
+
+        Node next;
+
+        Node(final Tag handler) {
+            this.handler = handler;
+        }
+    }
+}
@@ -44,13 +44,38 @@ public class TagHandlerPool {
     protected AnnotationProcessor annotationProcessor = null;
 
     public static TagHandlerPool getTagHandlerPool( ServletConfig config) {
-        final TagHandlerPool result = new TagHandlerPool();
+        TagHandlerPool result = null;
+
+        final String tpClassName = getOption(config, OPTION_TAGPOOL, null);
+        if ( tpClassName != null && tpClassName.length() > 0 ) {
+            try {
+                final Class<?> c = TagHandlerPool.class.getClassLoader().loadClass(tpClassName);
+                result = (TagHandlerPool) c.newInstance();
+            } catch (Exception e) {
+                LogFactory.getLog(TagHandlerPool.class).warn(
+                        "Unable to create tag handler pool " + tpClassName + ", using default.", e);
+                result = null;
+            }
+        }
+        if ( result == null ) {
+            result = new TagHandlerPool();
+        }
         result.init(config);
 
         return result;
     }
 
     protected void init( ServletConfig config ) {
+        this.handlers = new Tag[getMaxSize(config)];
+        this.current = -1;
+        this.annotationProcessor =
+            (AnnotationProcessor) config.getServletContext().getAttribute(AnnotationProcessor.class.getName());
+    }
+
+    /**
+     * Get the configured maximum size of the pool.
+     */
+    protected static int getMaxSize( ServletConfig config ) {
         int maxSize=-1;
         String maxSizeS=getOption(config, OPTION_MAXSIZE, null);
         if( maxSizeS != null ) {
@@ -63,10 +88,7 @@ public class TagHandlerPool {
         if( maxSize <0  ) {
             maxSize=Constants.MAX_POOL_SIZE;
         }
-        this.handlers = new Tag[maxSize];
-        this.current = -1;
-        this.annotationProcessor =
-            (AnnotationProcessor) config.getServletContext().getAttribute(AnnotationProcessor.class.getName());
+        return maxSize;
     }
 
     /**
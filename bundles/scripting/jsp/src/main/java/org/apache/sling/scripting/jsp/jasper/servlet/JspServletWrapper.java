@@ -23,6 +23,8 @@ import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -153,7 +155,6 @@ public class JspServletWrapper {
         return true;
     }
 
-    @SuppressWarnings("unchecked")
     private Servlet loadServlet()
     throws ServletException, IOException {
         Servlet servlet = null;
@@ -168,18 +169,7 @@ public class JspServletWrapper {
                annotationProcessor.processAnnotations(servlet);
                annotationProcessor.postConstruct(servlet);
             }
-            // update dependents
-            final List<String> oldDeps = this.dependents;
-            if (servlet != null && servlet instanceof JspSourceDependent) {
-                this.dependents = (List<String>) ((JspSourceDependent) servlet).getDependants();
-                if ( this.dependents == null ) {
-                    this.dependents = Collections.EMPTY_LIST;
-                }
-                this.ctxt.getRuntimeContext().addJspDependencies(this, this.dependents);
-            }
-            if ( !equals(oldDeps, this.dependents) ) {
-                this.persistDependencies();
-            }
+            this.updateDependents(servlet);
         } catch (final IllegalAccessException e) {
             throw new JasperException(e);
         } catch (final InstantiationException e) {
@@ -193,6 +183,31 @@ public class JspServletWrapper {
         return servlet;
     }
 
+    /**
+     * Update the dependents from a servlet instance.
+     */
+    private void updateDependents(final Object servlet) {
+        if (servlet != null && servlet instanceof JspSourceDependent) {
+            this.setDependents(((JspSourceDependent) servlet).getDependants());
+        }
+    }
+
+    /**
+     * Set the dependents and persist them if they changed.
+     */
+    @SuppressWarnings("unchecked")
+    private void setDependents(final Object deps) {
+        final List<String> oldDeps = this.dependents;
+        this.dependents = (List<String>) deps;
+        if ( this.dependents == null ) {
+            this.dependents = Collections.EMPTY_LIST;
+        }
+        this.ctxt.getRuntimeContext().addJspDependencies(this, this.dependents);
+        if ( !equals(oldDeps, this.dependents) ) {
+            this.persistDependencies();
+        }
+    }
+
     /**
      * Get the name of the dependencies file.
      */
@@ -242,6 +257,117 @@ public class JspServletWrapper {
         }
     }
 
+    /**
+     * Get the name of the source hash file.
+     */
+    public String getSourceHashFilePath() {
+        final String path = this.getDependencyFilePath();
+        return path.substring(0, path.length() - ".deps".length()) + ".hash";
+    }
+
+    /**
+     * Calculate a hash over the source of the jsp and all its
+     * dependencies. Tag libraries are included by their uri and the
+     * version of the bundle providing them.
+     * @return The hash or <code>null</code> if a source can't be read.
+     */
+    String calculateSourceHash() {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException nsae) {
+            return null;
+        }
+        try {
+            this.updateDigest(digest, ctxt.getJspFile());
+            final List<String> depends = this.getDependants();
+            if ( depends != null ) {
+                for(final String include : depends) {
+                    digest.update(include.getBytes("UTF-8"));
+                    if ( include.startsWith("tld:") ) {
+                        final String version = this.options.getTldLocationsCache().getVersion(include);
+                        if ( version != null ) {
+                            digest.update(version.getBytes("UTF-8"));
+                        }
+                    } else {
+                        this.updateDigest(digest, include);
+                    }
+                }
+            }
+        } catch (final IOException ioe) {
+            return null;
+        }
+        final StringBuilder sb = new StringBuilder();
+        for(final byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private void updateDigest(final MessageDigest digest, final String path)
+    throws IOException {
+        final InputStream is = this.ctxt.getRuntimeContext().getIOProvider().getInputStream(path);
+        try {
+            final byte[] buffer = new byte[4096];
+            int l;
+            while ( (l = is.read(buffer)) != -1 ) {
+                digest.update(buffer, 0, l);
+            }
+        } finally {
+            try { is.close(); } catch ( final IOException ioe ) {}
+        }
+    }
+
+    /**
+     * Read the source hash persisted with the last compilation.
+     * @return The hash or <code>null</code>
+     */
+    private String readSourceHash() {
+        InputStream is = null;
+        try {
+            is = this.ctxt.getRuntimeContext().getIOProvider().getInputStream(this.getSourceHashFilePath());
+            final LineNumberReader lnr = new LineNumberReader(new InputStreamReader(is, "UTF-8"));
+            return lnr.readLine();
+        } catch ( final IOException ignore ) {
+            // no hash available
+            return null;
+        } finally {
+            if ( is != null ) {
+                try { is.close(); } catch ( final IOException ioe ) {}
+            }
+        }
+    }
+
+    /**
+     * Persist the source hash. This updates the time stamp of the hash
+     * file which is used as the time the compiled class has been verified.
+     */
+    void persistSourceHash(final String hash) {
+        final String path = this.getSourceHashFilePath();
+        if ( hash == null ) {
+            this.ctxt.getRuntimeContext().getIOProvider().delete(path);
+            return;
+        }
+        OutputStream os = null;
+        try {
+            os = this.ctxt.getRuntimeContext().getIOProvider().getOutputStream(path);
+            final OutputStreamWriter writer = new OutputStreamWriter(os, "UTF-8");
+            writer.write(hash);
+            writer.flush();
+        } catch ( final IOException ioe) {
+            log.warn("Unable to write source hash file " + path + " : " + ioe.getMessage(), ioe);
+        } finally {
+            if ( os != null ) {
+                try {
+                    os.close();
+                } catch (final IOException ioe) {
+                    // ignore
+                }
+            }
+        }
+    }
+
     /**
      * Compile (if needed) and load a tag file
      */
@@ -365,7 +491,7 @@ public class JspServletWrapper {
     /**
      * Check if the compiled class is still current
      */
-    private boolean isOutDated() {
+    boolean isOutDated() {
         // check if class file exists
         final String targetFile = ctxt.getClassFileName();
         final long targetLastModified = ctxt.getRuntimeContext().getIOProvider().lastModified(targetFile);
@@ -373,6 +499,30 @@ public class JspServletWrapper {
             return true;
         }
 
+        // the class is as current as the last verification of the source hash
+        final long verifiedLastModified = Math.max(targetLastModified,
+                ctxt.getRuntimeContext().getIOProvider().lastModified(this.getSourceHashFilePath()));
+        if ( !this.isSourceModified(targetFile, verifiedLastModified) ) {
+            return false;
+        }
+
+        // the time stamps changed, but the sources might still be the same,
+        // e.g. if unchanged content has been deployed again
+        final String oldHash = this.readSourceHash();
+        if ( oldHash != null && oldHash.equals(this.calculateSourceHash()) ) {
+            if (log.isDebugEnabled()) {
+                log.debug("Compiler: source of " + targetFile + " is unchanged");
+            }
+            this.persistSourceHash(oldHash);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check if the jsp or any of its includes is newer than the given time.
+     */
+    private boolean isSourceModified(final String targetFile, final long targetLastModified) {
         // compare jsp time stamp with class file time stamp
         final String jsp = ctxt.getJspFile();
         final long jspRealLastModified = ctxt.getRuntimeContext().getIOProvider().lastModified(jsp);
@@ -390,11 +540,13 @@ public class JspServletWrapper {
             final Iterator<String> it = depends.iterator();
             while (it.hasNext()) {
                 final String include = it.next();
-                // ignore tag libs, we are reloaded if a taglib changes anyway
+                // tag libs are checked against the bundle providing them
+                final long includeLastModified;
                 if ( include.startsWith("tld:") ) {
-                    continue;
+                    includeLastModified = this.options.getTldLocationsCache().getLastModified(include);
+                } else {
+                    includeLastModified = ctxt.getRuntimeContext().getIOProvider().lastModified(include);
                 }
-                final long includeLastModified = ctxt.getRuntimeContext().getIOProvider().lastModified(include);
 
                 if (includeLastModified > targetLastModified) {
                     if (log.isDebugEnabled()) {
@@ -419,7 +571,8 @@ public class JspServletWrapper {
     private void prepareServlet(final HttpServletRequest request,
             final HttpServletResponse response)
     throws IOException, ServletException {
-        if ( isOutDated() ) {
+        final boolean compile = isOutDated();
+        if ( compile ) {
             // Compile...
             if ( log.isDebugEnabled() ) {
                 log.debug("Compiling servlet " + this.jspUri);
@@ -432,6 +585,35 @@ public class JspServletWrapper {
 
         // (Re)load servlet class file
         this.theServlet = this.loadServlet();
+        if ( compile ) {
+            this.persistSourceHash(this.calculateSourceHash());
+        }
+    }
+
+    /**
+     * Compile the servlet if it is out dated without initializing it.
+     * This is used to precompile jsps before the first request.
+     * @return <code>true</code> if the servlet has been compiled.
+     * @throws JasperException If compilation fails.
+     */
+    public boolean precompile() throws JasperException {
+        synchronized ( this ) {
+            if ( theServlet != null || !isOutDated() ) {
+                return false;
+            }
+            if ( log.isDebugEnabled() ) {
+                log.debug("Precompiling servlet " + this.jspUri);
+            }
+            final JasperException ex = ctxt.compile();
+            if ( ex != null ) {
+                throw ex;
+            }
+            // the servlet class is neither loaded nor instantiated,
+            // the dependencies are taken from the compiler
+            this.setDependents(ctxt.getCompiler().getDependants());
+            this.persistSourceHash(this.calculateSourceHash());
+            return true;
+        }
     }
 
     /**
@@ -569,6 +751,7 @@ public class JspServletWrapper {
                     final String path = ":/" + name.replace('.', '/') + ".class";
                     this.ctxt.getRuntimeContext().getIOProvider().delete(path);
                     this.ctxt.getRuntimeContext().getIOProvider().delete(this.getDependencyFilePath());
+                    this.ctxt.getRuntimeContext().getIOProvider().delete(this.getSourceHashFilePath());
                     final org.apache.sling.scripting.jsp.jasper.compiler.Compiler c = this.ctxt.getCompiler();
                     if ( c != null ) {
                         c.removeGeneratedFiles();
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test of the parallel precompilation.
+ */
+public class JspPrecompilerTest {
+
+    private static final int THREADS = 4;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testAllJspsAreCompiledOnceInParallel() throws Exception {
+        final List<String> paths = createPaths(100);
+        final ConcurrentHashMap<String, AtomicInteger> counts = new ConcurrentHashMap<String, AtomicInteger>();
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+        // the first jsps are only finished once all workers are compiling
+        final CountDownLatch allRunning = new CountDownLatch(THREADS);
+
+        final JspPrecompiler precompiler = new JspPrecompiler(paths) {
+
+            @Override
+            protected boolean compile(final String path) throws Exception {
+                threads.add(Thread.currentThread());
+                counts.putIfAbsent(path, new AtomicInteger());
+                counts.get(path).incrementAndGet();
+                allRunning.countDown();
+                assertTrue(allRunning.await(10, TimeUnit.SECONDS));
+                // every third jsp is unchanged
+                return !path.endsWith("0.jsp") && !path.endsWith("3.jsp") && !path.endsWith("6.jsp");
+            }
+        };
+        precompiler.start(executor, THREADS);
+
+        // the executor is shut down once all workers are finished
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(THREADS, threads.size());
+        assertEquals(paths.size(), counts.size());
+        for(final AtomicInteger count : counts.values()) {
+            assertEquals(1, count.get());
+        }
+        assertEquals(70, precompiler.getCompiled());
+        assertEquals(0, precompiler.getFailed());
+    }
+
+    @Test
+    public void testFailuresAreCounted() throws Exception {
+        final List<String> paths = createPaths(20);
+        final JspPrecompiler precompiler = new JspPrecompiler(paths) {
+
+            @Override
+            protected boolean compile(final String path) throws Exception {
+                if ( path.endsWith("5.jsp") ) {
+                    throw new Exception("Compilation failed");
+                }
+                return true;
+            }
+        };
+        precompiler.start(executor, THREADS);
+
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(18, precompiler.getCompiled());
+        assertEquals(2, precompiler.getFailed());
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        final List<String> paths = createPaths(100);
+        final CountDownLatch started = new CountDownLatch(THREADS);
+        final JspPrecompiler precompiler = new JspPrecompiler(paths) {
+
+            @Override
+            protected boolean compile(final String path) throws Exception {
+                started.countDown();
+                // the compilation of a page is finished, even if interrupted
+                try {
+                    Thread.sleep(10000);
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+        precompiler.start(executor, THREADS);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        // every worker has stopped after its current page
+        assertEquals(THREADS, precompiler.getCompiled());
+    }
+
+    @Test
+    public void testStartOnStoppedExecutor() throws Exception {
+        final AtomicInteger compiled = new AtomicInteger();
+        final JspPrecompiler precompiler = new JspPrecompiler(createPaths(10)) {
+
+            @Override
+            protected boolean compile(final String path) throws Exception {
+                compiled.incrementAndGet();
+                return true;
+            }
+        };
+        executor.shutdown();
+        precompiler.start(executor, THREADS);
+        assertEquals(0, compiled.get());
+    }
+
+    private static List<String> createPaths(final int count) {
+        final List<String> paths = new ArrayList<String>();
+        for(int i = 0; i < count; i++) {
+            paths.add("/apps/test/page" + i + ".jsp");
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp.jasper.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.jsp.tagext.Tag;
+import javax.servlet.jsp.tagext.TagSupport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test of LockFreeTagHandlerPool.
+ */
+public class LockFreeTagHandlerPoolTest {
+
+    private LockFreeTagHandlerPool pool;
+
+    @Before
+    public void setup() {
+        final ServletContext context = mock(ServletContext.class);
+        final ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(context);
+        when(config.getInitParameter(TagHandlerPool.OPTION_TAGPOOL)).thenReturn(LockFreeTagHandlerPool.class.getName());
+        when(config.getInitParameter(TagHandlerPool.OPTION_MAXSIZE)).thenReturn("2");
+        this.pool = (LockFreeTagHandlerPool) TagHandlerPool.getTagHandlerPool(config);
+    }
+
+    @After
+    public void cleanup() {
+        this.pool.release();
+    }
+
+    @Test
+    public void testReuseFromThreadCache() throws Exception {
+        final Tag tag = pool.get(CountingTag.class);
+        pool.reuse(tag);
+        assertSame(tag, pool.get(CountingTag.class));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(0.5, pool.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void testOverflowIsSharedAndBounded() throws Exception {
+        final Tag[] tags = new Tag[5];
+        for(int i = 0; i < tags.length; i++) {
+            tags[i] = pool.get(CountingTag.class);
+        }
+        for(final Tag tag : tags) {
+            pool.reuse(tag);
+        }
+        // two in the thread cache, two in the shared stack, one discarded
+        assertEquals(1, pool.getDiscardCount());
+        assertEquals(1, ((CountingTag) tags[4]).released);
+
+        final Tag[] fromOtherThread = new Tag[3];
+        final Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for(int i = 0; i < fromOtherThread.length; i++) {
+                        fromOtherThread[i] = pool.get(CountingTag.class);
+                    }
+                } catch ( final Exception e ) {
+                    // ignore, checked below
+                }
+            }
+        };
+        t.start();
+        t.join();
+        assertSame(tags[3], fromOtherThread[0]);
+        assertSame(tags[2], fromOtherThread[1]);
+        assertTrue(fromOtherThread[2] instanceof CountingTag);
+        assertEquals(2, pool.getSharedHitCount());
+        assertEquals(6, pool.getMissCount());
+    }
+
+    @Test
+    public void testReleaseFromOtherThread() throws Exception {
+        final int threads = 3;
+        final CountingTag[][] cached = new CountingTag[threads][2];
+        final CountDownLatch filled = new CountDownLatch(threads);
+        final CountDownLatch released = new CountDownLatch(1);
+        final Throwable[] error = new Throwable[threads];
+        final Thread[] owners = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            final int index = i;
+            owners[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for(int n = 0; n < 2; n++) {
+                            cached[index][n] = (CountingTag) pool.get(CountingTag.class);
+                        }
+                        for(int n = 0; n < 2; n++) {
+                            pool.reuse(cached[index][n]);
+                        }
+                        filled.countDown();
+                        released.await();
+                        // no handler is reused after the pool has been released
+                        final CountingTag next = (CountingTag) pool.get(CountingTag.class);
+                        assertNotSame(cached[index][0], next);
+                        assertNotSame(cached[index][1], next);
+                        pool.reuse(next);
+                        assertEquals(1, next.released);
+                    } catch ( final Throwable e ) {
+                        error[index] = e;
+                    }
+                }
+            };
+            owners[i].start();
+        }
+        filled.await();
+        pool.release();
+        // the caches of all threads have been emptied by the releasing thread
+        for(int i = 0; i < threads; i++) {
+            for(int n = 0; n < 2; n++) {
+                assertEquals(1, cached[i][n].released);
+            }
+        }
+        released.countDown();
+        for(int i = 0; i < threads; i++) {
+            owners[i].join();
+            assertNull(error[i]);
+            for(int n = 0; n < 2; n++) {
+                assertEquals(1, cached[i][n].released);
+            }
+        }
+        assertEquals(2 * threads + threads, pool.getMissCount());
+    }
+
+    @Test
+    public void testCachesOfTerminatedThreadsAreRemoved() throws Exception {
+        final CountingTag[] cached = new CountingTag[1];
+        final Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    cached[0] = (CountingTag) pool.get(CountingTag.class);
+                    pool.reuse(cached[0]);
+                    pool.reuse(pool.get(CountingTag.class));
+                } catch ( final Exception e ) {
+                    // ignore, checked below
+                }
+            }
+        };
+        t.start();
+        t.join();
+        assertEquals(0, cached[0].released);
+
+        // a new thread using the pool removes the cache of the terminated thread
+        final Tag tag = pool.get(CountingTag.class);
+        assertNotSame(cached[0], tag);
+        assertEquals(1, cached[0].released);
+        assertEquals(1, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+    }
+
+    @Test
+    public void testStatisticsIncludeReleasedPools() throws Exception {
+        final LockFreeTagHandlerPool.Statistics before = LockFreeTagHandlerPool.getStatistics();
+        pool.reuse(pool.get(CountingTag.class));
+        pool.get(CountingTag.class);
+        pool.release();
+        final LockFreeTagHandlerPool.Statistics after = LockFreeTagHandlerPool.getStatistics();
+        assertEquals(before.getPoolCount() - 1, after.getPoolCount());
+        assertEquals(before.getLocalHitCount() + 1, after.getLocalHitCount());
+        assertEquals(before.getMissCount() + 1, after.getMissCount());
+    }
+
+    public static final class CountingTag extends TagSupport {
+
+        private static final long serialVersionUID = 1L;
+
+        int released;
+
+        @Override
+        public void release() {
+            this.released++;
+            super.release();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.jsp.jasper.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+
+import org.apache.sling.commons.classloader.ClassLoaderWriter;
+import org.apache.sling.commons.compiler.JavaCompiler;
+import org.apache.sling.scripting.jsp.jasper.IOProvider;
+import org.apache.sling.scripting.jsp.jasper.Options;
+import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext;
+import org.apache.sling.scripting.jsp.jasper.compiler.TldLocationsCache;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JspServletWrapperTest {
+
+    private static final String JSP = "/apps/test/test.jsp";
+
+    private static final String INCLUDE = "/apps/test/include.jsp";
+
+    private static final String TLD = "tld:http://example.org/tags";
+
+    private MemoryIOProvider ioProvider;
+
+    private TestTldLocationsCache tldCache;
+
+    private JspServletWrapper wrapper;
+
+    @Before
+    public void setup() throws IOException {
+        this.ioProvider = new MemoryIOProvider();
+        this.tldCache = new TestTldLocationsCache();
+        this.tldCache.lastModified = 100;
+        this.tldCache.version = "org.example.tags:1.0.0:100";
+
+        final Options options = mock(Options.class);
+        when(options.getScratchDir()).thenReturn("/var/classes");
+        when(options.getTldLocationsCache()).thenReturn(this.tldCache);
+        final ServletContext servletContext = mock(ServletContext.class);
+        final ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(servletContext);
+
+        final JspRuntimeContext rctxt = new JspRuntimeContext(servletContext, options, this.ioProvider);
+        this.wrapper = new JspServletWrapper(config, options, JSP, false, rctxt, true);
+
+        // simulate a compilation at time 1000 of sources created at time 500
+        this.ioProvider.write(JSP, "<%@include file=\"include.jsp\"%>", 500);
+        this.ioProvider.write(INCLUDE, "included", 500);
+        this.ioProvider.write(this.wrapper.getDependencyFilePath(), INCLUDE + "\n" + TLD + "\n", 1000);
+        this.ioProvider.write(this.wrapper.getJspEngineContext().getClassFileName(), "class", 1000);
+        this.ioProvider.now = 1000;
+        this.wrapper.persistSourceHash(this.wrapper.calculateSourceHash());
+    }
+
+    @Test
+    public void testUnchanged() {
+        assertFalse(this.wrapper.isOutDated());
+    }
+
+    @Test
+    public void testSameContentNewerTimestamp() throws IOException {
+        this.ioProvider.write(JSP, "<%@include file=\"include.jsp\"%>", 2000);
+        this.ioProvider.write(INCLUDE, "included", 2000);
+        this.ioProvider.now = 3000;
+
+        assertFalse(this.wrapper.isOutDated());
+        // the verification is remembered in the time stamp of the hash file
+        assertEquals(3000, this.ioProvider.lastModified(this.wrapper.getSourceHashFilePath()));
+        this.ioProvider.now = 4000;
+        assertFalse(this.wrapper.isOutDated());
+        assertEquals(3000, this.ioProvider.lastModified(this.wrapper.getSourceHashFilePath()));
+    }
+
+    @Test
+    public void testJspChanged() throws IOException {
+        this.ioProvider.write(JSP, "<%@include file=\"include.jsp\"%>changed", 2000);
+        assertTrue(this.wrapper.isOutDated());
+    }
+
+    @Test
+    public void testIncludeChanged() throws IOException {
+        this.ioProvider.write(INCLUDE, "changed", 2000);
+        assertTrue(this.wrapper.isOutDated());
+    }
+
+    @Test
+    public void testIncludeRemoved() {
+        this.ioProvider.files.remove(INCLUDE);
+        this.ioProvider.times.put(INCLUDE, 2000L);
+        assertTrue(this.wrapper.isOutDated());
+    }
+
+    @Test
+    public void testTagLibraryUpdated() {
+        this.tldCache.lastModified = 2000;
+        this.tldCache.version = "org.example.tags:1.0.1:2000";
+        assertTrue(this.wrapper.isOutDated());
+    }
+
+    @Test
+    public void testTagLibraryRedeployed() {
+        // same bundle version but installed again
+        this.tldCache.lastModified = 2000;
+        this.tldCache.version = "org.example.tags:1.0.0:2000";
+        assertTrue(this.wrapper.isOutDated());
+    }
+
+    @Test
+    public void testMissingClass() {
+        this.ioProvider.delete(this.wrapper.getJspEngineContext().getClassFileName());
+        assertTrue(this.wrapper.isOutDated());
+    }
+
+    private static final class TestTldLocationsCache extends TldLocationsCache {
+
+        volatile long lastModified;
+
+        volatile String version;
+
+        @Override
+        public String[] getLocation(final String uri) {
+            return null;
+        }
+
+        @Override
+        public long getLastModified(final String location) {
+            return TLD.equals(location) ? lastModified : -1;
+        }
+
+        @Override
+        public String getVersion(final String location) {
+            return TLD.equals(location) ? version : null;
+        }
+    }
+
+    private static final class MemoryIOProvider implements IOProvider {
+
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+
+        final Map<String, Long> times = new HashMap<String, Long>();
+
+        long now;
+
+        void write(final String path, final String content, final long time) throws IOException {
+            this.files.put(path, content.getBytes("UTF-8"));
+            this.times.put(path, time);
+        }
+
+        public OutputStream getOutputStream(final String fileName) {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    files.put(fileName, toByteArray());
+                    times.put(fileName, now);
+                }
+            };
+        }
+
+        public InputStream getInputStream(final String fileName) throws FileNotFoundException {
+            final byte[] content = this.files.get(fileName);
+            if ( content == null ) {
+                throw new FileNotFoundException(fileName);
+            }
+            return new ByteArrayInputStream(content);
+        }
+
+        public boolean delete(final String fileName) {
+            this.times.remove(fileName);
+            return this.files.remove(fileName) != null;
+        }
+
+        public boolean rename(final String oldFileName, final String newFileName) {
+            return false;
+        }
+
+        public boolean mkdirs(final String path) {
+            return true;
+        }
+
+        public long lastModified(final String fileName) {
+            final Long time = this.times.get(fileName);
+            return time == null ? -1 : time;
+        }
+
+        public ClassLoader getClassLoader() {
+            return null;
+        }
+
+        public JavaCompiler getJavaCompiler() {
+            return null;
+        }
+
+        public ClassLoaderWriter getClassLoaderWriter() {
+            return null;
+        }
+    }
+}
@@ -168,6 +168,32 @@ public interface SlingPostConstants {
      */
     public static final String OPERATION_IMPORT = "import";
 
+    /**
+     * Name of the predefined batch operation (value is "batch").
+     * <p>
+     * The batch operation applies a list of operations in a single request.
+     * The list is a JSON array provided in the {@link #RP_CONTENT} request
+     * parameter or, if this parameter is missing, as the request body. Each
+     * entry is an object with an optional <code>path</code>, resolved against
+     * the request resource, and a <code>params</code> object providing the
+     * request parameters of the operation, including the
+     * {@link #RP_OPERATION} parameter:
+     * <pre>
+     * [ { "path" : "a", "params" : { "title" : "A" } },
+     *   { "path" : "b", "params" : { ":operation" : "delete" } } ]
+     * </pre>
+     * The changes are committed after every {@link #RP_BATCH_COMMIT_SIZE}
+     * operations and at the end of the batch. If an operation fails, the
+     * batch is stopped and the changes since the last commit are reverted.
+     * Post processors are invoked for each operation before its changes are
+     * committed. To bound the memory of large batches, the response reports
+     * the path, status code and status message of every applied operation
+     * but only includes the changes of a failed operation.
+     *
+     * @since 2.3.7
+     */
+    public static final String OPERATION_BATCH = "batch";
+
     /**
      * Name of the request parameter used to indicate the resource to apply the
      * operation to (value is ":applyTo").
@@ -513,6 +539,39 @@ public interface SlingPostConstants {
      */
     public static final String RP_AUTO_CHECKOUT = RP_PREFIX + "autoCheckout";
 
+    /**
+     * Name of the request parameter containing the number of nodes after
+     * which the changes of an {@link SlingPostConstants#OPERATION_IMPORT}
+     * operation are saved. If this parameter or the
+     * {@link #RP_AUTO_SAVE_BYTES_THRESHOLD} parameter is set, only the
+     * root of the imported content is reported as a modification.
+     * Auto save requires the import of a new node named by {@link #RP_NODE_NAME}
+     * or {@link #RP_NODE_NAME_HINT}; if the import fails, this node is removed
+     * again as the saved batches are not reverted with the other changes.
+     *
+     * @since 2.3.7
+     */
+    public static final String RP_AUTO_SAVE_THRESHOLD = RP_PREFIX + "autoSaveThreshold";
+
+    /**
+     * Name of the request parameter containing the number of bytes read
+     * from the content after which the changes of an
+     * {@link SlingPostConstants#OPERATION_IMPORT} operation are saved.
+     *
+     * @since 2.3.7
+     */
+    public static final String RP_AUTO_SAVE_BYTES_THRESHOLD = RP_PREFIX + "autoSaveBytesThreshold";
+
+    /**
+     * Name of the request parameter containing the number of operations
+     * after which the changes of an {@link SlingPostConstants#OPERATION_BATCH}
+     * operation are committed. A value of zero or less commits the changes
+     * only at the end of the batch.
+     *
+     * @since 2.3.7
+     */
+    public static final String RP_BATCH_COMMIT_SIZE = RP_PREFIX + "batchCommitSize";
+
     /**
      * Name of the request attribute (not parameter) indicating that a post operation
      * should not invoke session.save() upon completion.
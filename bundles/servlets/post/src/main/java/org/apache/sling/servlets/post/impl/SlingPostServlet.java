@@ -60,6 +60,7 @@ import org.apache.sling.servlets.post.VersioningConfiguration;
 import org.apache.sling.servlets.post.impl.helper.DateParser;
 import org.apache.sling.servlets.post.impl.helper.DefaultNodeNameGenerator;
 import org.apache.sling.servlets.post.impl.helper.MediaRangeList;
+import org.apache.sling.servlets.post.impl.operations.BatchOperation;
 import org.apache.sling.servlets.post.impl.operations.CheckinOperation;
 import org.apache.sling.servlets.post.impl.operations.CheckoutOperation;
 import org.apache.sling.servlets.post.impl.operations.CopyOperation;
@@ -69,6 +70,7 @@ import org.apache.sling.servlets.post.impl.operations.ModifyOperation;
 import org.apache.sling.servlets.post.impl.operations.MoveOperation;
 import org.apache.sling.servlets.post.impl.operations.NopOperation;
 import org.apache.sling.servlets.post.impl.operations.RestoreOperation;
+import org.apache.sling.servlets.post.impl.operations.StreamedUploadOperation;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceRegistration;
@@ -140,8 +142,13 @@ public class SlingPostServlet extends SlingAllMethodsServlet {
     @Property(value = DEFAULT_IGNORED_PARAMETER_NAME_PATTERN)
     private static final String PROP_IGNORED_PARAMETER_NAME_PATTERN = "servlet.post.ignorePattern";
 
+    @Property(intValue = BatchOperation.DEFAULT_COMMIT_SIZE)
+    private static final String PROP_BATCH_COMMIT_SIZE = "servlet.post.batchCommitSize";
+
     private final ModifyOperation modifyOperation = new ModifyOperation();
 
+    private final StreamedUploadOperation streamedUploadOperation = new StreamedUploadOperation(modifyOperation);
+
     private ServiceRegistration[] internalOperations;
 
     /** Map of post operations. */
@@ -167,6 +174,8 @@ public class SlingPostServlet extends SlingAllMethodsServlet {
 
     private final ImportOperation importOperation = new ImportOperation();
 
+    private final BatchOperation batchOperation = new BatchOperation(postOperations, modifyOperation);
+
     /**
      * The content importer reference.
      */
@@ -286,6 +295,10 @@ public class SlingPostServlet extends SlingAllMethodsServlet {
             final SlingHttpServletRequest request) {
         final String operation = request.getParameter(SlingPostConstants.RP_OPERATION);
         if (operation == null || operation.length() == 0) {
+            // file uploads sent in streaming mode
+            if (StreamedUploadOperation.isStreamedRequest(request)) {
+                return streamedUploadOperation;
+            }
             // standard create/modify operation;
             return modifyOperation;
         }
@@ -405,6 +418,8 @@ public class SlingPostServlet extends SlingAllMethodsServlet {
                 SlingPostConstants.OPERATION_RESTORE, new RestoreOperation()));
         providedServices.add(registerOperation(bundleContext,
             SlingPostConstants.OPERATION_IMPORT, importOperation));
+        providedServices.add(registerOperation(bundleContext,
+            SlingPostConstants.OPERATION_BATCH, batchOperation));
 
         internalOperations = providedServices.toArray(new ServiceRegistration[providedServices.size()]);
     }
@@ -424,6 +439,7 @@ public class SlingPostServlet extends SlingAllMethodsServlet {
     @Override
     public void init() throws ServletException {
         modifyOperation.setServletContext(getServletContext());
+        streamedUploadOperation.setServletContext(getServletContext());
     }
 
     @Modified
@@ -458,11 +474,14 @@ public class SlingPostServlet extends SlingAllMethodsServlet {
         this.importOperation.setDefaultNodeNameGenerator(nodeNameGenerator);
         this.modifyOperation.setIgnoredParameterNamePattern(paramMatchPattern);
         this.importOperation.setIgnoredParameterNamePattern(paramMatchPattern);
+        this.batchOperation.setCommitSize((int) OsgiUtil.toLong(
+            configuration.get(PROP_BATCH_COMMIT_SIZE), BatchOperation.DEFAULT_COMMIT_SIZE));
     }
 
     @Override
     public void destroy() {
         modifyOperation.setServletContext(null);
+        streamedUploadOperation.setServletContext(null);
     }
 
     @Deactivate
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.servlets.post.impl.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.request.RequestParameter;
+import org.apache.sling.api.request.RequestParameterMap;
+import org.apache.sling.api.resource.NonExistingResource;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.wrappers.SlingHttpServletRequestWrapper;
+import org.apache.sling.commons.json.JSONArray;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.servlets.post.SlingPostConstants;
+import org.apache.sling.servlets.post.VersioningConfiguration;
+
+/**
+ * The <code>BatchEntryRequest</code> presents a single entry of a batch
+ * operation to a post operation as if it was a request on its own: the
+ * request resource is the resource addressed by the entry and the request
+ * parameters are the parameters of the entry.
+ * <p>
+ * The request asks the operation to not save the changes, as this is done
+ * by the batch operation, and to not check in nodes, as this is only
+ * possible once the changes are saved.
+ */
+public class BatchEntryRequest extends SlingHttpServletRequestWrapper {
+
+    private final Resource resource;
+
+    private final EntryParameterMap parameters;
+
+    private final VersioningConfiguration versioningConfiguration;
+
+    public BatchEntryRequest(final SlingHttpServletRequest request,
+            final String path, final JSONObject params,
+            final VersioningConfiguration versioningConfiguration) throws JSONException {
+        super(request);
+        final Resource rsrc = request.getResourceResolver().getResource(path);
+        this.resource = (rsrc != null) ? rsrc : new NonExistingResource(request.getResourceResolver(), path);
+        this.parameters = new EntryParameterMap(params);
+        this.versioningConfiguration = versioningConfiguration;
+    }
+
+    @Override
+    public Resource getResource() {
+        return this.resource;
+    }
+
+    @Override
+    public Object getAttribute(final String name) {
+        if (SlingPostConstants.ATTR_SKIP_SESSION_HANDLING.equals(name)) {
+            return "true";
+        }
+        if (VersioningConfiguration.class.getName().equals(name)) {
+            return this.versioningConfiguration;
+        }
+        return super.getAttribute(name);
+    }
+
+    @Override
+    public String getParameter(final String name) {
+        final RequestParameter param = this.parameters.getValue(name);
+        return (param != null) ? param.getString() : null;
+    }
+
+    @Override
+    public String[] getParameterValues(final String name) {
+        final RequestParameter[] params = this.parameters.getValues(name);
+        if (params == null) {
+            return null;
+        }
+        final String[] values = new String[params.length];
+        for (int i = 0; i < params.length; i++) {
+            values[i] = params[i].getString();
+        }
+        return values;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(this.parameters.keySet());
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        final Map<String, String[]> result = new LinkedHashMap<String, String[]>();
+        for (final String name : this.parameters.keySet()) {
+            result.put(name, this.getParameterValues(name));
+        }
+        return result;
+    }
+
+    @Override
+    public RequestParameter getRequestParameter(final String name) {
+        return this.parameters.getValue(name);
+    }
+
+    @Override
+    public RequestParameter[] getRequestParameters(final String name) {
+        return this.parameters.getValues(name);
+    }
+
+    @Override
+    public RequestParameterMap getRequestParameterMap() {
+        return this.parameters;
+    }
+
+    @Override
+    public List<RequestParameter> getRequestParameterList() {
+        final List<RequestParameter> result = new ArrayList<RequestParameter>();
+        for (final RequestParameter[] params : this.parameters.values()) {
+            Collections.addAll(result, params);
+        }
+        return result;
+    }
+
+    /**
+     * The parameters of an entry. Arrays provide multiple values, all other
+     * values are converted to strings. <code>null</code> values are ignored.
+     */
+    private static final class EntryParameterMap
+        extends LinkedHashMap<String, RequestParameter[]>
+        implements RequestParameterMap {
+
+        private static final long serialVersionUID = 1L;
+
+        EntryParameterMap(final JSONObject params) throws JSONException {
+            if (params != null) {
+                final Iterator<String> names = params.keys();
+                while (names.hasNext()) {
+                    final String name = names.next();
+                    final Object value = params.get(name);
+                    final List<RequestParameter> values = new ArrayList<RequestParameter>();
+                    if (value instanceof JSONArray) {
+                        final JSONArray array = (JSONArray) value;
+                        for (int i = 0; i < array.length(); i++) {
+                            if (!array.isNull(i)) {
+                                values.add(new EntryParameter(name, array.get(i).toString()));
+                            }
+                        }
+                    } else if (!JSONObject.NULL.equals(value)) {
+                        values.add(new EntryParameter(name, value.toString()));
+                    }
+                    if (!values.isEmpty()) {
+                        this.put(name, values.toArray(new RequestParameter[values.size()]));
+                    }
+                }
+            }
+        }
+
+        public RequestParameter getValue(final String name) {
+            final RequestParameter[] values = this.get(name);
+            return (values != null && values.length > 0) ? values[0] : null;
+        }
+
+        public RequestParameter[] getValues(final String name) {
+            return this.get(name);
+        }
+    }
+
+    /**
+     * A simple string parameter of an entry.
+     */
+    private static final class EntryParameter implements RequestParameter {
+
+        private static final String ENCODING = "UTF-8";
+
+        private final String name;
+
+        private final String value;
+
+        EntryParameter(final String name, final String value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public boolean isFormField() {
+            return true;
+        }
+
+        public String getContentType() {
+            return null;
+        }
+
+        public long getSize() {
+            return this.get().length;
+        }
+
+        public byte[] get() {
+            try {
+                return this.value.getBytes(ENCODING);
+            } catch (final UnsupportedEncodingException uee) {
+                // UTF-8 is always supported
+                throw new IllegalStateException(uee);
+            }
+        }
+
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(this.get());
+        }
+
+        public String getFileName() {
+            return null;
+        }
+
+        public String getString() {
+            return this.value;
+        }
+
+        public String getString(final String encoding) {
+            return this.value;
+        }
+
+        @Override
+        public String toString() {
+            return this.value;
+        }
+    }
+}
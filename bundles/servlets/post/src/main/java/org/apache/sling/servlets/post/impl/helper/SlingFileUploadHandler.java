@@ -16,22 +16,16 @@
  */
 package org.apache.sling.servlets.post.impl.helper;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.SequenceInputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
@@ -306,56 +300,21 @@ public class SlingFileUploadHandler {
                 throw new RepositoryException("Chunk already present at {"
                     + itr.nextNode().getPath() + "}");
             }
-            String nodeName = SlingPostConstants.CHUNK_NODE_NAME + "_"
-                + String.valueOf(chunkOffset) + "_"
-                + String.valueOf(chunkOffset + value.getSize() - 1);
-            if (totalLength == (currentLength + value.getSize())
-                || prop.getChunk().isCompleted()) {
-                File file = null;
-                InputStream fileIns = null;
-                try {
-                    file = mergeChunks(res, value.getInputStream());
-                    fileIns = new FileInputStream(file);
-                    changes.add(Modification.onModified(res.setProperty(
-                        JCR_DATA, fileIns).getPath()));
-                    NodeIterator nodeItr = res.getNodes(SlingPostConstants.CHUNK_NODE_NAME
-                        + "*");
-                    while (nodeItr.hasNext()) {
-                        Node nodeRange = nodeItr.nextNode();
-                        changes.add(Modification.onDeleted(nodeRange.getPath()));
-                        nodeRange.remove();
-                    }
-                    if (res.hasProperty(SlingPostConstants.NT_SLING_FILE_LENGTH)) {
-                        javax.jcr.Property expLenProp = res.getProperty(SlingPostConstants.NT_SLING_FILE_LENGTH);
-                        changes.add(Modification.onDeleted(expLenProp.getPath()));
-                        expLenProp.remove();
-                    }
-                    if (res.hasProperty(SlingPostConstants.NT_SLING_CHUNKS_LENGTH)) {
-                        javax.jcr.Property currLenProp = res.getProperty(SlingPostConstants.NT_SLING_CHUNKS_LENGTH);
-                        changes.add(Modification.onDeleted(currLenProp.getPath()));
-                        currLenProp.remove();
-                    }
-                    res.removeMixin(SlingPostConstants.NT_SLING_CHUNK_MIXIN);
-                } finally {
-                    try {
-                        fileIns.close();
-                        file.delete();
-                    } catch (IOException ign) {
-
-                    }
-
-                }
+            final long chunkSize = value.getSize();
+            if (chunkSize >= 0 && (totalLength == (currentLength + chunkSize)
+                || prop.getChunk().isCompleted())) {
+                // last chunk: merge the stored chunks and this one
+                completeChunkUpload(res, value.getInputStream(), changes);
             } else {
-                Node rangeNode = res.addNode(nodeName,
-                    SlingPostConstants.NT_SLING_CHUNK_NODETYPE);
-                changes.add(Modification.onCreated(rangeNode.getPath()));
-                changes.add(Modification.onModified(rangeNode.setProperty(
-                    JCR_DATA, value.getInputStream()).getPath()));
-                changes.add(Modification.onModified(rangeNode.setProperty(
-                    SlingPostConstants.NT_SLING_CHUNK_OFFSET, chunkOffset).getPath()));
+                final long storedSize = storeChunk(res, chunkOffset, value, changes);
                 changes.add(Modification.onModified(res.setProperty(
                     SlingPostConstants.NT_SLING_CHUNKS_LENGTH,
-                    currentLength + value.getSize()).getPath()));
+                    currentLength + storedSize).getPath()));
+                // the size of a streamed chunk is only known once it is stored
+                if (chunkSize < 0 && (totalLength == (currentLength + storedSize)
+                    || prop.getChunk().isCompleted())) {
+                    completeChunkUpload(res, null, changes);
+                }
             }
         } catch (IOException e) {
             throw new RepositoryException(
@@ -364,54 +323,112 @@ public class SlingFileUploadHandler {
     }
 
     /**
-     * Merge all previous chunks with last chunk's stream into a temporary file
-     * and return it.
+     * Store a chunk in a chunk node below the resource node and return the
+     * size of the chunk.
      */
-    private File mergeChunks(final Node parentNode,
-            final InputStream lastChunkStream) throws PersistenceException,
-            RepositoryException {
-        OutputStream out = null;
-        SequenceInputStream  mergeStrm = null;
-        File file = null;
-        try {
-            file = File.createTempFile("tmp-", "-mergechunk");
-            out = new FileOutputStream(file);
-            String startPattern = SlingPostConstants.CHUNK_NODE_NAME + "_"
-                + "0_*";
-            NodeIterator nodeItr = parentNode.getNodes(startPattern);
-            InputStream ins = null;
-            int i = 0;
-            Set<InputStream> inpStrmSet = new LinkedHashSet<InputStream>();
-            while (nodeItr.hasNext()) {
-                if (nodeItr.getSize() > 1) {
-                    throw new RepositoryException(
-                        "more than one node found for pattern: " + startPattern);
-                }
-                Node rangeNode = nodeItr.nextNode();
-
-                inpStrmSet.add(rangeNode.getProperty(
-                    javax.jcr.Property.JCR_DATA).getBinary().getStream());
-                log.debug("added chunk {} to merge stream", rangeNode.getName());
-                String[] indexBounds = rangeNode.getName().substring(
-                    (SlingPostConstants.CHUNK_NODE_NAME + "_").length()).split(
-                    "_");
-                startPattern = SlingPostConstants.CHUNK_NODE_NAME + "_"
-                    + String.valueOf(Long.valueOf(indexBounds[1]) + 1) + "_*";
-                nodeItr = parentNode.getNodes(startPattern);
-            }
+    private long storeChunk(final Node res, final long chunkOffset,
+            final RequestParameter value, final List<Modification> changes)
+            throws RepositoryException, IOException {
+        final long chunkSize = value.getSize();
+        final String prefix = SlingPostConstants.CHUNK_NODE_NAME + "_"
+            + String.valueOf(chunkOffset) + "_";
+        Node rangeNode;
+        final long storedSize;
+        if (chunkSize >= 0) {
+            rangeNode = res.addNode(prefix + String.valueOf(chunkOffset + chunkSize - 1),
+                SlingPostConstants.NT_SLING_CHUNK_NODETYPE);
+            rangeNode.setProperty(JCR_DATA, value.getInputStream());
+            storedSize = chunkSize;
+        } else {
+            // size not known in advance, store the data and rename
+            // the node once the size is known
+            rangeNode = res.addNode(prefix + "streamed",
+                SlingPostConstants.NT_SLING_CHUNK_NODETYPE);
+            storedSize = rangeNode.setProperty(JCR_DATA, value.getInputStream()).getLength();
+            final String path = res.getPath() + '/' + prefix
+                + String.valueOf(chunkOffset + storedSize - 1);
+            res.getSession().move(rangeNode.getPath(), path);
+            rangeNode = res.getNode(Text.getName(path));
+        }
+        changes.add(Modification.onCreated(rangeNode.getPath()));
+        changes.add(Modification.onModified(rangeNode.getProperty(JCR_DATA).getPath()));
+        changes.add(Modification.onModified(rangeNode.setProperty(
+            SlingPostConstants.NT_SLING_CHUNK_OFFSET, chunkOffset).getPath()));
+        return storedSize;
+    }
 
-            inpStrmSet.add(lastChunkStream);
-            mergeStrm = new SequenceInputStream(
-                Collections.enumeration(inpStrmSet));
-            IOUtils.copyLarge(mergeStrm, out);
-        } catch (IOException e) {
-            throw new PersistenceException("excepiton occured", e);
+    /**
+     * Replace the binary of the resource node with the merged chunks and
+     * remove the chunks.
+     *
+     * @param res The resource node
+     * @param lastChunkStream The content of the last chunk if it has not
+     *            been stored as a chunk node, <code>null</code> otherwise.
+     */
+    private void completeChunkUpload(final Node res, final InputStream lastChunkStream,
+            final List<Modification> changes) throws RepositoryException {
+        final InputStream mergeStrm = mergeChunks(res, lastChunkStream);
+        try {
+            // the stream is consumed before setProperty returns, so the
+            // chunks can be removed afterwards
+            changes.add(Modification.onModified(res.setProperty(
+                JCR_DATA, mergeStrm).getPath()));
         } finally {
-            IOUtils.closeQuietly(out);
             IOUtils.closeQuietly(mergeStrm);
+        }
+        NodeIterator nodeItr = res.getNodes(SlingPostConstants.CHUNK_NODE_NAME
+            + "*");
+        while (nodeItr.hasNext()) {
+            Node nodeRange = nodeItr.nextNode();
+            changes.add(Modification.onDeleted(nodeRange.getPath()));
+            nodeRange.remove();
+        }
+        if (res.hasProperty(SlingPostConstants.NT_SLING_FILE_LENGTH)) {
+            javax.jcr.Property expLenProp = res.getProperty(SlingPostConstants.NT_SLING_FILE_LENGTH);
+            changes.add(Modification.onDeleted(expLenProp.getPath()));
+            expLenProp.remove();
+        }
+        if (res.hasProperty(SlingPostConstants.NT_SLING_CHUNKS_LENGTH)) {
+            javax.jcr.Property currLenProp = res.getProperty(SlingPostConstants.NT_SLING_CHUNKS_LENGTH);
+            changes.add(Modification.onDeleted(currLenProp.getPath()));
+            currLenProp.remove();
+        }
+        res.removeMixin(SlingPostConstants.NT_SLING_CHUNK_MIXIN);
+    }
 
+    /**
+     * Return a stream reading all stored chunks in order followed by the
+     * optional last chunk's stream. The chunks are read directly from the
+     * repository without creating a temporary copy.
+     */
+    InputStream mergeChunks(final Node parentNode,
+            final InputStream lastChunkStream) throws RepositoryException {
+        String startPattern = SlingPostConstants.CHUNK_NODE_NAME + "_"
+            + "0_*";
+        NodeIterator nodeItr = parentNode.getNodes(startPattern);
+        final List<InputStream> inpStrmList = new ArrayList<InputStream>();
+        while (nodeItr.hasNext()) {
+            if (nodeItr.getSize() > 1) {
+                throw new RepositoryException(
+                    "more than one node found for pattern: " + startPattern);
+            }
+            Node rangeNode = nodeItr.nextNode();
+
+            inpStrmList.add(rangeNode.getProperty(
+                javax.jcr.Property.JCR_DATA).getBinary().getStream());
+            log.debug("added chunk {} to merge stream", rangeNode.getName());
+            String[] indexBounds = rangeNode.getName().substring(
+                (SlingPostConstants.CHUNK_NODE_NAME + "_").length()).split(
+                "_");
+            startPattern = SlingPostConstants.CHUNK_NODE_NAME + "_"
+                + String.valueOf(Long.valueOf(indexBounds[1]) + 1) + "_*";
+            nodeItr = parentNode.getNodes(startPattern);
         }
-        return file;
+
+        if (lastChunkStream != null) {
+            inpStrmList.add(lastChunkStream);
+        }
+        return new SequenceInputStream(Collections.enumeration(inpStrmList));
     }
 
     /**
@@ -518,8 +535,10 @@ public class SlingFileUploadHandler {
             throws RepositoryException, PersistenceException {
         for (final RequestParameter value : prop.getValues()) {
 
-            // ignore if a plain form field or empty
-            if (value.isFormField() || value.getSize() <= 0) {
+            // ignore if a plain form field or empty, the size of a
+            // streamed file is not known in advance (negative) unless
+            // it is empty
+            if (value.isFormField() || value.getSize() == 0) {
                 continue;
             }
 
@@ -527,6 +546,10 @@ public class SlingFileUploadHandler {
             String name = prop.getName();
             if (name.equals("*")) {
                 name = value.getFileName();
+                // no file selected
+                if (name == null || name.length() == 0) {
+                    continue;
+                }
                 // strip of possible path (some browsers include the entire path)
                 name = name.substring(name.lastIndexOf('/') + 1);
                 name = name.substring(name.lastIndexOf('\\') + 1);
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.servlets.post.impl.helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.request.RequestParameter;
+import org.apache.sling.api.request.RequestParameterMap;
+import org.apache.sling.api.wrappers.SlingHttpServletRequestWrapper;
+
+/**
+ * The <code>StreamedFormRequest</code> presents the form fields read from
+ * a request in streaming upload mode as request parameters. As the body of
+ * such a request is not parsed by the engine, the wrapped request only
+ * provides the parameters of the query string. The form fields are added
+ * to these parameters.
+ */
+public class StreamedFormRequest extends SlingHttpServletRequestWrapper {
+
+    private final FormParameterMap parameters;
+
+    public StreamedFormRequest(final SlingHttpServletRequest request,
+            final Map<String, List<RequestParameter>> fields) {
+        super(request);
+        this.parameters = new FormParameterMap(request.getRequestParameterMap(), fields);
+    }
+
+    @Override
+    public String getParameter(final String name) {
+        final RequestParameter param = this.parameters.getValue(name);
+        return (param != null) ? param.getString() : null;
+    }
+
+    @Override
+    public String[] getParameterValues(final String name) {
+        final RequestParameter[] params = this.parameters.getValues(name);
+        if (params == null) {
+            return null;
+        }
+        final String[] values = new String[params.length];
+        for (int i = 0; i < params.length; i++) {
+            values[i] = params[i].getString();
+        }
+        return values;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(this.parameters.keySet());
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        final Map<String, String[]> result = new LinkedHashMap<String, String[]>();
+        for (final String name : this.parameters.keySet()) {
+            result.put(name, this.getParameterValues(name));
+        }
+        return result;
+    }
+
+    @Override
+    public RequestParameter getRequestParameter(final String name) {
+        return this.parameters.getValue(name);
+    }
+
+    @Override
+    public RequestParameter[] getRequestParameters(final String name) {
+        return this.parameters.getValues(name);
+    }
+
+    @Override
+    public RequestParameterMap getRequestParameterMap() {
+        return this.parameters;
+    }
+
+    @Override
+    public List<RequestParameter> getRequestParameterList() {
+        final List<RequestParameter> result = new ArrayList<RequestParameter>();
+        for (final RequestParameter[] params : this.parameters.values()) {
+            Collections.addAll(result, params);
+        }
+        return result;
+    }
+
+    /**
+     * The query parameters followed by the form fields.
+     */
+    private static final class FormParameterMap
+        extends LinkedHashMap<String, RequestParameter[]>
+        implements RequestParameterMap {
+
+        private static final long serialVersionUID = 1L;
+
+        FormParameterMap(final RequestParameterMap query, final Map<String, List<RequestParameter>> fields) {
+            if (query != null) {
+                this.putAll(query);
+            }
+            for (final Map.Entry<String, List<RequestParameter>> entry : fields.entrySet()) {
+                final List<RequestParameter> values = new ArrayList<RequestParameter>();
+                final RequestParameter[] existing = this.get(entry.getKey());
+                if (existing != null) {
+                    Collections.addAll(values, existing);
+                }
+                values.addAll(entry.getValue());
+                this.put(entry.getKey(), values.toArray(new RequestParameter[values.size()]));
+            }
+        }
+
+        public RequestParameter getValue(final String name) {
+            final RequestParameter[] values = this.get(name);
+            return (values != null && values.length > 0) ? values[0] : null;
+        }
+
+        public RequestParameter[] getValues(final String name) {
+            return this.get(name);
+        }
+    }
+}
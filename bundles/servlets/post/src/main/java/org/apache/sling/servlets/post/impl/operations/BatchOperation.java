@@ -0,0 +1,400 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.post.impl.operations;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.RepositoryException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.request.RequestParameter;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.wrappers.SlingHttpServletRequestWrapper;
+import org.apache.sling.commons.json.JSONArray;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.commons.json.JSONParser;
+import org.apache.sling.servlets.post.AbstractPostOperation;
+import org.apache.sling.servlets.post.AbstractPostResponse;
+import org.apache.sling.servlets.post.JSONResponse;
+import org.apache.sling.servlets.post.Modification;
+import org.apache.sling.servlets.post.PostOperation;
+import org.apache.sling.servlets.post.PostResponse;
+import org.apache.sling.servlets.post.SlingPostConstants;
+import org.apache.sling.servlets.post.SlingPostProcessor;
+import org.apache.sling.servlets.post.VersioningConfiguration;
+import org.apache.sling.servlets.post.impl.helper.BatchEntryRequest;
+
+/**
+ * The <code>BatchOperation</code> class implements the
+ * {@link org.apache.sling.servlets.post.SlingPostConstants#OPERATION_BATCH}
+ * operation for the Sling default POST servlet.
+ * <p>
+ * The entries of the batch are read one at a time from the JSON list and
+ * are applied by the registered post operations in a single session. The
+ * operations do not save the changes themselves, instead the changes are
+ * committed after every <i>commit size</i> operations and at the end of the
+ * batch. Versionable nodes are checked in once all changes are committed.
+ * <p>
+ * Post processors are invoked for the changes of each entry before these
+ * are committed. The changes of the entries are not kept: if the response
+ * is a {@link JSONResponse}, the number of applied entries is reported in
+ * the <code>entries</code> property and a compact result of each entry,
+ * consisting of its path, status code and status message, in the
+ * <code>operations</code> property of the response. Only the result of a
+ * failed entry includes its changes and error.
+ */
+public class BatchOperation extends AbstractPostOperation {
+
+    /** Default number of operations per commit. */
+    public static final int DEFAULT_COMMIT_SIZE = 1000;
+
+    private static final String PROP_OPERATIONS = "operations";
+
+    private static final String PROP_ENTRIES = "entries";
+
+    private static final String ENTRY_PATH = "path";
+
+    private static final String ENTRY_PARAMS = "params";
+
+    /** The registered operations, guarded by the map itself. */
+    private final Map<String, PostOperation> postOperations;
+
+    /** The operation used if an entry does not name an operation. */
+    private final PostOperation defaultOperation;
+
+    private volatile int commitSize = DEFAULT_COMMIT_SIZE;
+
+    public BatchOperation(final Map<String, PostOperation> postOperations,
+            final PostOperation defaultOperation) {
+        this.postOperations = postOperations;
+        this.defaultOperation = defaultOperation;
+    }
+
+    public void setCommitSize(final int commitSize) {
+        this.commitSize = commitSize;
+    }
+
+    /**
+     * The processors are invoked for each entry by {@link #doRun}
+     * instead of once for the batch.
+     */
+    @Override
+    public void run(final SlingHttpServletRequest request,
+            final PostResponse response,
+            final SlingPostProcessor[] processors) {
+        super.run(new BatchRequest(request, processors), response, null);
+    }
+
+    @Override
+    protected void doRun(final SlingHttpServletRequest request,
+            final PostResponse response, final List<Modification> changes)
+            throws RepositoryException {
+        final ResourceResolver resolver = request.getResourceResolver();
+        final String basePath = response.getPath();
+        final int commitSize = getCommitSize(request);
+        final SlingPostProcessor[] processors = (request instanceof BatchRequest)
+                ? ((BatchRequest) request).processors : null;
+
+        // the entries do not check in nodes as the changes are not yet saved
+        final VersioningConfiguration versioning = getVersioningConfiguration(request);
+        final VersioningConfiguration entryVersioning = versioning.clone();
+        entryVersioning.setAutoCheckin(false);
+
+        // compact results of the entries, only reported in a JSON response
+        final JSONArray results = (response instanceof JSONResponse) ? new JSONArray() : null;
+        int index = 0;
+        Reader reader = null;
+        try {
+            reader = getContentReader(request);
+            if (reader == null) {
+                response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED,
+                    "Missing content for batch: send the JSON list as the request body or in the "
+                        + SlingPostConstants.RP_CONTENT + " parameter");
+                return;
+            }
+            final JSONParser parser = new JSONParser(reader);
+            if (parser.next() != JSONParser.Event.START_ARRAY) {
+                response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED,
+                    "Batch content must be a JSON array");
+                return;
+            }
+
+            int uncommitted = 0;
+            while (parser.next() != JSONParser.Event.END_ARRAY) {
+                final Object value = parser.readValue();
+                if (!(value instanceof JSONObject)) {
+                    throw new JSONException("Batch entry " + index + " is not a JSON object");
+                }
+                final JSONObject entry = (JSONObject) value;
+                final String path = getEntryPath(basePath, entry);
+                final BatchEntryRequest entryRequest = new BatchEntryRequest(request, path,
+                    entry.optJSONObject(ENTRY_PARAMS), entryVersioning);
+                final EntryResponse entryResponse = new EntryResponse(changes, versioning);
+                final PostOperation operation = this.getOperation(entryRequest);
+                if (operation == null) {
+                    entryResponse.setPath(path);
+                    entryResponse.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                        "Invalid operation specified for batch entry");
+                } else {
+                    operation.run(entryRequest, entryResponse, processors);
+                }
+
+                if (!entryResponse.isSuccessful()) {
+                    if (results != null) {
+                        results.put(entryResponse.toJSON());
+                    }
+                    throw new RepositoryException("Batch entry " + index + " for " + path
+                        + " failed: " + entryResponse.getStatusMessage(), entryResponse.getError());
+                }
+                if (results != null) {
+                    results.put(entryResponse.toResultJSON());
+                }
+                index++;
+                uncommitted++;
+                if (commitSize > 0 && uncommitted >= commitSize) {
+                    if (resolver.hasChanges()) {
+                        resolver.commit();
+                    }
+                    uncommitted = 0;
+                }
+            }
+        } catch (final JSONException je) {
+            throw new RepositoryException("Invalid batch content: " + je.getMessage(), je);
+        } catch (final IOException ioe) {
+            throw new RepositoryException("Cannot read batch content", ioe);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final IOException ignore) {
+                    // ignore
+                }
+            }
+            if (results != null) {
+                ((JSONResponse) response).setProperty(PROP_ENTRIES, index);
+                ((JSONResponse) response).setProperty(PROP_OPERATIONS, results);
+            }
+        }
+    }
+
+    private int getCommitSize(final SlingHttpServletRequest request) {
+        final String value = request.getParameter(SlingPostConstants.RP_BATCH_COMMIT_SIZE);
+        if (value != null && value.length() > 0) {
+            try {
+                return Integer.parseInt(value);
+            } catch (final NumberFormatException nfe) {
+                log.debug("Ignoring invalid commit size {}", value);
+            }
+        }
+        return this.commitSize;
+    }
+
+    private Reader getContentReader(final SlingHttpServletRequest request) throws IOException {
+        final RequestParameter content = request.getRequestParameter(SlingPostConstants.RP_CONTENT);
+        if (content != null) {
+            return new StringReader(content.getString());
+        }
+        try {
+            return request.getReader();
+        } catch (final IllegalStateException ise) {
+            // the body has already been read as form parameters
+            return null;
+        }
+    }
+
+    private String getEntryPath(final String basePath, final JSONObject entry) throws JSONException {
+        final String path = entry.optString(ENTRY_PATH, null);
+        if (path == null || path.length() == 0) {
+            return basePath;
+        }
+        final String result = ResourceUtil.normalize(resolvePath(basePath, path));
+        if (result == null) {
+            throw new JSONException("Invalid batch entry path " + path);
+        }
+        return result;
+    }
+
+    private PostOperation getOperation(final SlingHttpServletRequest entryRequest) {
+        final String name = entryRequest.getParameter(SlingPostConstants.RP_OPERATION);
+        if (name == null || name.length() == 0) {
+            return this.defaultOperation;
+        }
+        final PostOperation operation;
+        synchronized (this.postOperations) {
+            operation = this.postOperations.get(name);
+        }
+        // batches can't be nested
+        return (operation instanceof BatchOperation) ? null : operation;
+    }
+
+    /**
+     * The request of the batch providing the post processors for the entries.
+     */
+    private static final class BatchRequest extends SlingHttpServletRequestWrapper {
+
+        final SlingPostProcessor[] processors;
+
+        BatchRequest(final SlingHttpServletRequest request, final SlingPostProcessor[] processors) {
+            super(request);
+            this.processors = processors;
+        }
+    }
+
+    /**
+     * The response of a single batch entry. The changes of the entry
+     * needed to check in nodes are recorded for the complete batch.
+     */
+    private static final class EntryResponse extends AbstractPostResponse {
+
+        private final List<Modification> changes;
+
+        private final VersioningConfiguration versioning;
+
+        private final JSONArray entryChanges = new JSONArray();
+
+        EntryResponse(final List<Modification> changes, final VersioningConfiguration versioning) {
+            this.changes = changes;
+            this.versioning = versioning;
+        }
+
+        /**
+         * Only the changes needed to check in nodes at the end of
+         * the batch are recorded for the batch.
+         */
+        public void onChange(final String type, final String... arguments) {
+            final Modification modification = toModification(type, arguments);
+            if (modification != null && isCheckinChange(modification)) {
+                this.changes.add(modification);
+            }
+            final JSONObject change = new JSONObject();
+            try {
+                change.put("type", type);
+                for (final String argument : arguments) {
+                    change.accumulate("argument", argument);
+                }
+            } catch (final JSONException je) {
+                // not expected for string values
+            }
+            this.entryChanges.put(change);
+        }
+
+        private boolean isCheckinChange(final Modification modification) {
+            switch (modification.getType()) {
+                case CREATE:
+                    return this.versioning.isCheckinOnNewVersionableNode();
+                case CHECKOUT:
+                case CHECKIN:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private static Modification toModification(final String type, final String... arguments) {
+            if (arguments.length == 0) {
+                return null;
+            }
+            final String source = arguments[0];
+            final String destination = (arguments.length > 1) ? arguments[1] : null;
+            if ("modified".equals(type)) {
+                return Modification.onModified(source);
+            } else if ("created".equals(type)) {
+                return Modification.onCreated(source);
+            } else if ("deleted".equals(type)) {
+                return Modification.onDeleted(source);
+            } else if ("moved".equals(type)) {
+                return Modification.onMoved(source, destination);
+            } else if ("copied".equals(type)) {
+                return Modification.onCopied(source, destination);
+            } else if ("ordered".equals(type)) {
+                return Modification.onOrder(source, destination);
+            } else if ("checkout".equals(type)) {
+                return Modification.onCheckout(source);
+            } else if ("checkin".equals(type)) {
+                return Modification.onCheckin(source);
+            }
+            return null;
+        }
+
+        /**
+         * The compact result of the entry: its path, status code and
+         * status message. Like a sent response, an entry without an
+         * explicit status reports <i>201 Created</i> or <i>200 OK</i>.
+         */
+        JSONObject toResultJSON() {
+            final JSONObject result = new JSONObject();
+            try {
+                result.put(PN_PATH, this.getPath());
+                if (this.getProperty(PN_STATUS_CODE) == null && this.getError() == null) {
+                    if (this.isCreateRequest()) {
+                        result.put(PN_STATUS_CODE, HttpServletResponse.SC_CREATED);
+                        result.put(PN_STATUS_MESSAGE, "Created");
+                    } else {
+                        result.put(PN_STATUS_CODE, HttpServletResponse.SC_OK);
+                        result.put(PN_STATUS_MESSAGE, "OK");
+                    }
+                } else {
+                    result.put(PN_STATUS_CODE, this.getStatusCode());
+                    result.put(PN_STATUS_MESSAGE, this.getStatusMessage());
+                }
+            } catch (final JSONException je) {
+                // not expected for these values
+            }
+            return result;
+        }
+
+        /**
+         * The complete result of the entry including its changes.
+         */
+        JSONObject toJSON() {
+            final JSONObject result = this.toResultJSON();
+            try {
+                result.put(PN_IS_CREATED, this.isCreateRequest());
+                result.put("changes", this.entryChanges);
+                if (this.getError() != null) {
+                    final JSONObject error = new JSONObject();
+                    error.put("class", this.getError().getClass().getName());
+                    error.put("message", this.getError().getMessage());
+                    result.put(PN_ERROR, error);
+                }
+            } catch (final JSONException je) {
+                // not expected for these values
+            }
+            return result;
+        }
+
+        @Override
+        protected void doSend(final HttpServletResponse response) throws IOException {
+            response.setContentType(JSONResponse.RESPONSE_CONTENT_TYPE);
+            try {
+                this.toJSON().write(response.getWriter());
+            } catch (final JSONException je) {
+                throw (IOException) new IOException("Error creating JSON response").initCause(je);
+            }
+        }
+    }
+}
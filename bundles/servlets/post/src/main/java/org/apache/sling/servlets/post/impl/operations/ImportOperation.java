@@ -63,6 +63,30 @@ public class ImportOperation extends AbstractCreateOperation {
     	return requestParameter.getString();
     }
 
+    private long getRequestParamAsLong(SlingHttpServletRequest request, String key) {
+        final String value = getRequestParamAsString(request, key);
+        if (value == null || value.length() == 0) {
+            return 0;
+        }
+        return Long.parseLong(value);
+    }
+
+    /**
+     * Remove the partially imported node after a failed import with
+     * auto save as the saved batches are not reverted by the post servlet.
+     */
+    private void removeImportedNode(final Session session, final Node parent, final String name) {
+        try {
+            session.refresh(false);
+            if (parent.hasNode(name)) {
+                parent.getNode(name).remove();
+                session.save();
+            }
+        } catch (final RepositoryException re) {
+            log.warn("Unable to remove partially imported node " + name, re);
+        }
+    }
+
     @Override
     protected void doRun(SlingHttpServletRequest request, PostResponse response, final List<Modification> changes)
             throws RepositoryException {
@@ -118,6 +142,18 @@ public class ImportOperation extends AbstractCreateOperation {
         final boolean replaceProperties = "true".equalsIgnoreCase(getRequestParamAsString(request, SlingPostConstants.RP_REPLACE_PROPERTIES));
         final boolean checkin = "true".equalsIgnoreCase(getRequestParamAsString(request, SlingPostConstants.RP_CHECKIN));
         final boolean autoCheckout = "true".equalsIgnoreCase(getRequestParamAsString(request, SlingPostConstants.RP_AUTO_CHECKOUT));
+        final long autoSaveThreshold;
+        final long autoSaveBytesThreshold;
+        try {
+            autoSaveThreshold = getRequestParamAsLong(request, SlingPostConstants.RP_AUTO_SAVE_THRESHOLD);
+            autoSaveBytesThreshold = getRequestParamAsLong(request, SlingPostConstants.RP_AUTO_SAVE_BYTES_THRESHOLD);
+        } catch (NumberFormatException nfe) {
+            response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED,
+                "Invalid auto save threshold: " + nfe.getMessage());
+            return;
+        }
+        // when saving in batches do not record a modification for each imported item
+        final boolean autoSave = autoSaveThreshold > 0 || autoSaveBytesThreshold > 0;
 
         String basePath = getItemPath(request);
         basePath = removeAndValidateWorkspace(basePath, request.getResourceResolver().adaptTo(Session.class));
@@ -156,6 +192,16 @@ public class ImportOperation extends AbstractCreateOperation {
         }
         final String contentRootName = targetName + "." + contentType;
 
+        // batches saved during the import cannot be reverted by the post servlet,
+        // so auto save is only supported for a new root node which is removed
+        // again if the import fails
+        if (autoSave && (targetName.length() == 0 || node.hasNode(targetName))) {
+            response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED,
+                "Auto save requires the import of a new node using "
+                    + SlingPostConstants.RP_NODE_NAME + " or " + SlingPostConstants.RP_NODE_NAME_HINT);
+            return;
+        }
+
         try {
             InputStream contentStream = null;
         	RequestParameter contentParameter = request.getRequestParameter(SlingPostConstants.RP_CONTENT);
@@ -172,7 +218,9 @@ public class ImportOperation extends AbstractCreateOperation {
                 response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED,
                         "Missing content for import");
                 return;
-            } else {
+            }
+            boolean imported = false;
+            try {
                 importer.importContent(node, contentRootName, contentStream,
                         new ImportOptions() {
 
@@ -205,6 +253,16 @@ public class ImportOperation extends AbstractCreateOperation {
                             public boolean isPropertyOverwrite() {
                                 return replaceProperties;
                             }
+
+                            @Override
+                            public long getAutoSaveThreshold() {
+                                return autoSaveThreshold;
+                            }
+
+                            @Override
+                            public long getAutoSaveBytesThreshold() {
+                                return autoSaveBytesThreshold;
+                            }
                         },
                         new ContentImportListener() {
 
@@ -217,7 +275,9 @@ public class ImportOperation extends AbstractCreateOperation {
                             }
 
                             public void onModify(String srcPath) {
-                                changes.add(Modification.onModified(srcPath));
+                                if (!autoSave) {
+                                    changes.add(Modification.onModified(srcPath));
+                                }
                             }
 
                             public void onDelete(String srcPath) {
@@ -225,7 +285,9 @@ public class ImportOperation extends AbstractCreateOperation {
                             }
 
                             public void onCreate(String srcPath) {
-                                changes.add(Modification.onCreated(srcPath));
+                                if (!autoSave || changes.isEmpty()) {
+                                    changes.add(Modification.onCreated(srcPath));
+                                }
                             }
 
                             public void onCopy(String srcPath, String destPath) {
@@ -239,6 +301,11 @@ public class ImportOperation extends AbstractCreateOperation {
                                 changes.add(Modification.onCheckout(srcPath));
                             }
                         });
+                imported = true;
+            } finally {
+                if (autoSave && !imported) {
+                    removeImportedNode(session, node, targetName);
+                }
             }
 
             if (!changes.isEmpty()) {
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.post.impl.operations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.RepositoryException;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingIOException;
+import org.apache.sling.api.request.RequestParameter;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.servlets.post.AbstractPostOperation;
+import org.apache.sling.servlets.post.Modification;
+import org.apache.sling.servlets.post.PostResponse;
+import org.apache.sling.servlets.post.SlingPostConstants;
+import org.apache.sling.servlets.post.impl.helper.Chunk;
+import org.apache.sling.servlets.post.impl.helper.RequestProperty;
+import org.apache.sling.servlets.post.impl.helper.SlingFileUploadHandler;
+import org.apache.sling.servlets.post.impl.helper.StreamedFormRequest;
+
+/**
+ * The <code>StreamedUploadOperation</code> class stores the files of a
+ * multipart/form-data POST request sent in streaming upload mode
+ * (<code>Sling-UploadMode: stream</code> request header or
+ * <code>uploadmode=stream</code> query parameter).
+ * <p>
+ * In this mode the request body is not parsed into request parameters.
+ * Instead the parts are read in the order in which they are sent and the
+ * content of each file is passed directly to the repository, without
+ * being buffered in memory or in a temporary file.
+ * <p>
+ * As the parts are processed in order, the <code>@TypeHint</code>,
+ * <code>@Offset</code>, <code>@Length</code> and <code>@Completed</code>
+ * form fields for a file have to be sent before the file itself. All other
+ * form fields are collected and applied by the modify operation once all
+ * files are stored. The parameters evaluated by the servlet before the
+ * operation runs, like <code>:operation</code> or <code>:redirect</code>,
+ * have to be sent in the query string.
+ */
+public class StreamedUploadOperation extends AbstractPostOperation {
+
+    /**
+     * Parameters which are evaluated by the servlet and which therefore
+     * can't be sent in the body of a streamed request.
+     */
+    private static final String[] QUERY_ONLY_PARAMETERS = {
+        SlingPostConstants.RP_OPERATION,
+        SlingPostConstants.RP_REDIRECT_TO,
+        SlingPostConstants.RP_STATUS,
+        SlingPostConstants.RP_SEND_ERROR
+    };
+
+    private final ModifyOperation modifyOperation;
+
+    private final SlingFileUploadHandler uploadHandler;
+
+    public StreamedUploadOperation(final ModifyOperation modifyOperation) {
+        this(modifyOperation, new SlingFileUploadHandler());
+    }
+
+    StreamedUploadOperation(final ModifyOperation modifyOperation,
+            final SlingFileUploadHandler uploadHandler) {
+        this.modifyOperation = modifyOperation;
+        this.uploadHandler = uploadHandler;
+    }
+
+    public void setServletContext(final ServletContext servletContext) {
+        this.uploadHandler.setServletContext(servletContext);
+    }
+
+    /**
+     * Returns <code>true</code> if the request has been sent in streaming
+     * upload mode.
+     */
+    public static boolean isStreamedRequest(final SlingHttpServletRequest request) {
+        return request.getAttribute(SlingConstants.ATTR_REQUEST_PARTS_ITERATOR) instanceof Iterator<?>;
+    }
+
+    @Override
+    protected void doRun(final SlingHttpServletRequest request,
+            final PostResponse response, final List<Modification> changes)
+            throws RepositoryException {
+        @SuppressWarnings("unchecked")
+        final Iterator<RequestParameter> parts = (Iterator<RequestParameter>) request.getAttribute(SlingConstants.ATTR_REQUEST_PARTS_ITERATOR);
+        final String basePath = response.getPath();
+        final Map<String, RequestProperty> properties = new HashMap<String, RequestProperty>();
+        final Map<String, List<RequestParameter>> fields = new LinkedHashMap<String, List<RequestParameter>>();
+
+        if (ResourceUtil.isNonExistingResource(request.getResource())) {
+            response.setCreateRequest(true);
+        }
+
+        try {
+            while (parts.hasNext()) {
+                final RequestParameter part = parts.next();
+                final String name = part.getName();
+                if (part.isFormField()) {
+                    if (isQueryOnlyParameter(name)) {
+                        response.setStatus(HttpServletResponse.SC_BAD_REQUEST,
+                            "Parameter " + name + " must be sent in the query string in streaming upload mode");
+                        return;
+                    }
+                    if (!processChunkField(properties, basePath, name, part)) {
+                        processField(properties, fields, basePath, name, part);
+                    }
+                } else if (!name.startsWith(SlingPostConstants.RP_PREFIX)) {
+                    // store the file before reading the next part as its
+                    // stream is only valid until then
+                    final RequestProperty prop = getOrCreateRequestProperty(properties, basePath, name);
+                    prop.setValues(new RequestParameter[] { part });
+                    final Resource parent = ResourceUtil.getOrCreateResource(request.getResourceResolver(),
+                        prop.getParentPath(), (String) null, (String) null, false);
+                    this.uploadHandler.setFile(parent, prop, changes);
+                }
+            }
+            // apply the other form fields like a regular post
+            if (!fields.isEmpty()) {
+                this.modifyOperation.doRun(new StreamedFormRequest(request, fields), response, changes);
+            }
+        } catch (final IllegalArgumentException iae) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST, iae.getMessage());
+        } catch (final SlingIOException sioe) {
+            throw new RepositoryException("Error reading request: " + sioe.getMessage(), sioe.getCause());
+        } catch (final PersistenceException pe) {
+            if ( pe.getCause() instanceof RepositoryException ) {
+                throw (RepositoryException)pe.getCause();
+            }
+            throw new RepositoryException(pe);
+        }
+    }
+
+    private boolean isQueryOnlyParameter(final String name) {
+        for (final String queryOnly : QUERY_ONLY_PARAMETERS) {
+            if (queryOnly.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Record the chunk information for a following file part.
+     * @return <code>true</code> if the field is a chunk field
+     * @throws IllegalArgumentException if the value of the field is invalid
+     */
+    private boolean processChunkField(final Map<String, RequestProperty> properties,
+            final String basePath, final String name, final RequestParameter part) {
+        if (name.endsWith(SlingPostConstants.SUFFIX_OFFSET)) {
+            getChunk(getOrCreateRequestProperty(properties, basePath,
+                name.substring(0, name.length() - SlingPostConstants.SUFFIX_OFFSET.length())))
+                .setOffsetValue(parseLong(name, part));
+        } else if (name.endsWith(SlingPostConstants.SUFFIX_LENGTH)) {
+            getChunk(getOrCreateRequestProperty(properties, basePath,
+                name.substring(0, name.length() - SlingPostConstants.SUFFIX_LENGTH.length())))
+                .setLength(parseLong(name, part));
+        } else if (name.endsWith(SlingPostConstants.SUFFIX_COMPLETED)) {
+            getChunk(getOrCreateRequestProperty(properties, basePath,
+                name.substring(0, name.length() - SlingPostConstants.SUFFIX_COMPLETED.length())))
+                .setCompleted(Boolean.parseBoolean(part.getString()));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Record the type hint for a following file part and collect the
+     * field for the modify operation.
+     */
+    private void processField(final Map<String, RequestProperty> properties,
+            final Map<String, List<RequestParameter>> fields,
+            final String basePath, final String name, final RequestParameter part) {
+        if (name.endsWith(SlingPostConstants.TYPE_HINT_SUFFIX)) {
+            getOrCreateRequestProperty(properties, basePath,
+                name.substring(0, name.length() - SlingPostConstants.TYPE_HINT_SUFFIX.length()))
+                .setTypeHintValue(part.getString());
+        }
+        List<RequestParameter> values = fields.get(name);
+        if (values == null) {
+            values = new ArrayList<RequestParameter>();
+            fields.put(name, values);
+        }
+        values.add(part);
+    }
+
+    private long parseLong(final String name, final RequestParameter part) {
+        try {
+            return Long.parseLong(part.getString().trim());
+        } catch (final NumberFormatException nfe) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + part.getString());
+        }
+    }
+
+    private Chunk getChunk(final RequestProperty prop) {
+        Chunk chunk = prop.getChunk();
+        if (chunk == null) {
+            chunk = new Chunk();
+            prop.setChunk(chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the name addresses a path
+     *             outside of the repository
+     */
+    private RequestProperty getOrCreateRequestProperty(final Map<String, RequestProperty> properties,
+            final String basePath, String name) {
+        if (name.startsWith(SlingPostConstants.ITEM_PREFIX_RELATIVE_CURRENT)) {
+            name = name.substring(SlingPostConstants.ITEM_PREFIX_RELATIVE_CURRENT.length());
+        }
+        final String path = ResourceUtil.normalize(resolvePath(basePath, name));
+        if (path == null) {
+            throw new IllegalArgumentException("Invalid path for " + name);
+        }
+        RequestProperty prop = properties.get(path);
+        if (prop == null) {
+            prop = new RequestProperty(path);
+            properties.put(path, prop);
+        }
+        return prop;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.post.impl.helper;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import javax.jcr.Binary;
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.commons.testing.jcr.MockNodeIterator;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JMock.class)
+public class SlingFileUploadHandlerTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    private Node chunk(final String name, final String content) throws RepositoryException {
+        final Node node = context.mock(Node.class, name);
+        final Property property = context.mock(Property.class, name + "/jcr:data");
+        final Binary binary = context.mock(Binary.class, name + "/binary");
+        context.checking(new Expectations() {{
+            allowing(node).getName(); will(returnValue(name));
+            allowing(node).getProperty(Property.JCR_DATA); will(returnValue(property));
+            allowing(property).getBinary(); will(returnValue(binary));
+            allowing(binary).getStream(); will(returnValue(new ByteArrayInputStream(content.getBytes())));
+        }});
+        return node;
+    }
+
+    private void children(final Node parent, final String pattern, final Node... nodes) throws RepositoryException {
+        context.checking(new Expectations() {{
+            allowing(parent).getNodes(pattern); will(returnValue(new MockNodeIterator(nodes)));
+        }});
+    }
+
+    @Test
+    public void testMergeChunksInOffsetOrder() throws Exception {
+        final Node parent = context.mock(Node.class, "parent");
+        children(parent, "chunk_0_*", chunk("chunk_0_4", "Hello"));
+        children(parent, "chunk_5_*", chunk("chunk_5_5", " "));
+        children(parent, "chunk_6_*");
+
+        final InputStream merged = new SlingFileUploadHandler().mergeChunks(parent,
+            new ByteArrayInputStream("World".getBytes()));
+        assertEquals("Hello World", IOUtils.toString(merged));
+    }
+
+    @Test
+    public void testMergeStoredChunksOnly() throws Exception {
+        final Node parent = context.mock(Node.class, "parent");
+        children(parent, "chunk_0_*", chunk("chunk_0_1", "ab"));
+        children(parent, "chunk_2_*", chunk("chunk_2_3", "cd"));
+        children(parent, "chunk_4_*");
+
+        assertEquals("abcd", IOUtils.toString(new SlingFileUploadHandler().mergeChunks(parent, null)));
+    }
+
+    @Test(expected = RepositoryException.class)
+    public void testOverlappingChunks() throws Exception {
+        final Node parent = context.mock(Node.class, "parent");
+        children(parent, "chunk_0_*", chunk("chunk_0_1", "ab"), chunk("chunk_0_3", "abcd"));
+
+        new SlingFileUploadHandler().mergeChunks(parent, null);
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.post.impl.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.request.RequestParameter;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.commons.json.JSONArray;
+import org.apache.sling.commons.testing.sling.MockResource;
+import org.apache.sling.commons.testing.sling.MockSlingHttpServletRequest;
+import org.apache.sling.servlets.post.AbstractPostOperation;
+import org.apache.sling.servlets.post.JSONResponse;
+import org.apache.sling.servlets.post.Modification;
+import org.apache.sling.servlets.post.PostOperation;
+import org.apache.sling.servlets.post.PostResponse;
+import org.apache.sling.servlets.post.SlingPostConstants;
+import org.apache.sling.servlets.post.SlingPostProcessor;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JMock.class)
+public class BatchOperationTest {
+
+    private final Mockery context = new JUnit4Mockery();
+
+    /** The paths passed to the post processors, one list per invocation */
+    private final List<List<String>> processed = new ArrayList<List<String>>();
+
+    private ResourceResolver resolver;
+
+    private BatchOperation operation;
+
+    private JSONResponse response;
+
+    private int commits;
+
+    private boolean pending;
+
+    @Before
+    public void setup() throws Exception {
+        this.resolver = context.mock(ResourceResolver.class);
+        context.checking(new Expectations() {{
+            allowing(resolver).getResource(with(any(String.class))); will(returnValue(null));
+            allowing(resolver).adaptTo(with(Expectations.<Class<Object>>anything())); will(returnValue(null));
+            allowing(resolver).map(with(any(String.class))); will(returnValue("/mapped"));
+            allowing(resolver).hasChanges(); will(new CustomAction("hasChanges") {
+                public Object invoke(final Invocation invocation) {
+                    return pending;
+                }
+            });
+            allowing(resolver).commit(); will(new CustomAction("commit") {
+                public Object invoke(final Invocation invocation) {
+                    commits++;
+                    pending = false;
+                    return null;
+                }
+            });
+            allowing(resolver).revert();
+        }});
+
+        final Map<String, PostOperation> operations = new HashMap<String, PostOperation>();
+        operations.put("fail", new AbstractPostOperation() {
+            @Override
+            protected void doRun(final SlingHttpServletRequest request, final PostResponse response,
+                    final List<Modification> changes) {
+                response.setStatus(HttpServletResponse.SC_CONFLICT, "failed");
+            }
+        });
+        this.operation = new BatchOperation(operations, new AbstractPostOperation() {
+            @Override
+            protected void doRun(final SlingHttpServletRequest request, final PostResponse response,
+                    final List<Modification> changes) {
+                changes.add(Modification.onModified(request.getResource().getPath()));
+                pending = true;
+            }
+        });
+        this.response = new JSONResponse();
+    }
+
+    private void run(final String content, final String commitSize) {
+        final Resource resource = new MockResource(null, "/content", "test");
+        final MockSlingHttpServletRequest request = new MockSlingHttpServletRequest("/content", null, null, null, null) {
+            @Override
+            public ResourceResolver getResourceResolver() {
+                return resolver;
+            }
+
+            @Override
+            public String getParameter(final String name) {
+                if (SlingPostConstants.RP_BATCH_COMMIT_SIZE.equals(name)) {
+                    return commitSize;
+                }
+                return null;
+            }
+
+            @Override
+            public RequestParameter getRequestParameter(final String name) {
+                if (content != null && SlingPostConstants.RP_CONTENT.equals(name)) {
+                    return new Parameter(content);
+                }
+                return null;
+            }
+
+            @Override
+            public BufferedReader getReader() {
+                throw new IllegalStateException("parameters already read");
+            }
+        };
+        request.setResource(resource);
+
+        final SlingPostProcessor processor = new SlingPostProcessor() {
+            public void process(final SlingHttpServletRequest request, final List<Modification> changes) {
+                final List<String> paths = new ArrayList<String>();
+                for (final Modification change : changes) {
+                    paths.add(change.getSource());
+                }
+                processed.add(paths);
+            }
+        };
+        this.operation.run(request, this.response, new SlingPostProcessor[] { processor });
+    }
+
+    @Test
+    public void testProcessorsPerEntry() throws Exception {
+        run("[ { \"path\" : \"a\" }, { \"path\" : \"/b\" }, { } ]", null);
+
+        assertTrue(response.isSuccessful());
+        assertEquals(3, processed.size());
+        assertEquals("/content/a", processed.get(0).get(0));
+        assertEquals("/b", processed.get(1).get(0));
+        assertEquals("/content", processed.get(2).get(0));
+        assertEquals(3, response.getProperty("entries"));
+
+        // the changes of the entries are not reported for the batch
+        assertEquals(0, ((JSONArray) response.getProperty("changes")).length());
+        final JSONArray operations = (JSONArray) response.getProperty("operations");
+        assertEquals(3, operations.length());
+        assertEquals("/content/a", operations.getJSONObject(0).getString("path"));
+        assertEquals("/b", operations.getJSONObject(1).getString("path"));
+        assertEquals("/content", operations.getJSONObject(2).getString("path"));
+        for (int i = 0; i < operations.length(); i++) {
+            assertEquals(HttpServletResponse.SC_OK, operations.getJSONObject(i).getInt("status.code"));
+            assertEquals("OK", operations.getJSONObject(i).getString("status.message"));
+            assertFalse(operations.getJSONObject(i).has("changes"));
+        }
+        assertEquals(1, commits);
+    }
+
+    @Test
+    public void testCommitSize() throws Exception {
+        run("[ { \"path\" : \"a\" }, { \"path\" : \"b\" }, { \"path\" : \"c\" }, "
+            + "{ \"path\" : \"d\" }, { \"path\" : \"e\" } ]", "2");
+
+        assertTrue(response.isSuccessful());
+        // after the second and the fourth entry and at the end
+        assertEquals(3, commits);
+        assertEquals(5, processed.size());
+    }
+
+    @Test
+    public void testFailedEntry() throws Exception {
+        run("[ { \"path\" : \"a\" }, { \"path\" : \"b\", \"params\" : { \":operation\" : \"fail\" } }, "
+            + "{ \"path\" : \"c\" } ]", "1");
+
+        assertFalse(response.isSuccessful());
+        assertEquals(1, response.getProperty("entries"));
+        assertEquals(2, processed.size());
+        // only the first entry is committed
+        assertEquals(1, commits);
+
+        final JSONArray operations = (JSONArray) response.getProperty("operations");
+        assertEquals(2, operations.length());
+        assertEquals("/content/a", operations.getJSONObject(0).getString("path"));
+        assertEquals(HttpServletResponse.SC_OK, operations.getJSONObject(0).getInt("status.code"));
+        assertEquals("/content/b", operations.getJSONObject(1).getString("path"));
+        assertEquals(HttpServletResponse.SC_CONFLICT, operations.getJSONObject(1).getInt("status.code"));
+        assertEquals("failed", operations.getJSONObject(1).getString("status.message"));
+        assertTrue(operations.getJSONObject(1).has("changes"));
+    }
+
+    @Test
+    public void testMissingContent() throws Exception {
+        run(null, null);
+
+        assertEquals(HttpServletResponse.SC_PRECONDITION_FAILED, response.getStatusCode());
+        assertNull(response.getError());
+        assertEquals(0, processed.size());
+        assertEquals(0, commits);
+    }
+
+    private static final class Parameter implements RequestParameter {
+
+        private final String value;
+
+        Parameter(final String value) {
+            this.value = value;
+        }
+
+        public String getName() {
+            return SlingPostConstants.RP_CONTENT;
+        }
+
+        public boolean isFormField() {
+            return true;
+        }
+
+        public String getContentType() {
+            return null;
+        }
+
+        public long getSize() {
+            return this.value.length();
+        }
+
+        public byte[] get() {
+            return this.value.getBytes();
+        }
+
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(this.get());
+        }
+
+        public String getFileName() {
+            return null;
+        }
+
+        public String getString() {
+            return this.value;
+        }
+
+        public String getString(final String encoding) {
+            return this.value;
+        }
+    }
+}
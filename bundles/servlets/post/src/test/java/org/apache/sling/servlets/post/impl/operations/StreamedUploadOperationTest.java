@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.post.impl.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.jcr.RepositoryException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.request.RequestParameter;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.commons.testing.sling.MockResource;
+import org.apache.sling.commons.testing.sling.MockResourceResolver;
+import org.apache.sling.commons.testing.sling.MockSlingHttpServletRequest;
+import org.apache.sling.servlets.post.HtmlResponse;
+import org.apache.sling.servlets.post.Modification;
+import org.apache.sling.servlets.post.PostResponse;
+import org.apache.sling.servlets.post.impl.helper.RequestProperty;
+import org.apache.sling.servlets.post.impl.helper.SlingFileUploadHandler;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamedUploadOperationTest {
+
+    private final List<RequestProperty> files = new ArrayList<RequestProperty>();
+
+    private SlingHttpServletRequest modifyRequest;
+
+    private StreamedUploadOperation operation;
+
+    private HtmlResponse response;
+
+    @Before
+    public void setup() {
+        final SlingFileUploadHandler uploadHandler = new SlingFileUploadHandler() {
+            @Override
+            public void setFile(final Resource parent, final RequestProperty prop, final List<Modification> changes) {
+                files.add(prop);
+            }
+        };
+        final ModifyOperation modifyOperation = new ModifyOperation() {
+            @Override
+            protected void doRun(final SlingHttpServletRequest request, final PostResponse response,
+                    final List<Modification> changes) {
+                modifyRequest = request;
+            }
+        };
+        this.operation = new StreamedUploadOperation(modifyOperation, uploadHandler);
+        this.response = new HtmlResponse();
+        this.response.setPath("/content");
+    }
+
+    private void run(final RequestParameter... parts) throws RepositoryException {
+        final MockResourceResolver resolver = new MockResourceResolver();
+        final Resource resource = new MockResource(resolver, "/content", "test");
+        resolver.addResource(resource);
+        final MockSlingHttpServletRequest request = new MockSlingHttpServletRequest("/content", null, null, null, null) {
+            @Override
+            public Object getAttribute(final String name) {
+                if (SlingConstants.ATTR_REQUEST_PARTS_ITERATOR.equals(name)) {
+                    return Arrays.asList(parts).iterator();
+                }
+                return null;
+            }
+        };
+        request.setResourceResolver(resolver);
+        request.setResource(resource);
+        this.operation.doRun(request, this.response, new ArrayList<Modification>());
+    }
+
+    @Test
+    public void testFilesAndFields() throws Exception {
+        run(new Part("./file@TypeHint", "nt:file"),
+            new Part("./file@Offset", "0"),
+            new Part("./file@Length", " 20 "),
+            new Part("./file", "test.txt", "content"),
+            new Part("./title", "Hello"));
+
+        assertEquals(1, files.size());
+        final RequestProperty file = files.get(0);
+        assertEquals("/content/file", file.getPath());
+        assertEquals("nt:file", file.getTypeHint());
+        assertEquals(0, file.getChunk().getOffset());
+        assertEquals(20, file.getChunk().getLength());
+
+        // the other fields are applied by the modify operation
+        assertEquals("Hello", modifyRequest.getParameter("./title"));
+        assertEquals("nt:file", modifyRequest.getParameter("./file@TypeHint"));
+        assertNull(modifyRequest.getParameter("./file@Offset"));
+        assertEquals(HttpServletResponse.SC_OK, response.getStatusCode());
+    }
+
+    @Test
+    public void testFilesOnly() throws Exception {
+        run(new Part("./a", "a.txt", "a"), new Part("b", "b.txt", "b"));
+
+        assertEquals(2, files.size());
+        assertEquals("/content/a", files.get(0).getPath());
+        assertEquals("/content/b", files.get(1).getPath());
+        assertNull(modifyRequest);
+    }
+
+    @Test
+    public void testInvalidChunkValue() throws Exception {
+        run(new Part("./file@Offset", "abc"), new Part("./file", "test.txt", "content"));
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatusCode());
+        assertEquals(0, files.size());
+    }
+
+    @Test
+    public void testInvalidPath() throws Exception {
+        run(new Part("../../file", "test.txt", "content"));
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatusCode());
+        assertEquals(0, files.size());
+    }
+
+    @Test
+    public void testServletParameterInBody() throws Exception {
+        run(new Part("./file", "test.txt", "content"), new Part(":redirect", "/elsewhere"));
+
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, response.getStatusCode());
+        assertNull(modifyRequest);
+    }
+
+    /**
+     * A part of a streamed request.
+     */
+    private static final class Part implements RequestParameter {
+
+        private final String name;
+
+        private final String fileName;
+
+        private final String value;
+
+        /** A form field */
+        Part(final String name, final String value) {
+            this(name, null, value);
+        }
+
+        /** A file */
+        Part(final String name, final String fileName, final String value) {
+            this.name = name;
+            this.fileName = fileName;
+            this.value = value;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public boolean isFormField() {
+            return this.fileName == null;
+        }
+
+        public String getContentType() {
+            return null;
+        }
+
+        public long getSize() {
+            return this.isFormField() ? this.get().length : -1;
+        }
+
+        public byte[] get() {
+            try {
+                return this.value.getBytes("UTF-8");
+            } catch (final UnsupportedEncodingException uee) {
+                throw new IllegalStateException(uee);
+            }
+        }
+
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(this.get());
+        }
+
+        public String getFileName() {
+            return this.fileName;
+        }
+
+        public String getString() {
+            return this.value;
+        }
+
+        public String getString(final String encoding) {
+            return this.value;
+        }
+    }
+}
@@ -43,11 +43,21 @@ public class MongoDBContext {
 
     private final EventAdmin eventAdmin;
 
+    /** The batch size for cursors, 0 for the driver default. */
+    private final int cursorBatchSize;
+
+    /** The size of the read cache of each resource provider, 0 to disable. */
+    private final int readCacheSize;
+
     public MongoDBContext(final DB database,
             final String configuredRoot,
             final String[] configuredFilterCollectionNames,
-            final EventAdmin eventAdmin) {
+            final EventAdmin eventAdmin,
+            final int cursorBatchSize,
+            final int readCacheSize) {
         this.database = database;
+        this.cursorBatchSize = cursorBatchSize;
+        this.readCacheSize = readCacheSize;
         if ( configuredRoot != null ) {
             final String value = configuredRoot.trim();
             if ( value.length() > 0 ) {
@@ -94,6 +104,14 @@ public class MongoDBContext {
         return this.database;
     }
 
+    public int getCursorBatchSize() {
+        return this.cursorBatchSize;
+    }
+
+    public int getReadCacheSize() {
+        return this.readCacheSize;
+    }
+
     public void notifyRemoved(final String[] info) {
         final Dictionary<String, Object> props = new Hashtable<String, Object>();
         props.put(SlingConstants.PROPERTY_PATH, this.rootWithSlash + info[0] + '/' + info[1]);
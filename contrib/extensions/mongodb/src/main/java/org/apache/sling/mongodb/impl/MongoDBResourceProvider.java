@@ -16,9 +16,12 @@
  */
 package org.apache.sling.mongodb.impl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -28,6 +31,7 @@ import javax.servlet.http.HttpServletRequest;
 import org.apache.sling.api.resource.ModifyingResourceProvider;
 import org.apache.sling.api.resource.PersistenceException;
 import org.apache.sling.api.resource.QueriableResourceProvider;
+import org.apache.sling.api.resource.RefreshableResourceProvider;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceProvider;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -37,10 +41,11 @@ import org.slf4j.LoggerFactory;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.BasicDBObjectBuilder;
-import com.mongodb.CommandResult;
+import com.mongodb.BulkWriteOperation;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.MongoException;
 import com.mongodb.QueryBuilder;
 import com.mongodb.util.JSON;
 
@@ -48,7 +53,8 @@ import com.mongodb.util.JSON;
  * The MongoDB resource provider creates resources based on MongoDB entries.
  * The resources contain all properties stored in the MongoDB except those starting with a "_".
  */
-public class MongoDBResourceProvider implements ResourceProvider, ModifyingResourceProvider, QueriableResourceProvider {
+public class MongoDBResourceProvider implements ResourceProvider, ModifyingResourceProvider, QueriableResourceProvider,
+    RefreshableResourceProvider {
 
     /** The special path property containing the (relative) path of the resource in the tree. */
     private static final String PROP_PATH = "_path";
@@ -66,8 +72,30 @@ public class MongoDBResourceProvider implements ResourceProvider, ModifyingResou
 
     private final Set<String> deletedResources = new HashSet<String>();
 
+    /** Marker for a resource which does not exist in the read cache. */
+    private static final DBObject NOT_FOUND = new BasicDBObject();
+
+    /** Documents read by this provider, <code>null</code> if disabled. */
+    private final Map<String, DBObject> readCache;
+
+    /** The collection names, read on first use. */
+    private Set<String> collectionNames;
+
     public MongoDBResourceProvider(final MongoDBContext context) {
         this.context = context;
+        final int readCacheSize = context.getReadCacheSize();
+        if ( readCacheSize > 0 ) {
+            this.readCache = new LinkedHashMap<String, DBObject>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, DBObject> eldest) {
+                    return size() > readCacheSize;
+                }
+            };
+        } else {
+            this.readCache = null;
+        }
     }
 
     public static String propNameToKey(final String name) {
@@ -140,7 +168,8 @@ public class MongoDBResourceProvider implements ResourceProvider, ModifyingResou
                     final String pattern = "^" + Pattern.quote(info[1]) + "/";
 
                     final DBObject query = QueryBuilder.start(getPROP_PATH()).regex(Pattern.compile(pattern)).get();
-                    final DBCursor cur = col.find(query);
+                    // only the path is needed
+                    final DBCursor cur = this.batch(col.find(query, new BasicDBObject(getPROP_PATH(), 1)));
                     while ( cur.hasNext() ) {
                         final DBObject dbObj = cur.next();
                         final String childPath = info[0] + '/' + dbObj.get(getPROP_PATH());
@@ -174,6 +203,21 @@ public class MongoDBResourceProvider implements ResourceProvider, ModifyingResou
     public void revert(final ResourceResolver resolver) {
         this.changedResources.clear();
         this.deletedResources.clear();
+        // changes are applied to the cached documents
+        if ( this.readCache != null ) {
+            this.readCache.clear();
+        }
+    }
+
+    /**
+     * @see org.apache.sling.api.resource.RefreshableResourceProvider#refresh()
+     */
+    public void refresh() {
+        // pending changes are kept in the changed and deleted resources
+        if ( this.readCache != null ) {
+            this.readCache.clear();
+        }
+        this.collectionNames = null;
     }
 
     /**
@@ -181,42 +225,122 @@ public class MongoDBResourceProvider implements ResourceProvider, ModifyingResou
      */
     public void commit(final ResourceResolver resolver) throws PersistenceException {
         try {
-            for(final String deleted : this.deletedResources) {
-                final String[] info = this.extractResourceInfo(deleted);
-
+            // one ordered bulk operation per collection: first the removals, then the replacements, then the inserts
+            final Map<String, BulkWriteOperation> operations = new LinkedHashMap<String, BulkWriteOperation>();
+            final Map<String, List<String[]>> removed = new HashMap<String, List<String[]>>();
+            final Map<String, List<String[]>> updated = new HashMap<String, List<String[]>>();
+            final Map<String, List<String[]>> deleted = new LinkedHashMap<String, List<String[]>>();
+            for(final String path : this.deletedResources) {
+                final String[] info = this.extractResourceInfo(path);
+                getInfos(deleted, info[0]).add(info);
+            }
+            for(final Map.Entry<String, List<String[]>> entry : deleted.entrySet()) {
                 // check if the collection still exists
-                final DBCollection col = this.getCollection(info[0]);
+                final DBCollection col = this.getCollection(entry.getKey());
                 if ( col != null ) {
-                    if ( col.findAndRemove(QueryBuilder.start(getPROP_PATH()).is(info[1]).get()) != null ) {
-                        this.context.notifyRemoved(info);
+                    // only remove existing documents to not send events for resources which have never been stored
+                    final Set<String> existing = this.findExistingPaths(col, entry.getValue());
+                    for(final String[] info : entry.getValue()) {
+                        if ( existing.contains(info[1]) ) {
+                            getOperation(operations, col).find(QueryBuilder.start(getPROP_PATH()).is(info[1]).get()).removeOne();
+                            getInfos(removed, info[0]).add(info);
+                        }
                     }
                 }
             }
+            final List<MongoDBResource> created = new ArrayList<MongoDBResource>();
             for(final MongoDBResource changed : this.changedResources.values()) {
-
-                final DBCollection col = this.context.getDatabase().getCollection(changed.getCollection());
-                if ( col != null ) {
-                    final String[] info = new String[] {changed.getCollection(),
-                            changed.getProperties().get(getPROP_PATH()).toString()};
-                    // create or update?
-                    if ( changed.getProperties().get(PROP_ID) != null ) {
-                        col.update(QueryBuilder.start(getPROP_PATH()).is(changed.getProperties().get(getPROP_PATH())).get(),
-                                changed.getProperties());
-                        this.context.notifyUpdated(info);
-                    } else {
-                        // create
-                        col.save(changed.getProperties());
+                // create or update?
+                if ( changed.getProperties().get(PROP_ID) != null ) {
+                    final DBCollection col = this.getChangedCollection(changed);
+                    getOperation(operations, col).find(QueryBuilder.start(getPROP_PATH()).is(changed.getProperties().get(getPROP_PATH())).get())
+                        .replaceOne(changed.getProperties());
+                    getInfos(updated, changed.getCollection()).add(getInfo(changed));
+                } else {
+                    created.add(changed);
+                }
+            }
+            for(final MongoDBResource changed : created) {
+                getOperation(operations, this.getChangedCollection(changed)).insert(changed.getProperties());
+                getInfos(updated, changed.getCollection()).add(getInfo(changed));
+            }
+            for(final Map.Entry<String, BulkWriteOperation> entry : operations.entrySet()) {
+                try {
+                    entry.getValue().execute();
+                } catch (final MongoException me) {
+                    throw new PersistenceException("Unable to commit changes to collection " + entry.getKey(), me);
+                }
+                final List<String[]> removedInfos = removed.get(entry.getKey());
+                if ( removedInfos != null ) {
+                    for(final String[] info : removedInfos) {
+                        this.context.notifyRemoved(info);
+                    }
+                }
+                final List<String[]> updatedInfos = updated.get(entry.getKey());
+                if ( updatedInfos != null ) {
+                    for(final String[] info : updatedInfos) {
                         this.context.notifyUpdated(info);
                     }
-                } else {
-                    throw new PersistenceException("Unable to create collection " + changed.getCollection(), null, changed.getPath(), null);
                 }
             }
         } finally {
+            // collections might have been created
+            this.collectionNames = null;
             this.revert(resolver);
         }
     }
 
+    private DBCollection getChangedCollection(final MongoDBResource changed) throws PersistenceException {
+        final DBCollection col = this.context.getDatabase().getCollection(changed.getCollection());
+        if ( col == null ) {
+            throw new PersistenceException("Unable to create collection " + changed.getCollection(), null, changed.getPath(), null);
+        }
+        return col;
+    }
+
+    private String[] getInfo(final MongoDBResource changed) {
+        return new String[] {changed.getCollection(), changed.getProperties().get(getPROP_PATH()).toString()};
+    }
+
+    /**
+     * Find the paths of the given resources which are stored in the collection.
+     */
+    private Set<String> findExistingPaths(final DBCollection col, final List<String[]> infos) {
+        final List<String> paths = new ArrayList<String>();
+        for(final String[] info : infos) {
+            paths.add(info[1]);
+        }
+        final Set<String> existing = new HashSet<String>();
+        final DBCursor cur = this.batch(col.find(QueryBuilder.start(getPROP_PATH()).in(paths).get(),
+                new BasicDBObject(getPROP_PATH(), 1)));
+        try {
+            while ( cur.hasNext() ) {
+                existing.add(cur.next().get(getPROP_PATH()).toString());
+            }
+        } finally {
+            cur.close();
+        }
+        return existing;
+    }
+
+    private static BulkWriteOperation getOperation(final Map<String, BulkWriteOperation> operations, final DBCollection col) {
+        BulkWriteOperation operation = operations.get(col.getName());
+        if ( operation == null ) {
+            operation = col.initializeOrderedBulkOperation();
+            operations.put(col.getName(), operation);
+        }
+        return operation;
+    }
+
+    private static List<String[]> getInfos(final Map<String, List<String[]>> infos, final String collection) {
+        List<String[]> list = infos.get(collection);
+        if ( list == null ) {
+            list = new ArrayList<String[]>();
+            infos.put(collection, list);
+        }
+        return list;
+    }
+
     /**
      * @see org.apache.sling.api.resource.ModifyingResourceProvider#hasChanges(ResourceResolver)
      */
@@ -258,7 +382,7 @@ public class MongoDBResourceProvider implements ResourceProvider, ModifyingResou
         if ( info != null ) {
             if ( info.length == 0 ) {
                 // all collections
-                final Set<String> names = new HashSet<String>(context.getDatabase().getCollectionNames());
+                final Set<String> names = new HashSet<String>(this.getCollectionNames());
                 names.removeAll(this.context.getFilterCollectionNames());
                 final Iterator<String> i = names.iterator();
                 return new Iterator<Resource>() {
@@ -288,8 +412,8 @@ public class MongoDBResourceProvider implements ResourceProvider, ModifyingResou
                 }
 
                 final DBObject query = QueryBuilder.start(getPROP_PATH()).regex(Pattern.compile(pattern)).get();
-                final DBCursor cur = col.find(query).
-                        sort(BasicDBObjectBuilder.start(getPROP_PATH(), 1).get());
+                final DBCursor cur = this.batch(col.find(query).
+                        sort(BasicDBObjectBuilder.start(getPROP_PATH(), 1).get()));
                 return new Iterator<Resource>() {
 
                     public boolean hasNext() {
@@ -306,8 +430,12 @@ public class MongoDBResourceProvider implements ResourceProvider, ModifyingResou
                         } else {
                             name = objPath.substring(lastSlash + 1);
                         }
+                        final String childPath = parent.getPath() + '/' + name;
+                        if ( readCache != null ) {
+                            readCache.put(childPath, obj);
+                        }
                         return new MongoDBResource(parent.getResourceResolver(),
-                                parent.getPath() + '/' + name,
+                                childPath,
                                 info[0],
                                 obj,
                                 MongoDBResourceProvider.this);
@@ -363,11 +491,32 @@ public class MongoDBResourceProvider implements ResourceProvider, ModifyingResou
      * Check if a collection with a given name exists
      */
     protected boolean hasCollection(final String name) {
-        logger.info("Mongo: Getting collection names");
-        final Set<String> names = this.context.getDatabase().getCollectionNames();
+        final Set<String> names = this.getCollectionNames();
         return names.contains(name) && !this.context.isFilterCollectionName(name);
     }
 
+    /**
+     * Get the collection names. The names are read once per provider
+     * and again after a commit.
+     */
+    private Set<String> getCollectionNames() {
+        if ( this.collectionNames == null ) {
+            logger.debug("Mongo: Getting collection names");
+            this.collectionNames = this.context.getDatabase().getCollectionNames();
+        }
+        return this.collectionNames;
+    }
+
+    /**
+     * Apply the configured batch size to the cursor.
+     */
+    private DBCursor batch(final DBCursor cursor) {
+        if ( this.context.getCursorBatchSize() > 0 ) {
+            cursor.batchSize(this.context.getCursorBatchSize());
+        }
+        return cursor;
+    }
+
 
     /**
      * Check if a collection with a given name exists and return it
@@ -393,11 +542,27 @@ public class MongoDBResourceProvider implements ResourceProvider, ModifyingResou
             }
             return null;
         }
+        if ( this.readCache != null ) {
+            final DBObject cached = this.readCache.get(path);
+            if ( cached != null ) {
+                if ( cached == NOT_FOUND ) {
+                    return null;
+                }
+                return new MongoDBResource(resourceResolver,
+                        path,
+                        info[0],
+                        cached,
+                        this);
+            }
+        }
         logger.debug("Searching {} in {}", info[1], info[0]);
         final DBCollection col = this.getCollection(info[0]);
         if ( col != null ) {
             final DBObject obj = col.findOne(QueryBuilder.start(getPROP_PATH()).is(info[1]).get());
             logger.debug("Found {}", obj);
+            if ( this.readCache != null ) {
+                this.readCache.put(path, obj == null ? NOT_FOUND : obj);
+            }
             if ( obj != null ) {
                 return new MongoDBResource(resourceResolver,
                         path,
@@ -81,6 +81,14 @@ public class MongoDBResourceProviderFactory implements ResourceProviderFactory {
     private static final int DEFAULT_THREAD_MULTIPLIER= 5;
     @Property(intValue=DEFAULT_THREAD_MULTIPLIER)
     private static final String  PROP_THREAD_MULTIPLIER = "threadmultiplier";
+
+    private static final int DEFAULT_CURSOR_BATCH_SIZE = 0;
+    @Property(intValue=DEFAULT_CURSOR_BATCH_SIZE)
+    private static final String PROP_CURSOR_BATCH_SIZE = "cursor.batchsize";
+
+    private static final int DEFAULT_READ_CACHE_SIZE = 0;
+    @Property(intValue=DEFAULT_READ_CACHE_SIZE)
+    private static final String PROP_READ_CACHE_SIZE = "read.cache.size";
     
     /** Logger. */
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
@@ -121,7 +129,9 @@ public class MongoDBResourceProviderFactory implements ResourceProviderFactory {
         this.context = new MongoDBContext(database,
                 roots[0],
                 PropertiesUtil.toStringArray(props.get(PROP_FILTER_COLLECTIONS)),
-                this.eventAdmin);
+                this.eventAdmin,
+                PropertiesUtil.toInteger(props.get(PROP_CURSOR_BATCH_SIZE), DEFAULT_CURSOR_BATCH_SIZE),
+                PropertiesUtil.toInteger(props.get(PROP_READ_CACHE_SIZE), DEFAULT_READ_CACHE_SIZE));
     }
 
     /**
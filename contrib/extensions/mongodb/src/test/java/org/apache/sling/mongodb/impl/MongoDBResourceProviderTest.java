@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.mongodb.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.PersistenceException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteRequestBuilder;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+public class MongoDBResourceProviderTest {
+
+    private DB database;
+
+    private EventAdmin eventAdmin;
+
+    private ResourceResolver resolver;
+
+    private final Map<String, MockCollection> collections = new HashMap<String, MockCollection>();
+
+    @Before
+    public void setup() {
+        this.database = mock(DB.class);
+        when(this.database.getCollectionNames()).thenReturn(new HashSet<String>(Arrays.asList("col", "other")));
+        this.eventAdmin = mock(EventAdmin.class);
+        this.resolver = mock(ResourceResolver.class);
+        this.collections.put("col", new MockCollection("col"));
+        this.collections.put("other", new MockCollection("other"));
+    }
+
+    private MongoDBResourceProvider createProvider(final int readCacheSize) {
+        return new MongoDBResourceProvider(new MongoDBContext(this.database, "/mongo", null, this.eventAdmin, 0,
+                readCacheSize));
+    }
+
+    /**
+     * A mocked collection backed by a map of documents.
+     */
+    private final class MockCollection {
+
+        final DBCollection collection = mock(DBCollection.class);
+
+        final Map<String, DBObject> documents = new HashMap<String, DBObject>();
+
+        final BulkWriteOperation bulk = mock(BulkWriteOperation.class);
+
+        final BulkWriteRequestBuilder request = mock(BulkWriteRequestBuilder.class);
+
+        MockCollection(final String name) {
+            when(database.getCollection(name)).thenReturn(this.collection);
+            when(this.collection.getName()).thenReturn(name);
+            when(this.collection.initializeOrderedBulkOperation()).thenReturn(this.bulk);
+            when(this.bulk.find(any(DBObject.class))).thenReturn(this.request);
+            when(this.collection.findOne(any(DBObject.class))).thenAnswer(new Answer<DBObject>() {
+                public DBObject answer(final InvocationOnMock invocation) {
+                    final DBObject query = (DBObject) invocation.getArguments()[0];
+                    return documents.get(query.get("_path"));
+                }
+            });
+            when(this.collection.find(any(DBObject.class), any(DBObject.class))).thenAnswer(new Answer<DBCursor>() {
+                public DBCursor answer(final InvocationOnMock invocation) {
+                    // only the lookup of existing documents by path is supported, not the regex for children
+                    final Object condition = ((DBObject) invocation.getArguments()[0]).get("_path");
+                    final List<DBObject> found = new ArrayList<DBObject>();
+                    if ( condition instanceof DBObject && ((DBObject) condition).containsField("$in") ) {
+                        for(final Object path : (List<?>) ((DBObject) condition).get("$in")) {
+                            if ( documents.containsKey(path) ) {
+                                found.add(new BasicDBObject("_path", path));
+                            }
+                        }
+                    }
+                    return cursor(found);
+                }
+            });
+            when(this.collection.find(any(DBObject.class))).thenAnswer(new Answer<DBCursor>() {
+                public DBCursor answer(final InvocationOnMock invocation) {
+                    return cursor(new ArrayList<DBObject>(documents.values()));
+                }
+            });
+        }
+
+        void store(final String path) {
+            this.documents.put(path, new BasicDBObject("_path", path).append("_id", path.hashCode()));
+        }
+    }
+
+    private static DBCursor cursor(final List<DBObject> documents) {
+        final Iterator<DBObject> i = documents.iterator();
+        final DBCursor cursor = mock(DBCursor.class);
+        when(cursor.sort(any(DBObject.class))).thenReturn(cursor);
+        when(cursor.hasNext()).thenAnswer(new Answer<Boolean>() {
+            public Boolean answer(final InvocationOnMock invocation) {
+                return i.hasNext();
+            }
+        });
+        when(cursor.next()).thenAnswer(new Answer<DBObject>() {
+            public DBObject answer(final InvocationOnMock invocation) {
+                return i.next();
+            }
+        });
+        return cursor;
+    }
+
+    private static DBObject pathQuery(final String path) {
+        return new BasicDBObject("_path", path);
+    }
+
+    private List<String> getEvents() {
+        final ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+        verify(this.eventAdmin, atLeastOnce()).postEvent(captor.capture());
+        final List<String> events = new ArrayList<String>();
+        for(final Event event : captor.getAllValues()) {
+            final String topic = event.getTopic();
+            events.add(topic.substring(topic.lastIndexOf('/') + 1) + ' ' + event.getProperty(SlingConstants.PROPERTY_PATH));
+        }
+        return events;
+    }
+
+    @Test
+    public void testBulkWriteOrder() throws Exception {
+        final MockCollection col = this.collections.get("col");
+        col.store("a");
+        col.store("b");
+        final MongoDBResourceProvider provider = this.createProvider(0);
+
+        provider.create(this.resolver, "/mongo/col/c", Collections.<String, Object>singletonMap("p", "v"));
+        provider.changed((MongoDBResource) provider.getResource(this.resolver, "/mongo/col/b"));
+        provider.delete(this.resolver, "/mongo/col/a");
+        provider.commit(this.resolver);
+
+        final InOrder inOrder = inOrder(col.bulk, col.request);
+        inOrder.verify(col.bulk).find(pathQuery("a"));
+        inOrder.verify(col.request).removeOne();
+        inOrder.verify(col.bulk).find(pathQuery("b"));
+        inOrder.verify(col.request).replaceOne(any(DBObject.class));
+        inOrder.verify(col.bulk).insert(any(DBObject.class));
+        inOrder.verify(col.bulk).execute();
+        // one bulk operation for all changes
+        verify(col.collection, times(1)).initializeOrderedBulkOperation();
+
+        final List<String> events = this.getEvents();
+        assertEquals(3, events.size());
+        assertEquals("REMOVED /mongo/col/a", events.get(0));
+        assertEquals("CHANGED /mongo/col/b", events.get(1));
+        assertEquals("CHANGED /mongo/col/c", events.get(2));
+        assertFalse(provider.hasChanges(this.resolver));
+    }
+
+    @Test
+    public void testNoEventForRemovedDocument() throws Exception {
+        final MockCollection col = this.collections.get("col");
+        col.store("a");
+        final MongoDBResourceProvider provider = this.createProvider(0);
+
+        provider.delete(this.resolver, "/mongo/col/a");
+        // removed by someone else in the meantime
+        col.documents.remove("a");
+        provider.commit(this.resolver);
+
+        verify(col.request, never()).removeOne();
+        verify(col.bulk, never()).execute();
+        verify(this.eventAdmin, never()).postEvent(any(Event.class));
+    }
+
+    @Test
+    public void testEventsAfterPartialFailure() throws Exception {
+        final MockCollection col = this.collections.get("col");
+        final MockCollection other = this.collections.get("other");
+        col.store("a");
+        when(other.bulk.execute()).thenThrow(new MongoException("failed"));
+        final MongoDBResourceProvider provider = this.createProvider(0);
+
+        provider.delete(this.resolver, "/mongo/col/a");
+        provider.create(this.resolver, "/mongo/other/b", null);
+        try {
+            provider.commit(this.resolver);
+            fail("commit should fail");
+        } catch (final PersistenceException pe) {
+            // expected
+        }
+
+        // the events of the written collection are sent, not those of the failed one
+        final List<String> events = this.getEvents();
+        assertEquals(1, events.size());
+        assertEquals("REMOVED /mongo/col/a", events.get(0));
+        assertFalse(provider.hasChanges(this.resolver));
+    }
+
+    @Test
+    public void testReadCache() throws Exception {
+        final MockCollection col = this.collections.get("col");
+        col.store("a");
+        final MongoDBResourceProvider provider = this.createProvider(10);
+
+        // hit
+        assertNotNull(provider.getResource(this.resolver, "/mongo/col/a"));
+        assertNotNull(provider.getResource(this.resolver, "/mongo/col/a"));
+        verify(col.collection, times(1)).findOne(pathQuery("a"));
+
+        // miss
+        assertNull(provider.getResource(this.resolver, "/mongo/col/x"));
+        assertNull(provider.getResource(this.resolver, "/mongo/col/x"));
+        verify(col.collection, times(1)).findOne(pathQuery("x"));
+
+        // cleared by refresh, revert and commit
+        provider.refresh();
+        assertNotNull(provider.getResource(this.resolver, "/mongo/col/a"));
+        verify(col.collection, times(2)).findOne(pathQuery("a"));
+        provider.revert(this.resolver);
+        assertNotNull(provider.getResource(this.resolver, "/mongo/col/a"));
+        verify(col.collection, times(3)).findOne(pathQuery("a"));
+        provider.commit(this.resolver);
+        assertNotNull(provider.getResource(this.resolver, "/mongo/col/a"));
+        verify(col.collection, times(4)).findOne(pathQuery("a"));
+    }
+
+    @Test
+    public void testReadCacheFilledByListChildren() throws Exception {
+        final MockCollection col = this.collections.get("col");
+        col.store("a");
+        col.store("b");
+        final MongoDBResourceProvider provider = this.createProvider(10);
+
+        final Resource parent = provider.getResource(this.resolver, "/mongo/col");
+        final Iterator<Resource> children = provider.listChildren(parent);
+        int count = 0;
+        while ( children.hasNext() ) {
+            children.next();
+            count++;
+        }
+        assertEquals(2, count);
+
+        assertNotNull(provider.getResource(this.resolver, "/mongo/col/a"));
+        assertNotNull(provider.getResource(this.resolver, "/mongo/col/b"));
+        verify(col.collection, never()).findOne(any(DBObject.class));
+    }
+
+    @Test
+    public void testReadCacheDisabled() throws Exception {
+        final MockCollection col = this.collections.get("col");
+        col.store("a");
+        final MongoDBResourceProvider provider = this.createProvider(0);
+
+        assertNotNull(provider.getResource(this.resolver, "/mongo/col/a"));
+        assertNotNull(provider.getResource(this.resolver, "/mongo/col/a"));
+        verify(col.collection, times(2)).findOne(pathQuery("a"));
+    }
+}
@@ -26,6 +26,7 @@ import org.apache.sling.api.resource.ResourceMetadata;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.wrappers.DeepReadValueMapDecorator;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
 
 /**
  * {@inheritDoc}
@@ -95,6 +96,25 @@ public class MergedResource extends AbstractResource {
         metadata.put(MergedResourceConstants.METADATA_RESOURCES, resourcePaths);
     }
 
+    /**
+     * Constructor for a merged resource from a cached snapshot
+     *
+     * @param resolver      Resource resolver
+     * @param mergeRootPath Merge root path
+     * @param entry         The cached merged resource
+     */
+    MergedResource(final ResourceResolver resolver,
+                   final String mergeRootPath,
+                   final MergedResourceCache.Entry entry) {
+        this.resolver = resolver;
+        this.path = (entry.relativePath.length() == 0 ? mergeRootPath : mergeRootPath + "/" + entry.relativePath);
+        this.properties = new DeepReadValueMapDecorator(this, new ValueMapDecorator(MergedResourceCache.copyProperties(entry.properties)));
+        this.resourceType = entry.resourceType;
+        this.resourceSuperType = entry.resourceSuperType;
+        metadata.put(MergedResourceConstants.METADATA_FLAG, true);
+        metadata.put(MergedResourceConstants.METADATA_RESOURCES, entry.resourcePaths.clone());
+    }
+
     /**
      * {@inheritDoc}
      */
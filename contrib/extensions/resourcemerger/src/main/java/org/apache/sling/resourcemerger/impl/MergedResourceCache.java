@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourcemerger.impl;
+
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+/**
+ * The <code>MergedResourceCache</code> caches the structure of merged
+ * resources and the lists of their children per user and relative path.
+ * <p>
+ * The cache does not hold any resources but only immutable snapshots from
+ * which new merged resources are created for the requesting resolver.
+ * The cache is cleared completely whenever a resource below the merge root
+ * or below one of the top level paths of the merged resources changes. The
+ * event handler is registered with an event filter for these paths, which is
+ * updated when a new top level path is observed.
+ * <p>
+ * Mutable property values like arrays and calendars are copied into and out
+ * of the cache. Resources with values which cannot be copied, like binary
+ * streams, are not cached.
+ */
+class MergedResourceCache implements EventHandler {
+
+    /** The topics of the events clearing the cache. */
+    static final String[] TOPICS = new String[] {
+            SlingConstants.TOPIC_RESOURCE_ADDED,
+            SlingConstants.TOPIC_RESOURCE_CHANGED,
+            SlingConstants.TOPIC_RESOURCE_REMOVED
+    };
+
+    /**
+     * Snapshot of a merged resource.
+     */
+    static final class Entry {
+
+        public final String relativePath;
+
+        public final String resourceType;
+
+        public final String resourceSuperType;
+
+        public final String[] resourcePaths;
+
+        public final Map<String, Object> properties;
+
+        private Entry(final String relativePath, final Resource resource, final Map<String, Object> properties) {
+            this.relativePath = relativePath;
+            this.resourceType = resource.getResourceType();
+            this.resourceSuperType = resource.getResourceSuperType();
+            this.resourcePaths = (String[]) resource.getResourceMetadata().get(MergedResourceConstants.METADATA_RESOURCES);
+            this.properties = Collections.unmodifiableMap(properties);
+        }
+
+        /**
+         * Create a snapshot of the merged resource or return <code>null</code>
+         * if the properties of the resource cannot be copied.
+         */
+        static Entry create(final String relativePath, final Resource resource) {
+            final Map<String, Object> properties = copyProperties(resource.getValueMap());
+            return (properties == null ? null : new Entry(relativePath, resource, properties));
+        }
+    }
+
+    /**
+     * Copy the properties, such that the copy does not share mutable values.
+     * @return The copy or <code>null</code> if a value cannot be copied.
+     */
+    static Map<String, Object> copyProperties(final Map<String, Object> properties) {
+        final Map<String, Object> copy = new HashMap<String, Object>();
+        for(final Map.Entry<String, Object> entry : properties.entrySet()) {
+            final Object value = entry.getValue();
+            final Object copiedValue = (value == null ? null : copyValue(value));
+            if ( value != null && copiedValue == null ) {
+                return null;
+            }
+            copy.put(entry.getKey(), copiedValue);
+        }
+        return copy;
+    }
+
+    private static Object copyValue(final Object value) {
+        if ( value instanceof InputStream ) {
+            return null;
+        }
+        if ( value instanceof Calendar ) {
+            return ((Calendar) value).clone();
+        }
+        if ( value instanceof Date ) {
+            return ((Date) value).clone();
+        }
+        if ( value.getClass().isArray() ) {
+            final int length = Array.getLength(value);
+            final Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            for(int i = 0; i < length; i++) {
+                final Object element = Array.get(value, i);
+                final Object copiedElement = (element == null ? null : copyValue(element));
+                if ( element != null && copiedElement == null ) {
+                    return null;
+                }
+                Array.set(copy, i, copiedElement);
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    private final String mergeRootPath;
+
+    private final int maxSize;
+
+    private final ConcurrentMap<String, Entry> resources = new ConcurrentHashMap<String, Entry>();
+
+    private final ConcurrentMap<String, List<Entry>> children = new ConcurrentHashMap<String, List<Entry>>();
+
+    /** Path prefixes for which changes clear the cache. */
+    private final Set<String> observedPaths = new CopyOnWriteArraySet<String>();
+
+    /** Incremented on every clear to not store entries computed before. */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /** The registration as event handler, guarded by this. */
+    private ServiceRegistration registration;
+
+    MergedResourceCache(final String mergeRootPath, final int maxSize) {
+        this.mergeRootPath = mergeRootPath;
+        this.maxSize = maxSize;
+        this.observedPaths.add(mergeRootPath + '/');
+    }
+
+    /**
+     * Register the cache as event handler for changes of the observed paths.
+     */
+    public synchronized void register(final BundleContext bundleContext) {
+        this.registration = bundleContext.registerService(EventHandler.class.getName(), this, this.getEventProperties());
+    }
+
+    public synchronized void unregister() {
+        if ( this.registration != null ) {
+            this.registration.unregister();
+            this.registration = null;
+        }
+    }
+
+    private Dictionary<String, Object> getEventProperties() {
+        final Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put(EventConstants.EVENT_TOPIC, TOPICS);
+        props.put(EventConstants.EVENT_FILTER, this.getEventFilter());
+        props.put(Constants.SERVICE_DESCRIPTION, "Apache Sling Merged Resource Cache for " + this.mergeRootPath);
+        return props;
+    }
+
+    /**
+     * The event filter matching the observed paths and the resources below.
+     */
+    String getEventFilter() {
+        final StringBuilder sb = new StringBuilder("(|");
+        for(final String observed : this.observedPaths) {
+            final String path = escapeFilterValue(observed);
+            sb.append('(').append(SlingConstants.PROPERTY_PATH).append('=').append(path, 0, path.length() - 1).append(')');
+            sb.append('(').append(SlingConstants.PROPERTY_PATH).append('=').append(path).append("*)");
+        }
+        return sb.append(')').toString();
+    }
+
+    private static String escapeFilterValue(final String value) {
+        final StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if ( c == '\\' || c == '*' || c == '(' || c == ')' ) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The current generation which has to be passed to the put methods.
+     */
+    public int getGeneration() {
+        return this.generation.get();
+    }
+
+    public Entry getResource(final ResourceResolver resolver, final String relativePath) {
+        return this.resources.get(getKey(resolver, relativePath));
+    }
+
+    /**
+     * Put the snapshot into the cache, unless it is <code>null</code>.
+     */
+    public void putResource(final int gen,
+            final ResourceResolver resolver,
+            final Entry entry) {
+        if ( entry == null ) {
+            return;
+        }
+        this.observe(resolver, entry);
+        this.put(this.resources, gen, getKey(resolver, entry.relativePath), entry);
+    }
+
+    public List<Entry> getChildren(final ResourceResolver resolver, final String relativePath) {
+        return this.children.get(getKey(resolver, relativePath));
+    }
+
+    /**
+     * Put the snapshots of the children into the cache. The list of children
+     * is only cached if it does not contain <code>null</code>.
+     */
+    public void putChildren(final int gen,
+            final ResourceResolver resolver,
+            final String relativePath,
+            final List<Entry> entries) {
+        for(final Entry entry : entries) {
+            this.putResource(gen, resolver, entry);
+        }
+        if ( entries.contains(null) ) {
+            return;
+        }
+        this.put(this.children, gen, getKey(resolver, relativePath),
+                Collections.unmodifiableList(new ArrayList<Entry>(entries)));
+    }
+
+    /**
+     * Clear the cache.
+     */
+    public void clear() {
+        this.generation.incrementAndGet();
+        this.resources.clear();
+        this.children.clear();
+    }
+
+    /**
+     * @see org.osgi.service.event.EventHandler#handleEvent(org.osgi.service.event.Event)
+     */
+    public void handleEvent(final Event event) {
+        final String path = (String) event.getProperty(SlingConstants.PROPERTY_PATH);
+        if ( path != null ) {
+            final String prefix = path.endsWith("/") ? path : path + '/';
+            for(final String observed : this.observedPaths) {
+                if ( prefix.startsWith(observed) ) {
+                    this.clear();
+                    return;
+                }
+            }
+        }
+    }
+
+    private <T> void put(final ConcurrentMap<String, T> map, final int gen, final String key, final T value) {
+        if ( gen != this.generation.get() ) {
+            return;
+        }
+        if ( map.size() >= this.maxSize ) {
+            map.clear();
+        }
+        map.put(key, value);
+        // a change might have cleared the cache in the meantime
+        if ( gen != this.generation.get() ) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * Remember the top level paths the merged resource is read from
+     * and the search paths, where a new resource might show up later on.
+     */
+    private void observe(final ResourceResolver resolver, final Entry entry) {
+        if ( entry.resourcePaths != null ) {
+            for(final String path : entry.resourcePaths) {
+                this.observePath(path);
+            }
+        }
+        final String[] searchPaths = resolver.getSearchPath();
+        if ( searchPaths != null ) {
+            for(final String path : searchPaths) {
+                this.observePath(path);
+            }
+        }
+    }
+
+    private void observePath(final String path) {
+        final int pos = path.indexOf('/', 1);
+        final String root = (pos == -1 ? path + '/' : path.substring(0, pos + 1));
+        if ( !this.observedPaths.contains(root) ) {
+            synchronized ( this ) {
+                if ( this.observedPaths.add(root) && this.registration != null ) {
+                    this.registration.setProperties(this.getEventProperties());
+                }
+            }
+        }
+    }
+
+    private static String getKey(final ResourceResolver resolver, final String relativePath) {
+        final String userId = resolver.getUserID();
+        return (userId == null ? "" : userId) + '\n' + relativePath;
+    }
+}
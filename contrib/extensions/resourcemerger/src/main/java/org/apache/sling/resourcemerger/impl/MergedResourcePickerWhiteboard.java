@@ -46,6 +46,8 @@ public class MergedResourcePickerWhiteboard implements ServiceTrackerCustomizer
 
     private final Map<Long, ServiceRegistration> serviceRegistrations = new ConcurrentHashMap<Long, ServiceRegistration>();
 
+    private final Map<Long, MergedResourceCache> caches = new ConcurrentHashMap<Long, MergedResourceCache>();
+
     @Activate
     protected void activate(final BundleContext bundleContext) {
         this.bundleContext = bundleContext;
@@ -63,13 +65,23 @@ public class MergedResourcePickerWhiteboard implements ServiceTrackerCustomizer
         if ( picker != null ) {
             final String mergeRoot = PropertiesUtil.toString(reference.getProperty(MergedResourcePicker.MERGE_ROOT), null);
             if (mergeRoot != null) {
+                final Long key = (Long) reference.getProperty(Constants.SERVICE_ID);
+                final boolean readOnly = PropertiesUtil.toBoolean(reference.getProperty(MergedResourcePicker.READ_ONLY), true);
+                final int cacheSize = PropertiesUtil.toInteger(reference.getProperty(MergedResourcePicker.CACHE_SIZE), 0);
+
+                MergedResourceCache cache = null;
+                if ( readOnly && cacheSize > 0 ) {
+                    cache = new MergedResourceCache(mergeRoot, cacheSize);
+                    cache.register(bundleContext);
+                    caches.put(key, cache);
+                }
+
                 final ResourceProviderFactory providerFactory = new MergingResourceProviderFactory(mergeRoot, picker,
-                        PropertiesUtil.toBoolean(reference.getProperty(MergedResourcePicker.READ_ONLY), true));
+                        readOnly, cache);
                 final Dictionary<Object, Object> props = new Hashtable<Object, Object>();
                 props.put(ResourceProvider.ROOTS, mergeRoot);
                 props.put(ResourceProvider.OWNS_ROOTS, true);
 
-                final Long key = (Long) reference.getProperty(Constants.SERVICE_ID);
                 final ServiceRegistration reg = bundleContext.registerService(ResourceProviderFactory.class.getName(), providerFactory, props);
 
                 serviceRegistrations.put(key, reg);
@@ -87,11 +99,15 @@ public class MergedResourcePickerWhiteboard implements ServiceTrackerCustomizer
 
     public void removedService(final ServiceReference reference, final Object service) {
         final Long key = (Long) reference.getProperty(Constants.SERVICE_ID);
-        final ServiceRegistration reg = serviceRegistrations.get(key);
+        final ServiceRegistration reg = serviceRegistrations.remove(key);
         if ( reg != null ) {
             reg.unregister();
             this.bundleContext.ungetService(reference);
         }
+        final MergedResourceCache cache = caches.remove(key);
+        if ( cache != null ) {
+            cache.unregister();
+        }
     }
 
 }
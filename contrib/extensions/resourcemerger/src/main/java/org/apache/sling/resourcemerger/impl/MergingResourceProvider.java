@@ -39,12 +39,23 @@ class MergingResourceProvider implements ResourceProvider {
 
     private final boolean readOnly;
 
+    /** Optional cache, only used for read-only resources. */
+    private final MergedResourceCache cache;
+
     MergingResourceProvider(final String mergeRootPath,
             final MergedResourcePicker picker,
             final boolean readOnly) {
+        this(mergeRootPath, picker, readOnly, null);
+    }
+
+    MergingResourceProvider(final String mergeRootPath,
+            final MergedResourcePicker picker,
+            final boolean readOnly,
+            final MergedResourceCache cache) {
         this.mergeRootPath = mergeRootPath;
         this.picker = picker;
         this.readOnly = readOnly;
+        this.cache = (readOnly ? cache : null);
     }
 
     protected static final class ExcludeEntry {
@@ -198,6 +209,14 @@ class MergingResourceProvider implements ResourceProvider {
         final String relativePath = getRelativePath(path);
 
         if (relativePath != null) {
+            if ( this.cache != null ) {
+                final MergedResourceCache.Entry entry = this.cache.getResource(resolver, relativePath);
+                if ( entry != null ) {
+                    return new MergedResource(resolver, mergeRootPath, entry);
+                }
+            }
+            final int generation = (this.cache == null ? 0 : this.cache.getGeneration());
+
             final ResourceHolder holder = new ResourceHolder(ResourceUtil.getName(path));
 
             final Iterator<Resource> resources = picker.pickResources(resolver, relativePath).iterator();
@@ -218,7 +237,11 @@ class MergingResourceProvider implements ResourceProvider {
                     holder.resources.add(resource);
                 }
             }
-            return createMergedResource(resolver, relativePath, holder);
+            final Resource mergedResource = createMergedResource(resolver, relativePath, holder);
+            if ( mergedResource != null && this.cache != null ) {
+                this.cache.putResource(generation, resolver, MergedResourceCache.Entry.create(relativePath, mergedResource));
+            }
+            return mergedResource;
         }
 
         return null;
@@ -233,6 +256,18 @@ class MergingResourceProvider implements ResourceProvider {
         final String relativePath = getRelativePath(resource.getPath());
 
         if (relativePath != null) {
+            if ( this.cache != null ) {
+                final List<MergedResourceCache.Entry> entries = this.cache.getChildren(resolver, relativePath);
+                if ( entries != null ) {
+                    final List<Resource> children = new ArrayList<Resource>(entries.size());
+                    for (final MergedResourceCache.Entry entry : entries) {
+                        children.add(new MergedResource(resolver, mergeRootPath, entry));
+                    }
+                    return children.iterator();
+                }
+            }
+            final int generation = (this.cache == null ? 0 : this.cache.getGeneration());
+
             final List<ResourceHolder> candidates = new ArrayList<ResourceHolder>();
 
             final Iterator<Resource> resources = picker.pickResources(resolver, relativePath).iterator();
@@ -286,13 +321,20 @@ class MergingResourceProvider implements ResourceProvider {
                 }
             }
             final List<Resource> children = new ArrayList<Resource>();
+            final List<MergedResourceCache.Entry> entries = (this.cache == null ? null : new ArrayList<MergedResourceCache.Entry>());
             for (final ResourceHolder holder : candidates) {
-                final Resource mergedResource = this.createMergedResource(resolver,
-                        (relativePath.length() == 0 ? holder.name : relativePath + '/' + holder.name), holder);
+                final String childPath = (relativePath.length() == 0 ? holder.name : relativePath + '/' + holder.name);
+                final Resource mergedResource = this.createMergedResource(resolver, childPath, holder);
                 if (mergedResource != null) {
                     children.add(mergedResource);
+                    if ( entries != null ) {
+                        entries.add(MergedResourceCache.Entry.create(childPath, mergedResource));
+                    }
                 }
             }
+            if ( entries != null ) {
+                this.cache.putChildren(generation, resolver, relativePath, entries);
+            }
             return children.iterator();
         }
 
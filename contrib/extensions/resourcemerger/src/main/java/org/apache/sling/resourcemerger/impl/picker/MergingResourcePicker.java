@@ -47,7 +47,12 @@ import org.apache.sling.resourcemerger.spi.MergedResourcePicker;
             description="The mount point of merged resources"),
     @Property(name=MergedResourcePicker.READ_ONLY, boolValue=true,
     label="Read Only",
-    description="Specifies if the resources are read-only or can be modified.")
+    description="Specifies if the resources are read-only or can be modified."),
+    @Property(name=MergedResourcePicker.CACHE_SIZE, intValue=0,
+    label="Cache Size",
+    description="Maximum number of read-only merged resources and child lists cached per provider. " +
+                "The cache is cleared on any change below the merge root or the search paths. " +
+                "A value of 0 disables the cache.")
 
 })
 /**
@@ -50,6 +50,18 @@ public interface MergedResourcePicker {
      */
     String READ_ONLY = "merge.readOnly";
 
+    /**
+     * Service property name specifying the maximum number of merged resources
+     * cached for read-only merged resources. The cache is cleared whenever a
+     * resource below the merge root or below one of the paths the merged
+     * resources are read from changes. If not specified or not a positive
+     * number, merged resources are not cached. The value of this property
+     * must be of type Integer.
+     *
+     * @since 1.1.0
+     */
+    String CACHE_SIZE = "merge.cacheSize";
+
     /**
      * Method invoked by the MergingResourceProvider to identify the resources to be merged for a given
      * relative path. The resources returned may be either resources returned from the ResourceResolver
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourcemerger.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.ModifiableValueMap;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.resourcemerger.impl.picker.MergingResourcePicker;
+import org.apache.sling.testing.resourceresolver.MockHelper;
+import org.apache.sling.testing.resourceresolver.MockResourceResolverFactory;
+import org.apache.sling.testing.resourceresolver.MockResourceResolverFactoryOptions;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+public class MergedResourceCacheTest {
+
+    private ResourceResolver resolver;
+
+    private MergedResourceCache cache;
+
+    private MergingResourceProvider provider;
+
+    @Before public void setup() throws Exception {
+        final MockResourceResolverFactoryOptions options = new MockResourceResolverFactoryOptions();
+        options.setSearchPaths(new String[] {"/apps/", "/libs/"});
+        final ResourceResolverFactory factory = new MockResourceResolverFactory(options);
+        this.resolver = factory.getResourceResolver(null);
+        MockHelper.create(this.resolver).resource("/apps")
+                                          .resource("a").p(MergedResourceConstants.PN_HIDE_CHILDREN, "2")
+                                            .resource("1").p("a", "1")
+                                        .resource("/libs")
+                                          .resource("a")
+                                            .resource("1").p("a", "5").p("b", "2")
+                                            .resource(".2")
+                                        .resource("/content")
+                                        .commit();
+
+        this.cache = new MergedResourceCache("/merged", 100);
+        this.provider = new MergingResourceProvider("/merged", new MergingResourcePicker(), true, this.cache);
+    }
+
+    private void change(final String path, final String name, final String value) throws Exception {
+        this.resolver.getResource(path).adaptTo(ModifiableValueMap.class).put(name, value);
+        this.resolver.commit();
+    }
+
+    private void sendEvent(final String path) {
+        final Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put(SlingConstants.PROPERTY_PATH, path);
+        this.cache.handleEvent(new Event(SlingConstants.TOPIC_RESOURCE_CHANGED, props));
+    }
+
+    private List<String> getChildNames(final String path) {
+        final List<String> names = new ArrayList<String>();
+        final Iterator<Resource> i = this.provider.listChildren(this.provider.getResource(this.resolver, path));
+        while ( i.hasNext() ) {
+            names.add(i.next().getName());
+        }
+        return names;
+    }
+
+    @Test public void testResourceIsCachedUntilChange() throws Exception {
+        final Resource first = this.provider.getResource(this.resolver, "/merged/a/1");
+        assertNotNull(first);
+        assertEquals("1", first.getValueMap().get("a"));
+        assertEquals("2", first.getValueMap().get("b"));
+
+        this.change("/apps/a/1", "a", "changed");
+        // without an event the cached version is returned
+        final Resource cached = this.provider.getResource(this.resolver, "/merged/a/1");
+        assertEquals("/merged/a/1", cached.getPath());
+        assertEquals("1", cached.getValueMap().get("a"));
+        assertEquals(2, ((String[])cached.getResourceMetadata().get(MergedResourceConstants.METADATA_RESOURCES)).length);
+
+        // changes outside of the observed paths do not clear the cache
+        this.sendEvent("/content");
+        assertEquals("1", this.provider.getResource(this.resolver, "/merged/a/1").getValueMap().get("a"));
+
+        this.sendEvent("/apps/a/1");
+        assertEquals("changed", this.provider.getResource(this.resolver, "/merged/a/1").getValueMap().get("a"));
+    }
+
+    @Test public void testCachedPropertiesAreCopied() throws Exception {
+        final ValueMap props = this.provider.getResource(this.resolver, "/merged/a/1").getValueMap();
+        props.put("a", "modified");
+        assertEquals("1", this.provider.getResource(this.resolver, "/merged/a/1").getValueMap().get("a"));
+    }
+
+    @Test public void testChildrenAreCachedUntilChange() throws Exception {
+        assertEquals(1, this.getChildNames("/merged/a").size());
+        assertEquals("1", this.getChildNames("/merged/a").get(0));
+
+        this.change("/apps/a", MergedResourceConstants.PN_HIDE_CHILDREN, "none");
+        assertEquals(1, this.getChildNames("/merged/a").size());
+
+        // a change of the search path root clears the cache
+        this.sendEvent("/apps");
+        final List<String> names = this.getChildNames("/merged/a");
+        assertEquals(2, names.size());
+        assertTrue(names.contains("1"));
+        assertTrue(names.contains("2"));
+    }
+
+    @Test public void testMissingResourceIsNotCached() throws Exception {
+        assertNull(this.provider.getResource(this.resolver, "/merged/a/3"));
+        MockHelper.create(this.resolver).resource("/libs/a/3").commit();
+        assertNotNull(this.provider.getResource(this.resolver, "/merged/a/3"));
+    }
+
+    @Test public void testCachedArraysAreCopied() throws Exception {
+        MockHelper.create(this.resolver).resource("/libs/b").p("values", new String[] {"x", "y"}).commit();
+        final String[] values = (String[]) this.provider.getResource(this.resolver, "/merged/b").getValueMap().get("values");
+        values[0] = "modified";
+        assertArrayEquals(new String[] {"x", "y"},
+                (String[]) this.provider.getResource(this.resolver, "/merged/b").getValueMap().get("values"));
+    }
+
+    @Test public void testStreamsAreNotCached() throws Exception {
+        MockHelper.create(this.resolver).resource("/libs/b")
+                                          .resource("1")
+                                          .resource(".2").p("data", new ByteArrayInputStream(new byte[] {1}))
+                                        .commit();
+        assertNotNull(this.provider.getResource(this.resolver, "/merged/b/2").getValueMap().get("data"));
+        assertEquals(2, this.getChildNames("/merged/b").size());
+
+        this.change("/libs/b/2", "a", "changed");
+        assertEquals("changed", this.provider.getResource(this.resolver, "/merged/b/2").getValueMap().get("a"));
+        // the list of children is not cached as it contains the resource with the stream
+        MockHelper.create(this.resolver).resource("/libs/b/3").commit();
+        assertEquals(3, this.getChildNames("/merged/b").size());
+    }
+
+    @Test public void testEventFilter() throws Exception {
+        assertEquals("(|(path=/merged)(path=/merged/*))", this.cache.getEventFilter());
+
+        // the top level paths of the merged resources are added
+        this.provider.getResource(this.resolver, "/merged/a/1");
+        final String filter = this.cache.getEventFilter();
+        assertTrue(filter.contains("(path=/apps)(path=/apps/*)"));
+        assertTrue(filter.contains("(path=/libs)(path=/libs/*)"));
+        assertFalse(filter.contains("/content"));
+
+        assertEquals("(|(path=/a\\(b\\))(path=/a\\(b\\)/*))", new MergedResourceCache("/a(b)", 10).getEventFilter());
+    }
+}
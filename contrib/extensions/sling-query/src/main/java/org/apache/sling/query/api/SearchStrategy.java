@@ -23,5 +23,13 @@ import aQute.bnd.annotation.ProviderType;
 
 @ProviderType
 public enum SearchStrategy {
-	BFS, DFS, QUERY;
+	BFS, DFS, QUERY,
+
+	/**
+	 * Uses a JCR query if the selector restricts the type, name or attributes of the resources and the
+	 * subtree has more than a few resources, a depth-first traversal otherwise.
+	 * 
+	 * @since 3.1.0
+	 */
+	AUTO;
 }
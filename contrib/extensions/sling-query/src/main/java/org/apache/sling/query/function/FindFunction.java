@@ -23,18 +23,26 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.sling.query.api.SearchStrategy;
 import org.apache.sling.query.api.internal.ElementToIteratorFunction;
 import org.apache.sling.query.api.internal.TreeProvider;
 import org.apache.sling.query.iterator.WarningIterator;
 import org.apache.sling.query.iterator.tree.BfsTreeIterator;
 import org.apache.sling.query.iterator.tree.DfsTreeIterator;
+import org.apache.sling.query.selector.parser.Attribute;
 import org.apache.sling.query.selector.parser.Selector;
 import org.apache.sling.query.selector.parser.SelectorParser;
 import org.apache.sling.query.selector.parser.SelectorSegment;
 
 public class FindFunction<T> implements ElementToIteratorFunction<T> {
 
+	/**
+	 * Number of descendants up to which the {@link SearchStrategy#AUTO} strategy traverses the tree instead of
+	 * using a query. This is the number of resources {@link WarningIterator} tolerates.
+	 */
+	static final int AUTO_TRAVERSAL_LIMIT = 100;
+
 	private final List<SelectorSegment> preFilteringSelector;
 
 	private final TreeProvider<T> provider;
@@ -65,6 +73,13 @@ public class FindFunction<T> implements ElementToIteratorFunction<T> {
 			case QUERY:
 				iterator = provider.query(preFilteringSelector, input);
 				break;
+			case AUTO:
+				if (isSelective(preFilteringSelector) && hasMoreDescendants(input, AUTO_TRAVERSAL_LIMIT)) {
+					iterator = provider.query(preFilteringSelector, input);
+				} else {
+					iterator = new DfsTreeIterator<T>(input, provider);
+				}
+				break;
 			case DFS:
 			default:
 				iterator = new DfsTreeIterator<T>(input, provider);
@@ -72,4 +87,41 @@ public class FindFunction<T> implements ElementToIteratorFunction<T> {
 		}
 		return new WarningIterator<T>(iterator);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * A query only pays off if each alternative of the selector restricts the resources, otherwise it returns
+	 * the whole subtree just like a traversal.
+	 */
+	private static boolean isSelective(List<SelectorSegment> segments) {
+		if (segments.isEmpty()) {
+			return false;
+		}
+		for (SelectorSegment segment : segments) {
+			boolean selective = StringUtils.isNotBlank(segment.getType()) || StringUtils.isNotBlank(segment.getName());
+			if (segment.getAttributes() != null) {
+				for (Attribute attribute : segment.getAttributes()) {
+					// attributes of child resources are not part of the query
+					selective |= !attribute.getKey().contains("/");
+				}
+			}
+			if (!selective) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Estimates the size of the subtree by visiting at most {@code limit + 1} descendants.
+	 */
+	private boolean hasMoreDescendants(T input, int limit) {
+		Iterator<T> descendants = new BfsTreeIterator<T>(input, provider);
+		for (int i = 0; i <= limit; i++) {
+			if (!descendants.hasNext()) {
+				return false;
+			}
+			descendants.next();
+		}
+		return true;
+	}
+}
@@ -21,12 +21,25 @@ package org.apache.sling.query.selector.parser;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang.StringUtils;
 
 public final class SelectorParser {
 
+	/**
+	 * Maximum number of parsed selectors kept in the cache.
+	 */
+	static final int MAX_CACHED_SELECTORS = 1000;
+
+	/**
+	 * Parsed selectors are immutable, so the same few selectors used by an application are parsed only once.
+	 */
+	private static final ConcurrentMap<String, List<Selector>> CACHE = new ConcurrentHashMap<String, List<Selector>>();
+
 	private SelectorParser() {
 	}
 
@@ -34,12 +47,20 @@ public final class SelectorParser {
 		if (StringUtils.isEmpty(selector)) {
 			return Arrays.asList(new Selector());
 		}
-		ParserContext context = new ParserContext();
-		for (char c : selector.toCharArray()) {
-			context.getState().process(context, c);
+		List<Selector> selectors = CACHE.get(selector);
+		if (selectors == null) {
+			ParserContext context = new ParserContext();
+			for (char c : selector.toCharArray()) {
+				context.getState().process(context, c);
+			}
+			context.getState().process(context, (char) 0);
+			selectors = Collections.unmodifiableList(new ArrayList<Selector>(context.getSelectors()));
+			if (CACHE.size() >= MAX_CACHED_SELECTORS) {
+				CACHE.clear();
+			}
+			CACHE.putIfAbsent(selector, selectors);
 		}
-		context.getState().process(context, (char) 0);
-		return context.getSelectors();
+		return selectors;
 	}
 
 	public static List<SelectorSegment> getFirstSegmentFromEachSelector(List<Selector> selectors) {
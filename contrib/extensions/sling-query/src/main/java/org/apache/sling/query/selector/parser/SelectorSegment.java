@@ -20,6 +20,7 @@
 package org.apache.sling.query.selector.parser;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
@@ -39,8 +40,8 @@ public class SelectorSegment {
 	public SelectorSegment(ParserContext context, boolean firstSegment) {
 		this.type = context.getType();
 		this.name = context.getName();
-		this.attributes = new ArrayList<Attribute>(context.getAttributes());
-		this.modifiers = new ArrayList<Modifier>(context.getModifiers());
+		this.attributes = Collections.unmodifiableList(new ArrayList<Attribute>(context.getAttributes()));
+		this.modifiers = Collections.unmodifiableList(new ArrayList<Modifier>(context.getModifiers()));
 		if (firstSegment) {
 			hierarchyOperator = 0;
 		} else {
@@ -0,0 +1,138 @@
+/*-
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sling.query.function;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.sling.query.api.Predicate;
+import org.apache.sling.query.api.SearchStrategy;
+import org.apache.sling.query.api.internal.TreeProvider;
+import org.apache.sling.query.selector.parser.Attribute;
+import org.apache.sling.query.selector.parser.SelectorSegment;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FindFunctionTest {
+
+	private static final String QUERY_RESULT = "/query/result";
+
+	@Test
+	public void testAutoTraversesSmallTree() {
+		TestTreeProvider provider = new TestTreeProvider(FindFunction.AUTO_TRAVERSAL_LIMIT);
+		FindFunction<String> find = new FindFunction<String>(SearchStrategy.AUTO, provider, "cq:Page");
+		Iterator<String> result = find.apply("/");
+		Assert.assertEquals(FindFunction.AUTO_TRAVERSAL_LIMIT, count(result));
+		Assert.assertEquals(0, provider.queries);
+	}
+
+	@Test
+	public void testAutoQueriesLargeTree() {
+		TestTreeProvider provider = new TestTreeProvider(FindFunction.AUTO_TRAVERSAL_LIMIT + 1);
+		FindFunction<String> find = new FindFunction<String>(SearchStrategy.AUTO, provider, "cq:Page[jcr:title=foo]");
+		Iterator<String> result = find.apply("/");
+		Assert.assertEquals(QUERY_RESULT, result.next());
+		Assert.assertFalse(result.hasNext());
+		Assert.assertEquals(1, provider.queries);
+	}
+
+	@Test
+	public void testAutoTraversesWithoutRestriction() {
+		TestTreeProvider provider = new TestTreeProvider(FindFunction.AUTO_TRAVERSAL_LIMIT + 1);
+		// the empty selector and attributes of child resources cannot restrict a query
+		Assert.assertEquals(FindFunction.AUTO_TRAVERSAL_LIMIT + 1,
+				count(new FindFunction<String>(SearchStrategy.AUTO, provider, "").apply("/")));
+		Assert.assertEquals(FindFunction.AUTO_TRAVERSAL_LIMIT + 1,
+				count(new FindFunction<String>(SearchStrategy.AUTO, provider, "[jcr:content/title=foo]").apply("/")));
+		// all alternatives have to be restricted
+		Assert.assertEquals(FindFunction.AUTO_TRAVERSAL_LIMIT + 1,
+				count(new FindFunction<String>(SearchStrategy.AUTO, provider, "cq:Page, [x/y=z]").apply("/")));
+		Assert.assertEquals(0, provider.queries);
+	}
+
+	private static int count(Iterator<String> iterator) {
+		int count = 0;
+		while (iterator.hasNext()) {
+			iterator.next();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Tree of a root with the given number of children.
+	 */
+	private static class TestTreeProvider implements TreeProvider<String> {
+
+		private final int children;
+
+		private int queries;
+
+		TestTreeProvider(int children) {
+			this.children = children;
+		}
+
+		@Override
+		public Iterator<String> listChildren(String parent) {
+			if (!"/".equals(parent)) {
+				return Collections.<String> emptyList().iterator();
+			}
+			List<String> result = new ArrayList<String>();
+			for (int i = 0; i < children; i++) {
+				result.add("/" + i);
+			}
+			return result.iterator();
+		}
+
+		@Override
+		public String getParent(String element) {
+			return "/".equals(element) ? null : "/";
+		}
+
+		@Override
+		public String getName(String element) {
+			return element.substring(1);
+		}
+
+		@Override
+		public Predicate<String> getPredicate(String type, String name, List<Attribute> attributes) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Iterator<String> query(List<SelectorSegment> segment, String resource) {
+			queries++;
+			return Arrays.asList(QUERY_RESULT).iterator();
+		}
+
+		@Override
+		public boolean sameElement(String o1, String o2) {
+			return o1.equals(o2);
+		}
+
+		@Override
+		public boolean isDescendant(String root, String testedElement) {
+			return testedElement.startsWith(root);
+		}
+	}
+}
@@ -3,12 +3,14 @@ package org.apache.sling.validation.impl;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.validation.api.ParameterizedValidator;
 import org.apache.sling.validation.api.Validator;
+import org.apache.sling.validation.api.exceptions.SlingValidationException;
 import org.apache.sling.validation.impl.util.ValidatorTypeUtil;
 
 public class ParameterizedValidatorImpl implements ParameterizedValidator {
     private final Validator<?> validator;
     private final ValueMap parameters;
     private final Class<?> type;
+    private final Class<?> arrayType;
     
     public ParameterizedValidatorImpl(Validator<?> validator, ValueMap parameters) {
         super();
@@ -16,6 +18,7 @@ public class ParameterizedValidatorImpl implements ParameterizedValidator {
         this.parameters = parameters;
         // cache type information as this is using reflection
         this.type = ValidatorTypeUtil.getValidatorType(validator);
+        this.arrayType = toArrayType(type);
     }
 
     /* (non-Javadoc)
@@ -41,4 +44,24 @@ public class ParameterizedValidatorImpl implements ParameterizedValidator {
     public Class<?> getType() {
         return type;
     }
+
+    /**
+     * @return the array type used to read the property values for this validator, either {@link #getType()} if that is already an array
+     *         type or the array type of {@link #getType()}
+     */
+    public Class<?> getArrayType() {
+        return arrayType;
+    }
+
+    static Class<?> toArrayType(Class<?> type) {
+        if (type.isArray()) {
+            return type;
+        }
+        try {
+            // https://docs.oracle.com/javase/6/docs/api/java/lang/Class.html#getName%28%29 has some hints on class names
+            return Class.forName("[L" + type.getName() + ";", false, type.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new SlingValidationException("Could not generate array class for type " + type, e);
+        }
+    }
 }
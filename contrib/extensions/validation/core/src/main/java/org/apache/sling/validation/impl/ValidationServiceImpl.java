@@ -18,6 +18,7 @@
  */
 package org.apache.sling.validation.impl;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Hashtable;
@@ -26,7 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jcr.query.Query;
 
@@ -73,7 +74,16 @@ public class ValidationServiceImpl implements ValidationService, EventHandler {
     static final String[] TOPICS = {SlingConstants.TOPIC_RESOURCE_REMOVED, SlingConstants.TOPIC_RESOURCE_CHANGED,
             SlingConstants.TOPIC_RESOURCE_ADDED};
 
+    /**
+     * The validation models per resource type. A trie is completely built before it is added and never modified afterwards,
+     * resource types without any model are cached with an empty trie.
+     */
     protected Map<String, Trie<JCRValidationModel>> validationModelsCache = new ConcurrentHashMap<String, Trie<JCRValidationModel>>();
+
+    /**
+     * Incremented whenever the cached models become invalid, such that models searched concurrently are not cached.
+     */
+    private final AtomicInteger cacheGeneration = new AtomicInteger();
     private ThreadPool threadPool;
     private ServiceRegistration eventHandlerRegistration;
 
@@ -101,20 +111,14 @@ public class ValidationServiceImpl implements ValidationService, EventHandler {
             throw new IllegalArgumentException("ValidationService.getValidationModel - cannot accept null as resource type. Resource path was: " + resourcePath);
         }
         validatedResourceType = getRelativeResourceType(validatedResourceType);
-        ValidationModel model = null;
         Trie<JCRValidationModel> modelsForResourceType = validationModelsCache.get(validatedResourceType);
         if (modelsForResourceType != null) {
-            model = modelsForResourceType.getElementForLongestMatchingKey(resourcePath).getValue();
+            return modelsForResourceType.getElementForLongestMatchingKey(resourcePath).getValue();
         }
-        if (model == null) {
-            modelsForResourceType = searchAndStoreValidationModel(validatedResourceType);
-            if (modelsForResourceType != null) {
-                model = modelsForResourceType.getElementForLongestMatchingKey(resourcePath).getValue();
-                if (model == null) {
-                    LOG.warn("Although model for resource type {} is available, it is not allowed for path {}", validatedResourceType, resourcePath);
-                }
-            }
-            
+        modelsForResourceType = searchAndStoreValidationModel(validatedResourceType);
+        ValidationModel model = modelsForResourceType.getElementForLongestMatchingKey(resourcePath).getValue();
+        if (model == null && !modelsForResourceType.ROOT.getChildren().isEmpty()) {
+            LOG.warn("Although model for resource type {} is available, it is not allowed for path {}", validatedResourceType, resourcePath);
         }
         return model;
     }
@@ -185,20 +189,14 @@ public class ValidationServiceImpl implements ValidationService, EventHandler {
      */
     private void validateChildren(Resource resource, String relativePath, List<ChildResource> childResources, ValidationResultImpl result) {
         // validate children resources, if any
+        List<ChildResource> patternChildResources = null;
         for (ChildResource childResource : childResources) {
             // if a pattern is set we validate all children matching that pattern
             if (childResource.getNamePattern() != null) {
-                boolean foundMatch = false;
-                for (Resource child : resource.getChildren()) {
-                    Matcher matcher = childResource.getNamePattern().matcher(child.getName());
-                    if (matcher.matches()) {
-                       validateChildResource(child, relativePath, childResource, result);
-                       foundMatch = true;
-                    }
-                }
-                if (!foundMatch && childResource.isRequired()) {
-                    result.addFailureMessage(relativePath + childResource.getNamePattern().pattern(), "Missing required child resource.");
+                if (patternChildResources == null) {
+                    patternChildResources = new ArrayList<ChildResource>();
                 }
+                patternChildResources.add(childResource);
             } else {
                 Resource expectedResource = resource.getChild(childResource.getName());
                 if (expectedResource != null) {
@@ -208,6 +206,26 @@ public class ValidationServiceImpl implements ValidationService, EventHandler {
                 }
             } 
         }
+        if (patternChildResources != null) {
+            // iterate the children only once for all patterns
+            boolean[] foundMatch = new boolean[patternChildResources.size()];
+            for (Resource child : resource.getChildren()) {
+                String name = child.getName();
+                for (int i = 0; i < foundMatch.length; i++) {
+                    ChildResource childResource = patternChildResources.get(i);
+                    if (childResource.getNamePattern().matcher(name).matches()) {
+                        validateChildResource(child, relativePath, childResource, result);
+                        foundMatch[i] = true;
+                    }
+                }
+            }
+            for (int i = 0; i < foundMatch.length; i++) {
+                ChildResource childResource = patternChildResources.get(i);
+                if (!foundMatch[i] && childResource.isRequired()) {
+                    result.addFailureMessage(relativePath + childResource.getNamePattern().pattern(), "Missing required child resource.");
+                }
+            }
+        }
     }
     
     private void validateChildResource(Resource resource, String relativePath, ChildResource childResource, ValidationResultImpl result) {
@@ -239,6 +257,7 @@ public class ValidationServiceImpl implements ValidationService, EventHandler {
     // EventHandler ########################################################################################################################
     @Override
     public void handleEvent(Event event) {
+        cacheGeneration.incrementAndGet();
         Runnable task = new Runnable() {
             @Override
             public void run() {
@@ -366,7 +385,8 @@ public class ValidationServiceImpl implements ValidationService, EventHandler {
      * @return a {@link Trie} with the validation models; an empty trie if no model is found
      */
     private Trie<JCRValidationModel> searchAndStoreValidationModel(String validatedResourceType) {
-        Trie<JCRValidationModel> modelsForResourceType = null;
+        final int generation = cacheGeneration.get();
+        Trie<JCRValidationModel> modelsForResourceType = new Trie<JCRValidationModel>();
         ResourceResolver rr = null;
         JCRValidationModel vm;
         if (StringUtils.isBlank(validatedResourceType)) {
@@ -394,17 +414,7 @@ public class ValidationServiceImpl implements ValidationService, EventHandler {
                             throw new IllegalArgumentException("Neither children nor properties set.");
                         } else {
                             vm = new JCRValidationModel(jcrPath, resourceProperties, validatedResourceType, applicablePaths, children);
-                            modelsForResourceType = validationModelsCache.get(validatedResourceType);
-                            /**
-                             * if the modelsForResourceType is null the canAcceptModel will return true: performance
-                             * optimisation so that the Trie is created only if the model is accepted
-                             */
-
                             if (canAcceptModel(vm, searchPath, searchPaths, modelsForResourceType)) {
-                                if (modelsForResourceType == null) {
-                                    modelsForResourceType = new Trie<JCRValidationModel>();
-                                    validationModelsCache.put(validatedResourceType, modelsForResourceType);
-                                }
                                 for (String applicablePath : vm.getApplicablePaths()) {
                                     modelsForResourceType.insert(applicablePath, vm);
                                 }
@@ -422,6 +432,10 @@ public class ValidationServiceImpl implements ValidationService, EventHandler {
                 rr.close();
             }
         }
+        // only publish the completely built trie, unless the models have changed in the meantime
+        if (generation == cacheGeneration.get()) {
+            validationModelsCache.put(validatedResourceType, modelsForResourceType);
+        }
         return modelsForResourceType;
     }
 
@@ -437,8 +451,8 @@ public class ValidationServiceImpl implements ValidationService, EventHandler {
      */
     private boolean canAcceptModel(JCRValidationModel validationModel, String currentSearchPath, String[] searchPaths,
                                    Trie<JCRValidationModel> validationModels) {
-        // perform null check to optimise performance in callee - no need to previously create the Trie if we're not going to accept the model
-        if (validationModels != null) {
+        // no need to compare with the existing models if there are none yet
+        if (!validationModels.ROOT.getChildren().isEmpty() || validationModels.ROOT.getValue() != null) {
             String relativeModelPath = validationModel.getJcrPath().replaceFirst(currentSearchPath, "");
             for (String searchPath : searchPaths) {
                 if (!currentSearchPath.equals(searchPath)) {
@@ -462,16 +476,13 @@ public class ValidationServiceImpl implements ValidationService, EventHandler {
     private void validatePropertyValue(ValidationResultImpl result, String property, String relativePath, ValueMap valueMap, List<ParameterizedValidator> validators) {
         for (ParameterizedValidator validator : validators) {
             // convert the type always to an array
-            Class<?> type = validator.getType();
-            if (!type.isArray()) {
-                try {
-                    // https://docs.oracle.com/javase/6/docs/api/java/lang/Class.html#getName%28%29 has some hints on class names
-                    type = Class.forName("[L"+type.getName()+";", false, type.getClassLoader());
-                } catch (ClassNotFoundException e) {
-                    throw new SlingValidationException("Could not generate array class for type " + type, e);
-                }
+            Class<?> type;
+            if (validator instanceof ParameterizedValidatorImpl) {
+                type = ((ParameterizedValidatorImpl) validator).getArrayType();
+            } else {
+                type = ParameterizedValidatorImpl.toArrayType(validator.getType());
             }
-            
+
             Object[] typedValue = (Object[])valueMap.get(property, type);
             // see https://issues.apache.org/jira/browse/SLING-4178 for why the second check is necessary
             if (typedValue == null || (typedValue.length > 0 && typedValue[0] == null)) {
@@ -527,6 +538,7 @@ public class ValidationServiceImpl implements ValidationService, EventHandler {
 
     protected void unbindValidator(Validator<?> validator, Map<?, ?> properties) {
         // also remove references to all validators in the cache
+        cacheGeneration.incrementAndGet();
         validationModelsCache.clear();
         validators.remove(validator.getClass().getName());
     }
@@ -18,6 +18,8 @@
  */
 package org.apache.sling.validation.impl.validators;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
@@ -37,6 +39,16 @@ public class RegexValidator implements Validator<String> {
 
     public static final String REGEX_PARAM = "regex";
 
+    /**
+     * Maximum number of compiled patterns kept in the cache.
+     */
+    static final int MAX_CACHED_PATTERNS = 1000;
+
+    /**
+     * Compiled patterns by regular expression, as the same few expressions of the validation models are used over and over again.
+     */
+    private final ConcurrentMap<String, Pattern> patterns = new ConcurrentHashMap<String, Pattern>();
+
     @Override
     public String validate(String data, ValueMap valueMap, ValueMap arguments)
             throws SlingValidationException {
@@ -44,11 +56,24 @@ public class RegexValidator implements Validator<String> {
         if (StringUtils.isEmpty(regex)) {
             throw new SlingValidationException("Mandatory " + REGEX_PARAM + " is missing from the arguments map.");
         }
-        Pattern pattern = Pattern.compile(regex);
+        Pattern pattern = getPattern(regex);
         if (pattern.matcher((String)data).matches()) {
             return null;
         }
         return "Property does not match the pattern " + regex;
     }
 
+    private Pattern getPattern(String regex) {
+        Pattern pattern = patterns.get(regex);
+        if (pattern == null) {
+            pattern = Pattern.compile(regex);
+            // the models only contain a limited number of expressions, so just start over if that is exceeded
+            if (patterns.size() >= MAX_CACHED_PATTERNS) {
+                patterns.clear();
+            }
+            patterns.putIfAbsent(regex, pattern);
+        }
+        return pattern;
+    }
+
 }
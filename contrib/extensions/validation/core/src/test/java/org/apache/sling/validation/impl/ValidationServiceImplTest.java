@@ -26,11 +26,13 @@ import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.jackrabbit.JcrConstants;
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.PersistenceException;
@@ -40,6 +42,7 @@ import org.apache.sling.api.resource.ResourceResolverFactory;
 import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.jcr.resource.JcrResourceConstants;
 import org.apache.sling.validation.api.ValidationModel;
 import org.apache.sling.validation.api.ValidationResult;
@@ -58,6 +61,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.osgi.service.event.Event;
 import org.powermock.reflect.Whitebox;
 
 public class ValidationServiceImplTest {
@@ -871,6 +875,41 @@ public class ValidationServiceImplTest {
         }
     }
 
+    @Test
+    public void testGetValidationModelIsCachedUntilModelsChange() throws Exception {
+        validationService.validators.put("org.apache.sling.validation.impl.validators.RegexValidator",
+                new RegexValidator());
+        ThreadPool threadPool = mock(ThreadPool.class);
+        Mockito.doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(threadPool).execute(Mockito.any(Runnable.class));
+        Whitebox.setInternalState(validationService, "threadPool", threadPool);
+
+        TestProperty property = new TestProperty("field1");
+        property.addValidator("org.apache.sling.validation.impl.validators.RegexValidator");
+        Resource model1 = null;
+        try {
+            // the missing model is cached as well
+            Assert.assertNull(validationService.getValidationModel("sling/validation/test", "/apps/validation/resource"));
+            model1 = createValidationModelResource(rr, libsValidatorsRoot.getPath(), "testValidationModel1",
+                    "sling/validation/test", new String[] { "/apps/validation" }, property);
+            Assert.assertNull(validationService.getValidationModel("sling/validation/test", "/apps/validation/resource"));
+
+            // a change of the models invalidates the cache
+            validationService.handleEvent(new Event(SlingConstants.TOPIC_RESOURCE_ADDED, (Dictionary<String, ?>) null));
+            ValidationModel vm = validationService.getValidationModel("sling/validation/test", "/apps/validation/resource");
+            Assert.assertNotNull(vm);
+            Assert.assertSame(vm, validationService.getValidationModel("sling/validation/test", "/apps/validation/other"));
+        } finally {
+            if (model1 != null) {
+                rr.delete(model1);
+            }
+        }
+    }
+
     @Test
     public void testGetRelativeResourcePath() {
         // return relative paths unmodified
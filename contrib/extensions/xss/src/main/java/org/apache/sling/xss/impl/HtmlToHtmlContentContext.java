@@ -19,6 +19,7 @@ package org.apache.sling.xss.impl;
 import java.util.List;
 
 import org.owasp.validator.html.CleanResults;
+import org.owasp.validator.html.Policy;
 import org.owasp.validator.html.PolicyException;
 import org.owasp.validator.html.ScanException;
 import org.slf4j.Logger;
@@ -42,6 +43,9 @@ public class HtmlToHtmlContentContext implements XSSFilterRule {
      * @see XSSFilterRule#check(PolicyHandler, String)
      */
     public boolean check(final PolicyHandler policyHandler, final String str) {
+        if (isPlainText(policyHandler, str)) {
+            return true;
+        }
         try {
             return policyHandler.getAntiSamy().scan(str).getNumberOfErrors() == 0;
         } catch (final ScanException se) {
@@ -55,6 +59,10 @@ public class HtmlToHtmlContentContext implements XSSFilterRule {
      * @see XSSFilterRule#filter(PolicyHandler, java.lang.String)
      */
     public String filter(final PolicyHandler policyHandler, final String str) {
+        if (isPlainText(policyHandler, str)) {
+            // scanning would return the input unchanged
+            return str;
+        }
         try {
             log.debug("Protecting (HTML -> HTML) :\n{}", str);
             final CleanResults results = policyHandler.getAntiSamy().scan(str);
@@ -74,6 +82,48 @@ public class HtmlToHtmlContentContext implements XSSFilterRule {
         }
     }
 
+    /**
+     * Check whether the input is plain text which the scanner would return
+     * unchanged. This is the case if the input does not contain any markup,
+     * character references, characters which are escaped on output or
+     * control characters and if it does not exceed the maximum input size
+     * of the policy. Input ending with a newline is not plain text either, as
+     * the scanner appends another newline to it.
+     */
+    static boolean isPlainText(final PolicyHandler policyHandler, final String str) {
+        if (str.length() > getMaxInputSize(policyHandler.getPolicy())) {
+            return false;
+        }
+        if (str.endsWith("\n")) {
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            if (c < ' ') {
+                if (c != '\t' && c != '\n') {
+                    return false;
+                }
+            } else if (c == '<' || c == '>' || c == '&' || c == '"') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getMaxInputSize(final Policy policy) {
+        if (policy != null) {
+            final String value = policy.getDirective("maxInputSize");
+            if (value != null) {
+                try {
+                    return Integer.parseInt(value);
+                } catch (final NumberFormatException nfe) {
+                    // use default
+                }
+            }
+        }
+        return Policy.DEFAULT_MAX_INPUT_SIZE;
+    }
+
     /**
      * @see XSSFilterRule#supportsPolicy()
      */
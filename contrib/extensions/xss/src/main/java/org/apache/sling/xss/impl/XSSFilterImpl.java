@@ -20,11 +20,13 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.sling.xss.ProtectionContext;
 import org.apache.sling.xss.XSSFilter;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
@@ -32,6 +34,7 @@ import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.ResourceResolver;
 import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventConstants;
 import org.osgi.service.event.EventHandler;
@@ -41,12 +44,28 @@ import org.osgi.service.event.EventHandler;
  * XSS protection library found at
  * <a href="http://code.google.com/p/owaspantisamy/">http://code.google.com/p/owaspantisamy/</a>.
  */
-@Component(immediate = true)
+@Component(immediate = true, metatype = true,
+        label = "Apache Sling XSS Filter",
+        description = "Filters HTML based on the configured AntiSamy policies.")
 @Service(value = {EventHandler.class, XSSFilter.class})
-@Property(name = EventConstants.EVENT_TOPIC, value = {"org/apache/sling/api/resource/Resource/*",
-        "org/apache/sling/api/resource/ResourceProvider/*"})
+@Properties({
+    @Property(name = EventConstants.EVENT_TOPIC, value = {"org/apache/sling/api/resource/Resource/*",
+            "org/apache/sling/api/resource/ResourceProvider/*"}, propertyPrivate = true),
+    @Property(name = XSSFilterImpl.PROP_FILTER_CACHE_SIZE, intValue = XSSFilterImpl.DEFAULT_FILTER_CACHE_SIZE,
+            label = "Filter Cache Size",
+            description = "Maximum number of filtered HTML fragments kept per instance. Repeated filtering " +
+                          "of the same fragment with the same policy is then served from the cache. " +
+                          "Fragments longer than " + XSSFilterImpl.MAX_CACHED_LENGTH + " characters are not cached. " +
+                          "The cache is cleared if a policy changes. A value of 0 disables the cache.")
+})
 public class XSSFilterImpl implements XSSFilter, EventHandler {
 
+    static final String PROP_FILTER_CACHE_SIZE = "filter.cache.size";
+
+    static final int DEFAULT_FILTER_CACHE_SIZE = 0;
+
+    static final int MAX_CACHED_LENGTH = 16384;
+
     @Reference
     private ResourceResolverFactory resourceResolverFactory = null;
 
@@ -72,6 +91,13 @@ public class XSSFilterImpl implements XSSFilter, EventHandler {
      */
     private static final int DEFAULT_POLICY_CACHE_SIZE = 128;
 
+    /**
+     * A cache for filtered HTML.
+     */
+    private final ConcurrentMap<FilterCacheKey, String> filterCache = new ConcurrentHashMap<FilterCacheKey, String>();
+
+    private volatile int filterCacheSize = DEFAULT_FILTER_CACHE_SIZE;
+
     private void updateCheckPaths(final String policyPath) {
         final Set<String> newCheckPaths = new HashSet<String>(checkPaths);
         ResourceResolver resolver = null;
@@ -93,7 +119,8 @@ public class XSSFilterImpl implements XSSFilter, EventHandler {
 
     @Activate
     @SuppressWarnings("unused")
-    protected void activate() {
+    protected void activate(final Map<String, Object> properties) {
+        this.filterCacheSize = PropertiesUtil.toInteger(properties.get(PROP_FILTER_CACHE_SIZE), DEFAULT_FILTER_CACHE_SIZE);
         // load default handler
         this.getPolicyHandler(null);
     }
@@ -113,6 +140,7 @@ public class XSSFilterImpl implements XSSFilter, EventHandler {
         }
         if (reload) {
             this.policies.clear();
+            this.filterCache.clear();
         }
     }
 
@@ -190,6 +218,55 @@ public class XSSFilterImpl implements XSSFilter, EventHandler {
         }
         final XSSFilterRule ctx = this.getFilterRule(context);
         final PolicyHandler handler = ctx.supportsPolicy() ? this.getPolicyHandler(policy) : null;
+        if (ctx == this.htmlHtmlContext && this.filterCacheSize > 0 && src.length() <= MAX_CACHED_LENGTH
+                && !HtmlToHtmlContentContext.isPlainText(handler, src)) {
+            final FilterCacheKey key = new FilterCacheKey(handler, src);
+            String cleaned = this.filterCache.get(key);
+            if (cleaned == null) {
+                cleaned = ctx.filter(handler, src);
+                if (this.filterCache.size() >= this.filterCacheSize) {
+                    this.filterCache.clear();
+                }
+                this.filterCache.put(key, cleaned);
+            }
+            return cleaned;
+        }
         return ctx.filter(handler, src);
     }
+
+    /**
+     * Key of the filter cache. As the policy handler is recreated on a
+     * policy change, entries of an outdated policy are never returned.
+     */
+    private static final class FilterCacheKey {
+
+        private final PolicyHandler handler;
+
+        private final String source;
+
+        private final int hash;
+
+        FilterCacheKey(final PolicyHandler handler, final String source) {
+            this.handler = handler;
+            this.source = source;
+            this.hash = 31 * System.identityHashCode(handler) + source.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof FilterCacheKey)) {
+                return false;
+            }
+            final FilterCacheKey other = (FilterCacheKey) obj;
+            return this.handler == other.handler && this.source.equals(other.source);
+        }
+    }
 }
@@ -198,7 +198,17 @@ public class XSSAPIImplTest {
                 {"<strike>strike</strike>", "<strike>strike</strike>"},
                 {"<s>s</s>", "<s>s</s>"},
 
-                {"<a href=\"\">empty href</a>", "<a href=\"\">empty href</a>"}
+                {"<a href=\"\">empty href</a>", "<a href=\"\">empty href</a>"},
+
+                // plain text
+                {"  two\tlines\n ", "  two\tlines\n "},
+                // the scanner appends a newline to a trailing newline
+                {"a\n", "a\n\n"},
+                {" \n", " \n\n"},
+                {"a & b", "a &amp; b"},
+                {"x > y", "x &gt; y"},
+                {"say \"hi\"", "say &quot;hi&quot;"},
+                {"ctrl\u0001", "ctrl&#x1;"}
         };
 
         for (String[] aTestData : testData) {
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one or
+ * more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding
+ * copyright ownership. The ASF licenses this file to you under the
+ * Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0 Unless required by
+ * applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ ******************************************************************************/
+package org.apache.sling.xss.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.xss.ProtectionContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.owasp.validator.html.AntiSamy;
+import org.owasp.validator.html.Policy;
+import org.osgi.service.event.Event;
+
+public class XSSFilterImplTest {
+
+    private static final String POLICY_PATH = "/libs" + XSSFilterRule.DEFAULT_POLICY_PATH;
+
+    private XSSFilterImpl xssFilter;
+
+    private AntiSamy antiSamy;
+
+    private PolicyHandler policyHandler;
+
+    @Before
+    public void setup() throws Exception {
+        final InputStream policyStream = new FileInputStream("./src/main/resources/SLING-INF/content/config.xml");
+        final Policy policy = Policy.getInstance(policyStream);
+        this.antiSamy = spy(new AntiSamy(policy));
+
+        this.policyHandler = mock(PolicyHandler.class);
+        when(this.policyHandler.getPolicy()).thenReturn(policy);
+        when(this.policyHandler.getAntiSamy()).thenReturn(this.antiSamy);
+
+        this.xssFilter = new XSSFilterImpl();
+        this.setPolicyHandler();
+        final Field checkPathsField = XSSFilterImpl.class.getDeclaredField("checkPaths");
+        checkPathsField.setAccessible(true);
+        checkPathsField.set(this.xssFilter, Collections.singleton(POLICY_PATH));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setPolicyHandler() throws Exception {
+        final Field policiesField = XSSFilterImpl.class.getDeclaredField("policies");
+        policiesField.setAccessible(true);
+        ((Map<String, PolicyHandler>) policiesField.get(this.xssFilter)).put(XSSFilterRule.DEFAULT_POLICY_PATH,
+                this.policyHandler);
+    }
+
+    private void activate(final int cacheSize) {
+        final Map<String, Object> props = new HashMap<String, Object>();
+        props.put(XSSFilterImpl.PROP_FILTER_CACHE_SIZE, cacheSize);
+        this.xssFilter.activate(props);
+    }
+
+    private String filter(final String src) {
+        return this.xssFilter.filter(ProtectionContext.HTML_HTML_CONTENT, src);
+    }
+
+    @Test
+    public void testCacheDisabled() throws Exception {
+        this.activate(0);
+        assertEquals("<b>x</b>", this.filter("<b>x</b>"));
+        assertEquals("<b>x</b>", this.filter("<b>x</b>"));
+        verify(this.antiSamy, times(2)).scan("<b>x</b>");
+    }
+
+    @Test
+    public void testCachedFragment() throws Exception {
+        this.activate(10);
+        assertEquals("<b>x</b>", this.filter("<b>x</b>"));
+        assertEquals("<b>x</b>", this.filter("<b>x</b>"));
+        verify(this.antiSamy, times(1)).scan("<b>x</b>");
+
+        // plain text is neither scanned nor cached
+        assertEquals("plain", this.filter("plain"));
+        verify(this.antiSamy, times(0)).scan("plain");
+    }
+
+    @Test
+    public void testLongFragmentNotCached() throws Exception {
+        this.activate(10);
+        final StringBuilder sb = new StringBuilder("<b>");
+        while (sb.length() <= XSSFilterImpl.MAX_CACHED_LENGTH) {
+            sb.append("long text ");
+        }
+        final String src = sb.append("</b>").toString();
+        this.filter(src);
+        this.filter(src);
+        verify(this.antiSamy, times(2)).scan(src);
+    }
+
+    @Test
+    public void testCacheClearedWhenFull() throws Exception {
+        this.activate(2);
+        this.filter("<b>1</b>");
+        this.filter("<b>2</b>");
+        // clears the cache before adding the third fragment
+        this.filter("<b>3</b>");
+        this.filter("<b>3</b>");
+        this.filter("<b>1</b>");
+        verify(this.antiSamy, times(2)).scan("<b>1</b>");
+        verify(this.antiSamy, times(1)).scan("<b>3</b>");
+    }
+
+    @Test
+    public void testCacheClearedOnPolicyChange() throws Exception {
+        this.activate(10);
+        this.filter("<b>x</b>");
+
+        // changes of other resources keep the cache
+        this.xssFilter.handleEvent(this.createEvent("/content"));
+        this.filter("<b>x</b>");
+        verify(this.antiSamy, times(1)).scan("<b>x</b>");
+
+        this.xssFilter.handleEvent(this.createEvent(POLICY_PATH));
+        // the policy is reloaded after the change
+        this.setPolicyHandler();
+        this.filter("<b>x</b>");
+        verify(this.antiSamy, times(2)).scan("<b>x</b>");
+    }
+
+    private Event createEvent(final String path) {
+        final Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put(SlingConstants.PROPERTY_PATH, path);
+        return new Event(SlingConstants.TOPIC_RESOURCE_CHANGED, props);
+    }
+}
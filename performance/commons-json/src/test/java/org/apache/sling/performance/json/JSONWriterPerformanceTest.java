@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.performance.json;
+
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Locale;
+
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.io.BufferedJSONWriter;
+import org.apache.sling.commons.json.io.JSONWriter;
+import org.apache.sling.performance.PerformanceRunner;
+import org.apache.sling.performance.PerformanceRunner.Parameters;
+import org.apache.sling.performance.PerformanceRunner.ReportLevel;
+import org.apache.sling.performance.annotation.PerformanceTest;
+import org.junit.runner.RunWith;
+
+/**
+ * Compares the JSONWriter with the BufferedJSONWriter by rendering
+ * a dump of resources similar to the output of the JSON GET servlet.
+ */
+@RunWith(PerformanceRunner.class)
+@Parameters(reportLevel = ReportLevel.MethodLevel)
+public class JSONWriterPerformanceTest {
+
+    private static final int RESOURCES = 200;
+
+    private static final String[] TAGS = {"news", "sports", "tech/java", "tech/osgi"};
+
+    private final Calendar created = Calendar.getInstance();
+
+    private final DateFormat dateFormat = new SimpleDateFormat("EEE MMM dd yyyy HH:mm:ss 'GMT'Z", Locale.US);
+
+    private final Writer out = new NullWriter();
+
+    private void dump(final JSONWriter w) throws JSONException {
+        w.object();
+        w.key("jcr:primaryType").value("sling:Folder");
+        w.key("jcr:created");
+        this.date(w);
+        for (int i = 0; i < RESOURCES; i++) {
+            w.key("page-" + i).object();
+            w.key("jcr:primaryType").value("cq:Page");
+            w.key("jcr:title").value("Page \"" + i + "\" <b>title</b>");
+            w.key("jcr:description").value("A longer description of the page which\nspans multiple lines.");
+            w.key("sling:resourceType").value("example/components/page");
+            w.key("jcr:created");
+            this.date(w);
+            w.key("jcr:createdBy").value("admin");
+            w.key("hidden").value(i % 3 == 0);
+            w.key("order").value(i);
+            w.key("size").value(1024L * i);
+            w.key("rating").value(i / 7.0);
+            w.key("tags").array();
+            for (final String tag : TAGS) {
+                w.value(tag);
+            }
+            w.endArray();
+            w.endObject();
+        }
+        w.endObject();
+    }
+
+    /**
+     * Dates are written as ECMA formatted strings like the JsonItemWriter does.
+     */
+    private void date(final JSONWriter w) throws JSONException {
+        if (w instanceof BufferedJSONWriter) {
+            ((BufferedJSONWriter) w).value(this.created);
+        } else {
+            w.value(this.dateFormat.format(this.created.getTime()));
+        }
+    }
+
+    @PerformanceTest(warmupinvocations = 100, runinvocations = 1000)
+    public void jsonWriter() throws JSONException {
+        dump(new JSONWriter(this.out));
+    }
+
+    @PerformanceTest(warmupinvocations = 100, runinvocations = 1000)
+    public void bufferedJsonWriter() throws JSONException {
+        dump(new BufferedJSONWriter(this.out));
+    }
+
+    /**
+     * Writer discarding all output.
+     */
+    private static final class NullWriter extends Writer {
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            // discard
+        }
+
+        @Override
+        public void write(final int c) {
+            // discard
+        }
+
+        @Override
+        public void write(final String str) {
+            // discard
+        }
+
+        @Override
+        public void flush() {
+            // nothing to do
+        }
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+    }
+}